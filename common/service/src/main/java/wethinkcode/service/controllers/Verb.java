@@ -7,7 +7,9 @@ import java.util.function.BiConsumer;
 
 public enum Verb {
     GET (ApiBuilder::get),
-    POST (ApiBuilder::post);
+    POST (ApiBuilder::post),
+    PUT (ApiBuilder::put),
+    DELETE (ApiBuilder::delete);
     //TODO: Add the rest as needed
     private final BiConsumer<String, Handler> verb;
     public void invoke(String path, Handler handler){
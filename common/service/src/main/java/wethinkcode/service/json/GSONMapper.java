@@ -26,18 +26,18 @@ public class GSONMapper implements JsonMapper {
     @NotNull
     @Override
     public String toJsonString(@NotNull Object obj, @NotNull Type type) {
-        logger.info("To JSON: " + obj + " of type " + type.getTypeName());
         String result = gson.toJson(obj);
-        logger.info("Result: " + result);
+        logger.info("To JSON: " + type.getTypeName() + " as " + result.length() + " characters");
         return result;
     }
 
-    @NotNull
+    /**
+     * Reads a request body. An empty body gives null (Gson's answer for "nothing there"),
+     * so callers must check for it; only the size of the body is logged, never what it says.
+     */
     @Override
     public <T> T fromJsonString(@NotNull String json, @NotNull Type targetType) {
-        logger.info("From JSON : " + json + " to type " + targetType.getTypeName());
-        T result = gson.fromJson(json, targetType);
-        logger.info("Result: " + result.toString());
-        return result;
+        logger.info("From JSON: " + json.length() + " characters as " + targetType.getTypeName());
+        return gson.fromJson(json, targetType);
     }
 }
\ No newline at end of file
@@ -4,6 +4,7 @@ import kong.unirest.HttpResponse;
 import kong.unirest.JsonNode;
 import kong.unirest.Unirest;
 import kong.unirest.UnirestException;
+import picocli.CommandLine;
 import wethinkcode.places.PlacesService;
 import wethinkcode.schedule.ScheduleService;
 import wethinkcode.service.Service;
@@ -12,12 +13,29 @@ import wethinkcode.web.WebService;
 
 import java.io.*;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
 import java.util.*;
 
 import static wethinkcode.service.messages.AlertService.publishWarning;
 import static wethinkcode.service.properties.Properties.getDefaultPropertiesStream;
 
+/**
+ * I start all the other services, tell them where to find each other and let them find each
+ * other's URLs through me.
+ * <p>
+ * With <code>-ps | --places-shards &lt;provinces;provinces;...&gt;</code> I start one
+ * PlacesService for each group of provinces instead of one for the whole country. Every
+ * PlacesService given my URL registers its provinces with me, wherever it runs, so shards on
+ * other hosts can be used too. Requests about a province are then routed to the shard that
+ * serves it, and the others are sent to every shard and their answers merged.
+ * <p>
+ * A shard must send the token given with <code>-sht | --shard-token</code> to register. The
+ * PlacesServices I start are given it; without one I make up a token only they know, so shards
+ * elsewhere can only register if a token is given to me and to them.
+ */
 @Service.AsService
 public class ManagerService {
     private static final ArrayList<Object> services = new ArrayList<>(){{
@@ -28,22 +46,51 @@ public class ManagerService {
     }};
     public final HashMap<Integer, Service<?>> ports = new HashMap<>();
 
+    @CommandLine.Option(
+            names = {"-ps", "--places-shards"},
+            description = "Starts a PlacesService for each group of provinces, " +
+                    "with groups separated by ';' and the provinces in a group by ','"
+    )
+    String placesShards;
+
+    @CommandLine.Option(
+            names = {"-sht", "--shard-token"},
+            description = "The bearer token PlacesService shards must send to register with me"
+    )
+    volatile String shardToken;
+
+    /**
+     * Which PlacesService serves which provinces, as each one registered
+     */
+    public final PlacesShards places = new PlacesShards();
+
+    private String url;
+
     private void addToProperties(Properties properties, Service<ManagerService> s) {
         properties.setProperty("manager", s.url());
         properties.setProperty("port", String.valueOf(s.port + ports.size() + 1));
         properties.setProperty("commands", "false");
     }
-    private void setUpProperties(File f, InputStream defaults, Service<ManagerService> s){
+    private void setUpProperties(File f, InputStream defaults, Service<ManagerService> s, Map<String, String> extra){
         Properties properties = new Properties();
         try {
             properties.load(new InputStreamReader(defaults));
             addToProperties(properties, s);
+            extra.forEach(properties::setProperty);
             properties.store(new FileOutputStream(f), f.getAbsolutePath());
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
+    private void start(Object service, String name, Path folder, Service<ManagerService> s, Map<String, String> extra){
+        File f = new File(folder.resolve(name + ".properties").toUri());
+
+        setUpProperties(f, getDefaultPropertiesStream(service.getClass()), s, extra);
+
+        ports.put(s.port + ports.size() + 10, new Service<>(service).execute("-c="+f.getAbsolutePath()));
+    }
+
     @Service.RunAfter(withServiceAsArg = true)
     public void startAllServices(Service<ManagerService> s){
         Path folder;
@@ -55,13 +102,70 @@ public class ManagerService {
             throw new RuntimeException(e);
         }
 
+        url = s.url();
+        if (shardToken == null || shardToken.isEmpty()) {
+            byte[] token = new byte[32];
+            new SecureRandom().nextBytes(token);
+            shardToken = Base64.getUrlEncoder().withoutPadding().encodeToString(token);
+        }
         for (Object service : services){
-            File f =new File(folder.resolve(service.getClass().getSimpleName() + ".properties").toUri());
-
-            setUpProperties(f, getDefaultPropertiesStream(service.getClass()), s);
+            if (service instanceof PlacesService && isPlacesSharded()) {
+                String[] shards = placesShards.split(";");
+                for (int i = 0; i < shards.length; i++) {
+                    start(new PlacesService(), "PlacesService-" + i, folder, s,
+                            Map.of("provinces", shards[i].trim(), "shardToken", shardToken));
+                }
+                continue;
+            }
+            start(service, service.getClass().getSimpleName(), folder, s,
+                    service instanceof PlacesService ? Map.of("shardToken", shardToken) : Map.of());
+        }
+    }
 
-            ports.put(s.port + ports.size() + 10, new Service<>(service).execute("-c="+f.getAbsolutePath()));
+    /**
+     * @param authorization the Authorization header sent by a shard
+     * @return true if it carries the shard token
+     */
+    public boolean isShard(String authorization){
+        String token = shardToken;
+        if (token == null || token.isEmpty() || authorization == null) {
+            return false;
         }
+        return MessageDigest.isEqual(
+                ("Bearer " + token).getBytes(StandardCharsets.UTF_8),
+                authorization.getBytes(StandardCharsets.UTF_8)
+        );
+    }
+
+    /**
+     * @return true if the places are served by several PlacesService shards, started by me or
+     *         registered from elsewhere
+     */
+    public boolean isPlacesSharded(){
+        return (placesShards != null && !placesShards.isBlank()) || places.urls().size() > 1;
+    }
+
+    /**
+     * @return the URL of this manager
+     */
+    public String url(){
+        return url;
+    }
+
+    /**
+     * Finds the PlacesService that serves a province, matching its name regardless of case and accents
+     * @param province the name of the province
+     * @return the URL of the PlacesService, if any serves the province
+     */
+    public Optional<String> placesShard(String province){
+        return places.owner(province);
+    }
+
+    /**
+     * @return the URL of the PlacesService for each province, as the shards registered them
+     */
+    public Map<String, String> placesShards(){
+        return places.owners();
     }
 
     @Service.RunAfter
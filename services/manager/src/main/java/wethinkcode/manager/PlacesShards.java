@@ -0,0 +1,187 @@
+package wethinkcode.manager;
+
+import wethinkcode.places.PlacesService;
+import wethinkcode.places.search.Names;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.function.LongSupplier;
+
+/**
+ * PlacesShards : I remember which PlacesService serves which provinces, as each one tells me,
+ * so that a shard can run anywhere and requests about a province can be sent to it.
+ * <p>
+ * A shard registers its URL, the version of its data and its provinces whenever it loads new
+ * data, and again every {@link PlacesService#HEARTBEAT} to show it is still there. A shard not
+ * heard from for {@link #TTL} is forgotten, so its provinces go to another shard that serves
+ * them, if any. If more than one serves a province, the one that registered first is used. The
+ * owner of each province is worked out when the shards change, not on every request.
+ * <p>
+ * I also give the shards together one version, which moves on whenever any shard's version
+ * does or a shard comes or goes. My versions count up from the time I started, in microseconds,
+ * so they are not repeated if I restart. For the last {@link #HISTORY} of my versions I remember
+ * the version of every shard, so the changes since one of my versions are the changes of each
+ * shard since its own.
+ */
+public class PlacesShards
+{
+    static final int HISTORY = 64;
+    /**
+     * How long a shard is kept without hearing from it, three of its heartbeats
+     */
+    public static final Duration TTL = PlacesService.HEARTBEAT.multipliedBy(3);
+
+    /**
+     * One PlacesService shard
+     * @param url where it is served
+     * @param version the version of its data
+     * @param provinces the provinces in its data
+     */
+    public record Shard(String url, long version, List<String> provinces) {}
+
+    private final Duration ttl;
+    private final LongSupplier clock;
+    private final Map<String, Shard> shards = new LinkedHashMap<>();
+    private final Map<String, Long> lastSeen = new HashMap<>();
+    private final LinkedHashMap<Long, Map<String, Long>> versions = new LinkedHashMap<>();
+    private long version;
+    private volatile long nextExpiry;
+    private volatile Map<String, String> owners = Map.of();
+    private volatile Map<String, String> foldedOwners = Map.of();
+
+    public PlacesShards(){
+        this(TTL, System::nanoTime, System.currentTimeMillis() * 1000);
+    }
+
+    /**
+     * @param ttl how long a shard is kept without hearing from it
+     * @param clock the time now in nanoseconds, as System.nanoTime() gives it
+     * @param firstVersion my version before any shard registers
+     */
+    PlacesShards(Duration ttl, LongSupplier clock, long firstVersion){
+        this.ttl = ttl;
+        this.clock = clock;
+        this.version = firstVersion;
+        this.nextExpiry = clock.getAsLong() + ttl.toNanos();
+    }
+
+    /**
+     * Adds a shard, or replaces what I know of it if it registered before. Registering again
+     * with nothing changed only shows that the shard is still there.
+     */
+    public synchronized void register(Shard shard){
+        long now = clock.getAsLong();
+        lastSeen.put(shard.url(), now);
+        boolean expired = expire(now);
+        Shard previous = shards.put(shard.url(), new Shard(shard.url(), shard.version(), List.copyOf(shard.provinces())));
+        if (!expired && previous != null && previous.version() == shard.version() && previous.provinces().equals(shard.provinces())) {
+            return;
+        }
+        changed();
+    }
+
+    /**
+     * Forgets the shards not heard from for the time to live, if it is time to look
+     */
+    private void expireIfDue(){
+        if (clock.getAsLong() - nextExpiry >= 0) {
+            synchronized (this) {
+                if (expire(clock.getAsLong())) {
+                    changed();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return true if any shard was forgotten
+     */
+    private boolean expire(long now){
+        long ttlNanos = ttl.toNanos();
+        boolean expired = lastSeen.entrySet().removeIf(seen -> now - seen.getValue() > ttlNanos);
+        if (expired) {
+            shards.keySet().retainAll(lastSeen.keySet());
+        }
+        long next = now + ttlNanos;
+        for (long seen : lastSeen.values()) {
+            if (seen + ttlNanos - next < 0) {
+                next = seen + ttlNanos;
+            }
+        }
+        nextExpiry = next + 1;
+        return expired;
+    }
+
+    private void changed(){
+        Map<String, String> exact = new LinkedHashMap<>();
+        Map<String, String> folded = new HashMap<>();
+        for (Shard registered : shards.values()) {
+            for (String province : registered.provinces()) {
+                exact.putIfAbsent(province, registered.url());
+                folded.putIfAbsent(Names.fold(province), registered.url());
+            }
+        }
+        owners = Collections.unmodifiableMap(exact);
+        foldedOwners = Map.copyOf(folded);
+
+        Map<String, Long> shardVersions = new LinkedHashMap<>();
+        shards.values().forEach(registered -> shardVersions.put(registered.url(), registered.version()));
+        versions.put(++version, Collections.unmodifiableMap(shardVersions));
+        if (versions.size() > HISTORY) {
+            versions.remove(versions.keySet().iterator().next());
+        }
+    }
+
+    /**
+     * Finds the shard that serves a province, matching its name regardless of case and accents
+     * @param province the name of the province
+     * @return the URL of the shard, if any serves the province
+     */
+    public Optional<String> owner(String province){
+        expireIfDue();
+        String url = owners.get(province);
+        if (url == null) {
+            url = foldedOwners.get(Names.fold(province));
+        }
+        return Optional.ofNullable(url);
+    }
+
+    /**
+     * @return the URL of the shard for each province
+     */
+    public Map<String, String> owners(){
+        expireIfDue();
+        return owners;
+    }
+
+    /**
+     * @return the URLs of the shards, in the order they first registered
+     */
+    public List<String> urls(){
+        expireIfDue();
+        synchronized (this) {
+            return List.copyOf(shards.keySet());
+        }
+    }
+
+    /**
+     * @return my version of the data of all the shards together
+     */
+    public long version(){
+        expireIfDue();
+        synchronized (this) {
+            return version;
+        }
+    }
+
+    /**
+     * @param version one of my versions
+     * @return the version of each shard then, or empty if it is too old or not one of mine
+     */
+    public Optional<Map<String, Long>> versionsAt(long version){
+        expireIfDue();
+        synchronized (this) {
+            return Optional.ofNullable(versions.get(version));
+        }
+    }
+}
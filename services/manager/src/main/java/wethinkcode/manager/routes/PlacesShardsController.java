@@ -0,0 +1,551 @@
+package wethinkcode.manager.routes;
+
+import com.google.common.escape.Escaper;
+import com.google.common.net.UrlEscapers;
+import io.javalin.http.ContentType;
+import io.javalin.http.Context;
+import io.javalin.http.HttpStatus;
+import io.javalin.http.Header;
+import kong.unirest.GetRequest;
+import kong.unirest.HttpRequest;
+import kong.unirest.HttpResponse;
+import kong.unirest.JsonNode;
+import kong.unirest.Unirest;
+import kong.unirest.json.JSONArray;
+import kong.unirest.json.JSONException;
+import kong.unirest.json.JSONObject;
+import wethinkcode.manager.ManagerService;
+import wethinkcode.manager.PlacesShards;
+import wethinkcode.model.Municipality;
+import wethinkcode.model.Place;
+import wethinkcode.model.Province;
+import wethinkcode.places.changes.PlacesDelta;
+import wethinkcode.places.routes.PlaceController;
+import wethinkcode.places.routes.SearchController;
+import wethinkcode.places.search.FuzzyIndex;
+import wethinkcode.places.search.NearbyPlace;
+import wethinkcode.places.search.PrefixIndex;
+import wethinkcode.service.controllers.Controllers;
+import wethinkcode.service.controllers.Verb;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+import static wethinkcode.service.messages.AlertService.publishWarning;
+
+/**
+ * Fronts the PlacesService shards, so a client can use the manager as if it were one
+ * PlacesService. Shards register their provinces here. Requests about one province are
+ * redirected to the shard that serves it. Everything else is asked of every shard at once and
+ * the answers are merged: the first shard to find a place or municipality answers, searches are
+ * merged in the order one shard would give and cut to the limit, and queries are paged through
+ * the shards in the order they registered.
+ */
+@Controllers.Controller("places")
+@SuppressWarnings("unused")
+public class PlacesShardsController {
+    private static final Escaper PATH = UrlEscapers.urlPathSegmentEscaper();
+    static final int MAX_QUERY_LIMIT = 1000;
+    static final String NEXT_OFFSET = "X-Next-Offset";
+
+    /**
+     * Registers a shard, or what it serves now, or shows that it is still there. The body is
+     * {"url": ..., "version": ..., "provinces": [...]}, and the request must carry the shard
+     * token as a bearer token.
+     */
+    @Controllers.Mapping(value = Verb.POST, path = "shards")
+    public static void registerShard(Context ctx, ManagerService instance) {
+        if (!instance.isShard(ctx.header(Header.AUTHORIZATION))) {
+            ctx.header(Header.WWW_AUTHENTICATE, "Bearer");
+            ctx.status(HttpStatus.UNAUTHORIZED);
+            ctx.json("Expected the shard token");
+            return;
+        }
+        PlacesShards.Shard shard;
+        try {
+            shard = ctx.bodyAsClass(PlacesShards.Shard.class);
+        } catch (Exception e) {
+            shard = null;
+        }
+        if (shard == null || shard.url() == null || shard.provinces() == null || shard.provinces().contains(null)) {
+            ctx.status(HttpStatus.BAD_REQUEST);
+            ctx.json("Expected {\"url\": ..., \"version\": ..., \"provinces\": [...]}");
+            return;
+        }
+        instance.places.register(shard);
+        ctx.status(HttpStatus.NO_CONTENT);
+    }
+
+    /**
+     * Gets the URL of the shard that serves each province
+     */
+    @Controllers.Mapping(value = Verb.GET, path = "shards")
+    public static void getShards(Context ctx, ManagerService instance) {
+        ctx.json(instance.placesShards());
+        ctx.status(HttpStatus.OK);
+    }
+
+    /**
+     * Gets the provinces from every shard at once, and joins them together
+     */
+    @Controllers.Mapping(value = Verb.GET, path = "provinces")
+    public static void getAllProvinces(Context ctx, ManagerService instance) {
+        Set<String> names = new LinkedHashSet<>();
+        for (HttpResponse<JsonNode> response : scatter(instance, url -> Unirest.get(url + "/provinces"))) {
+            if (response.isSuccess()) {
+                JSONArray provinces = response.getBody().getArray();
+                for (int i = 0; i < provinces.length(); i++) {
+                    names.add(provinces.getJSONObject(i).getString("name"));
+                }
+            }
+        }
+
+        ctx.json(names.stream().map(Province::new).toList());
+        ctx.status(HttpStatus.OK);
+    }
+
+    @Controllers.Mapping(value = Verb.GET, path = "places/province/{province}")
+    public static void getPlacesInProvince(Context ctx, ManagerService instance) {
+        String province = ctx.pathParam("province");
+        redirect(ctx, instance, province, "/places/province/" + PATH.escape(province));
+    }
+
+    @Controllers.Mapping(value = Verb.GET, path = "municipalities/{province}")
+    public static void getMunicipalitiesInProvince(Context ctx, ManagerService instance) {
+        String province = ctx.pathParam("province");
+        redirect(ctx, instance, province, "/municipalities/" + PATH.escape(province));
+    }
+
+    @Controllers.Mapping(value = Verb.GET, path = "exists/{province}/{place}")
+    public static void placeExists(Context ctx, ManagerService instance) {
+        String province = ctx.pathParam("province");
+        redirect(ctx, instance, province,
+                "/exists/" + PATH.escape(province) + "/" + PATH.escape(ctx.pathParam("place")));
+    }
+
+    /**
+     * Gets a place by name from the first shard, in the order they registered, that has it
+     */
+    @Controllers.Mapping(value = Verb.GET, path = "place/{name}")
+    public static void getPlace(Context ctx, ManagerService instance) {
+        firstFound(ctx, instance, "/place/" + PATH.escape(ctx.pathParam("name")));
+    }
+
+    /**
+     * Gets a municipality by name from the first shard, in the order they registered, that has it
+     */
+    @Controllers.Mapping(value = Verb.GET, path = "municipality/{name}")
+    public static void getMunicipality(Context ctx, ManagerService instance) {
+        firstFound(ctx, instance, "/municipality/" + PATH.escape(ctx.pathParam("name")));
+    }
+
+    /**
+     * Redirects to the shard that has the municipality, so its places can be paged or streamed there
+     */
+    @Controllers.Mapping(value = Verb.GET, path = "places/municipality/{municipality}")
+    public static void getPlacesInMunicipality(Context ctx, ManagerService instance) {
+        String municipality = PATH.escape(ctx.pathParam("municipality"));
+        List<String> urls = instance.places.urls();
+        List<HttpResponse<JsonNode>> responses = scatter(urls, url -> Unirest.get(url + "/municipality/" + municipality));
+        for (int i = 0; i < urls.size(); i++) {
+            if (responses.get(i) != null && responses.get(i).isSuccess()) {
+                String query = ctx.queryString();
+                ctx.redirect(urls.get(i) + "/places/municipality/" + municipality + (query == null ? "" : "?" + query),
+                        HttpStatus.TEMPORARY_REDIRECT);
+                return;
+            }
+        }
+        ctx.status(HttpStatus.NOT_FOUND);
+    }
+
+    /**
+     * Redirects to the shard of the 'province' query parameter if there is one, otherwise
+     * merges what every shard finds
+     */
+    @Controllers.Mapping(value = Verb.GET, path = "places/search/prefix/{prefix}")
+    public static void searchByPrefix(Context ctx, ManagerService instance) {
+        String prefix = PATH.escape(ctx.pathParam("prefix"));
+        String province = ctx.queryParam("province");
+        if (province != null) {
+            if (instance.placesShard(province).isEmpty()) {
+                ctx.json(List.of());
+                ctx.status(HttpStatus.OK);
+                return;
+            }
+            redirect(ctx, instance, province, "/places/search/prefix/" + prefix);
+            return;
+        }
+        search(ctx, instance, "/places/search/prefix/" + prefix, PrefixIndex.order());
+    }
+
+    /**
+     * Merges what every shard finds, closest first
+     */
+    @Controllers.Mapping(value = Verb.GET, path = "places/search/fuzzy/{query}")
+    public static void searchFuzzy(Context ctx, ManagerService instance) {
+        String query = ctx.pathParam("query");
+        search(ctx, instance, "/places/search/fuzzy/" + PATH.escape(query), FuzzyIndex.closestTo(query));
+    }
+
+    /**
+     * Gets the 'k' places closest to a location from all of the shards, nearest first
+     */
+    @Controllers.Mapping(value = Verb.GET, path = "places/near")
+    public static void getNearestPlaces(Context ctx, ManagerService instance) {
+        near(ctx, instance, "/places/near", "k");
+    }
+
+    /**
+     * Gets up to 'limit' of the places within 'km' of a location from all of the shards, nearest first
+     */
+    @Controllers.Mapping(value = Verb.GET, path = "places/within")
+    public static void getPlacesWithin(Context ctx, ManagerService instance) {
+        near(ctx, instance, "/places/within", "limit");
+    }
+
+    /**
+     * Redirects to the shard of the 'province' query parameter if there is one. Otherwise the
+     * places of every shard are paged through as one list, in the order the shards registered,
+     * using how many each shard has to find where a page starts.
+     */
+    @Controllers.Mapping(value = Verb.GET, path = "places/query")
+    public static void query(Context ctx, ManagerService instance) {
+        String province = ctx.queryParam("province");
+        if (province != null) {
+            redirect(ctx, instance, province, "/places/query");
+            return;
+        }
+
+        int offset;
+        int limit;
+        try {
+            offset = ctx.queryParam("offset") == null ? 0 : Integer.parseInt(ctx.queryParam("offset"));
+            limit = ctx.queryParam("limit") == null ? MAX_QUERY_LIMIT : Integer.parseInt(ctx.queryParam("limit"));
+        } catch (NumberFormatException e) {
+            offset = -1;
+            limit = -1;
+        }
+        if (offset < 0 || limit < 1) {
+            ctx.status(HttpStatus.BAD_REQUEST);
+            ctx.json("Bad offset or limit: " + ctx.queryParam("offset") + ", " + ctx.queryParam("limit"));
+            return;
+        }
+        limit = Math.min(limit, MAX_QUERY_LIMIT);
+
+        List<String> urls = instance.places.urls();
+        List<HttpResponse<JsonNode>> counts = scatter(urls, url ->
+                withFilters(Unirest.get(url + "/places/query"), ctx).queryString("count", true));
+        int[] sizes = new int[urls.size()];
+        long total = 0;
+        for (int i = 0; i < urls.size(); i++) {
+            HttpResponse<JsonNode> count = counts.get(i);
+            if (count != null && count.getStatus() == HttpStatus.BAD_REQUEST.getCode()) {
+                ctx.status(HttpStatus.BAD_REQUEST);
+                ctx.result(count.getBody().toString());
+                return;
+            }
+            sizes[i] = count != null && count.isSuccess() ? count.getBody().getObject().getInt("count") : 0;
+            total += sizes[i];
+        }
+        if (Boolean.parseBoolean(ctx.queryParam("count"))) {
+            ctx.json(Map.of("count", total));
+            ctx.status(HttpStatus.OK);
+            return;
+        }
+
+        JSONArray page = new JSONArray();
+        long skip = offset;
+        for (int i = 0; i < urls.size() && page.length() < limit; i++) {
+            if (skip >= sizes[i]) {
+                skip -= sizes[i];
+                continue;
+            }
+            HttpResponse<JsonNode> response = withFilters(Unirest.get(urls.get(i) + "/places/query"), ctx)
+                    .queryString("offset", skip)
+                    .queryString("limit", limit - page.length())
+                    .asJson();
+            if (response.isSuccess()) {
+                response.getBody().getArray().forEach(page::put);
+            }
+            skip = 0;
+        }
+        if (offset + page.length() < total) {
+            ctx.header(NEXT_OFFSET, String.valueOf(offset + page.length()));
+        }
+        ctx.contentType(ContentType.APPLICATION_JSON);
+        ctx.result(page.toString());
+        ctx.status(HttpStatus.OK);
+    }
+
+    /**
+     * Checks whether each of a list of places exists, sending each shard the places in its
+     * provinces, and answers with the booleans in the order asked for
+     */
+    @Controllers.Mapping(value = Verb.POST, path = "exists")
+    public static void placesExist(Context ctx, ManagerService instance) {
+        PlaceQuery[] queries;
+        try {
+            queries = ctx.bodyAsClass(PlaceQuery[].class);
+        } catch (Exception e) {
+            queries = null;
+        }
+        if (queries == null || queries.length > PlaceController.MAX_BATCH) {
+            ctx.status(HttpStatus.BAD_REQUEST);
+            ctx.json("Expected a list of at most " + PlaceController.MAX_BATCH + " provinces and places");
+            return;
+        }
+
+        Map<String, List<Integer>> byShard = new LinkedHashMap<>();
+        for (int i = 0; i < queries.length; i++) {
+            if (queries[i] != null && queries[i].province() != null && queries[i].place() != null) {
+                Optional<String> shard = instance.placesShard(queries[i].province());
+                if (shard.isPresent()) {
+                    byShard.computeIfAbsent(shard.get(), url -> new ArrayList<>()).add(i);
+                }
+            }
+        }
+
+        boolean[] exists = new boolean[queries.length];
+        List<String> urls = List.copyOf(byShard.keySet());
+        PlaceQuery[] asked = queries;
+        List<HttpResponse<JsonNode>> responses = scatter(urls, url -> Unirest.post(url + "/exists")
+                .body(new JSONArray(byShard.get(url).stream().map(i -> asked[i]).map(PlaceQuery::json).toList())));
+        for (int s = 0; s < urls.size(); s++) {
+            HttpResponse<JsonNode> response = responses.get(s);
+            if (response == null || !response.isSuccess()) {
+                ctx.status(HttpStatus.BAD_GATEWAY);
+                ctx.json("A places shard could not check its places");
+                return;
+            }
+            JSONArray found = response.getBody().getArray();
+            List<Integer> indexes = byShard.get(urls.get(s));
+            for (int j = 0; j < indexes.size(); j++) {
+                exists[indexes.get(j)] = found.getBoolean(j);
+            }
+        }
+
+        ctx.json(exists);
+        ctx.status(HttpStatus.OK);
+    }
+
+    /**
+     * Gets the changes since one of the versions of all the shards together, from the changes
+     * of each shard since its own version then. It is a reset if that version is not known,
+     * the shards have changed since then, or any shard's changes are not known.
+     */
+    @Controllers.Mapping(value = Verb.GET, path = "changes")
+    public static void getChanges(Context ctx, ManagerService instance) {
+        long since;
+        try {
+            since = Long.parseLong(ctx.queryParam("since"));
+        } catch (NumberFormatException e) {
+            since = -1;
+        }
+        if (since < 0) {
+            ctx.status(HttpStatus.BAD_REQUEST);
+            ctx.json("Expected the version to get the changes since");
+            return;
+        }
+
+        long version = instance.places.version();
+        Map<String, Long> now = instance.places.versionsAt(version).orElse(Map.of());
+        Optional<Map<String, Long>> then = instance.places.versionsAt(since);
+        ctx.status(HttpStatus.OK);
+        if (then.isEmpty() || !then.get().keySet().equals(now.keySet())) {
+            ctx.json(reset(since, version));
+            return;
+        }
+
+        List<String> changed = now.keySet().stream().filter(url -> !now.get(url).equals(then.get().get(url))).toList();
+        List<HttpResponse<JsonNode>> responses = scatter(changed, url -> Unirest.get(url + "/changes")
+                .queryString("since", then.get().get(url)));
+        DeltaBuilder delta = new DeltaBuilder();
+        for (int i = 0; i < changed.size(); i++) {
+            HttpResponse<JsonNode> response = responses.get(i);
+            if (response == null || !response.isSuccess()) {
+                ctx.json(reset(since, version));
+                return;
+            }
+            JSONObject shardDelta = response.getBody().getObject();
+            if (shardDelta.getBoolean("reset") || shardDelta.getLong("version") != now.get(changed.get(i))) {
+                ctx.json(reset(since, version));
+                return;
+            }
+            delta.add(shardDelta);
+        }
+        ctx.json(delta.build(since, version));
+    }
+
+    /**
+     * Answers with the first shard, in the order they registered, that finds what the path asks for
+     */
+    private static void firstFound(Context ctx, ManagerService instance, String path) {
+        for (HttpResponse<JsonNode> response : scatter(instance, url -> Unirest.get(url + path))) {
+            if (response.isSuccess() || response.getStatus() == HttpStatus.FOUND.getCode()) {
+                ctx.contentType(ContentType.APPLICATION_JSON);
+                ctx.result(response.getBody().toString());
+                ctx.status(response.getStatus());
+                return;
+            }
+        }
+        ctx.status(HttpStatus.NOT_FOUND);
+    }
+
+    private static void search(Context ctx, ManagerService instance, String path, Comparator<Place> order) {
+        int limit;
+        try {
+            limit = SearchController.limit(ctx.queryParam("limit"));
+        } catch (NumberFormatException e) {
+            ctx.status(HttpStatus.BAD_REQUEST);
+            ctx.json("Bad limit: " + ctx.queryParam("limit"));
+            return;
+        }
+
+        List<Place> found = new ArrayList<>();
+        for (HttpResponse<JsonNode> response : scatter(instance, url -> withQuery(Unirest.get(url + path), ctx))) {
+            if (response.isSuccess()) {
+                response.getBody().getArray().forEach(place -> found.add(place((JSONObject) place)));
+            }
+        }
+        found.sort(order);
+        ctx.json(found.subList(0, Math.min(limit, found.size())));
+        ctx.status(HttpStatus.OK);
+    }
+
+    private static void near(Context ctx, ManagerService instance, String path, String limitParameter) {
+        int limit;
+        try {
+            limit = SearchController.limit(ctx.queryParam(limitParameter));
+        } catch (NumberFormatException e) {
+            ctx.status(HttpStatus.BAD_REQUEST);
+            ctx.json("Bad " + limitParameter + ": " + ctx.queryParam(limitParameter));
+            return;
+        }
+
+        List<NearbyPlace> found = new ArrayList<>();
+        for (HttpResponse<JsonNode> response : scatter(instance, url -> withQuery(Unirest.get(url + path), ctx))) {
+            if (response.getStatus() == HttpStatus.BAD_REQUEST.getCode()) {
+                ctx.status(HttpStatus.BAD_REQUEST);
+                ctx.result(response.getBody().toString());
+                return;
+            }
+            if (response.isSuccess()) {
+                response.getBody().getArray().forEach(place -> found.add(nearbyPlace((JSONObject) place)));
+            }
+        }
+        found.sort(Comparator.comparingDouble(NearbyPlace::distance));
+        ctx.json(found.subList(0, Math.min(limit, found.size())));
+        ctx.status(HttpStatus.OK);
+    }
+
+    /**
+     * Sends a request to every shard at once
+     * @return the responses of the shards that answered, in the order the shards registered
+     */
+    private static List<HttpResponse<JsonNode>> scatter(ManagerService instance, Function<String, HttpRequest<?>> request) {
+        return scatter(instance.places.urls(), request).stream().filter(Objects::nonNull).toList();
+    }
+
+    /**
+     * Sends a request to each of some shards at once
+     * @return the response of each shard, or null where it could not be reached
+     */
+    private static List<HttpResponse<JsonNode>> scatter(List<String> urls, Function<String, HttpRequest<?>> request) {
+        List<CompletableFuture<HttpResponse<JsonNode>>> requests = urls.stream()
+                .map(url -> request.apply(url).asJsonAsync())
+                .toList();
+
+        List<HttpResponse<JsonNode>> responses = new ArrayList<>();
+        for (CompletableFuture<HttpResponse<JsonNode>> pending : requests) {
+            try {
+                responses.add(pending.join());
+            } catch (CompletionException e) {
+                publishWarning("Manager Service", "A places shard could not be reached");
+                responses.add(null);
+            }
+        }
+        return responses;
+    }
+
+    private static GetRequest withQuery(GetRequest request, Context ctx) {
+        ctx.queryParamMap().forEach(request::queryString);
+        return request;
+    }
+
+    private static GetRequest withFilters(GetRequest request, Context ctx) {
+        ctx.queryParamMap().forEach((name, values) -> {
+            if (!Set.of("offset", "limit", "count").contains(name)) {
+                request.queryString(name, values);
+            }
+        });
+        return request;
+    }
+
+    private static void redirect(Context ctx, ManagerService instance, String province, String path) {
+        Optional<String> shard = instance.placesShard(province);
+        if (shard.isEmpty()) {
+            ctx.status(HttpStatus.NOT_FOUND);
+            ctx.json("Province does not exist: " + province);
+            return;
+        }
+
+        String query = ctx.queryString();
+        ctx.redirect(shard.get() + path + (query == null ? "" : "?" + query), HttpStatus.TEMPORARY_REDIRECT);
+    }
+
+    private static Place place(JSONObject place) {
+        return new Place(place.getString("name"), place.getString("municipality"));
+    }
+
+    private static NearbyPlace nearbyPlace(JSONObject place) {
+        return new NearbyPlace(
+                place.getString("name"),
+                place.getString("municipality"),
+                place.getDouble("latitude"),
+                place.getDouble("longitude"),
+                place.getDouble("distance")
+        );
+    }
+
+    private static PlacesDelta reset(long since, long version) {
+        return new PlacesDelta(since, version, true, List.of(), List.of(), List.of(), List.of(), List.of(), List.of());
+    }
+
+    record PlaceQuery(String province, String place) {
+        JSONObject json() {
+            return new JSONObject().put("province", province).put("place", place);
+        }
+    }
+
+    /**
+     * Joins the changes of several shards, which never share a province, municipality or place
+     */
+    private static class DeltaBuilder {
+        private final List<Province> addedProvinces = new ArrayList<>();
+        private final List<Province> removedProvinces = new ArrayList<>();
+        private final List<Municipality> addedMunicipalities = new ArrayList<>();
+        private final List<Municipality> removedMunicipalities = new ArrayList<>();
+        private final List<Place> addedPlaces = new ArrayList<>();
+        private final List<Place> removedPlaces = new ArrayList<>();
+
+        void add(JSONObject delta) throws JSONException {
+            delta.getJSONArray("addedProvinces").forEach(o -> addedProvinces.add(new Province(((JSONObject) o).getString("name"))));
+            delta.getJSONArray("removedProvinces").forEach(o -> removedProvinces.add(new Province(((JSONObject) o).getString("name"))));
+            delta.getJSONArray("addedMunicipalities").forEach(o -> addedMunicipalities.add(municipality((JSONObject) o)));
+            delta.getJSONArray("removedMunicipalities").forEach(o -> removedMunicipalities.add(municipality((JSONObject) o)));
+            delta.getJSONArray("addedPlaces").forEach(o -> addedPlaces.add(place((JSONObject) o)));
+            delta.getJSONArray("removedPlaces").forEach(o -> removedPlaces.add(place((JSONObject) o)));
+        }
+
+        PlacesDelta build(long since, long version) {
+            return new PlacesDelta(since, version, false,
+                    addedProvinces, removedProvinces, addedMunicipalities, removedMunicipalities, addedPlaces, removedPlaces);
+        }
+
+        private static Municipality municipality(JSONObject municipality) {
+            return new Municipality(municipality.getString("name"), municipality.getString("province"));
+        }
+    }
+}
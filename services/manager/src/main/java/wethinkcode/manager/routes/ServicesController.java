@@ -19,7 +19,26 @@ public class ServicesController {
     public static void getURL(Context context, ManagerService instance) {
         String name = Objects.requireNonNull(context.pathParam("name"));
 
-        Optional<String> url = findURL(name, instance.ports);
+        Optional<String> url = name.equals("PlacesService") && instance.isPlacesSharded()
+                ? Optional.of(instance.url() + "/places")
+                : findURL(name, instance.ports);
+
+        if (url.isPresent()) {
+            context.json(url.get());
+            context.status(HttpStatus.OK);
+            return;
+        }
+
+        context.status(HttpStatus.NOT_FOUND);
+    }
+
+    /**
+     * Gets the URL of the PlacesService that serves a province
+     */
+    @Controllers.Mapping(value = Verb.GET, path = "PlacesService/{province}")
+    public static void getPlacesURL(Context context, ManagerService instance) {
+        String province = context.pathParam("province");
+        Optional<String> url = instance.placesShard(province);
 
         if (url.isPresent()) {
             context.json(url.get());
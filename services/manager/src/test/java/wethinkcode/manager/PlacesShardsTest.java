@@ -0,0 +1,124 @@
+package wethinkcode.manager;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PlacesShardsTest {
+    private final AtomicLong now = new AtomicLong();
+
+    /**
+     * Shards on a clock the tests move on, with versions from 0
+     */
+    private PlacesShards shards(){
+        return new PlacesShards(PlacesShards.TTL, now::get, 0);
+    }
+
+    @Test
+    void provincesAreServedByTheShardThatRegisteredThem(){
+        PlacesShards shards = new PlacesShards();
+        shards.register(new PlacesShards.Shard("http://a", 1, List.of("Gauteng", "Limpopo")));
+        shards.register(new PlacesShards.Shard("http://b", 1, List.of("Western Cape")));
+
+        assertEquals(Optional.of("http://a"), shards.owner("Gauteng"));
+        assertEquals(Optional.of("http://b"), shards.owner("Western Cape"));
+        assertEquals(Optional.empty(), shards.owner("Free State"));
+        assertEquals(List.of("http://a", "http://b"), shards.urls());
+    }
+
+    @Test
+    void provincesAreFoundRegardlessOfCase(){
+        PlacesShards shards = new PlacesShards();
+        shards.register(new PlacesShards.Shard("http://a", 1, List.of("KwaZulu-Natal")));
+
+        assertEquals(Optional.of("http://a"), shards.owner("kwazulu-natal"));
+    }
+
+    @Test
+    void theFirstShardToRegisterAProvinceKeepsIt(){
+        PlacesShards shards = new PlacesShards();
+        shards.register(new PlacesShards.Shard("http://a", 1, List.of("Gauteng")));
+        shards.register(new PlacesShards.Shard("http://b", 1, List.of("Gauteng", "Limpopo")));
+
+        assertEquals(Map.of("Gauteng", "http://a", "Limpopo", "http://b"), shards.owners());
+    }
+
+    @Test
+    void registeringAgainReplacesWhatTheShardServes(){
+        PlacesShards shards = new PlacesShards();
+        shards.register(new PlacesShards.Shard("http://a", 1, List.of("Gauteng")));
+        shards.register(new PlacesShards.Shard("http://a", 2, List.of("Limpopo")));
+
+        assertEquals(Optional.empty(), shards.owner("Gauteng"));
+        assertEquals(Optional.of("http://a"), shards.owner("Limpopo"));
+    }
+
+    @Test
+    void theVersionOfEveryShardIsRemembered(){
+        PlacesShards shards = shards();
+        assertEquals(0, shards.version());
+
+        shards.register(new PlacesShards.Shard("http://a", 5, List.of("Gauteng")));
+        shards.register(new PlacesShards.Shard("http://b", 7, List.of("Limpopo")));
+        long before = shards.version();
+        shards.register(new PlacesShards.Shard("http://a", 6, List.of("Gauteng")));
+
+        assertEquals(before + 1, shards.version());
+        assertEquals(Optional.of(Map.of("http://a", 5L, "http://b", 7L)), shards.versionsAt(before));
+        assertEquals(Optional.of(Map.of("http://a", 6L, "http://b", 7L)), shards.versionsAt(shards.version()));
+    }
+
+    @Test
+    void registeringTheSameDataAgainKeepsTheVersion(){
+        PlacesShards shards = shards();
+        shards.register(new PlacesShards.Shard("http://a", 5, List.of("Gauteng")));
+        shards.register(new PlacesShards.Shard("http://a", 5, List.of("Gauteng")));
+
+        assertEquals(1, shards.version());
+    }
+
+    @Test
+    void oldVersionsAreForgotten(){
+        PlacesShards shards = shards();
+        for (int v = 1; v <= PlacesShards.HISTORY + 1; v++) {
+            shards.register(new PlacesShards.Shard("http://a", v, List.of("Gauteng")));
+        }
+
+        assertTrue(shards.versionsAt(1).isEmpty());
+        assertTrue(shards.versionsAt(2).isPresent());
+        assertTrue(shards.versionsAt(shards.version() + 1).isEmpty());
+    }
+
+    @Test
+    public void shardsNotHeardFromAreForgotten(){
+        PlacesShards shards = shards();
+        shards.register(new PlacesShards.Shard("http://a", 1, List.of("Gauteng")));
+        shards.register(new PlacesShards.Shard("http://b", 1, List.of("Gauteng", "Limpopo")));
+        long before = shards.version();
+
+        now.addAndGet(PlacesShards.TTL.toNanos() / 2);
+        shards.register(new PlacesShards.Shard("http://b", 1, List.of("Gauteng", "Limpopo")));
+        assertEquals(Optional.of("http://a"), shards.owner("Gauteng"));
+        assertEquals(before, shards.version());
+
+        now.addAndGet(PlacesShards.TTL.toNanos() / 2 + Duration.ofSeconds(1).toNanos());
+        assertEquals(Optional.of("http://b"), shards.owner("Gauteng"));
+        assertEquals(List.of("http://b"), shards.urls());
+        assertEquals(before + 1, shards.version());
+        assertEquals(Optional.of(Map.of("http://b", 1L)), shards.versionsAt(shards.version()));
+
+        now.addAndGet(PlacesShards.TTL.toNanos() + 1);
+        assertEquals(Map.of(), shards.owners());
+    }
+
+    @Test
+    public void versionsCarryOnFromTheTimeIStarted(){
+        assertTrue(new PlacesShards().version() > 1_000_000);
+    }
+}
@@ -0,0 +1,156 @@
+package wethinkcode.places;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * CsvRecordScanner : I split CSV bytes into records like {@link CsvTokenizer} does, but straight
+ * off an InputStream, keeping track of the byte offset at which every record starts and ends.
+ * <p>
+ * Only the columns I am asked to keep are decoded into Strings. The delimiter, encloser and
+ * newline are all ASCII, so fields can be found on the raw bytes of any ASCII compatible
+ * encoding, including UTF-8.
+ */
+class CsvRecordScanner
+{
+    private static final int EOF = -1;
+    private static final int DELIMITER = ',';
+    private static final int ENCLOSER = '"';
+
+    private final InputStream in;
+    private final Charset charset;
+    private final byte[] buffer = new byte[1 << 16];
+    private byte[] field = new byte[256];
+    private int fieldLength = 0;
+    private int position = 0;
+    private int limit = 0;
+    private long bufferStart = 0;
+    private long recordStart = 0;
+
+    CsvRecordScanner(InputStream in, Charset charset){
+        this.in = in;
+        this.charset = charset;
+    }
+
+    /**
+     * @return the offset of the first byte of the last record read
+     */
+    long recordStart(){
+        return recordStart;
+    }
+
+    /**
+     * @return the offset just after the last record read, including its line break
+     */
+    long recordEnd(){
+        return bufferStart + position;
+    }
+
+    /**
+     * Reads the next record and keeps every field in it. Used for the header.
+     * @return the fields of the record, or null at the end of the input
+     * @throws IOException if the stream fails
+     */
+    List<String> nextRecord() throws IOException {
+        List<String> fields = new ArrayList<>();
+        return readRecord(null, null, fields) == EOF ? null : fields;
+    }
+
+    /**
+     * Reads the next record, keeping only the columns that have a slot.
+     * @param slots for each column index, the index in <code>out</code> to store it at, or -1 to skip it
+     * @param out receives the kept fields, columns missing from the record are left as ""
+     * @return the number of fields in the record, or -1 at the end of the input
+     * @throws IOException if the stream fails
+     */
+    int nextRecord(int[] slots, String[] out) throws IOException {
+        return readRecord(slots, out, null);
+    }
+
+    private int readRecord(int[] slots, String[] out, List<String> all) throws IOException {
+        recordStart = recordEnd();
+        int c = read();
+        if (c == EOF){
+            return EOF;
+        }
+        if (out != null){
+            Arrays.fill(out, "");
+        }
+
+        int column = 0;
+        while (true) {
+            boolean keep = all != null || (column < slots.length && slots[column] >= 0);
+            fieldLength = 0;
+
+            if (c == ENCLOSER) {
+                c = read();
+                while (c != EOF) {
+                    if (c == ENCLOSER) {
+                        if (peek() != ENCLOSER) {
+                            c = read();
+                            break;
+                        }
+                        read();
+                    }
+                    if (keep) append(c);
+                    c = read();
+                }
+            }
+
+            while (c != EOF && c != DELIMITER && c != '\n' && c != '\r') {
+                if (keep) append(c);
+                c = read();
+            }
+
+            if (keep) {
+                String value = new String(field, 0, fieldLength, charset);
+                if (all != null) {
+                    all.add(value);
+                } else {
+                    out[slots[column]] = value;
+                }
+            }
+            column++;
+
+            if (c != DELIMITER) {
+                if (c == '\r' && peek() == '\n') {
+                    read();
+                }
+                return column;
+            }
+            c = read();
+        }
+    }
+
+    private void append(int c){
+        if (fieldLength == field.length) {
+            field = Arrays.copyOf(field, fieldLength * 2);
+        }
+        field[fieldLength++] = (byte) c;
+    }
+
+    private int read() throws IOException {
+        if (position == limit && !fill()) {
+            return EOF;
+        }
+        return buffer[position++] & 0xFF;
+    }
+
+    private int peek() throws IOException {
+        if (position == limit && !fill()) {
+            return EOF;
+        }
+        return buffer[position] & 0xFF;
+    }
+
+    private boolean fill() throws IOException {
+        bufferStart += limit;
+        position = 0;
+        limit = Math.max(0, in.read(buffer));
+        return limit > 0;
+    }
+}
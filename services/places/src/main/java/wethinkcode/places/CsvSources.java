@@ -0,0 +1,70 @@
+package wethinkcode.places;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * CsvSources : I am the set of CSV files the places are loaded from.
+ * <p>
+ * The data can be a single file, a directory, in which case every <code>.csv</code> and
+ * <code>.csv.gz</code> file in it is a part, or a glob in the last part of a path, such as
+ * <code>data/places-*.csv.gz</code>. Parts are always taken in name order, so the same files
+ * always load into the same database.
+ *
+ * @param directory the directory the parts are in
+ * @param names matches the file names of the parts
+ */
+public record CsvSources(Path directory, PathMatcher names)
+{
+    private static final String PARTS = "glob:*.{csv,csv.gz}";
+
+    /**
+     * @param location a file, a directory or a glob
+     * @return the sources at that location
+     */
+    public static CsvSources of(File location){
+        Path path = location.toPath().toAbsolutePath();
+        FileSystem fileSystem = path.getFileSystem();
+
+        if (location.isDirectory()) {
+            return new CsvSources(path, fileSystem.getPathMatcher(PARTS));
+        }
+
+        Path name = path.getFileName();
+        if (isGlob(name.toString())) {
+            return new CsvSources(path.getParent(), fileSystem.getPathMatcher("glob:" + name));
+        }
+        return new CsvSources(path.getParent(), candidate -> candidate.equals(name));
+    }
+
+    /**
+     * @return every part, in name order
+     * @throws IOException if the directory cannot be listed
+     */
+    public List<File> files() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                    .filter(Files::isRegularFile)
+                    .filter(file -> names.matches(file.getFileName()))
+                    .sorted(Comparator.comparing(Path::getFileName))
+                    .map(Path::toFile)
+                    .toList();
+        }
+    }
+
+    /**
+     * @param fileName the name of a file in the directory
+     * @return true if the file is one of the parts
+     */
+    public boolean matches(Path fileName){
+        return names.matches(fileName);
+    }
+
+    private static boolean isGlob(String name){
+        return name.chars().anyMatch(c -> c == '*' || c == '?' || c == '[' || c == '{');
+    }
+}
@@ -0,0 +1,129 @@
+package wethinkcode.places;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * CsvTokenizer : I split CSV text into records one character at a time, straight off a Reader.
+ * <p>
+ * Only the columns I am asked to keep are turned into Strings, everything else is skipped
+ * over without being copied. Quoted fields may contain commas, line breaks and doubled
+ * (<code>""</code>) quotes; the enclosing quotes are not part of the value.
+ */
+class CsvTokenizer
+{
+    private static final int EOF = -1;
+    private static final char DELIMITER = ',';
+    private static final char ENCLOSER = '"';
+
+    private final Reader in;
+    private final char[] buffer = new char[8192];
+    private final StringBuilder field = new StringBuilder();
+    private int position = 0;
+    private int limit = 0;
+
+    CsvTokenizer(Reader in){
+        this.in = in;
+    }
+
+    /**
+     * Reads the next record and keeps every field in it. Used for the header.
+     * @return the fields of the record, or null at the end of the input
+     * @throws IOException if the reader fails
+     */
+    List<String> nextRecord() throws IOException {
+        List<String> fields = new ArrayList<>();
+        return readRecord(null, null, fields) == EOF ? null : fields;
+    }
+
+    /**
+     * Reads the next record, keeping only the columns that have a slot.
+     * @param slots for each column index, the index in <code>out</code> to store it at, or -1 to skip it
+     * @param out receives the kept fields, columns missing from the record are left as ""
+     * @return the number of fields in the record, or -1 at the end of the input
+     * @throws IOException if the reader fails
+     */
+    int nextRecord(int[] slots, String[] out) throws IOException {
+        return readRecord(slots, out, null);
+    }
+
+    private int readRecord(int[] slots, String[] out, List<String> all) throws IOException {
+        int c = read();
+        if (c == EOF){
+            return EOF;
+        }
+        if (out != null){
+            Arrays.fill(out, "");
+        }
+
+        int column = 0;
+        while (true) {
+            boolean keep = all != null || (column < slots.length && slots[column] >= 0);
+            field.setLength(0);
+
+            if (c == ENCLOSER) {
+                c = read();
+                while (c != EOF) {
+                    if (c == ENCLOSER) {
+                        if (peek() != ENCLOSER) {
+                            c = read();
+                            break;
+                        }
+                        read();
+                    }
+                    if (keep) field.append((char) c);
+                    c = read();
+                }
+            }
+
+            while (c != EOF && c != DELIMITER && c != '\n' && c != '\r') {
+                if (keep) field.append((char) c);
+                c = read();
+            }
+
+            if (keep) {
+                if (all != null) {
+                    all.add(field.toString());
+                } else {
+                    out[slots[column]] = field.toString();
+                }
+            }
+            column++;
+
+            if (c != DELIMITER) {
+                if (c == '\r' && peek() == '\n') {
+                    read();
+                }
+                return column;
+            }
+            c = read();
+        }
+    }
+
+    private int read() throws IOException {
+        if (position == limit && !fill()) {
+            return EOF;
+        }
+        return buffer[position++];
+    }
+
+    private int peek() throws IOException {
+        if (position == limit && !fill()) {
+            return EOF;
+        }
+        return buffer[position];
+    }
+
+    private boolean fill() throws IOException {
+        limit = in.read(buffer, 0, buffer.length);
+        position = 0;
+        if (limit <= 0) {
+            limit = 0;
+            return false;
+        }
+        return true;
+    }
+}
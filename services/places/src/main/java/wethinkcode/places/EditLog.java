@@ -0,0 +1,132 @@
+package wethinkcode.places;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+/**
+ * EditLog : I am the edits made while the service runs that the data files do not have yet, kept
+ * so that they can be made again after every reload.
+ * <p>
+ * I hold at most {@link #MAX_EDITS}. When the data is reloaded each edit is checked against the
+ * new data first, and an edit the data already has is {@link #replace dropped} from me, so once
+ * the data files catch up with the edits I am empty again. Given a file, I keep a copy of the
+ * edits in it, one JSON object per line. An edit is written to the file, and forced to the disk,
+ * before anybody is told it was made, so edits also outlive a restart.
+ */
+public class EditLog
+{
+    public static final int MAX_EDITS = 10_000;
+
+    private static final Gson GSON = new Gson();
+
+    private final Path file;
+    private final List<PlaceEdit> edits = new ArrayList<>();
+
+    /**
+     * Keeps the edits in memory only
+     */
+    public EditLog(){
+        this.file = null;
+    }
+
+    /**
+     * Keeps the edits in a file as well, starting with the edits already in it
+     * @param file where the edits are kept
+     * @throws IOException if the file exists but cannot be read
+     */
+    public EditLog(Path file) throws IOException {
+        this.file = file;
+        if (!Files.exists(file)) {
+            return;
+        }
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            if (line.isBlank()) continue;
+            try {
+                edits.add(GSON.fromJson(line, PlaceEdit.class));
+            } catch (JsonParseException e) {
+                throw new IOException("Not an edit in " + file + ": " + line, e);
+            }
+        }
+    }
+
+    /**
+     * @return the edits, in the order they were made
+     */
+    public synchronized List<PlaceEdit> edits(){
+        return List.copyOf(edits);
+    }
+
+    public synchronized int size(){
+        return edits.size();
+    }
+
+    public synchronized boolean isEmpty(){
+        return edits.isEmpty();
+    }
+
+    /**
+     * @param more how many edits are about to be added
+     * @return true if there is room for them
+     */
+    public synchronized boolean hasRoomFor(int more){
+        return edits.size() + more <= MAX_EDITS;
+    }
+
+    /**
+     * Adds edits that were just made, writing them to my file first
+     * @param made the edits
+     * @throws UncheckedIOException if they cannot be written
+     */
+    public synchronized void add(List<PlaceEdit> made){
+        if (file != null) {
+            try (FileChannel channel = FileChannel.open(file,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                Writer writer = new OutputStreamWriter(Channels.newOutputStream(channel), StandardCharsets.UTF_8);
+                for (PlaceEdit edit : made) {
+                    writer.write(GSON.toJson(edit));
+                    writer.write('\n');
+                }
+                writer.flush();
+                channel.force(false);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot write the edits to " + file, e);
+            }
+        }
+        edits.addAll(made);
+    }
+
+    /**
+     * Keeps only some of the edits, replacing my file as a whole
+     * @param kept the edits still to be made after a reload, in order
+     * @throws UncheckedIOException if they cannot be written
+     */
+    public synchronized void replace(List<PlaceEdit> kept){
+        if (file != null) {
+            try {
+                Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+                try (BufferedWriter writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+                    for (PlaceEdit edit : kept) {
+                        writer.write(GSON.toJson(edit));
+                        writer.write('\n');
+                    }
+                }
+                Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot write the edits to " + file, e);
+            }
+        }
+        edits.clear();
+        edits.addAll(kept);
+    }
+}
@@ -0,0 +1,146 @@
+package wethinkcode.places;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * MappedCsvSplitter : I cut a memory-mapped CSV file into chunks that each start at the
+ * beginning of a record, so that the chunks can be parsed independently of each other.
+ * <p>
+ * A newline inside a quoted field does not end a record. To know whether a byte is inside
+ * quotes I first count the quotes of every raw segment in parallel; the running total of
+ * those counts gives the quote state at the start of each segment, from which I find the
+ * first real record boundary after it. The delimiter, encloser and newline are all ASCII,
+ * so this works on the raw bytes of any ASCII compatible encoding, including UTF-8.
+ */
+class MappedCsvSplitter
+{
+    private static final byte ENCLOSER = '"';
+    private static final byte NEWLINE = '\n';
+
+    private final FileChannel channel;
+
+    MappedCsvSplitter(FileChannel channel){
+        this.channel = channel;
+    }
+
+    /**
+     * Splits the bytes between from and to into at most the given number of chunks
+     * @param from the start of the first record, outside of any quotes
+     * @param to the end of the data
+     * @param chunks the number of chunks wanted
+     * @return the chunk boundaries, starting with from and ending with to, in increasing order
+     * @throws IOException if the file cannot be mapped
+     */
+    long[] split(long from, long to, int chunks) throws IOException {
+        long[] raw = new long[chunks + 1];
+        for (int i = 0; i <= chunks; i++) {
+            raw[i] = from + (to - from) * i / chunks;
+        }
+
+        long[] quotes = new long[chunks];
+        try {
+            IntStream.range(0, chunks).parallel().forEach(i -> quotes[i] = countQuotes(raw[i], raw[i + 1]));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        long[] boundaries = new long[chunks + 1];
+        boundaries[0] = from;
+        boundaries[chunks] = to;
+        long quotesBefore = 0;
+        for (int i = 1; i < chunks; i++) {
+            quotesBefore += quotes[i - 1];
+            long start = Math.max(raw[i], boundaries[i - 1]);
+            boolean inQuotes = start == raw[i]
+                    ? quotesBefore % 2 == 1
+                    : (quotesBefore + countQuotes(raw[i], start)) % 2 == 1;
+            boundaries[i] = nextRecordStart(start, to, inQuotes);
+        }
+        return Arrays.stream(boundaries).distinct().toArray();
+    }
+
+    /**
+     * Finds the first byte after a newline that is not inside quotes.
+     * @param from the position to start looking at
+     * @param to the end of the data
+     * @param inQuotes whether from is inside a quoted field
+     * @return the start of the next record, or to if there is none
+     * @throws IOException if the file cannot be mapped
+     */
+    long nextRecordStart(long from, long to, boolean inQuotes) throws IOException {
+        long position = from;
+        while (position < to) {
+            MappedByteBuffer buffer = map(position, to);
+            while (buffer.hasRemaining()) {
+                byte b = buffer.get();
+                position++;
+                if (b == ENCLOSER) {
+                    inQuotes = !inQuotes;
+                } else if (b == NEWLINE && !inQuotes) {
+                    return position;
+                }
+            }
+        }
+        return to;
+    }
+
+    /**
+     * @return a Reader that decodes the mapped bytes between from and to
+     */
+    Reader reader(long from, long to, Charset charset) throws IOException {
+        return new InputStreamReader(new MappedInputStream(map(from, to)), charset);
+    }
+
+    private long countQuotes(long from, long to) {
+        long count = 0;
+        long position = from;
+        try {
+            while (position < to) {
+                MappedByteBuffer buffer = map(position, to);
+                position += buffer.remaining();
+                while (buffer.hasRemaining()) {
+                    if (buffer.get() == ENCLOSER) count++;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return count;
+    }
+
+    private MappedByteBuffer map(long from, long to) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, from, Math.min(to - from, Integer.MAX_VALUE));
+    }
+
+    /**
+     * Reads straight out of a mapped buffer, without copying the chunk onto the heap first.
+     */
+    private static class MappedInputStream extends InputStream
+    {
+        private final MappedByteBuffer buffer;
+
+        MappedInputStream(MappedByteBuffer buffer){
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            length = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, length);
+            return length;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package wethinkcode.places;
+
+import java.util.Objects;
+
+import wethinkcode.model.Municipality;
+import wethinkcode.model.Place;
+
+/**
+ * PlaceEdit : I am one change to the places or municipalities, made through a {@link PlacesEditor},
+ * kept as plain names so that I can be written to a file and made again after a reload.
+ * <p>
+ * A place is named along with its municipality, and a municipality along with its province. An
+ * update also has the new name and the new municipality or province.
+ *
+ * @param kind what the change is
+ * @param name the name of the place or municipality
+ * @param within the municipality of the place, or the province of the municipality
+ * @param newName the new name, for an update
+ * @param newWithin the new municipality or province, for an update
+ */
+public record PlaceEdit(Kind kind, String name, String within, String newName, String newWithin) {
+
+    public enum Kind {
+        ADD_PLACE,
+        UPDATE_PLACE,
+        REMOVE_PLACE,
+        ADD_MUNICIPALITY,
+        UPDATE_MUNICIPALITY,
+        REMOVE_MUNICIPALITY
+    }
+
+    public static PlaceEdit addPlace(Place place){
+        return new PlaceEdit(Kind.ADD_PLACE, place.name(), place.municipality(), null, null);
+    }
+
+    public static PlaceEdit updatePlace(Place existing, Place updated){
+        return new PlaceEdit(Kind.UPDATE_PLACE, existing.name(), existing.municipality(), updated.name(), updated.municipality());
+    }
+
+    public static PlaceEdit removePlace(Place place){
+        return new PlaceEdit(Kind.REMOVE_PLACE, place.name(), place.municipality(), null, null);
+    }
+
+    public static PlaceEdit addMunicipality(Municipality municipality){
+        return new PlaceEdit(Kind.ADD_MUNICIPALITY, municipality.name(), municipality.province(), null, null);
+    }
+
+    public static PlaceEdit updateMunicipality(String name, Municipality updated){
+        return new PlaceEdit(Kind.UPDATE_MUNICIPALITY, name, null, updated.name(), updated.province());
+    }
+
+    public static PlaceEdit removeMunicipality(String name){
+        return new PlaceEdit(Kind.REMOVE_MUNICIPALITY, name, null, null, null);
+    }
+
+    /**
+     * Makes the change
+     * @param editor the data to change
+     * @return the place or municipality added, changed or removed
+     * @throws RuntimeException if the change cannot be made, see {@link PlacesEditor}
+     */
+    public Object apply(PlacesEditor editor){
+        return switch (kind) {
+            case ADD_PLACE -> editor.addPlace(new Place(name, within));
+            case UPDATE_PLACE -> editor.updatePlace(new Place(name, within), new Place(newName, newWithin));
+            case REMOVE_PLACE -> editor.removePlace(new Place(name, within));
+            case ADD_MUNICIPALITY -> editor.addMunicipality(new Municipality(name, within));
+            case UPDATE_MUNICIPALITY -> editor.updateMunicipality(name, new Municipality(newName, newWithin));
+            case REMOVE_MUNICIPALITY -> editor.removeMunicipality(name);
+        };
+    }
+
+    /**
+     * @param editor the data as it is now
+     * @return true if the data already looks as it would after the change, so there is nothing
+     * to make
+     */
+    public boolean isMadeIn(PlacesEditor editor){
+        return switch (kind) {
+            case ADD_PLACE -> editor.hasPlace(new Place(name, within));
+            case UPDATE_PLACE -> editor.hasPlace(new Place(newName, newWithin))
+                    && (isUnchanged() || !editor.hasPlace(new Place(name, within)));
+            case REMOVE_PLACE -> !editor.hasPlace(new Place(name, within));
+            case ADD_MUNICIPALITY -> editor.municipality(name)
+                    .map(municipality -> municipality.province().equals(within))
+                    .orElse(false);
+            case UPDATE_MUNICIPALITY -> editor.municipality(newName)
+                    .map(municipality -> municipality.province().equals(newWithin))
+                    .orElse(false)
+                    && (name.equals(newName) || editor.municipality(name).isEmpty());
+            case REMOVE_MUNICIPALITY -> editor.municipality(name).isEmpty();
+        };
+    }
+
+    private boolean isUnchanged(){
+        return Objects.equals(name, newName) && Objects.equals(within, newWithin);
+    }
+
+    @Override
+    public String toString(){
+        String what = kind.name().toLowerCase().replace('_', ' ') + " " + name + (within == null ? "" : " in " + within);
+        return newName == null ? what : what + " to " + newName + " in " + newWithin;
+    }
+}
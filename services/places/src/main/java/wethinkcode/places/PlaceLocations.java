@@ -0,0 +1,54 @@
+package wethinkcode.places;
+
+import java.util.Arrays;
+
+/**
+ * PlaceLocations : I am the latitude and longitude of every place in a Places database, kept in
+ * two float arrays in the same order as {@link Places#places()}.
+ * <p>
+ * A place whose coordinates were missing or could not be read has NaN for both. I never change
+ * after I am built.
+ */
+public class PlaceLocations
+{
+    private final float[] latitudes;
+    private final float[] longitudes;
+
+    /**
+     * @param latitudes of each place, in degrees north
+     * @param longitudes of each place, in degrees east
+     */
+    public PlaceLocations(float[] latitudes, float[] longitudes){
+        if (latitudes.length != longitudes.length) {
+            throw new IllegalArgumentException("Latitudes and longitudes differ in length");
+        }
+        this.latitudes = latitudes;
+        this.longitudes = longitudes;
+    }
+
+    /**
+     * @param size the number of places
+     * @return locations for places none of whose coordinates are known
+     */
+    public static PlaceLocations unknown(int size){
+        float[] unknown = new float[size];
+        Arrays.fill(unknown, Float.NaN);
+        return new PlaceLocations(unknown, unknown);
+    }
+
+    public boolean isKnown(int row){
+        return !Float.isNaN(latitudes[row]) && !Float.isNaN(longitudes[row]);
+    }
+
+    public float latitude(int row){
+        return latitudes[row];
+    }
+
+    public float longitude(int row){
+        return longitudes[row];
+    }
+
+    public int size(){
+        return latitudes.length;
+    }
+}
@@ -0,0 +1,85 @@
+package wethinkcode.places;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * PlaceTypes : I am the feature type of every place in a Places database, such as "town" or
+ * "urban area", kept in the same order as {@link Places#places()}.
+ * <p>
+ * There are only a handful of types, so each distinct type name is kept once, in lower case, and
+ * each place has one byte that is the position of its type among the names. A place whose type
+ * is not known has {@link #UNKNOWN}. I never change after I am built.
+ */
+public class PlaceTypes
+{
+    public static final byte UNKNOWN = -1;
+    /**
+     * The most distinct type names that fit in a byte
+     */
+    public static final int MAX_TYPES = Byte.MAX_VALUE + 1;
+
+    private final List<String> names;
+    private final byte[] types;
+
+    /**
+     * @param names each distinct type, in lower case
+     * @param types of each place, as a position in names or {@link #UNKNOWN}
+     */
+    public PlaceTypes(List<String> names, byte[] types){
+        if (names.size() > MAX_TYPES) {
+            throw new IllegalArgumentException("More than " + MAX_TYPES + " types of place");
+        }
+        for (byte type : types) {
+            if (type != UNKNOWN && (type < 0 || type >= names.size())) {
+                throw new IllegalArgumentException("No type of place numbered " + type);
+            }
+        }
+        this.names = List.copyOf(names);
+        this.types = types;
+    }
+
+    /**
+     * @param size the number of places
+     * @return types for places none of whose types are known
+     */
+    public static PlaceTypes unknown(int size){
+        byte[] unknown = new byte[size];
+        Arrays.fill(unknown, UNKNOWN);
+        return new PlaceTypes(List.of(), unknown);
+    }
+
+    /**
+     * @param type the name of a type, in any case
+     * @return the number the type is kept as, or {@link #UNKNOWN} if no place has it
+     */
+    public byte code(String type){
+        return (byte) names.indexOf(type.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * @return the number the type of the place is kept as, or {@link #UNKNOWN}
+     */
+    public byte code(int row){
+        return types[row];
+    }
+
+    /**
+     * @return the type of the place, or null if it is not known
+     */
+    public String type(int row){
+        return types[row] == UNKNOWN ? null : names.get(types[row]);
+    }
+
+    /**
+     * @return each distinct type, in lower case, in the order they are numbered
+     */
+    public List<String> names(){
+        return names;
+    }
+
+    public int size(){
+        return types.length;
+    }
+}
@@ -15,6 +15,14 @@ public interface Places
 {
     List<Province> provinces();
 
+    List<Municipality> municipalities();
+
+    List<Place> places();
+
+    PlaceLocations locations();
+
+    PlaceTypes types();
+
     List<Municipality> municipalitiesIn(String province );
 
     List<Place> placesInMunicipality(String municipality);
@@ -0,0 +1,177 @@
+package wethinkcode.places;
+
+import java.util.*;
+
+import wethinkcode.model.Municipality;
+import wethinkcode.model.Place;
+import wethinkcode.model.Province;
+
+/**
+ * PlacesBuilder : I collect places one row at a time and build the provinces, municipalities
+ * and places of a Places database in the same pass.
+ * <p>
+ * Provinces and municipalities are de-duplicated as they arrive, keeping the order in which
+ * they were first seen. Repeated names share a single String instance. The coordinates of each
+ * place are kept in float arrays alongside the places, and its type as one byte, numbered in the
+ * order the types are first seen, see {@link PlaceTypes}.
+ */
+public class PlacesBuilder
+{
+    private final Map<String, String> names = new HashMap<>();
+    private final Set<Province> provinces = new LinkedHashSet<>();
+    private final Set<Municipality> municipalities = new LinkedHashSet<>();
+    private final List<Place> places = new ArrayList<>();
+    private float[] latitudes = new float[16];
+    private float[] longitudes = new float[16];
+    private final Map<String, Byte> typeCodes = new HashMap<>();
+    private final List<String> typeNames = new ArrayList<>();
+    private byte[] types = new byte[16];
+
+    /**
+     * Adds one place to the database being built
+     * @param name of the place
+     * @param municipality the place is in
+     * @param province the municipality is in
+     * @return this builder
+     */
+    public PlacesBuilder add(String name, String municipality, String province){
+        return add(name, municipality, province, Float.NaN, Float.NaN);
+    }
+
+    /**
+     * Adds one place, with its coordinates, to the database being built
+     * @param name of the place
+     * @param municipality the place is in
+     * @param province the municipality is in
+     * @param latitude of the place in degrees, or NaN if it is not known
+     * @param longitude of the place in degrees, or NaN if it is not known
+     * @return this builder
+     */
+    public PlacesBuilder add(String name, String municipality, String province, float latitude, float longitude){
+        return add(name, municipality, province, latitude, longitude, null);
+    }
+
+    /**
+     * Adds one place, with its coordinates and type, to the database being built
+     * @param name of the place
+     * @param municipality the place is in
+     * @param province the municipality is in
+     * @param latitude of the place in degrees, or NaN if it is not known
+     * @param longitude of the place in degrees, or NaN if it is not known
+     * @param type of the place, such as "town", in any case, or null if it is not known
+     * @return this builder
+     */
+    public PlacesBuilder add(
+            String name,
+            String municipality,
+            String province,
+            float latitude,
+            float longitude,
+            String type
+    ){
+        municipality = intern(municipality);
+        province = intern(province);
+        provinces.add(new Province(province));
+        municipalities.add(new Municipality(municipality, province));
+        addColumns(latitude, longitude, type == null ? PlaceTypes.UNKNOWN : typeCode(type));
+        places.add(new Place(name, municipality));
+        return this;
+    }
+
+    /**
+     * Adds everything from another builder after everything already in this one,
+     * de-duplicating provinces and municipalities across both.
+     * @param other builder to take places from
+     * @return this builder
+     */
+    public PlacesBuilder addAll(PlacesBuilder other){
+        for (int i = 0; i < other.places.size(); i++) {
+            Place place = other.places.get(i);
+            String municipality = intern(place.municipality());
+            byte type = other.types[i];
+            addColumns(
+                    other.latitudes[i],
+                    other.longitudes[i],
+                    type == PlaceTypes.UNKNOWN ? PlaceTypes.UNKNOWN : typeCode(other.typeNames.get(type))
+            );
+            places.add(municipality == place.municipality() ? place : new Place(place.name(), municipality));
+        }
+        other.municipalities.forEach(municipality -> municipalities.add(
+                new Municipality(intern(municipality.name()), intern(municipality.province()))
+        ));
+        other.provinces.forEach(province -> provinces.add(new Province(intern(province.name()))));
+        return this;
+    }
+
+    public int size(){
+        return places.size();
+    }
+
+    public List<Province> provinces(){
+        return new ArrayList<>(provinces);
+    }
+
+    public List<Municipality> municipalities(){
+        return new ArrayList<>(municipalities);
+    }
+
+    public List<Place> places(){
+        return places;
+    }
+
+    public PlaceLocations locations(){
+        return new PlaceLocations(
+                Arrays.copyOf(latitudes, places.size()),
+                Arrays.copyOf(longitudes, places.size())
+        );
+    }
+
+    public PlaceTypes types(){
+        return new PlaceTypes(typeNames, Arrays.copyOf(types, places.size()));
+    }
+
+    /**
+     * @return the default Places database for everything added so far
+     */
+    public Places build(){
+        return build(PlacesStore.INDEXED);
+    }
+
+    /**
+     * @param store the kind of database to build
+     * @return a Places database of that kind for everything added so far
+     */
+    public Places build(PlacesStore store){
+        return store.create(provinces(), municipalities(), places, locations(), types());
+    }
+
+    private void addColumns(float latitude, float longitude, byte type){
+        int row = places.size();
+        if (row == latitudes.length) {
+            latitudes = Arrays.copyOf(latitudes, row * 2);
+            longitudes = Arrays.copyOf(longitudes, row * 2);
+            types = Arrays.copyOf(types, row * 2);
+        }
+        latitudes[row] = latitude;
+        longitudes[row] = longitude;
+        types[row] = type;
+    }
+
+    /**
+     * @throws IllegalStateException if there are more types than fit in a byte
+     */
+    private byte typeCode(String type){
+        return typeCodes.computeIfAbsent(type.toLowerCase(Locale.ROOT), name -> {
+            if (typeNames.size() == PlaceTypes.MAX_TYPES) {
+                throw new IllegalStateException("More than " + PlaceTypes.MAX_TYPES + " types of place");
+            }
+            typeNames.add(name);
+            return (byte) (typeNames.size() - 1);
+        });
+    }
+
+    private String intern(String name){
+        String existing = names.putIfAbsent(name, name);
+        return existing == null ? name : existing;
+    }
+}
@@ -1,15 +1,19 @@
 package wethinkcode.places;
 
 import java.io.*;
-import java.util.ArrayList;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 import java.util.List;
-import java.util.stream.Stream;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.zip.GZIPInputStream;
 
 import com.google.common.annotations.VisibleForTesting;
-import wethinkcode.places.db.memory.PlacesDb;
-import wethinkcode.model.Municipality;
-import wethinkcode.model.Place;
-import wethinkcode.model.Province;
 
 
 /**
@@ -22,6 +26,9 @@ import wethinkcode.model.Province;
  * <code>Feature_Description</code> and <code>Province</code> fields.
  * <code>Feature_Description</code> allows us to distinguish towns and urban areas from
  * (e.g.) rivers, mountains, etc. since our PlacesService is only concerned with occupied places.
+ * <code>Latitude</code> and <code>Longitude</code> are kept too, when the file has them, for
+ * finding the places near a location, and so is the <code>Feature_Description</code> of each place
+ * kept, for finding places of one type, see {@link PlaceTypes}.
  */
 public class PlacesCsvParser
 {
@@ -34,135 +41,373 @@ public class PlacesCsvParser
     @VisibleForTesting
     int municipality_column;
     @VisibleForTesting
+    int latitude_column;
+    @VisibleForTesting
+    int longitude_column;
+    @VisibleForTesting
     int columns;
 
-    private static final List<String> types = List.of("town", "neighbourhood", "populated area", "settled place", "urban area");
-
-    private ArrayList<String> split(String s, String delimiter, String encloser){
-        int e = s.indexOf(encloser);
-        int d = s.indexOf(delimiter);
-
-        if (e > d) {
-            int e2 = s.indexOf(encloser, e+1);
-            if (e2 > -1) {
-                d = s.indexOf(delimiter, e2+1);
-            }
-        }
+    private final PlacesStore store;
+    private final Set<String> provinces;
 
+    private static final List<String> types = List.of("town", "neighbourhood", "populated area", "settled place", "urban area");
 
-        if (d == -1){
-            return new ArrayList<>() {{
-                add(s);
-            }};
-        }
-
-        String item = s.substring(0, d);
+    static final Charset CHARSET = Charset.defaultCharset();
+    private static final long MIN_CHUNK_SIZE = 1 << 20;
+    private static final long MAX_CHUNK_SIZE = 1 << 30;
+    private static final int GZIP_BUFFER_SIZE = 1 << 16;
 
-        if (d == 0){
-            item = "";
-        }
+    private static final int NAME = 0;
+    private static final int TYPE = 1;
+    private static final int PROVINCE = 2;
+    private static final int MUNICIPALITY = 3;
+    private static final int LATITUDE = 4;
+    private static final int LONGITUDE = 5;
 
-        String left = s.substring(d+1);
+    public PlacesCsvParser(){
+        this(PlacesStore.INDEXED);
+    }
 
-        String finalItem = item;
-        ArrayList<String> sl = new ArrayList<>() {{
-            add(finalItem);
-        }};
+    /**
+     * @param store the kind of Places database to parse into
+     */
+    public PlacesCsvParser(PlacesStore store){
+        this(store, Set.of());
+    }
 
-        sl.addAll(split(left, delimiter, encloser));
+    /**
+     * @param store the kind of Places database to parse into
+     * @param provinces only keep places in these provinces, or all places if empty
+     */
+    public PlacesCsvParser(PlacesStore store, Set<String> provinces){
+        this.store = store;
+        this.provinces = provinces;
+    }
 
-        return sl;
+    /**
+     * @param province - the Province of a line from the csv being parsed
+     * @return true if places in the province are being kept
+     */
+    boolean isWantedProvince(String province){
+        return provinces.isEmpty() || provinces.contains(province);
     }
 
     /**
-     * Takes into account the type_column,
      * Filters out feature types that are irrelevant
-     * @param s - the full line from the csv being parsed
+     * @param type - the Feature_Description of a line from the csv being parsed
      * @return true if the right type
      */
-    boolean isCorrectType(ArrayList<String> s){
-        return types.contains(s.get(type_column).toLowerCase());
+    boolean isCorrectType(String type){
+        for (String t : types) {
+            if (t.equalsIgnoreCase(type)) {
+                return true;
+            }
+        }
+        return false;
     }
 
-    private Place convertToPlace(String[] data){
-        return new Place(data[name_column], data[municipality_column]);
+    private boolean hasNulls(String[] data){
+        return data[NAME].equals("")
+            || data[PROVINCE].equals("")
+            || data[MUNICIPALITY].equals("");
     }
 
-    private Municipality convertToMunicipality(String[] data) {
-        return new Municipality(data[municipality_column], data[province_column]);
+    /**
+     * Parses one CSV file, which may be gzip compressed if its name ends in .gz
+     * @param csvFile the CSV file, starting with the header line
+     * @return the database of all the occupied places in the file
+     * @throws IOException if the file cannot be read
+     */
+    public Places parseCsvSource( File csvFile ) throws IOException {
+        return parseCsvPart(csvFile).build(store);
     }
 
-    private Province convertToProvince(String[] data) {
-        return new Province(data[province_column]);
-    }
+    /**
+     * Parses several CSV files at once, each on its own thread of the common ForkJoinPool,
+     * and merges them into one database in the order they are given. Files whose names end
+     * in .gz are decompressed as they are read, never to disk. Each file must start with its
+     * own header line.
+     * @param csvFiles the CSV files
+     * @return the database of all the occupied places in all the files
+     * @throws IOException if any of the files cannot be read
+     */
+    public Places parseCsvSources( List<File> csvFiles ) throws IOException {
+        List<CompletableFuture<PlacesBuilder>> parts = csvFiles
+                .stream()
+                .map(file -> CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return new PlacesCsvParser(store, provinces).parseCsvPart(file);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }))
+                .toList();
 
-    private boolean removeNulls(String[] data){
-        return !(
-            data[name_column].equals("")
-            ||   data[province_column].equals("")
-            ||   data[type_column].equals("")
-            ||   data[municipality_column].equals("")
-        );
+        try {
+            PlacesBuilder builder = new PlacesBuilder();
+            for (CompletableFuture<PlacesBuilder> part : parts) {
+                builder.addAll(part.join());
+            }
+            return builder.build(store);
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException cause) {
+                throw cause.getCause();
+            }
+            throw e;
+        }
     }
 
-    public Places parseCsvSource( File csvFile ) throws IOException {
+    private PlacesBuilder parseCsvPart( File csvFile ) throws IOException {
         if (!csvFile.exists()){
             throw new FileNotFoundException(csvFile.getPath());
         }
 
-        FileReader fileReader = new FileReader(csvFile);
+        try (Reader csvReader = open(csvFile)) {
+            return parseRows(csvReader);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static Reader open( File csvFile ) throws IOException {
+        InputStream in = new FileInputStream(csvFile);
+        if (csvFile.getName().endsWith(".gz")) {
+            try {
+                in = new GZIPInputStream(in, GZIP_BUFFER_SIZE);
+            } catch (IOException e) {
+                in.close();
+                throw e;
+            }
+        }
+        return new InputStreamReader(in, CHARSET);
+    }
+
+    /**
+     * Finds where the rows of each province are in plain CSV files, in one pass over their bytes
+     * that builds no places at all, so that each province can be parsed on its own when it is
+     * first needed. Only the rows that parsing would keep are indexed.
+     * @param csvFiles the CSV files, none of them compressed
+     * @return where the rows of each province are
+     * @throws IOException if any of the files cannot be read, or is compressed
+     */
+    public ProvinceSegments indexCsvSources( List<File> csvFiles ) throws IOException {
+        ProvinceSegments segments = new ProvinceSegments(store, provinces);
+        for (File csvFile : csvFiles) {
+            indexCsvPart(csvFile, segments);
+        }
+        return segments.complete();
+    }
+
+    private void indexCsvPart( File csvFile, ProvinceSegments segments ) throws IOException {
+        if (!csvFile.exists()){
+            throw new FileNotFoundException(csvFile.getPath());
+        }
+        if (csvFile.getName().endsWith(".gz")){
+            throw new IOException("Cannot index the rows of a compressed file: " + csvFile.getPath());
+        }
 
-        LineNumberReader csvReader = new LineNumberReader(fileReader);
+        try (InputStream in = new FileInputStream(csvFile)) {
+            CsvRecordScanner scanner = new CsvRecordScanner(in, CHARSET);
+            parseHeader(scanner.nextRecord());
+            int file = segments.addFile(csvFile, headerBytes(csvFile, scanner.recordEnd()));
+
+            int[] slots = slots(false);
+            String[] row = new String[6];
+            int fields;
+            while ((fields = scanner.nextRecord(slots, row)) != -1) {
+                if (fields < columns || !isCorrectType(row[TYPE]) || hasNulls(row) || !isWantedProvince(row[PROVINCE])) {
+                    continue;
+                }
+                segments.addRow(file, scanner.recordStart(), scanner.recordEnd(), row[NAME], row[MUNICIPALITY], row[PROVINCE]);
+            }
+        }
+    }
 
-        return parseDataLines(csvReader);
+    private static byte[] headerBytes( File csvFile, long length ) throws IOException {
+        byte[] header = new byte[(int) length];
+        try (RandomAccessFile file = new RandomAccessFile(csvFile, "r")) {
+            file.readFully(header);
+        }
+        return header;
     }
 
     private void parseHeader(List<String> header){
+        if (header == null){
+            throw new RuntimeException("Bad CSV Header");
+        }
         columns = header.size();
         name_column = header.indexOf("Name");
         province_column = header.indexOf("Province");
         type_column = header.indexOf("Feature_Description");
         municipality_column = header.indexOf("Local Municipality");
+        latitude_column = header.indexOf("Latitude");
+        longitude_column = header.indexOf("Longitude");
         if (name_column == -1 || province_column == -1 || type_column == -1 || municipality_column == -1){
             throw new RuntimeException("Bad CSV Header");
         }
     }
 
+    /**
+     * Maps the columns we keep onto the slots of a row.
+     * @return for each column index, the slot it is stored in, or -1
+     */
+    private int[] slots(){
+        return slots(true);
+    }
+
+    /**
+     * @param locations whether to keep the latitude and longitude
+     * @return for each column index, the slot it is stored in, or -1
+     */
+    private int[] slots(boolean locations){
+        int[] slots = new int[columns];
+        Arrays.fill(slots, -1);
+        slots[name_column] = NAME;
+        slots[type_column] = TYPE;
+        slots[province_column] = PROVINCE;
+        slots[municipality_column] = MUNICIPALITY;
+        if (locations && latitude_column != -1 && longitude_column != -1) {
+            slots[latitude_column] = LATITUDE;
+            slots[longitude_column] = LONGITUDE;
+        }
+        return slots;
+    }
+
+    /**
+     * Reads the header and then every data line exactly once, building the database as it goes.
+     * @param in the CSV text, starting with the header line
+     * @return the database of all the occupied places in the input
+     */
     @VisibleForTesting
-    Places parseDataLines( final LineNumberReader in ){
-        List<String> lines = in.lines().toList();
+    Places parseDataLines( final Reader in ){
+        return parseRows(in).build(store);
+    }
 
-        parseHeader(List.of(lines.get(0).split(",", -1)));
+    /**
+     * Reads the header and then every data line, for parsing part of a file.
+     * @param in the CSV text, starting with the header line
+     * @return the places in the input
+     */
+    PlacesBuilder parseRows( final Reader in ){
+        try {
+            CsvTokenizer tokenizer = new CsvTokenizer(in);
+            parseHeader(tokenizer.nextRecord());
+
+            return parseRows(tokenizer, slots());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 
-        Stream<String[]> placeStream = lines
-                .stream()
-                .map((s) -> split(s,",", "\""))
-                .filter((s) -> s.size() >= columns)
-                .filter(this::isCorrectType)
-                .map(strings -> strings.toArray(String[]::new))
-                .filter(this::removeNulls);
+    /**
+     * Parses a CSV file by memory-mapping it and parsing newline aligned chunks of it in parallel
+     * on the common ForkJoinPool. The result is the same as that of {@link #parseCsvSource(File)}.
+     * @param csvFile the CSV file, starting with the header line
+     * @return the database of all the occupied places in the file
+     * @throws IOException if the file cannot be read
+     */
+    public Places parseCsvSourceInParallel( File csvFile ) throws IOException {
+        long chunks = Math.min(
+                ForkJoinPool.commonPool().getParallelism() * 4L,
+                csvFile.length() / MIN_CHUNK_SIZE
+        );
+        chunks = Math.max(chunks, csvFile.length() / MAX_CHUNK_SIZE + 1);
+        return parseCsvSourceInParallel(csvFile, (int) Math.max(1, chunks));
+    }
 
-        List<String[]> placesRaw = placeStream.toList();
+    @VisibleForTesting
+    Places parseCsvSourceInParallel( File csvFile, int chunks ) throws IOException {
+        if (!csvFile.exists()){
+            throw new FileNotFoundException(csvFile.getPath());
+        }
 
-        List<Province> provinces = placesRaw
-                .stream()
-                .map(this::convertToProvince)
-                .distinct()
-                .toList();
+        try (FileChannel channel = FileChannel.open(csvFile.toPath(), StandardOpenOption.READ)) {
+            MappedCsvSplitter splitter = new MappedCsvSplitter(channel);
+            long size = channel.size();
+            long dataStart = splitter.nextRecordStart(0, size, false);
+            parseHeader(new CsvTokenizer(splitter.reader(0, dataStart, CHARSET)).nextRecord());
+
+            long[] boundaries = splitter.split(dataStart, size, chunks);
+            return ForkJoinPool.commonPool()
+                    .invoke(new ChunkTask(this, splitter, boundaries, 0, boundaries.length - 1, slots()))
+                    .build(store);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
 
-        List<Municipality> municipalities = placesRaw
-                .stream()
-                .map(this::convertToMunicipality)
-                .distinct()
-                .toList();
+    private PlacesBuilder parseRows(CsvTokenizer tokenizer, int[] slots) throws IOException {
+        String[] row = new String[6];
+        PlacesBuilder builder = new PlacesBuilder();
 
-        List<Place> places = placesRaw
-                .stream()
-                .map(this::convertToPlace)
-                .toList();
+        int fields;
+        while ((fields = tokenizer.nextRecord(slots, row)) != -1) {
+            if (fields < columns || !isCorrectType(row[TYPE]) || hasNulls(row) || !isWantedProvince(row[PROVINCE])) {
+                continue;
+            }
+            builder.add(
+                    row[NAME],
+                    row[MUNICIPALITY],
+                    row[PROVINCE],
+                    coordinate(row[LATITUDE]),
+                    coordinate(row[LONGITUDE]),
+                    row[TYPE]
+            );
+        }
+        return builder;
+    }
 
-        return new PlacesDb(provinces, municipalities, places);
+    private static float coordinate(String value){
+        if (value == null || value.isEmpty()) {
+            return Float.NaN;
+        }
+        try {
+            return Float.parseFloat(value);
+        } catch (NumberFormatException e) {
+            return Float.NaN;
+        }
     }
 
+    /**
+     * Parses a range of chunks, splitting the range in half until there is only one chunk
+     * left, then merges the halves back together in file order.
+     */
+    private static class ChunkTask extends RecursiveTask<PlacesBuilder>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final transient PlacesCsvParser parser;
+        private final transient MappedCsvSplitter splitter;
+        private final long[] boundaries;
+        private final int first;
+        private final int last;
+        private final int[] slots;
+
+        ChunkTask(PlacesCsvParser parser, MappedCsvSplitter splitter, long[] boundaries, int first, int last, int[] slots){
+            this.parser = parser;
+            this.splitter = splitter;
+            this.boundaries = boundaries;
+            this.first = first;
+            this.last = last;
+            this.slots = slots;
+        }
+
+        @Override
+        protected PlacesBuilder compute() {
+            if (last - first <= 1) {
+                try {
+                    Reader chunk = splitter.reader(boundaries[first], boundaries[last], CHARSET);
+                    return parser.parseRows(new CsvTokenizer(chunk), slots);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
 
+            int middle = (first + last) / 2;
+            ChunkTask left = new ChunkTask(parser, splitter, boundaries, first, middle, slots);
+            left.fork();
+            PlacesBuilder right = new ChunkTask(parser, splitter, boundaries, middle, last, slots).compute();
+            return left.join().addAll(right);
+        }
+    }
 }
@@ -0,0 +1,161 @@
+package wethinkcode.places;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import wethinkcode.places.cache.ResponseCache;
+import wethinkcode.places.db.lazy.LazyIndexes;
+import wethinkcode.places.db.lazy.LazyPlacesDb;
+import wethinkcode.places.db.memory.NormalizedPlacesDb;
+import wethinkcode.places.search.*;
+
+/**
+ * PlacesDataset : I am everything the PlacesService serves from one load of the place-name data,
+ * the database along with the indexes built over it.
+ * <p>
+ * I am never changed once built. A reload builds a whole new dataset and swaps it in, so a
+ * request that holds on to me always sees a database and indexes that belong together.
+ * <p>
+ * Usually the indexes are built along with me. When the database parses its provinces lazily
+ * there is an index over each province instead, built the first time it is searched, so that
+ * a search only parses the provinces it needs and the indexes are kept within the same memory
+ * budget as the places.
+ */
+public final class PlacesDataset
+{
+    private final long version;
+    private final Places places;
+    private final PrefixSearch prefixes;
+    private final FuzzySearch fuzzy;
+    private final NearSearch near;
+    private final Membership membership;
+    private final ResponseCache responses = new ResponseCache();
+    private final Instant loadedAt;
+    private final Duration loadTime;
+    private final boolean lazy;
+
+    private PlacesDataset(
+            long version,
+            Places places,
+            PrefixSearch prefixes,
+            FuzzySearch fuzzy,
+            NearSearch near,
+            Membership membership,
+            Instant started,
+            boolean lazy
+    ){
+        this.version = version;
+        this.places = places;
+        this.lazy = lazy;
+        this.prefixes = prefixes;
+        this.fuzzy = fuzzy;
+        this.near = near;
+        this.membership = membership;
+        this.loadedAt = Instant.now();
+        this.loadTime = Duration.between(started, loadedAt);
+    }
+
+    /**
+     * Builds the indexes over a freshly loaded database, and lets it find names regardless of
+     * case and accents.
+     * @param version of the new dataset
+     * @param loaded the database
+     * @param started when loading the database started
+     * @return the dataset
+     */
+    public static PlacesDataset of(long version, Places loaded, Instant started){
+        Places places = new NormalizedPlacesDb(loaded);
+        PrefixSearch prefixes = new PrefixIndex(places);
+        FuzzySearch fuzzy = new FuzzyIndex(places);
+        NearSearch near = new NearIndex(places);
+        Membership membership = new PlaceMembership(places);
+        return new PlacesDataset(
+                version, places, prefixes, fuzzy, near, membership, started, false
+        );
+    }
+
+    /**
+     * Wraps a database that parses its provinces lazily, which finds names regardless of case
+     * and accents itself, and searches it one province at a time.
+     * @param version of the new dataset
+     * @param loaded the database
+     * @param started when loading the database started
+     * @return the dataset
+     */
+    public static PlacesDataset lazy(long version, LazyPlacesDb loaded, Instant started){
+        LazyIndexes indexes = new LazyIndexes(loaded);
+        return new PlacesDataset(
+                version, loaded, indexes, indexes, indexes, indexes, started, true
+        );
+    }
+
+    /**
+     * @return increases by one with every load
+     */
+    public long version(){
+        return version;
+    }
+
+    /**
+     * @return the database, which also matches names regardless of case and accents
+     */
+    public Places places(){
+        return places;
+    }
+
+    /**
+     * @return finds places by the start of their names
+     */
+    public PrefixSearch prefixes(){
+        return prefixes;
+    }
+
+    /**
+     * @return finds places by roughly spelled names
+     */
+    public FuzzySearch fuzzy(){
+        return fuzzy;
+    }
+
+    /**
+     * @return finds the places closest to a location
+     */
+    public NearSearch near(){
+        return near;
+    }
+
+    /**
+     * @return tells whether a place exists in a province
+     */
+    public Membership membership(){
+        return membership;
+    }
+
+    /**
+     * @return the JSON of responses already sent from this data
+     */
+    public ResponseCache responses(){
+        return responses;
+    }
+
+    /**
+     * @return when this load finished
+     */
+    public Instant loadedAt(){
+        return loadedAt;
+    }
+
+    /**
+     * @return true if the database parses its places lazily, so listing them all is expensive
+     */
+    public boolean isLazy(){
+        return lazy;
+    }
+
+    /**
+     * @return how long it took to load the data and build the indexes
+     */
+    public Duration loadTime(){
+        return loadTime;
+    }
+}
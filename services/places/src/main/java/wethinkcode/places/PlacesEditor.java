@@ -0,0 +1,292 @@
+package wethinkcode.places;
+
+import java.util.*;
+
+import wethinkcode.model.Municipality;
+import wethinkcode.model.Place;
+import wethinkcode.model.Province;
+
+/**
+ * PlacesEditor : I am a copy of the provinces, municipalities and places of a database that can
+ * be changed, for building the next database after an edit.
+ * <p>
+ * The database I was copied from is never changed. Every change is checked before it is made,
+ * and throws if it cannot be made:
+ * <ul>
+ * <li>IllegalArgumentException - a name is missing
+ * <li>NoSuchElementException - a place, municipality or province does not exist
+ * <li>IllegalStateException - the change would duplicate a name, or leave places without a municipality
+ * </ul>
+ * Places keep their coordinates and type when they are changed, and new places have neither.
+ * <p>
+ * Places and municipalities are found through hash maps of the rows they are in, so each change
+ * takes the same time however much data there is, except renaming a municipality, which renames
+ * each of its places. Removed rows are left empty until the next database is built.
+ */
+public class PlacesEditor
+{
+    private final List<Province> provinces;
+    private final Set<String> provinceNames = new HashSet<>();
+    private final List<Municipality> municipalities;
+    private final List<Place> places;
+    private final List<float[]> locations;
+    private final List<String> typeNames;
+    private final List<Byte> types;
+    private final Map<String, Integer> municipalityRows = new HashMap<>();
+    private final Map<Place, Integer> placeRows = new HashMap<>();
+    private final Map<String, Integer> placesInMunicipality = new HashMap<>();
+
+    /**
+     * @param places the database to start from
+     */
+    public PlacesEditor(Places places){
+        this.provinces = List.copyOf(places.provinces());
+        provinces.forEach(province -> provinceNames.add(province.name()));
+        this.municipalities = new ArrayList<>(places.municipalities());
+        this.places = new ArrayList<>(places.places());
+        this.locations = new ArrayList<>(this.places.size());
+        PlaceLocations known = places.locations();
+        for (int row = 0; row < this.places.size(); row++) {
+            locations.add(new float[]{known.latitude(row), known.longitude(row)});
+        }
+        PlaceTypes knownTypes = places.types();
+        this.typeNames = knownTypes.names();
+        this.types = new ArrayList<>(this.places.size());
+        for (int row = 0; row < this.places.size(); row++) {
+            types.add(knownTypes.code(row));
+        }
+        for (int i = 0; i < municipalities.size(); i++) {
+            municipalityRows.putIfAbsent(municipalities.get(i).name(), i);
+        }
+        indexPlaces();
+    }
+
+    /**
+     * Adds a place to a municipality that already exists
+     * @param place the new place
+     * @return the place
+     */
+    public Place addPlace(Place place){
+        requireNames(place.name(), place.municipality());
+        requireMunicipality(place.municipality());
+        if (hasPlace(place)) {
+            throw new IllegalStateException("There is already a place " + place.name() + " in " + place.municipality());
+        }
+        places.add(place);
+        locations.add(new float[]{Float.NaN, Float.NaN});
+        types.add(PlaceTypes.UNKNOWN);
+        added(place, places.size() - 1);
+        return place;
+    }
+
+    /**
+     * Renames a place, or moves it to another municipality that already exists
+     * @param existing the place as it is now
+     * @param updated the place as it should be
+     * @return the updated place
+     */
+    public Place updatePlace(Place existing, Place updated){
+        requireNames(updated.name(), updated.municipality());
+        int row = indexOfPlace(existing);
+        requireMunicipality(updated.municipality());
+        if (!existing.equals(updated) && hasPlace(updated)) {
+            throw new IllegalStateException("There is already a place " + updated.name() + " in " + updated.municipality());
+        }
+        removed(existing, row);
+        places.set(row, updated);
+        added(updated, row);
+        return updated;
+    }
+
+    /**
+     * @param place the place to remove
+     * @return the place removed
+     */
+    public Place removePlace(Place place){
+        int row = indexOfPlace(place);
+        removed(place, row);
+        places.set(row, null);
+        return place;
+    }
+
+    /**
+     * Adds a municipality, with no places yet, to a province that already exists
+     * @param municipality the new municipality
+     * @return the municipality
+     */
+    public Municipality addMunicipality(Municipality municipality){
+        requireNames(municipality.name(), municipality.province());
+        requireProvince(municipality.province());
+        if (municipalityRows.containsKey(municipality.name())) {
+            throw new IllegalStateException("There is already a municipality " + municipality.name());
+        }
+        municipalities.add(municipality);
+        municipalityRows.put(municipality.name(), municipalities.size() - 1);
+        return municipality;
+    }
+
+    /**
+     * Renames a municipality, or moves it to another province that already exists.
+     * The places in the municipality move with it.
+     * @param name the name of the municipality as it is now
+     * @param updated the municipality as it should be
+     * @return the updated municipality
+     */
+    public Municipality updateMunicipality(String name, Municipality updated){
+        requireNames(updated.name(), updated.province());
+        int index = requireMunicipality(name);
+        requireProvince(updated.province());
+        if (!updated.name().equals(name) && municipalityRows.containsKey(updated.name())) {
+            throw new IllegalStateException("There is already a municipality " + updated.name());
+        }
+
+        municipalities.set(index, updated);
+        if (!updated.name().equals(name)) {
+            removedMunicipality(name, index);
+            municipalityRows.put(updated.name(), index);
+            places.replaceAll(place -> place != null && place.municipality().equals(name)
+                    ? new Place(place.name(), updated.name())
+                    : place);
+            indexPlaces();
+        }
+        return updated;
+    }
+
+    /**
+     * Removes a municipality that has no places left in it
+     * @param name the name of the municipality
+     * @return the municipality removed
+     */
+    public Municipality removeMunicipality(String name){
+        int index = requireMunicipality(name);
+        if (placesInMunicipality.getOrDefault(name, 0) > 0) {
+            throw new IllegalStateException("There are still places in the municipality " + name);
+        }
+        Municipality municipality = municipalities.set(index, null);
+        removedMunicipality(name, index);
+        return municipality;
+    }
+
+    /**
+     * @param place a place
+     * @return true if the place is there now
+     */
+    public boolean hasPlace(Place place){
+        return placeRows.containsKey(place);
+    }
+
+    /**
+     * @param name the name of a municipality
+     * @return the municipality with that name now, if there is one
+     */
+    public Optional<Municipality> municipality(String name){
+        Integer index = municipalityRows.get(name);
+        return index == null ? Optional.empty() : Optional.of(municipalities.get(index));
+    }
+
+    /**
+     * @param store the kind of database to build
+     * @return a new database of everything as it is now
+     */
+    public Places build(PlacesStore store){
+        List<Place> kept = new ArrayList<>(placeRows.size());
+        List<float[]> keptLocations = new ArrayList<>(placeRows.size());
+        List<Byte> keptTypes = new ArrayList<>(placeRows.size());
+        for (int row = 0; row < places.size(); row++) {
+            if (places.get(row) != null) {
+                kept.add(places.get(row));
+                keptLocations.add(locations.get(row));
+                keptTypes.add(types.get(row));
+            }
+        }
+        float[] latitudes = new float[kept.size()];
+        float[] longitudes = new float[kept.size()];
+        byte[] typeCodes = new byte[kept.size()];
+        for (int row = 0; row < kept.size(); row++) {
+            latitudes[row] = keptLocations.get(row)[0];
+            longitudes[row] = keptLocations.get(row)[1];
+            typeCodes[row] = keptTypes.get(row);
+        }
+        return store.create(
+                provinces,
+                municipalities.stream().filter(Objects::nonNull).toList(),
+                List.copyOf(kept),
+                new PlaceLocations(latitudes, longitudes),
+                new PlaceTypes(typeNames, typeCodes)
+        );
+    }
+
+    /**
+     * Finds the first row of every place, and counts the places in every municipality
+     */
+    private void indexPlaces(){
+        placeRows.clear();
+        placesInMunicipality.clear();
+        for (int row = 0; row < places.size(); row++) {
+            if (places.get(row) != null) {
+                added(places.get(row), row);
+            }
+        }
+    }
+
+    private void added(Place place, int row){
+        placeRows.merge(place, row, Math::min);
+        placesInMunicipality.merge(place.municipality(), 1, Integer::sum);
+    }
+
+    /**
+     * Forgets a place that is about to be changed or removed, finding the next row with the same
+     * place if the data had it more than once
+     */
+    private void removed(Place place, int row){
+        placesInMunicipality.merge(place.municipality(), -1, Integer::sum);
+        placeRows.remove(place);
+        for (int next = row + 1; next < places.size(); next++) {
+            if (place.equals(places.get(next))) {
+                placeRows.put(place, next);
+                return;
+            }
+        }
+    }
+
+    private void removedMunicipality(String name, int index){
+        municipalityRows.remove(name);
+        for (int next = index + 1; next < municipalities.size(); next++) {
+            Municipality municipality = municipalities.get(next);
+            if (municipality != null && municipality.name().equals(name)) {
+                municipalityRows.put(name, next);
+                return;
+            }
+        }
+    }
+
+    private int indexOfPlace(Place place){
+        Integer row = placeRows.get(place);
+        if (row == null) {
+            throw new NoSuchElementException("There is no place " + place.name() + " in " + place.municipality());
+        }
+        return row;
+    }
+
+    private int requireMunicipality(String name){
+        Integer index = municipalityRows.get(name);
+        if (index == null) {
+            throw new NoSuchElementException("There is no municipality " + name);
+        }
+        return index;
+    }
+
+    private void requireProvince(String name){
+        if (!provinceNames.contains(name)) {
+            throw new NoSuchElementException("There is no province " + name);
+        }
+    }
+
+    private static void requireNames(String... names){
+        for (String name : names) {
+            if (name == null || name.isBlank()) {
+                throw new IllegalArgumentException("Every name must be given");
+            }
+        }
+    }
+}
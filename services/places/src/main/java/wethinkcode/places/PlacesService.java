@@ -2,10 +2,48 @@ package wethinkcode.places;
 
 import java.io.*;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 
 import com.google.common.io.Resources;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import kong.unirest.HttpRequestWithBody;
+import kong.unirest.HttpResponse;
+import kong.unirest.Unirest;
+import kong.unirest.UnirestException;
+import org.eclipse.jetty.util.BlockingArrayQueue;
 import picocli.CommandLine;
+import wethinkcode.places.changes.ChangeLog;
+import wethinkcode.places.changes.PlacesDelta;
+import wethinkcode.places.db.lazy.LazyPlacesDb;
+import wethinkcode.places.db.snapshot.PlacesSnapshot;
 import wethinkcode.service.Service;
+import wethinkcode.service.messages.Prefix;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static wethinkcode.service.messages.AlertService.publishWarning;
 
 
 /**
@@ -21,7 +59,19 @@ import wethinkcode.service.Service;
  * <li>a list of available Provinces
  * <li>a list of all Towns/PlacesService in a given Province
  * <li>a list of all neighbourhoods in a given Municipality
+ * <li>the places whose names start with some text, for type-ahead
+ * <li>the places whose names are spelled roughly like some text
+ * <li>the places nearest to a location, or within some distance of it
  * </ul>
+ * Places and municipalities can be added, changed and removed while I run, by clients that send
+ * the admin token, see {@link #edit}.
+ * <p>
+ * Every load and every edit makes a new version of the data. Versions count up from the time I
+ * started, in microseconds, so a client that held a version from before I restarted is told to
+ * start again rather than being given changes against data I no longer have.
+ * <code>GET /changes?since=N</code> tells a client holding version N what was added and removed
+ * since, see {@link ChangeLog}, and each new version is announced on the <code>places</code>
+ * topic so that clients know to ask.
  * I understand the following command-line arguments:
  * <dl>
  * <dt>-c | --config &lt;configfile&gt;
@@ -29,11 +79,54 @@ import wethinkcode.service.Service;
  *      properties-file format
  * <dt>-d | --datadir &lt;datadirectory&gt;
  * <dd>the name of a directory where CSV datafiles may be found. This option <em>overrides</em>
- *      and data-directory setting in a configuration file.
+ *      and data-directory setting in a configuration file. The data may also be a directory
+ *      or a glob such as <code>parts/places-*.csv.gz</code>, and then every part is parsed at
+ *      the same time and merged, see {@link CsvSources}. Parts ending in <code>.gz</code> are
+ *      decompressed as they are read.
  * <dt>-p | --places &lt;csvdatafile&gt;
  * <dd>a file pathname referring to a CSV file of place-name data. This option
  *      <em>overrides</em> any value in a configuration file and will bypass any
  *      data-directory set via command-line or configuration.
+ * <dt>-pi | --parallel &lt;true|false&gt;
+ * <dd>memory-map the CSV file and parse it in parallel chunks, which starts up faster
+ *      on machines with several cores.
+ * <dt>-st | --store &lt;indexed|compact|off_heap|linear&gt;
+ * <dd>the kind of in-memory database to load the places into, see {@link PlacesStore}.
+ *      <code>compact</code> uses the least heap, and <code>off_heap</code> keeps the data
+ *      outside the heap altogether, for shorter garbage collection pauses.
+ * <dt>-sn | --snapshot &lt;snapshotfile&gt;
+ * <dd>a file pathname for a binary snapshot of the parsed data. If the snapshot was made
+ *      from the same CSV file it is loaded instead of parsing, otherwise it is written
+ *      after parsing.
+ * <dt>-pv | --provinces &lt;province,province,...&gt;
+ * <dd>only load the places in these provinces, so that several instances can each serve a
+ *      shard of the country. The manager routes requests about a province to its shard.
+ * <dt>-m | --manager &lt;url&gt;
+ * <dd>the URL of the manager. Each time new data is loaded, and every {@link #HEARTBEAT} to show
+ *      this instance is still there, its version and provinces are sent to
+ *      <code>POST /places/shards</code> there, so the manager knows which provinces this
+ *      instance serves, wherever it runs.
+ * <dt>-sht | --shard-token &lt;token&gt;
+ * <dd>the bearer token the manager expects when registering with it.
+ * <dt>-lz | --lazy &lt;true|false&gt;
+ * <dd>only find where the rows of each province are at start up, and parse a province the first
+ *      time it is asked about, see {@link LazyPlacesDb}. This starts quickly and stays small when
+ *      most requests are about one or two provinces. Compressed data files cannot be indexed, so
+ *      they are always parsed up front, and no snapshot is used.
+ * <dt>-mb | --memory-budget &lt;megabytes&gt;
+ * <dd>with <code>--lazy</code>, roughly how much memory the parsed and compressed provinces and
+ *      the indexes over them may take before the least recently used of them are dropped.
+ * <dt>-at | --admin-token &lt;token&gt;
+ * <dd>the bearer token that must be sent to add, change or remove places and municipalities,
+ *      or to start a reload. Without it the data cannot be edited or reloaded over HTTP at all.
+ * <dt>-ed | --edits &lt;editsfile&gt;
+ * <dd>a file pathname where the edits not yet in the data files are kept, so that they are made
+ *      again after a restart, see {@link EditLog}. Without it they only last while I run.
+ * <dt>-w | --watch &lt;true|false&gt;
+ * <dd>watch the CSV file and reload the data whenever it changes. A reload can also be
+ *      started with <code>POST /admin/reload</code> and the admin token, and
+ *      <code>GET /admin/reload</code> shows when the data was last loaded, how long it took
+ *      and how much was loaded.
  * </dl>
  */
 @Service.AsService
@@ -43,13 +136,145 @@ public class PlacesService {
      */
     @CommandLine.Option(
             names = {"-d", "--data"},
-            description = "The path to the csv data file used by this service"
+            description = "The path to the csv data file used by this service, " +
+                    "or a directory or glob of .csv and .csv.gz files"
     )
     public String data;
     /**
-     * Should not be modified, I just prefer the look of SERVER.places vs SERVER.getPlaces()
+     * Parses the csv file in parallel chunks when true
+     */
+    @CommandLine.Option(
+            names = {"-pi", "--parallel"},
+            description = "Memory-maps the csv data file and parses it in parallel chunks",
+            type = Boolean.class
+    )
+    public Boolean parallel = false;
+    /**
+     * The kind of Places database the data is loaded into
+     */
+    @CommandLine.Option(
+            names = {"-st", "--store"},
+            description = "The kind of places database to use: indexed, compact, off_heap or linear"
+    )
+    public String store = PlacesStore.INDEXED.name();
+    /**
+     * Where the binary snapshot of the parsed data is kept, if anywhere
+     */
+    @CommandLine.Option(
+            names = {"-sn", "--snapshot"},
+            description = "The path of a binary snapshot of the parsed data, used to skip parsing on later starts"
+    )
+    public String snapshot;
+    /**
+     * The provinces this instance serves, when the places are sharded by province
+     */
+    @CommandLine.Option(
+            names = {"-pv", "--provinces"},
+            description = "Only load the places in these provinces, separated by commas"
+    )
+    public String provinces;
+    /**
+     * Parses each province only when it is first asked about when true
+     */
+    @CommandLine.Option(
+            names = {"-lz", "--lazy"},
+            description = "Indexes the csv data by province at start up and parses each province when it is first used",
+            type = Boolean.class
+    )
+    public Boolean lazy = false;
+    /**
+     * Roughly how many megabytes lazily parsed provinces may take
+     */
+    @CommandLine.Option(
+            names = {"-mb", "--memory-budget"},
+            description = "The megabytes that lazily parsed and compressed provinces and their indexes may take before some are dropped"
+    )
+    public Long memoryBudget = 64L;
+    /**
+     * The bearer token clients must send to edit the places, if they may at all
+     */
+    @CommandLine.Option(
+            names = {"-at", "--admin-token"},
+            description = "The bearer token that must be sent to add, change or remove places and municipalities, or to reload them"
+    )
+    public String adminToken;
+    /**
+     * Where the edits not yet in the data files are kept, if anywhere
+     */
+    @CommandLine.Option(
+            names = {"-ed", "--edits"},
+            description = "The path of a file that keeps the edits not yet in the csv data, so they outlive a restart"
+    )
+    public String edits;
+    /**
+     * The manager this instance tells which provinces it serves, if any
+     */
+    @CommandLine.Option(
+            names = {"-m", "--manager"},
+            description = "The URL of the manager service, which is told the provinces this instance serves"
+    )
+    public String manager;
+    /**
+     * The bearer token the manager expects when this instance registers with it
      */
-    public Places places;
+    @CommandLine.Option(
+            names = {"-sht", "--shard-token"},
+            description = "The bearer token the manager expects when this instance registers with it"
+    )
+    public String shardToken;
+    /**
+     * Reloads the data when the csv file changes when true
+     */
+    @CommandLine.Option(
+            names = {"-w", "--watch"},
+            description = "Watches the csv data file and reloads the data when it changes",
+            type = Boolean.class
+    )
+    public Boolean watch = false;
+
+    /**
+     * Announces each new version of the data, as {"version": ..., "since": ..., "reset": ...}
+     */
+    @Service.Publish(destination = "places", prefix = Prefix.TOPIC)
+    public Queue<String> placesUpdates = new BlockingArrayQueue<>();
+
+    /**
+     * The data currently being served. Replaced as a whole by a reload, never modified.
+     */
+    private volatile PlacesDataset dataset;
+    private volatile boolean reloading = false;
+    private final AtomicBoolean reloadQueued = new AtomicBoolean();
+    private final AtomicLong versions = new AtomicLong(System.currentTimeMillis() * 1000);
+    private final ChangeLog changes = new ChangeLog();
+    /**
+     * The edits the data files do not have yet, made again after each reload. Guarded by
+     * reloadLock.
+     */
+    private volatile EditLog editLog = new EditLog();
+    /**
+     * The edits that could not be made again after the last reload
+     */
+    private volatile List<String> failedEdits = List.of();
+    private final Queue<PendingEdit> pendingEdits = new ConcurrentLinkedQueue<>();
+    private final Object reloadLock = new Object();
+    private final ExecutorService reloader = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "PlacesService reloader");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ScheduledExecutorService registrar = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "PlacesService registrar");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile String url;
+    private WatchService watchService;
+
+    private static final long WATCH_SETTLE_MILLIS = 500;
+    /**
+     * How often the manager is told again that this instance is still there
+     */
+    public static final Duration HEARTBEAT = Duration.ofSeconds(10);
 
     /**
      * Adds the additional initialisation of an in-memory Database of
@@ -57,30 +282,477 @@ public class PlacesService {
      */
     @Service.RunBefore
     public void createPlaces() {
-        places = initPlacesDb(data);
+        if (edits != null && !edits.isBlank()) {
+            try {
+                editLog = new EditLog(Path.of(edits));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        swap(loadDataset());
     }
 
     /**
-     * Creates an instance of the Places database.
-     * @param data_file the path to the data file
-     * @return the instance loaded with data from that file
+     * Gets the data currently being served. Hold on to the result for the whole of a request,
+     * so that everything in it comes from the same load.
+     * @return the current dataset
+     */
+    public PlacesDataset dataset() {
+        return dataset;
+    }
+
+    /**
+     * @param version a version of the data a client has
+     * @return what changed since then, or a reset if the client must fetch the data again
      */
-    static Places initPlacesDb(String data_file) {
-        File databaseFile;
+    public PlacesDelta changesSince(long version) {
+        return changes.since(version);
+    }
+
+    /**
+     * Serves a new dataset, remembering what changed and announcing it
+     */
+    private void swap(PlacesDataset next) {
+        PlacesDataset previous = dataset;
+        PlacesDelta delta = changes.record(previous, next);
+        dataset = next;
+        register();
+        if (previous == null) {
+            return;
+        }
+
+        JsonObject update = new JsonObject();
+        update.addProperty("version", delta.version());
+        update.addProperty("since", delta.since());
+        update.addProperty("reset", delta.reset());
+        placesUpdates.add(update.toString());
+    }
+
+    /**
+     * @return the provinces this instance was asked to load, or empty if it loads all of them
+     */
+    public Set<String> provinces() {
+        if (provinces == null || provinces.isBlank()) {
+            return Set.of();
+        }
+        return Arrays.stream(provinces.split(","))
+                .map(String::trim)
+                .filter(province -> !province.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
+    /**
+     * @return true while a reload is running
+     */
+    public boolean isReloading() {
+        return reloading;
+    }
+
+    /**
+     * Loads the data file again into a new dataset and swaps it in once it is complete.
+     * Only one reload runs at a time, and requests keep using the old dataset until the swap.
+     * @return the new dataset, or the current one if the reload failed
+     */
+    public PlacesDataset reload() {
+        synchronized (reloadLock) {
+            reloading = true;
+            try {
+                swap(loadDataset());
+            } catch (RuntimeException e) {
+                publishWarning(getClass().getSimpleName(), "Failed to reload " + data + ": " + e.getMessage());
+            } finally {
+                reloading = false;
+            }
+            return dataset;
+        }
+    }
+
+    /**
+     * Applies an edit to a copy of the data being served, and swaps in a new dataset built from
+     * the copy with all of its indexes, so they always change together. Requests never wait for
+     * an edit, they keep using the old dataset until the swap.
+     * <p>
+     * Building a dataset costs the same for one edit as for many, so edits that arrive while
+     * another is being built wait, and are then all made on one copy with one build. An edit that
+     * throws is left out without affecting the others.
+     * <p>
+     * Edits are kept in an {@link EditLog}, written to the edits file if there is one before the
+     * swap, and made again after every reload so that reloading the data file does not undo them.
+     * An edit the reloaded data already has is dropped from the log, and one that can no longer
+     * be made is dropped and reported, see {@link #failedEdits}. Once the log holds
+     * {@link EditLog#MAX_EDITS} edits, more are refused until the data files catch up.
+     * @param edit the change to make, see {@link PlacesEditor} for when it cannot be made
+     * @return the place or municipality added, changed or removed
+     * @throws IllegalStateException if the log is full
+     */
+    public Object edit(PlaceEdit edit) {
+        PendingEdit pending = new PendingEdit(edit, new CompletableFuture<>());
+        pendingEdits.add(pending);
+        synchronized (reloadLock) {
+            if (!pending.result().isDone()) {
+                makePendingEdits();
+            }
+        }
+
+        try {
+            return pending.result().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Makes every edit waiting so far on one copy of the data, and swaps in one dataset built
+     * from it. Guarded by reloadLock.
+     */
+    private void makePendingEdits() {
+        Instant started = Instant.now();
+        PlacesEditor editor = new PlacesEditor(dataset.places());
+        List<PendingEdit> made = new ArrayList<>();
+        List<Object> results = new ArrayList<>();
+
+        PendingEdit pending;
+        while ((pending = pendingEdits.poll()) != null) {
+            if (!editLog.hasRoomFor(made.size() + 1)) {
+                pending.result().completeExceptionally(new IllegalStateException(
+                        "There are already " + EditLog.MAX_EDITS + " edits that are not in the data files"));
+                continue;
+            }
+            try {
+                results.add(pending.edit().apply(editor));
+                made.add(pending);
+            } catch (RuntimeException e) {
+                pending.result().completeExceptionally(e);
+            }
+        }
+        if (made.isEmpty()) {
+            return;
+        }
 
         try {
-            databaseFile = new File(Resources.getResource(data_file).toURI());
+            Places places = editor.build(PlacesStore.fromName(store));
+            editLog.add(made.stream().map(PendingEdit::edit).toList());
+            swap(PlacesDataset.of(versions.incrementAndGet(), places, started));
+        } catch (RuntimeException e) {
+            made.forEach(edit -> edit.result().completeExceptionally(e));
+            return;
+        }
+        for (int i = 0; i < made.size(); i++) {
+            made.get(i).result().complete(results.get(i));
+        }
+    }
+
+    private record PendingEdit(PlaceEdit edit, CompletableFuture<Object> result) {}
+
+    /**
+     * @return how many edits are not in the data files yet
+     */
+    public int editCount() {
+        return editLog.size();
+    }
+
+    /**
+     * @return the edits that could not be made again after the last reload, and why
+     */
+    public List<String> failedEdits() {
+        return failedEdits;
+    }
+
+    /**
+     * @return true if clients may edit the places at all
+     */
+    public boolean isEditable() {
+        return adminToken != null && !adminToken.isEmpty();
+    }
+
+    /**
+     * @param authorization the Authorization header sent by a client
+     * @return true if it carries the admin token
+     */
+    public boolean isAdmin(String authorization) {
+        if (!isEditable() || authorization == null) {
+            return false;
+        }
+        return MessageDigest.isEqual(
+                ("Bearer " + adminToken).getBytes(StandardCharsets.UTF_8),
+                authorization.getBytes(StandardCharsets.UTF_8)
+        );
+    }
+
+    /**
+     * Starts a reload on the reloader thread, off the request path, unless one is already
+     * waiting to run.
+     */
+    public void reloadInBackground() {
+        if (reloadQueued.compareAndSet(false, true)) {
+            reloader.execute(() -> {
+                reloadQueued.set(false);
+                reload();
+            });
+        }
+    }
+
+    private PlacesDataset loadDataset() {
+        Instant started = Instant.now();
+        CsvSources sources = CsvSources.of(dataFile(data));
+        if (lazy && editLog.isEmpty()) {
+            Optional<LazyPlacesDb> places = loadLazyPlaces(sources);
+            if (places.isPresent()) {
+                failedEdits = List.of();
+                return PlacesDataset.lazy(versions.incrementAndGet(), places.get(), started);
+            }
+        }
+        Places places = withEdits(loadPlaces(sources));
+        return PlacesDataset.of(versions.incrementAndGet(), places, started);
+    }
+
+    /**
+     * Makes the edits in the log again, on freshly loaded data, and keeps only those the data
+     * did not already have. An edit that no longer fits the data is dropped as well, and
+     * reported in {@link #failedEdits}.
+     */
+    private Places withEdits(Places loaded) {
+        if (editLog.isEmpty()) {
+            failedEdits = List.of();
+            return loaded;
+        }
+        PlacesEditor editor = new PlacesEditor(loaded);
+        List<PlaceEdit> kept = new ArrayList<>();
+        List<String> failed = new ArrayList<>();
+        for (PlaceEdit edit : editLog.edits()) {
+            if (edit.isMadeIn(editor)) {
+                continue;
+            }
+            try {
+                edit.apply(editor);
+                kept.add(edit);
+            } catch (RuntimeException e) {
+                failed.add(edit + ": " + e.getMessage());
+                publishWarning(getClass().getSimpleName(), "Could not " + edit + " after reloading: " + e.getMessage());
+            }
+        }
+        editLog.replace(kept);
+        failedEdits = List.copyOf(failed);
+        return kept.isEmpty() ? loaded : editor.build(PlacesStore.fromName(store));
+    }
+
+    /**
+     * Tells the manager which provinces this instance serves, if it was given one. This is done
+     * again every time new data is swapped in, and every {@link #HEARTBEAT} so that the manager
+     * knows this instance is still there.
+     */
+    @Service.RunAfter(withServiceAsArg = true)
+    public void registerWithManager(Service<PlacesService> service) {
+        url = service.url();
+        if (manager == null || manager.isBlank()) {
+            return;
+        }
+        registrar.scheduleWithFixedDelay(this::sendRegistration, 0, HEARTBEAT.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Sends the version and provinces of the data being served to the manager, on the registrar
+     * thread. Each sending takes the data being served at the time, so the manager never hears
+     * of older data after newer.
+     */
+    private void register() {
+        if (manager == null || manager.isBlank() || url == null) {
+            return;
+        }
+        registrar.execute(this::sendRegistration);
+    }
+
+    private void sendRegistration() {
+        PlacesDataset registered = dataset;
+        if (registered == null) {
+            return;
+        }
+        JsonArray provinceNames = new JsonArray();
+        registered.places().provinces().forEach(province -> provinceNames.add(province.name()));
+        JsonObject shard = new JsonObject();
+        shard.addProperty("url", url);
+        shard.addProperty("version", registered.version());
+        shard.add("provinces", provinceNames);
+
+        try {
+            HttpRequestWithBody request = Unirest.post(manager + "/places/shards");
+            if (shardToken != null) {
+                request.header("Authorization", "Bearer " + shardToken);
+            }
+            HttpResponse<String> response = request.body(shard.toString()).asString();
+            if (!response.isSuccess()) {
+                publishWarning(getClass().getSimpleName(), "The manager answered " + response.getStatus() + " to registering");
+            }
+        } catch (UnirestException e) {
+            publishWarning(getClass().getSimpleName(), "Could not register with the manager at " + manager);
+        }
+    }
+
+    /**
+     * Starts watching the data file for changes, if asked to.
+     */
+    @Service.RunAfter
+    public void watchDataFile() {
+        if (!watch) {
+            return;
+        }
+        CsvSources sources = CsvSources.of(dataFile(data));
+        try {
+            watchService = sources.directory().getFileSystem().newWatchService();
+            sources.directory().register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+        } catch (IOException e) {
+            publishWarning(getClass().getSimpleName(), "Cannot watch " + data + " for changes");
+            return;
+        }
+
+        Thread watcher = new Thread(() -> watchForChanges(sources));
+        watcher.setName("PlacesService watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    private void watchForChanges(CsvSources sources) {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean changed = changes(key, sources);
+                if (changed) {
+                    Thread.sleep(WATCH_SETTLE_MILLIS);
+                    WatchKey more;
+                    while ((more = watchService.poll()) != null) {
+                        changes(more, sources);
+                    }
+                    reload();
+                }
+            }
+        } catch (ClosedWatchServiceException | InterruptedException ignored) {
+        }
+    }
+
+    private static boolean changes(WatchKey key, CsvSources sources) {
+        boolean changed = key
+                .pollEvents()
+                .stream()
+                .anyMatch(event -> event.context() instanceof Path name && sources.matches(name));
+        key.reset();
+        return changed;
+    }
+
+    @Service.OnShutdown
+    public void stopReloading() {
+        reloader.shutdownNow();
+        registrar.shutdownNow();
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * Finds the data file, either as a resource or on the file system.
+     * @param data_file the path to the data file
+     * @return the data file
+     */
+    static File dataFile(String data_file) {
+        try {
+            return new File(Resources.getResource(data_file).toURI());
         } catch (IllegalArgumentException | URISyntaxException e) {
-            databaseFile = new File(data_file);
+            return new File(data_file);
         }
+    }
 
+    /**
+     * Creates an instance of the Places database. When a snapshot file is configured,
+     * a snapshot of the same data files is loaded instead of parsing them, and a new
+     * snapshot is saved after parsing if there was none.
+     * @param sources the data files
+     * @return the instance loaded with data from those files
+     */
+    Places loadPlaces(CsvSources sources) {
+        PlacesStore placesStore = PlacesStore.fromName(store);
+
+        try {
+            List<File> files = sources.files();
+            if (files.isEmpty()) {
+                throw new FileNotFoundException("No CSV files for " + data);
+            }
+
+            if (snapshot == null) {
+                return parsePlaces(files, placesStore);
+            }
+
+            File snapshotFile = new File(snapshot);
+            long checksum = snapshotChecksum(files);
+            Optional<Places> saved = PlacesSnapshot.read(snapshotFile, checksum, placesStore);
+            if (saved.isPresent()) {
+                return saved.get();
+            }
+
+            Places parsed = parsePlaces(files, placesStore);
+            try {
+                PlacesSnapshot.write(snapshotFile, checksum, parsed);
+            } catch (IOException e) {
+                publishWarning(getClass().getSimpleName(), "Failed to write the snapshot " + snapshot);
+            }
+            return parsed;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Creates a Places database that only parses a province when it is first asked about.
+     * @param sources the data files
+     * @return the instance, or empty if some of the files are compressed and cannot be indexed
+     */
+    Optional<LazyPlacesDb> loadLazyPlaces(CsvSources sources) {
         try {
-            return new PlacesCsvParser().parseCsvSource(databaseFile);
+            List<File> files = sources.files();
+            if (files.isEmpty()) {
+                throw new FileNotFoundException("No CSV files for " + data);
+            }
+            if (files.stream().anyMatch(file -> file.getName().endsWith(".gz"))) {
+                publishWarning(getClass().getSimpleName(), "Cannot load compressed data lazily, parsing all of " + data);
+                return Optional.empty();
+            }
+
+            ProvinceSegments segments = new PlacesCsvParser(PlacesStore.fromName(store), provinces())
+                    .indexCsvSources(files);
+            return Optional.of(new LazyPlacesDb(segments, memoryBudget * 1024 * 1024));
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * Combines the checksums of all the data files. A snapshot of only some provinces must
+     * not be loaded by a shard with other provinces either.
+     */
+    private long snapshotChecksum(List<File> files) throws IOException {
+        long checksum = 0;
+        for (File file : files) {
+            checksum = checksum * 31 + PlacesSnapshot.checksum(file);
+        }
+        return provinces().isEmpty() ? checksum : checksum * 31 + provinces().hashCode();
+    }
+
+    private Places parsePlaces(List<File> files, PlacesStore placesStore) throws IOException {
+        PlacesCsvParser parser = new PlacesCsvParser(placesStore, provinces());
+        if (files.size() > 1) {
+            return parser.parseCsvSources(files);
+        }
+
+        File file = files.get(0);
+        return parallel && !file.getName().endsWith(".gz")
+                ? parser.parseCsvSourceInParallel(file)
+                : parser.parseCsvSource(file);
+    }
+
     public static void main(String... args) {
         new Service<>(new PlacesService()).execute(args);
     }
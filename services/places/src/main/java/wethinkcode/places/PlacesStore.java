@@ -0,0 +1,74 @@
+package wethinkcode.places;
+
+import java.util.List;
+
+import wethinkcode.model.Municipality;
+import wethinkcode.model.Place;
+import wethinkcode.model.Province;
+import wethinkcode.places.db.memory.CompactPlacesDb;
+import wethinkcode.places.db.memory.IndexedPlacesDb;
+import wethinkcode.places.db.memory.OffHeapPlacesDb;
+import wethinkcode.places.db.memory.PlacesDb;
+
+/**
+ * PlacesStore : I am the choice of Places database implementation the data is loaded into.
+ * <ul>
+ * <li>LINEAR - plain lists that are scanned on every query
+ * <li>INDEXED - hash indexes over the records, the default
+ * <li>COMPACT - dictionary encoded int arrays, the smallest heap footprint
+ * <li>OFF_HEAP - dictionary encoded columns in direct buffers, out of reach of the garbage collector
+ * </ul>
+ */
+public enum PlacesStore {
+    LINEAR(PlacesDb::new),
+    INDEXED(IndexedPlacesDb::new),
+    COMPACT(CompactPlacesDb::new),
+    OFF_HEAP(OffHeapPlacesDb::new);
+
+    private final Factory factory;
+
+    PlacesStore(Factory factory) {
+        this.factory = factory;
+    }
+
+    public Places create(List<Province> provinces, List<Municipality> municipalities, List<Place> places){
+        return create(
+                provinces,
+                municipalities,
+                places,
+                PlaceLocations.unknown(places.size()),
+                PlaceTypes.unknown(places.size())
+        );
+    }
+
+    public Places create(
+            List<Province> provinces,
+            List<Municipality> municipalities,
+            List<Place> places,
+            PlaceLocations locations,
+            PlaceTypes types
+    ){
+        return factory.create(provinces, municipalities, places, locations, types);
+    }
+
+    /**
+     * Finds a store by name, ignoring case
+     * @param name of the store, e.g. "compact"
+     * @return the store with that name
+     * @throws IllegalArgumentException if there is no such store
+     */
+    public static PlacesStore fromName(String name){
+        return valueOf(name.trim().toUpperCase());
+    }
+
+    @FunctionalInterface
+    private interface Factory {
+        Places create(
+                List<Province> provinces,
+                List<Municipality> municipalities,
+                List<Place> places,
+                PlaceLocations locations,
+                PlaceTypes types
+        );
+    }
+}
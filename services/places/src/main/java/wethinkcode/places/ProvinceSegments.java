@@ -0,0 +1,238 @@
+package wethinkcode.places;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import wethinkcode.model.Municipality;
+import wethinkcode.model.Province;
+import wethinkcode.places.search.Names;
+
+/**
+ * ProvinceSegments : I know where the rows of each province are in the CSV files, without
+ * keeping the rows themselves, so that a province can be read and parsed on its own when it
+ * is first needed.
+ * <p>
+ * I am made by {@link PlacesCsvParser#indexCsvSources} in one pass over the bytes of the files.
+ * The rows of a province are kept as byte ranges, and a row that starts where the last one of
+ * its province ended just makes that range longer, so a file sorted by province needs only one
+ * range per province. I also know every province and municipality, and keep a Bloom filter of
+ * the {@link Names#fold folded} place names in each province, so that a place is only looked for
+ * in the provinces it might be in, however it is spelled.
+ * <p>
+ * Reading a province gives one small CSV for each file it has rows in, that file's header
+ * followed by the rows, so the parts can be parsed exactly as the files would have been.
+ */
+public class ProvinceSegments
+{
+    private static final HashFunction NAME_HASH = Hashing.murmur3_128();
+    private static final double FALSE_POSITIVES = 0.01;
+
+    private final PlacesStore store;
+    private final Set<String> wanted;
+    private final List<File> files = new ArrayList<>();
+    private final List<byte[]> headers = new ArrayList<>();
+    private final Map<String, Ranges> ranges = new LinkedHashMap<>();
+    private final Set<Municipality> municipalities = new LinkedHashSet<>();
+    private int size = 0;
+
+    ProvinceSegments(PlacesStore store, Set<String> wanted){
+        this.store = store;
+        this.wanted = wanted;
+    }
+
+    /**
+     * Adds a file whose rows are about to be added
+     * @return the index of the file
+     */
+    int addFile(File file, byte[] header){
+        files.add(file);
+        headers.add(header);
+        return files.size() - 1;
+    }
+
+    /**
+     * Adds the place on one row of a file
+     */
+    void addRow(int file, long start, long end, String name, String municipality, String province){
+        ranges.computeIfAbsent(province, p -> new Ranges()).add(file, start, end, name);
+        municipalities.add(new Municipality(municipality, province));
+        size++;
+    }
+
+    /**
+     * Builds the Bloom filters, once every row has been added
+     * @return this
+     */
+    ProvinceSegments complete(){
+        ranges.values().forEach(Ranges::complete);
+        return this;
+    }
+
+    /**
+     * @return every province, in the order they were first seen
+     */
+    public List<Province> provinces(){
+        return ranges.keySet().stream().map(Province::new).toList();
+    }
+
+    /**
+     * @return every municipality, in the order they were first seen
+     */
+    public List<Municipality> municipalities(){
+        return new ArrayList<>(municipalities);
+    }
+
+    /**
+     * @param province the exact name of a province
+     * @return true if there are places in the province
+     */
+    public boolean hasProvince(String province){
+        return ranges.containsKey(province);
+    }
+
+    /**
+     * @param province the exact name of a province
+     * @param place the name of a place, matched folded
+     * @return false if there is certainly no place with that name in the province
+     */
+    public boolean mightHavePlace(String province, String place){
+        Ranges rows = ranges.get(province);
+        return rows != null && rows.names.mightContain(hash(Names.fold(place)));
+    }
+
+    /**
+     * @param province the exact name of a province
+     * @return the number of bytes of CSV rows the province has
+     */
+    public long bytes(String province){
+        Ranges rows = ranges.get(province);
+        return rows == null ? 0 : rows.bytes;
+    }
+
+    /**
+     * @return the number of places in all the provinces
+     */
+    public int size(){
+        return size;
+    }
+
+    /**
+     * Reads the rows of a province from the files.
+     * @param province the exact name of a province
+     * @return a CSV, with its header, for each file the province has rows in
+     * @throws IOException if a file cannot be read
+     */
+    public List<byte[]> read(String province) throws IOException {
+        Ranges rows = ranges.get(province);
+        if (rows == null) {
+            return List.of();
+        }
+
+        List<byte[]> parts = new ArrayList<>();
+        int i = 0;
+        while (i < rows.count) {
+            int file = rows.files[i];
+            ByteArrayOutputStream part = new ByteArrayOutputStream();
+            part.write(headers.get(file));
+            try (FileChannel channel = FileChannel.open(files.get(file).toPath(), StandardOpenOption.READ)) {
+                for (; i < rows.count && rows.files[i] == file; i++) {
+                    readRange(channel, rows.starts[i], rows.ends[i], part);
+                }
+            }
+            parts.add(part.toByteArray());
+        }
+        return parts;
+    }
+
+    private static void readRange(FileChannel channel, long start, long end, ByteArrayOutputStream out) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) (end - start));
+        long position = start;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("The file changed while it was being read");
+            }
+            position += read;
+        }
+        out.write(buffer.array(), 0, buffer.position());
+        if (buffer.array()[buffer.position() - 1] != '\n') {
+            out.write('\n');
+        }
+    }
+
+    /**
+     * Parses rows read by {@link #read} into a database of their own
+     * @param parts the CSV parts of a province
+     * @return the database of the places in the parts
+     */
+    public Places parse(List<byte[]> parts){
+        PlacesBuilder builder = new PlacesBuilder();
+        for (byte[] part : parts) {
+            InputStreamReader rows = new InputStreamReader(new ByteArrayInputStream(part), PlacesCsvParser.CHARSET);
+            try {
+                builder.addAll(new PlacesCsvParser(store, wanted).parseRows(rows));
+            } catch (UncheckedIOException e) {
+                throw new IllegalStateException("Cannot parse the rows of a province", e.getCause());
+            }
+        }
+        return builder.build(store);
+    }
+
+    private static long hash(String name){
+        return NAME_HASH.hashString(name, StandardCharsets.UTF_8).asLong();
+    }
+
+    /**
+     * The byte ranges of the rows of one province, in file order
+     */
+    private static class Ranges
+    {
+        int[] files = new int[4];
+        long[] starts = new long[4];
+        long[] ends = new long[4];
+        int count = 0;
+        long bytes = 0;
+
+        long[] nameHashes = new long[16];
+        int nameCount = 0;
+        BloomFilter<Long> names;
+
+        void add(int file, long start, long end, String name){
+            bytes += end - start;
+            if (count > 0 && files[count - 1] == file && ends[count - 1] == start) {
+                ends[count - 1] = end;
+            } else {
+                if (count == files.length) {
+                    files = Arrays.copyOf(files, count * 2);
+                    starts = Arrays.copyOf(starts, count * 2);
+                    ends = Arrays.copyOf(ends, count * 2);
+                }
+                files[count] = file;
+                starts[count] = start;
+                ends[count] = end;
+                count++;
+            }
+
+            if (nameCount == nameHashes.length) {
+                nameHashes = Arrays.copyOf(nameHashes, nameCount * 2);
+            }
+            nameHashes[nameCount++] = hash(Names.fold(name));
+        }
+
+        void complete(){
+            names = BloomFilter.create(Funnels.longFunnel(), Math.max(1, nameCount), FALSE_POSITIVES);
+            for (int i = 0; i < nameCount; i++) {
+                names.put(nameHashes[i]);
+            }
+            nameHashes = null;
+        }
+    }
+}
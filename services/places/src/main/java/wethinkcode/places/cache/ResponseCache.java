@@ -0,0 +1,62 @@
+package wethinkcode.places.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+import com.google.common.hash.Hashing;
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * ResponseCache : I keep the JSON of responses that have already been sent, so sending them
+ * again is a copy of some bytes.
+ * <p>
+ * I belong to one {@link wethinkcode.places.PlacesDataset}, and the data I render never
+ * changes, so nothing I hold ever goes stale. A reload builds a new, empty cache along with the
+ * new data. Only responses for things that exist should be cached, which keeps me as small as
+ * the number of provinces and municipalities.
+ */
+public class ResponseCache
+{
+    /**
+     * A rendered response
+     * @param body the JSON as UTF-8
+     * @param etag a strong entity tag for the body, quoted
+     */
+    public record Entry(byte[] body, String etag) {}
+
+    private static final Gson GSON = new Gson();
+
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Gets the rendered response for a key, rendering it the first time it is asked for.
+     * @param key names the response, like the route and its parameters
+     * @param value gives what to render, only called on the first request
+     * @return the rendered response
+     */
+    public Entry get(String key, Supplier<Object> value){
+        return entries.computeIfAbsent(key, k -> render(value.get()));
+    }
+
+    public int size(){
+        return entries.size();
+    }
+
+    static Entry render(Object value){
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (JsonWriter writer = new JsonWriter(new OutputStreamWriter(bytes, StandardCharsets.UTF_8))) {
+            GSON.toJson(value, value.getClass(), writer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        byte[] body = bytes.toByteArray();
+        return new Entry(body, '"' + Hashing.murmur3_128().hashBytes(body).toString() + '"');
+    }
+}
@@ -0,0 +1,140 @@
+package wethinkcode.places.changes;
+
+import java.util.*;
+import java.util.function.Function;
+
+import wethinkcode.model.Municipality;
+import wethinkcode.model.Place;
+import wethinkcode.model.Province;
+import wethinkcode.places.Places;
+import wethinkcode.places.PlacesDataset;
+
+/**
+ * ChangeLog : I remember what changed between the most recent versions of the places data, so
+ * that a client holding a copy of some version can catch up by fetching only the changes.
+ * <p>
+ * Each new dataset is compared with the one it replaces, counting every province, municipality
+ * and place in both, so repeated names are changed the right number of times. The changes since
+ * a version are the changes of every version after it added up, with a thing added in one and
+ * removed in a later one cancelling out. Only the last {@link #MAX_CHANGES} versions are kept;
+ * older versions, and versions before a dataset that was loaded lazily and so could not be
+ * compared without parsing all of it, get a {@link PlacesDelta#reset reset}.
+ */
+public class ChangeLog
+{
+    static final int MAX_CHANGES = 64;
+
+    private final Deque<PlacesDelta> changes = new ArrayDeque<>();
+    private long oldest = -1;
+    private long latest = -1;
+
+    /**
+     * Records the changes between a dataset and the one replacing it.
+     * @param previous the dataset being replaced, or null if there was none
+     * @param next the dataset replacing it
+     * @return the changes
+     */
+    public synchronized PlacesDelta record(PlacesDataset previous, PlacesDataset next){
+        latest = next.version();
+        if (previous == null || previous.isLazy() || next.isLazy()) {
+            changes.clear();
+            oldest = next.version();
+            return previous == null
+                    ? PlacesDelta.unchanged(next.version())
+                    : PlacesDelta.reset(previous.version(), next.version());
+        }
+
+        PlacesDelta delta = compare(previous.version(), previous.places(), next.version(), next.places());
+        changes.addLast(delta);
+        while (changes.size() > MAX_CHANGES) {
+            changes.removeFirst();
+        }
+        oldest = changes.getFirst().since();
+        return delta;
+    }
+
+    /**
+     * @param version a version of the data a client has
+     * @return everything that changed since then, or a reset if that is not known
+     */
+    public synchronized PlacesDelta since(long version){
+        if (version == latest) {
+            return PlacesDelta.unchanged(latest);
+        }
+        if (version < oldest || version > latest) {
+            return PlacesDelta.reset(version, latest);
+        }
+
+        Changes<Province> provinces = new Changes<>();
+        Changes<Municipality> municipalities = new Changes<>();
+        Changes<Place> places = new Changes<>();
+        for (PlacesDelta delta : changes) {
+            if (delta.since() < version) continue;
+            provinces.add(delta.addedProvinces(), delta.removedProvinces());
+            municipalities.add(delta.addedMunicipalities(), delta.removedMunicipalities());
+            places.add(delta.addedPlaces(), delta.removedPlaces());
+        }
+        return new PlacesDelta(
+                version, latest, false,
+                provinces.added(), provinces.removed(),
+                municipalities.added(), municipalities.removed(),
+                places.added(), places.removed()
+        );
+    }
+
+    /**
+     * @return the latest version recorded
+     */
+    public synchronized long latest(){
+        return latest;
+    }
+
+    static PlacesDelta compare(long since, Places before, long version, Places after){
+        Changes<Province> provinces = Changes.between(before, after, Places::provinces);
+        Changes<Municipality> municipalities = Changes.between(before, after, Places::municipalities);
+        Changes<Place> places = Changes.between(before, after, Places::places);
+        return new PlacesDelta(
+                since, version, false,
+                provinces.added(), provinces.removed(),
+                municipalities.added(), municipalities.removed(),
+                places.added(), places.removed()
+        );
+    }
+
+    /**
+     * How many more, or fewer, of each thing there are
+     */
+    private static class Changes<T>
+    {
+        private final Map<T, Integer> counts = new LinkedHashMap<>();
+
+        static <T> Changes<T> between(Places before, Places after, Function<Places, List<T>> things){
+            Changes<T> changes = new Changes<>();
+            changes.add(things.apply(after), things.apply(before));
+            return changes;
+        }
+
+        void add(List<T> added, List<T> removed){
+            added.forEach(thing -> counts.merge(thing, 1, Integer::sum));
+            removed.forEach(thing -> counts.merge(thing, -1, Integer::sum));
+        }
+
+        List<T> added(){
+            return repeated(1);
+        }
+
+        List<T> removed(){
+            return repeated(-1);
+        }
+
+        private List<T> repeated(int sign){
+            List<T> things = new ArrayList<>();
+            counts.forEach((thing, count) -> {
+                for (int i = 0; i < count * sign; i++) {
+                    things.add(thing);
+                }
+            });
+            return things;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package wethinkcode.places.changes;
+
+import java.util.List;
+
+import wethinkcode.model.Municipality;
+import wethinkcode.model.Place;
+import wethinkcode.model.Province;
+
+/**
+ * PlacesDelta : I am what changed in the places data between two versions of it.
+ * <p>
+ * Applying my removals and then my additions to a copy of the data at version
+ * <code>since</code> gives the data at <code>version</code>. When <code>reset</code> is true the
+ * changes are not known, because <code>since</code> is too old, is from before the service
+ * restarted, or the data was loaded lazily, and a copy must be fetched again in full.
+ *
+ * @param since the version the changes start from
+ * @param version the version the changes lead to
+ * @param reset true if the changes are not known
+ * @param addedProvinces provinces that were added
+ * @param removedProvinces provinces that were removed
+ * @param addedMunicipalities municipalities that were added
+ * @param removedMunicipalities municipalities that were removed
+ * @param addedPlaces places that were added
+ * @param removedPlaces places that were removed
+ */
+public record PlacesDelta(
+        long since,
+        long version,
+        boolean reset,
+        List<Province> addedProvinces,
+        List<Province> removedProvinces,
+        List<Municipality> addedMunicipalities,
+        List<Municipality> removedMunicipalities,
+        List<Place> addedPlaces,
+        List<Place> removedPlaces
+) {
+    /**
+     * @return a delta with no changes in it
+     */
+    static PlacesDelta unchanged(long version){
+        return new PlacesDelta(version, version, false, List.of(), List.of(), List.of(), List.of(), List.of(), List.of());
+    }
+
+    /**
+     * @return a delta saying the changes since a version are not known
+     */
+    static PlacesDelta reset(long since, long version){
+        return new PlacesDelta(since, version, true, List.of(), List.of(), List.of(), List.of(), List.of(), List.of());
+    }
+
+    /**
+     * @return true if nothing changed
+     */
+    public boolean isEmpty(){
+        return !reset
+                && addedProvinces.isEmpty() && removedProvinces.isEmpty()
+                && addedMunicipalities.isEmpty() && removedMunicipalities.isEmpty()
+                && addedPlaces.isEmpty() && removedPlaces.isEmpty();
+    }
+}
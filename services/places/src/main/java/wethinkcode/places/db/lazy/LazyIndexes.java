@@ -0,0 +1,141 @@
+package wethinkcode.places.db.lazy;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import wethinkcode.model.Place;
+import wethinkcode.model.Province;
+import wethinkcode.places.search.*;
+
+/**
+ * LazyIndexes : I answer the searches over a {@link LazyPlacesDb} one province at a time, through
+ * indexes over each province that are built when it is first searched and dropped along with it.
+ * <p>
+ * A search in one province only parses that province, so checking whether a place exists never
+ * parses any other. A search over every province asks each of them in turn, one at a time within
+ * the memory budget, and merges what they found in the order a single index would have found it.
+ * Searches by location skip the provinces whose places are all further away than what was
+ * already found, once each has been searched by location before.
+ * <p>
+ * Fuzzy results from several provinces are merged by {@link FuzzyIndex#closestTo}, so names
+ * that are equally far from the query may come in another order than from one index.
+ */
+public class LazyIndexes implements PrefixSearch, FuzzySearch, NearSearch, Membership
+{
+    private final LazyPlacesDb places;
+
+    public LazyIndexes(LazyPlacesDb places){
+        this.places = places;
+    }
+
+    @Override
+    public List<Place> search(String prefix, String province, String type, Predicate<Place> filter, int offset, int limit){
+        if (province != null) {
+            String exact = places.exactProvince(province);
+            return exact == null
+                    ? List.of()
+                    : places.prefixes(exact).search(prefix, null, type, filter, offset, limit);
+        }
+        int wanted = (int) Math.min(Integer.MAX_VALUE, (long) offset + limit);
+        List<Place> found = everywhere(exact -> places.prefixes(exact).search(prefix, null, type, filter, 0, wanted));
+        found.sort(PrefixIndex.order());
+        return page(found, offset, limit);
+    }
+
+    @Override
+    public int count(String prefix, String province, String type){
+        if (province != null) {
+            String exact = places.exactProvince(province);
+            return exact == null ? 0 : places.prefixes(exact).count(prefix, null, type);
+        }
+        int count = 0;
+        for (Province each : places.provinces()) {
+            count += places.prefixes(each.name()).count(prefix, null, type);
+        }
+        return count;
+    }
+
+    @Override
+    public List<Place> search(String query, int limit){
+        List<Place> found = everywhere(exact -> places.fuzzy(exact).search(query, limit));
+        found.sort(FuzzyIndex.closestTo(query));
+        return page(found, 0, limit);
+    }
+
+    @Override
+    public List<NearbyPlace> nearest(double latitude, double longitude, int k){
+        return near(latitude, longitude, Double.POSITIVE_INFINITY, k,
+                near -> near.nearest(latitude, longitude, k));
+    }
+
+    @Override
+    public List<NearbyPlace> within(double latitude, double longitude, double radiusKm, int limit){
+        return near(latitude, longitude, radiusKm, limit,
+                near -> near.within(latitude, longitude, radiusKm, limit));
+    }
+
+    @Override
+    public boolean hasProvince(String province){
+        return places.exactProvince(province) != null;
+    }
+
+    @Override
+    public boolean contains(String province, String place){
+        if (province == null || place == null) {
+            return false;
+        }
+        String exact = places.exactProvince(province);
+        return exact != null
+                && places.mightHavePlace(exact, place)
+                && places.membership(exact).contains(exact, place);
+    }
+
+    private <T> List<T> everywhere(Function<String, List<T>> search){
+        List<T> found = new ArrayList<>();
+        for (Province province : places.provinces()) {
+            found.addAll(search.apply(province.name()));
+        }
+        return found;
+    }
+
+    /**
+     * Asks the provinces closest to the location first, and stops at the first one that cannot
+     * have anything nearer than what was already found
+     */
+    private List<NearbyPlace> near(
+            double latitude,
+            double longitude,
+            double radiusKm,
+            int limit,
+            Function<NearIndex, List<NearbyPlace>> search
+    ){
+        if (limit < 1) {
+            return List.of();
+        }
+        List<String> provinces = new ArrayList<>();
+        places.provinces().forEach(province -> provinces.add(province.name()));
+        provinces.sort(Comparator.comparingDouble(province -> places.closestKm(province, latitude, longitude)));
+
+        List<NearbyPlace> found = new ArrayList<>();
+        for (String province : provinces) {
+            double closest = places.closestKm(province, latitude, longitude);
+            if (closest > radiusKm || (found.size() >= limit && closest > found.get(limit - 1).distance())) {
+                break;
+            }
+            found.addAll(search.apply(places.near(province)));
+            found.sort(Comparator.comparingDouble(NearbyPlace::distance));
+            if (found.size() > limit) {
+                found.subList(limit, found.size()).clear();
+            }
+        }
+        return found;
+    }
+
+    private static <T> List<T> page(List<T> found, int offset, int limit){
+        int from = Math.min(offset, found.size());
+        return found.subList(from, Math.min(found.size(), from + limit));
+    }
+}
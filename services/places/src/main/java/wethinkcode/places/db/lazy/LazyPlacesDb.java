@@ -0,0 +1,516 @@
+package wethinkcode.places.db.lazy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import com.google.common.base.Suppliers;
+import wethinkcode.model.Municipality;
+import wethinkcode.model.Place;
+import wethinkcode.model.Province;
+import wethinkcode.places.PlaceLocations;
+import wethinkcode.places.PlaceTypes;
+import wethinkcode.places.Places;
+import wethinkcode.places.ProvinceSegments;
+import wethinkcode.places.db.memory.NormalizedPlacesDb;
+import wethinkcode.places.search.FuzzyIndex;
+import wethinkcode.places.search.Names;
+import wethinkcode.places.search.NearIndex;
+import wethinkcode.places.search.PlaceMembership;
+import wethinkcode.places.search.PrefixIndex;
+
+/**
+ * I am a Places database that only parses a province when it is first asked about, for starting
+ * quickly and staying small when most requests are about one or two provinces.
+ * <p>
+ * At start up all I have is {@link ProvinceSegments}: where the rows of each province are in the
+ * CSV files, along with the provinces and municipalities themselves, so questions about those
+ * never parse anything. The first question about the places in a province reads its rows, keeps
+ * them deflated in memory and parses them into a database of their own. The indexes over a
+ * province are built the first time each is used, through {@link LazyIndexes}, and are kept and
+ * dropped along with the parsed province.
+ * <p>
+ * Names are matched regardless of case, accents and spacing, like {@link NormalizedPlacesDb}
+ * does, without folding more than the provinces I parse: each parsed province is wrapped in a
+ * NormalizedPlacesDb of its own, and the Bloom filters of the segments are over folded names.
+ * <p>
+ * Everything I keep counts against a memory budget. A parsed province is counted as a few times
+ * the size of its CSV rows, which is roughly what the Strings of the places take, and each index
+ * over it as a few ints for each of its places. When I am over the budget the least recently used
+ * provinces are dropped back to their deflated rows, along with their indexes, and are parsed
+ * again without touching the files. If that is not enough the deflated rows are dropped too and
+ * read again from the files when they are next needed. The province that was just asked for is
+ * always kept.
+ * <p>
+ * Questions about places that do not name a province, and lists of all the places, parse every
+ * province that might have the answer, one at a time, in the order the provinces were first seen.
+ */
+public class LazyPlacesDb implements Places
+{
+    /**
+     * Roughly how many bytes of heap a parsed place takes for each byte of its CSV row
+     */
+    static final int PARSED_BYTES_PER_CSV_BYTE = 3;
+
+    /**
+     * Roughly how many bytes of heap each index over a province takes for each of its places
+     */
+    static final int INDEX_BYTES_PER_PLACE = 32;
+
+    private final ProvinceSegments segments;
+    private final long budget;
+    private final List<Province> provinces;
+    private final List<Municipality> municipalities;
+    private final Map<String, String> provinceNames = new HashMap<>();
+    private final Map<String, String> municipalityNames = new HashMap<>();
+    private final Set<String> exactMunicipalityNames = new HashSet<>();
+    private final Map<String, Segment> resident = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * @param segments where the rows of each province are
+     * @param budget the most bytes to keep parsed and deflated provinces and their indexes in
+     */
+    public LazyPlacesDb(ProvinceSegments segments, long budget){
+        this.segments = segments;
+        this.budget = budget;
+        this.provinces = segments.provinces();
+        this.municipalities = segments.municipalities();
+        provinces.forEach(province -> provinceNames.putIfAbsent(Names.fold(province.name()), province.name()));
+        municipalities.forEach(municipality -> {
+            exactMunicipalityNames.add(municipality.name());
+            municipalityNames.putIfAbsent(Names.fold(municipality.name()), municipality.name());
+        });
+    }
+
+    private Segment segment(String province){
+        synchronized (resident) {
+            return resident.computeIfAbsent(province, name -> new Segment(segments.bytes(name)));
+        }
+    }
+
+    /**
+     * Gets one province, parsing it if it is not resident, and then drops other provinces until
+     * I am within my budget.
+     */
+    private Parsed parsed(String province){
+        Segment segment = segment(province);
+        Parsed parsed = segment.parsed;
+        if (parsed == null) {
+            parsed = segment.load(province);
+            evict(segment);
+        }
+        return parsed;
+    }
+
+    /**
+     * Gets an index over one province, building it if it has not been used since the province
+     * was parsed, and then drops other provinces until I am within my budget.
+     */
+    private <T> T index(String province, Function<Parsed, Supplier<T>> which){
+        Segment segment = segment(province);
+        Parsed parsed = parsed(province);
+        long before = parsed.indexBytes.get();
+        T index = which.apply(parsed).get();
+        if (parsed.indexBytes.get() != before) {
+            evict(segment);
+        }
+        return index;
+    }
+
+    private void evict(Segment keep){
+        synchronized (resident) {
+            long size = residentBytes();
+            for (Segment segment : resident.values()) {
+                if (size <= budget) return;
+                Parsed parsed = segment.parsed;
+                if (segment != keep && parsed != null) {
+                    size -= segment.parsedBytes(parsed);
+                    segment.parsed = null;
+                }
+            }
+            for (Segment segment : resident.values()) {
+                if (size <= budget) return;
+                if (segment != keep && segment.parsed == null && segment.deflated != null) {
+                    size -= segment.deflatedBytes;
+                    segment.deflated = null;
+                    segment.deflatedBytes = 0;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return roughly how many bytes the resident provinces take, parsed and deflated, along
+     * with their indexes
+     */
+    public long residentBytes(){
+        synchronized (resident) {
+            long size = 0;
+            for (Segment segment : resident.values()) {
+                size += segment.size();
+            }
+            return size;
+        }
+    }
+
+    /**
+     * @return the names of the provinces that are parsed right now
+     */
+    public Set<String> parsedProvinces(){
+        synchronized (resident) {
+            Set<String> parsed = new LinkedHashSet<>();
+            resident.forEach((name, segment) -> {
+                if (segment.parsed != null) parsed.add(name);
+            });
+            return parsed;
+        }
+    }
+
+    /**
+     * @return the names of the provinces whose rows are kept deflated right now
+     */
+    public Set<String> deflatedProvinces(){
+        synchronized (resident) {
+            Set<String> deflated = new LinkedHashSet<>();
+            resident.forEach((name, segment) -> {
+                if (segment.deflated != null) deflated.add(name);
+            });
+            return deflated;
+        }
+    }
+
+    /**
+     * @param name the name of a province, spelled any way
+     * @return the exact name of the province, or null if there is no such province
+     */
+    String exactProvince(String name){
+        if (name == null || segments.hasProvince(name)) {
+            return name;
+        }
+        return provinceNames.get(Names.fold(name));
+    }
+
+    private String exactMunicipality(String name){
+        if (name == null || exactMunicipalityNames.contains(name)) {
+            return name;
+        }
+        return municipalityNames.get(Names.fold(name));
+    }
+
+    /**
+     * @param province the exact name of a province
+     * @param place the name of a place, spelled any way
+     * @return false if there is certainly no place with that name in the province
+     */
+    boolean mightHavePlace(String province, String place){
+        return segments.mightHavePlace(province, place);
+    }
+
+    /**
+     * @param province the exact name of a province
+     * @return the prefix index over the places in the province
+     */
+    PrefixIndex prefixes(String province){
+        return index(province, parsed -> parsed.prefixes);
+    }
+
+    /**
+     * @param province the exact name of a province
+     * @return the fuzzy index over the places in the province
+     */
+    FuzzyIndex fuzzy(String province){
+        return index(province, parsed -> parsed.fuzzy);
+    }
+
+    /**
+     * @param province the exact name of a province
+     * @return the near index over the places in the province
+     */
+    NearIndex near(String province){
+        NearIndex near = index(province, parsed -> parsed.near);
+        segment(province).bounds = near.bounds();
+        return near;
+    }
+
+    /**
+     * @param province the exact name of a province
+     * @return tells whether a place exists in the province
+     */
+    PlaceMembership membership(String province){
+        return index(province, parsed -> parsed.membership);
+    }
+
+    /**
+     * @param province the exact name of a province
+     * @param latitude of a location, in degrees
+     * @param longitude of a location, in degrees
+     * @return at most the distance in km from the location to the places in the province, which
+     * is 0 until the places have been searched by location once
+     */
+    double closestKm(String province, double latitude, double longitude){
+        NearIndex.Bounds bounds = segment(province).bounds;
+        return bounds == null ? 0 : bounds.closestKm(latitude, longitude);
+    }
+
+    private List<String> provincesWithMunicipality(String municipality){
+        List<String> found = new ArrayList<>();
+        for (Municipality candidate : municipalities) {
+            if (candidate.name().equals(municipality) && !found.contains(candidate.province())) {
+                found.add(candidate.province());
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public List<Province> provinces(){
+        return provinces;
+    }
+
+    @Override
+    public List<Municipality> municipalities(){
+        return municipalities;
+    }
+
+    @Override
+    public List<Place> places(){
+        List<Place> places = new ArrayList<>(size());
+        for (Province province : provinces) {
+            places.addAll(parsed(province.name()).places.places());
+        }
+        return places;
+    }
+
+    @Override
+    public PlaceLocations locations(){
+        float[] latitudes = new float[size()];
+        float[] longitudes = new float[size()];
+        int row = 0;
+        for (Province province : provinces) {
+            PlaceLocations locations = parsed(province.name()).places.locations();
+            for (int i = 0; i < locations.size(); i++, row++) {
+                latitudes[row] = locations.latitude(i);
+                longitudes[row] = locations.longitude(i);
+            }
+        }
+        return new PlaceLocations(latitudes, longitudes);
+    }
+
+    /**
+     * Each province is parsed with its own numbering of the types, so the types of every
+     * province are numbered again in the order they are first seen
+     */
+    @Override
+    public PlaceTypes types(){
+        List<String> names = new ArrayList<>();
+        byte[] types = new byte[size()];
+        int row = 0;
+        for (Province province : provinces) {
+            PlaceTypes some = parsed(province.name()).places.types();
+            byte[] renumbered = new byte[some.names().size()];
+            for (int i = 0; i < renumbered.length; i++) {
+                String name = some.names().get(i);
+                if (!names.contains(name)) {
+                    names.add(name);
+                }
+                renumbered[i] = (byte) names.indexOf(name);
+            }
+            for (int i = 0; i < some.size(); i++, row++) {
+                byte type = some.code(i);
+                types[row] = type == PlaceTypes.UNKNOWN ? PlaceTypes.UNKNOWN : renumbered[type];
+            }
+        }
+        return new PlaceTypes(names, types);
+    }
+
+    @Override
+    public List<Municipality> municipalitiesIn(String province) {
+        String exact = exactProvince(province);
+        return municipalities.stream()
+                .filter(municipality -> municipality.province().equals(exact))
+                .toList();
+    }
+
+    @Override
+    public List<Place> placesInMunicipality(String municipality) {
+        String exact = exactMunicipality(municipality);
+        List<Place> places = new ArrayList<>();
+        for (String province : provincesWithMunicipality(exact)) {
+            places.addAll(parsed(province).places.placesInMunicipality(exact));
+        }
+        return places;
+    }
+
+    @Override
+    public List<Place> placesInProvince(String province) {
+        String exact = exactProvince(province);
+        return exact == null ? List.of() : parsed(exact).places.placesInProvince(exact);
+    }
+
+    @Override
+    public Optional<Municipality> municipality(String name) {
+        String exact = exactMunicipality(name);
+        return municipalities.stream()
+                .filter(municipality -> municipality.name().equals(exact))
+                .findFirst();
+    }
+
+    /**
+     * Looks for the exact name in every province it might be in first, and only then for the
+     * name spelled another way, so that a place with the exact name is found wherever it is.
+     */
+    @Override
+    public Optional<Place> place(String name) {
+        for (boolean exact : new boolean[]{true, false}) {
+            for (Province province : provinces) {
+                if (!segments.mightHavePlace(province.name(), name)) continue;
+                NormalizedPlacesDb places = parsed(province.name()).places;
+                Optional<Place> place = exact ? places.exact().place(name) : places.place(name);
+                if (place.isPresent()) {
+                    return place;
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public Optional<Province> province(String name) {
+        String exact = exactProvince(name);
+        return exact == null ? Optional.empty() : Optional.of(new Province(exact));
+    }
+
+    @Override
+    public int size(){
+        return segments.size();
+    }
+
+    /**
+     * A parsed province and the indexes over it, each built the first time it is used
+     */
+    private static class Parsed
+    {
+        final NormalizedPlacesDb places;
+        final AtomicLong indexBytes = new AtomicLong();
+        final Supplier<PrefixIndex> prefixes;
+        final Supplier<FuzzyIndex> fuzzy;
+        final Supplier<NearIndex> near;
+        final Supplier<PlaceMembership> membership;
+
+        Parsed(Places province){
+            places = new NormalizedPlacesDb(province);
+            prefixes = index(PrefixIndex::new);
+            fuzzy = index(FuzzyIndex::new);
+            near = index(NearIndex::new);
+            membership = index(PlaceMembership::new);
+        }
+
+        private <T> Supplier<T> index(Function<Places, T> build){
+            return Suppliers.memoize(() -> {
+                T index = build.apply(places);
+                indexBytes.addAndGet((long) places.size() * INDEX_BYTES_PER_PLACE);
+                return index;
+            });
+        }
+    }
+
+    /**
+     * What is resident of one province: its parsed places, its deflated rows, both or neither.
+     * The box around its places is kept once it is known, however little else is.
+     */
+    private class Segment
+    {
+        final long csvBytes;
+        volatile Parsed parsed;
+        volatile List<byte[]> deflated;
+        volatile long deflatedBytes;
+        volatile NearIndex.Bounds bounds;
+
+        Segment(long csvBytes){
+            this.csvBytes = csvBytes;
+        }
+
+        synchronized Parsed load(String province){
+            if (parsed != null) {
+                return parsed;
+            }
+            try {
+                List<byte[]> rows;
+                if (deflated != null) {
+                    rows = inflate(deflated);
+                } else {
+                    rows = segments.read(province);
+                    deflated = deflate(rows);
+                    deflatedBytes = deflated.stream().mapToLong(part -> part.length).sum();
+                }
+                parsed = new Parsed(segments.parse(rows));
+                return parsed;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        long parsedBytes(Parsed parsed){
+            return csvBytes * PARSED_BYTES_PER_CSV_BYTE + parsed.indexBytes.get();
+        }
+
+        long size(){
+            Parsed current = parsed;
+            return (current == null ? 0 : parsedBytes(current)) + deflatedBytes;
+        }
+    }
+
+    private static List<byte[]> deflate(List<byte[]> parts){
+        List<byte[]> deflated = new ArrayList<>(parts.size());
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            byte[] buffer = new byte[1 << 16];
+            for (byte[] part : parts) {
+                deflater.reset();
+                deflater.setInput(part);
+                deflater.finish();
+                ByteArrayOutputStream out = new ByteArrayOutputStream(part.length / 4 + 16);
+                while (!deflater.finished()) {
+                    out.write(buffer, 0, deflater.deflate(buffer));
+                }
+                deflated.add(out.toByteArray());
+            }
+        } finally {
+            deflater.end();
+        }
+        return deflated;
+    }
+
+    private static List<byte[]> inflate(List<byte[]> parts) throws IOException {
+        List<byte[]> inflated = new ArrayList<>(parts.size());
+        Inflater inflater = new Inflater();
+        try {
+            byte[] buffer = new byte[1 << 16];
+            for (byte[] part : parts) {
+                inflater.reset();
+                inflater.setInput(part);
+                ByteArrayOutputStream out = new ByteArrayOutputStream(part.length * 4);
+                while (!inflater.finished()) {
+                    int length = inflater.inflate(buffer);
+                    if (length == 0 && inflater.needsInput()) {
+                        throw new IOException("The deflated rows of a province are cut short");
+                    }
+                    out.write(buffer, 0, length);
+                }
+                inflated.add(out.toByteArray());
+            }
+        } catch (DataFormatException e) {
+            throw new IOException(e);
+        } finally {
+            inflater.end();
+        }
+        return inflated;
+    }
+}
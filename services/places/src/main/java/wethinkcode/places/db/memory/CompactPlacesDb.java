@@ -0,0 +1,184 @@
+package wethinkcode.places.db.memory;
+
+import java.nio.IntBuffer;
+import java.util.*;
+
+import wethinkcode.model.Municipality;
+import wethinkcode.model.Place;
+import wethinkcode.model.Province;
+import wethinkcode.places.PlaceLocations;
+import wethinkcode.places.PlaceTypes;
+import wethinkcode.places.Places;
+
+/**
+ * I am an in-memory Places database that keeps as little on the heap as I can.
+ * <p>
+ * Every distinct name is stored once, in a {@link NameDictionary}, and everything else refers to
+ * names by their index in that dictionary. Places and municipalities are kept as parallel int arrays and
+ * the "in province" and "in municipality" lookups are kept as offsets into sorted int arrays.
+ * The Place, Municipality and Province records are only created when a query asks for them.
+ * <p>
+ * Where a name appears more than once, the first one in the source data wins, which matches
+ * the behaviour of {@link PlacesDb}.
+ */
+public class CompactPlacesDb implements Places
+{
+    private static final int NONE = -1;
+
+    private final NameDictionary names;
+
+    private final int[] provinceName;
+
+    private final int[] municipalityName;
+    private final int[] municipalityProvince;
+
+    private final int[] placeName;
+    private final int[] placeMunicipality;
+    private final int[] placeProvince;
+    private final PlaceLocations locations;
+    private final PlaceTypes types;
+
+    private final int[] firstProvinceNamed;
+    private final int[] firstMunicipalityNamed;
+    private final int[] firstPlaceNamed;
+
+    private final Grouping municipalitiesByProvince;
+    private final Grouping placesByMunicipality;
+    private final Grouping placesByProvince;
+
+    public CompactPlacesDb(List<Province> provinces, List<Municipality> municipalities, List<Place> places){
+        this(provinces, municipalities, places, PlaceLocations.unknown(places.size()), PlaceTypes.unknown(places.size()));
+    }
+
+    public CompactPlacesDb(
+            List<Province> provinces,
+            List<Municipality> municipalities,
+            List<Place> places,
+            PlaceLocations locations,
+            PlaceTypes types
+    ){
+        this.locations = locations;
+        this.types = types;
+        names = new NameDictionary();
+
+        provinceName = new int[provinces.size()];
+        for (int i = 0; i < provinces.size(); i++) {
+            provinceName[i] = names.id(provinces.get(i).name());
+        }
+
+        municipalityName = new int[municipalities.size()];
+        municipalityProvince = new int[municipalities.size()];
+        for (int i = 0; i < municipalities.size(); i++) {
+            municipalityName[i] = names.id(municipalities.get(i).name());
+            municipalityProvince[i] = names.id(municipalities.get(i).province());
+        }
+
+        placeName = new int[places.size()];
+        placeMunicipality = new int[places.size()];
+        for (int i = 0; i < places.size(); i++) {
+            placeName[i] = names.id(places.get(i).name());
+            placeMunicipality[i] = names.id(places.get(i).municipality());
+        }
+
+        names.trim();
+
+        firstProvinceNamed = NameDictionary.firstWithName(provinceName, names.size());
+        firstMunicipalityNamed = NameDictionary.firstWithName(municipalityName, names.size());
+        firstPlaceNamed = NameDictionary.firstWithName(placeName, names.size());
+
+        placeProvince = new int[places.size()];
+        for (int i = 0; i < placeProvince.length; i++) {
+            int municipality = firstMunicipalityNamed[placeMunicipality[i]];
+            placeProvince[i] = municipality == NONE ? NONE : municipalityProvince[municipality];
+        }
+
+        municipalitiesByProvince = new Grouping(municipalityProvince, names.size(), IntBuffer::wrap);
+        placesByMunicipality = new Grouping(placeMunicipality, names.size(), IntBuffer::wrap);
+        placesByProvince = new Grouping(placeProvince, names.size(), IntBuffer::wrap);
+    }
+
+    private int lookup(String name){
+        return names.lookup(name);
+    }
+
+    private Province province(int index){
+        return new Province(names.name(provinceName[index]));
+    }
+
+    private Municipality municipality(int index){
+        return new Municipality(names.name(municipalityName[index]), names.name(municipalityProvince[index]));
+    }
+
+    private Place place(int index){
+        return new Place(names.name(placeName[index]), names.name(placeMunicipality[index]));
+    }
+
+    @Override
+    public List<Province> provinces(){
+        return new Materialized<>(provinceName.length, i -> i, this::province);
+    }
+
+    @Override
+    public List<Municipality> municipalities(){
+        return new Materialized<>(municipalityName.length, i -> i, this::municipality);
+    }
+
+    @Override
+    public List<Place> places(){
+        return new Materialized<>(placeName.length, i -> i, this::place);
+    }
+
+    @Override
+    public PlaceLocations locations(){
+        return locations;
+    }
+
+    @Override
+    public PlaceTypes types(){
+        return types;
+    }
+
+    @Override
+    public List<Municipality> municipalitiesIn(String province) {
+        return municipalitiesByProvince.get(lookup(province), this::municipality);
+    }
+
+    @Override
+    public List<Place> placesInMunicipality(String municipality) {
+        return placesByMunicipality.get(lookup(municipality), this::place);
+    }
+
+    @Override
+    public List<Place> placesInProvince(String province) {
+        return placesByProvince.get(lookup(province), this::place);
+    }
+
+    @Override
+    public Optional<Municipality> municipality(String name) {
+        int id = lookup(name);
+        return id == NONE || firstMunicipalityNamed[id] == NONE
+                ? Optional.empty()
+                : Optional.of(municipality(firstMunicipalityNamed[id]));
+    }
+
+    @Override
+    public Optional<Place> place(String name) {
+        int id = lookup(name);
+        return id == NONE || firstPlaceNamed[id] == NONE
+                ? Optional.empty()
+                : Optional.of(place(firstPlaceNamed[id]));
+    }
+
+    @Override
+    public Optional<Province> province(String name) {
+        int id = lookup(name);
+        return id == NONE || firstProvinceNamed[id] == NONE
+                ? Optional.empty()
+                : Optional.of(province(firstProvinceNamed[id]));
+    }
+
+    @Override
+    public int size(){
+        return placeName.length;
+    }
+}
@@ -0,0 +1,52 @@
+package wethinkcode.places.db.memory;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+/**
+ * Groups the indexes of rows by a key, keeping the rows of each key in their original order.
+ * The rows for key k are <code>rows[offsets[k]]</code> up to <code>rows[offsets[k + 1]]</code>.
+ * Rows whose key is {@link NameDictionary#NONE} are left out.
+ * <p>
+ * The offsets and rows are kept in IntBuffers made by the store, so that a store can keep them
+ * on the heap or outside of it.
+ */
+class Grouping
+{
+    private final IntBuffer offsets;
+    private final IntBuffer rows;
+
+    /**
+     * @param keys the key of each row
+     * @param keyCount how many keys there are
+     * @param store keeps an array of ints, wrapping it or copying it out
+     */
+    Grouping(int[] keys, int keyCount, Function<int[], IntBuffer> store){
+        int[] counts = new int[keyCount + 1];
+        for (int key : keys) {
+            if (key != NameDictionary.NONE) counts[key + 1]++;
+        }
+        for (int k = 0; k < keyCount; k++) {
+            counts[k + 1] += counts[k];
+        }
+
+        int[] next = Arrays.copyOf(counts, keyCount);
+        int[] grouped = new int[counts[keyCount]];
+        for (int row = 0; row < keys.length; row++) {
+            if (keys[row] != NameDictionary.NONE) grouped[next[keys[row]]++] = row;
+        }
+        offsets = store.apply(counts);
+        rows = store.apply(grouped);
+    }
+
+    <T> List<T> get(int key, IntFunction<T> materialize){
+        if (key == NameDictionary.NONE) {
+            return List.of();
+        }
+        int from = offsets.get(key);
+        return new Materialized<>(offsets.get(key + 1) - from, i -> rows.get(from + i), materialize);
+    }
+}
@@ -0,0 +1,137 @@
+package wethinkcode.places.db.memory;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import wethinkcode.model.Municipality;
+import wethinkcode.model.Place;
+import wethinkcode.model.Province;
+import wethinkcode.places.PlaceLocations;
+import wethinkcode.places.PlaceTypes;
+import wethinkcode.places.Places;
+
+/**
+ * I am an in-memory Places database that builds all of my lookup tables once, when I am created.
+ * <p>
+ * Every query is then a single hash lookup, instead of a scan over the lists like {@link PlacesDb}.
+ * Where a name appears more than once, the first one in the source data wins, which matches
+ * the behaviour of {@link PlacesDb}.
+ */
+public class IndexedPlacesDb implements Places
+{
+    final List<Province> provinces;
+    final List<Municipality> municipalities;
+    final List<Place> places;
+    final PlaceLocations locations;
+    final PlaceTypes types;
+
+    private final Map<String, Province> provinceByName = new HashMap<>();
+    private final Map<String, Municipality> municipalityByName = new HashMap<>();
+    private final Map<String, Place> placeByName = new HashMap<>();
+
+    private final ImmutableListMultimap<String, Municipality> municipalitiesByProvince;
+    private final ImmutableListMultimap<String, Place> placesByMunicipality;
+    private final ImmutableListMultimap<String, Place> placesByProvince;
+
+    public IndexedPlacesDb(List<Province> provinces, List<Municipality> municipalities, List<Place> places){
+        this(provinces, municipalities, places, PlaceLocations.unknown(places.size()), PlaceTypes.unknown(places.size()));
+    }
+
+    public IndexedPlacesDb(
+            List<Province> provinces,
+            List<Municipality> municipalities,
+            List<Place> places,
+            PlaceLocations locations,
+            PlaceTypes types
+    ){
+        this.provinces = ImmutableList.copyOf(provinces);
+        this.municipalities = ImmutableList.copyOf(municipalities);
+        this.places = ImmutableList.copyOf(places);
+        this.locations = locations;
+        this.types = types;
+
+        provinces.forEach(province -> provinceByName.putIfAbsent(province.name(), province));
+        municipalities.forEach(municipality -> municipalityByName.putIfAbsent(municipality.name(), municipality));
+        places.forEach(place -> placeByName.putIfAbsent(place.name(), place));
+
+        ImmutableListMultimap.Builder<String, Municipality> inProvince = ImmutableListMultimap.builder();
+        municipalities.forEach(municipality -> inProvince.put(municipality.province(), municipality));
+        municipalitiesByProvince = inProvince.build();
+
+        ImmutableListMultimap.Builder<String, Place> inMunicipality = ImmutableListMultimap.builder();
+        ImmutableListMultimap.Builder<String, Place> placesInProvince = ImmutableListMultimap.builder();
+        places.forEach(place -> {
+            inMunicipality.put(place.municipality(), place);
+            Municipality municipality = municipalityByName.get(place.municipality());
+            if (municipality != null){
+                placesInProvince.put(municipality.province(), place);
+            }
+        });
+        placesByMunicipality = inMunicipality.build();
+        placesByProvince = placesInProvince.build();
+    }
+
+    @Override
+    public List<Province> provinces(){
+        return provinces;
+    }
+
+    @Override
+    public List<Municipality> municipalities(){
+        return municipalities;
+    }
+
+    @Override
+    public List<Place> places(){
+        return places;
+    }
+
+    @Override
+    public PlaceLocations locations(){
+        return locations;
+    }
+
+    @Override
+    public PlaceTypes types(){
+        return types;
+    }
+
+    @Override
+    public List<Municipality> municipalitiesIn(String province) {
+        return municipalitiesByProvince.get(province);
+    }
+
+    @Override
+    public List<Place> placesInMunicipality(String municipality) {
+        return placesByMunicipality.get(municipality);
+    }
+
+    @Override
+    public List<Place> placesInProvince(String province) {
+        return placesByProvince.get(province);
+    }
+
+    @Override
+    public Optional<Municipality> municipality(String name) {
+        return Optional.ofNullable(municipalityByName.get(name));
+    }
+
+    @Override
+    public Optional<Place> place(String name) {
+        return Optional.ofNullable(placeByName.get(name));
+    }
+
+    @Override
+    public Optional<Province> province(String name) {
+        return Optional.ofNullable(provinceByName.get(name));
+    }
+
+    @Override
+    public int size(){
+        return places.size();
+    }
+}
@@ -0,0 +1,34 @@
+package wethinkcode.places.db.memory;
+
+import java.util.AbstractList;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.function.IntFunction;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * A read-only list that creates each record from its row index only when it is asked for.
+ */
+class Materialized<T> extends AbstractList<T> implements RandomAccess
+{
+    private final int size;
+    private final IntUnaryOperator row;
+    private final IntFunction<T> materialize;
+
+    Materialized(int size, IntUnaryOperator row, IntFunction<T> materialize){
+        this.size = size;
+        this.row = row;
+        this.materialize = materialize;
+    }
+
+    @Override
+    public T get(int index) {
+        Objects.checkIndex(index, size);
+        return materialize.apply(row.applyAsInt(index));
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+}
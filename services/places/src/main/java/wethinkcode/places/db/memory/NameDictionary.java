@@ -0,0 +1,111 @@
+package wethinkcode.places.db.memory;
+
+import java.util.Arrays;
+
+/**
+ * I give each distinct name an index, in the order the names are first added, and find the index
+ * of a name again.
+ * <p>
+ * The names are kept in an array and found through an open-addressed hash table of their indexes,
+ * kept at most half full, so there is no boxed entry for each name as there would be in a map.
+ */
+class NameDictionary
+{
+    static final int NONE = -1;
+    private static final int EMPTY = 0;
+
+    private String[] names = new String[16];
+    private int size;
+    private int[] table = new int[32];
+
+    /**
+     * @param name a name
+     * @return the index of the name, adding it if it is new
+     */
+    int id(String name){
+        int slot = slot(name);
+        if (table[slot] != EMPTY) {
+            return table[slot] - 1;
+        }
+        if (size == names.length) {
+            names = Arrays.copyOf(names, size * 2);
+        }
+        names[size] = name;
+        table[slot] = ++size;
+        if (size * 2 > table.length) {
+            rehash(table.length * 2);
+        }
+        return size - 1;
+    }
+
+    /**
+     * @param name a name
+     * @return the index of the name, or {@link #NONE} if it was never added
+     */
+    int lookup(String name){
+        int entry = table[slot(name)];
+        return entry == EMPTY ? NONE : entry - 1;
+    }
+
+    String name(int id){
+        return names[id];
+    }
+
+    int size(){
+        return size;
+    }
+
+    /**
+     * Drops the room kept for names that were never added, once all of them are.
+     */
+    void trim(){
+        names = Arrays.copyOf(names, size);
+    }
+
+    /**
+     * @param nameIds the name of each row
+     * @param nameCount how many names there are
+     * @return for each name, the first row with it, or {@link #NONE} if there is none
+     */
+    static int[] firstWithName(int[] nameIds, int nameCount){
+        int[] first = new int[nameCount];
+        Arrays.fill(first, NONE);
+        for (int i = nameIds.length - 1; i >= 0; i--) {
+            first[nameIds[i]] = i;
+        }
+        return first;
+    }
+
+    /**
+     * @return the slot that holds the name, or the empty slot where it would go
+     */
+    private int slot(String name){
+        int mask = table.length - 1;
+        int slot = hash(name) & mask;
+        int entry;
+        while ((entry = table[slot]) != EMPTY && !names[entry - 1].equals(name)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void rehash(int capacity){
+        table = new int[capacity];
+        int mask = capacity - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = hash(names[id]) & mask;
+            while (table[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = id + 1;
+        }
+    }
+
+    /**
+     * The string hash with its high bits mixed in, so that neighbouring slots stay apart
+     */
+    private static int hash(String name){
+        int hash = name.hashCode();
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,145 @@
+package wethinkcode.places.db.memory;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+import com.google.common.base.Suppliers;
+
+import wethinkcode.model.Municipality;
+import wethinkcode.model.Place;
+import wethinkcode.model.Province;
+import wethinkcode.places.PlaceLocations;
+import wethinkcode.places.PlaceTypes;
+import wethinkcode.places.Places;
+import wethinkcode.places.search.Names;
+import wethinkcode.places.search.RowTable;
+
+/**
+ * I am a Places database that also finds names spelled with different case, accents or spacing,
+ * by wrapping another database.
+ * <p>
+ * When I am created I {@link Names#fold fold} every province, municipality and place name once,
+ * and keep a map from each folded name to the exact name it came from. A lookup first asks the
+ * wrapped database for the exact name, and only if that finds nothing folds the one name it was
+ * given and asks again with the exact name it stands for. Where several exact names fold to the
+ * same key, the first one in the source data wins, like everywhere else.
+ * <p>
+ * Place names are only folded the first time a place is not found by its exact name, so that
+ * wrapping a database which parses its places lazily does not parse them all up front. There are
+ * far more places than anything else, so rather than a map of their names I keep a
+ * {@link RowTable} that finds the first place whose folded name matches, holding only ints for
+ * each place and leaving the names wherever the wrapped database keeps them.
+ */
+public class NormalizedPlacesDb implements Places
+{
+    private final Places places;
+    private final Map<String, String> provinceNames = new HashMap<>();
+    private final Map<String, String> municipalityNames = new HashMap<>();
+    private final Supplier<UnaryOperator<String>> placeNames;
+
+    public NormalizedPlacesDb(Places places){
+        this.places = places;
+        places.provinces().forEach(province -> index(province.name(), provinceNames));
+        places.municipalities().forEach(municipality -> index(municipality.name(), municipalityNames));
+        placeNames = Suppliers.memoize(() -> {
+            List<Place> all = places.places();
+            RowTable names = new RowTable(all.size(), row -> Names.fold(all.get(row).name()));
+            return folded -> {
+                int row = names.find(folded);
+                return row < 0 ? null : all.get(row).name();
+            };
+        });
+    }
+
+    private static void index(String name, Map<String, String> names){
+        names.putIfAbsent(Names.fold(name), name);
+    }
+
+    /**
+     * Looks a name up exactly, and then by its folded form if that found nothing
+     */
+    private <T> T lookup(String name, Map<String, String> names, Function<String, T> query, T nothing){
+        return lookup(name, () -> names::get, query, nothing);
+    }
+
+    private <T> T lookup(String name, Supplier<UnaryOperator<String>> names, Function<String, T> query, T nothing){
+        T exact = query.apply(name);
+        if (!exact.equals(nothing)) {
+            return exact;
+        }
+        String canonical = names.get().apply(Names.fold(name));
+        return canonical == null || canonical.equals(name) ? exact : query.apply(canonical);
+    }
+
+    /**
+     * @return the places database I wrap
+     */
+    public Places exact(){
+        return places;
+    }
+
+    @Override
+    public List<Province> provinces(){
+        return places.provinces();
+    }
+
+    @Override
+    public List<Municipality> municipalities(){
+        return places.municipalities();
+    }
+
+    @Override
+    public List<Place> places(){
+        return places.places();
+    }
+
+    @Override
+    public PlaceLocations locations(){
+        return places.locations();
+    }
+
+    @Override
+    public PlaceTypes types(){
+        return places.types();
+    }
+
+    @Override
+    public List<Municipality> municipalitiesIn(String province) {
+        return lookup(province, provinceNames, places::municipalitiesIn, List.of());
+    }
+
+    @Override
+    public List<Place> placesInMunicipality(String municipality) {
+        return lookup(municipality, municipalityNames, places::placesInMunicipality, List.of());
+    }
+
+    @Override
+    public List<Place> placesInProvince(String province) {
+        return lookup(province, provinceNames, places::placesInProvince, List.of());
+    }
+
+    @Override
+    public Optional<Municipality> municipality(String name) {
+        return lookup(name, municipalityNames, places::municipality, Optional.empty());
+    }
+
+    @Override
+    public Optional<Place> place(String name) {
+        return lookup(name, placeNames, places::place, Optional.empty());
+    }
+
+    @Override
+    public Optional<Province> province(String name) {
+        return lookup(name, provinceNames, places::province, Optional.empty());
+    }
+
+    @Override
+    public int size(){
+        return places.size();
+    }
+}
@@ -0,0 +1,282 @@
+package wethinkcode.places.db.memory;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import wethinkcode.model.Municipality;
+import wethinkcode.model.Place;
+import wethinkcode.model.Province;
+import wethinkcode.places.PlaceLocations;
+import wethinkcode.places.PlaceTypes;
+import wethinkcode.places.Places;
+
+/**
+ * I am an in-memory Places database that keeps my data outside of the Java heap, so the
+ * garbage collector never has to look at it.
+ * <p>
+ * Like {@link CompactPlacesDb}, every distinct name is stored once and everything else refers to
+ * names by their index. Here though, the names are UTF-8 bytes packed into one direct ByteBuffer
+ * with an array of offsets, and all the int columns and lookup tables are direct IntBuffers. Names
+ * are found through an open-addressed hash table of name indexes, compared as bytes. The records
+ * are only created, on the heap, when a query asks for them.
+ * <p>
+ * Where a name appears more than once, the first one in the source data wins, which matches
+ * the behaviour of {@link PlacesDb}.
+ */
+public class OffHeapPlacesDb implements Places
+{
+    private static final int NONE = -1;
+    private static final int EMPTY = 0;
+
+    private final ByteBuffer nameBytes;
+    private final IntBuffer nameOffsets;
+    private final IntBuffer nameTable;
+    private final int tableMask;
+
+    private final int provinceCount;
+    private final int municipalityCount;
+    private final int placeCount;
+
+    private final IntBuffer provinceName;
+
+    private final IntBuffer municipalityName;
+    private final IntBuffer municipalityProvince;
+
+    private final IntBuffer placeName;
+    private final IntBuffer placeMunicipality;
+
+    private final IntBuffer firstProvinceNamed;
+    private final IntBuffer firstMunicipalityNamed;
+    private final IntBuffer firstPlaceNamed;
+
+    private final Grouping municipalitiesByProvince;
+    private final Grouping placesByMunicipality;
+    private final Grouping placesByProvince;
+
+    private final PlaceLocations locations;
+    private final PlaceTypes types;
+
+    public OffHeapPlacesDb(List<Province> provinces, List<Municipality> municipalities, List<Place> places){
+        this(provinces, municipalities, places, PlaceLocations.unknown(places.size()), PlaceTypes.unknown(places.size()));
+    }
+
+    public OffHeapPlacesDb(
+            List<Province> provinces,
+            List<Municipality> municipalities,
+            List<Place> places,
+            PlaceLocations locations,
+            PlaceTypes types
+    ){
+        this.locations = locations;
+        this.types = types;
+        NameDictionary dictionary = new NameDictionary();
+
+        provinceCount = provinces.size();
+        int[] provinceNames = new int[provinceCount];
+        for (int i = 0; i < provinceCount; i++) {
+            provinceNames[i] = dictionary.id(provinces.get(i).name());
+        }
+
+        municipalityCount = municipalities.size();
+        int[] municipalityNames = new int[municipalityCount];
+        int[] municipalityProvinces = new int[municipalityCount];
+        for (int i = 0; i < municipalityCount; i++) {
+            municipalityNames[i] = dictionary.id(municipalities.get(i).name());
+            municipalityProvinces[i] = dictionary.id(municipalities.get(i).province());
+        }
+
+        placeCount = places.size();
+        int[] placeNames = new int[placeCount];
+        int[] placeMunicipalities = new int[placeCount];
+        for (int i = 0; i < placeCount; i++) {
+            placeNames[i] = dictionary.id(places.get(i).name());
+            placeMunicipalities[i] = dictionary.id(places.get(i).municipality());
+        }
+
+        byte[][] encoded = new byte[dictionary.size()][];
+        int totalBytes = 0;
+        for (int i = 0; i < encoded.length; i++) {
+            encoded[i] = dictionary.name(i).getBytes(StandardCharsets.UTF_8);
+            totalBytes += encoded[i].length;
+        }
+        nameBytes = ByteBuffer.allocateDirect(Math.max(1, totalBytes));
+        nameOffsets = ints(encoded.length + 1);
+        for (int i = 0, offset = 0; i < encoded.length; i++) {
+            nameBytes.put(offset, encoded[i]);
+            offset += encoded[i].length;
+            nameOffsets.put(i + 1, offset);
+        }
+
+        int capacity = Integer.highestOneBit(Math.max(2, encoded.length * 2 - 1)) << 1;
+        tableMask = capacity - 1;
+        nameTable = ints(capacity);
+        for (int id = 0; id < encoded.length; id++) {
+            int slot = hash(encoded[id]) & tableMask;
+            while (nameTable.get(slot) != EMPTY) {
+                slot = (slot + 1) & tableMask;
+            }
+            nameTable.put(slot, id + 1);
+        }
+
+        provinceName = ints(provinceNames);
+        municipalityName = ints(municipalityNames);
+        municipalityProvince = ints(municipalityProvinces);
+        placeName = ints(placeNames);
+        placeMunicipality = ints(placeMunicipalities);
+
+        int[] firstMunicipalities = NameDictionary.firstWithName(municipalityNames, encoded.length);
+        firstProvinceNamed = ints(NameDictionary.firstWithName(provinceNames, encoded.length));
+        firstMunicipalityNamed = ints(firstMunicipalities);
+        firstPlaceNamed = ints(NameDictionary.firstWithName(placeNames, encoded.length));
+
+        int[] placeProvinces = new int[placeCount];
+        for (int i = 0; i < placeCount; i++) {
+            int municipality = firstMunicipalities[placeMunicipalities[i]];
+            placeProvinces[i] = municipality == NONE ? NONE : municipalityProvinces[municipality];
+        }
+
+        municipalitiesByProvince = new Grouping(municipalityProvinces, encoded.length, OffHeapPlacesDb::ints);
+        placesByMunicipality = new Grouping(placeMunicipalities, encoded.length, OffHeapPlacesDb::ints);
+        placesByProvince = new Grouping(placeProvinces, encoded.length, OffHeapPlacesDb::ints);
+    }
+
+    private static IntBuffer ints(int size){
+        return ByteBuffer.allocateDirect(Math.max(1, size) * Integer.BYTES)
+                .order(ByteOrder.nativeOrder())
+                .asIntBuffer();
+    }
+
+    private static IntBuffer ints(int[] values){
+        IntBuffer buffer = ints(values.length);
+        buffer.put(0, values);
+        return buffer;
+    }
+
+    /**
+     * FNV-1a over the UTF-8 bytes, with the bits mixed so that neighbouring slots stay apart
+     */
+    private static int hash(byte[] bytes){
+        int hash = 0x811C9DC5;
+        for (byte b : bytes) {
+            hash = (hash ^ (b & 0xFF)) * 0x01000193;
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    private int lookup(String name){
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        int slot = hash(bytes) & tableMask;
+        int entry;
+        while ((entry = nameTable.get(slot)) != EMPTY) {
+            if (nameEquals(entry - 1, bytes)) {
+                return entry - 1;
+            }
+            slot = (slot + 1) & tableMask;
+        }
+        return NONE;
+    }
+
+    private boolean nameEquals(int id, byte[] bytes){
+        int from = nameOffsets.get(id);
+        if (nameOffsets.get(id + 1) - from != bytes.length) {
+            return false;
+        }
+        for (int i = 0; i < bytes.length; i++) {
+            if (nameBytes.get(from + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String name(int id){
+        int from = nameOffsets.get(id);
+        byte[] bytes = new byte[nameOffsets.get(id + 1) - from];
+        nameBytes.get(from, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private Province province(int index){
+        return new Province(name(provinceName.get(index)));
+    }
+
+    private Municipality municipality(int index){
+        return new Municipality(name(municipalityName.get(index)), name(municipalityProvince.get(index)));
+    }
+
+    private Place place(int index){
+        return new Place(name(placeName.get(index)), name(placeMunicipality.get(index)));
+    }
+
+    @Override
+    public List<Province> provinces(){
+        return new Materialized<>(provinceCount, i -> i, this::province);
+    }
+
+    @Override
+    public List<Municipality> municipalities(){
+        return new Materialized<>(municipalityCount, i -> i, this::municipality);
+    }
+
+    @Override
+    public List<Place> places(){
+        return new Materialized<>(placeCount, i -> i, this::place);
+    }
+
+    @Override
+    public PlaceLocations locations(){
+        return locations;
+    }
+
+    @Override
+    public PlaceTypes types(){
+        return types;
+    }
+
+    @Override
+    public List<Municipality> municipalitiesIn(String province) {
+        return municipalitiesByProvince.get(lookup(province), this::municipality);
+    }
+
+    @Override
+    public List<Place> placesInMunicipality(String municipality) {
+        return placesByMunicipality.get(lookup(municipality), this::place);
+    }
+
+    @Override
+    public List<Place> placesInProvince(String province) {
+        return placesByProvince.get(lookup(province), this::place);
+    }
+
+    @Override
+    public Optional<Municipality> municipality(String name) {
+        int id = lookup(name);
+        return id == NONE || firstMunicipalityNamed.get(id) == NONE
+                ? Optional.empty()
+                : Optional.of(municipality(firstMunicipalityNamed.get(id)));
+    }
+
+    @Override
+    public Optional<Place> place(String name) {
+        int id = lookup(name);
+        return id == NONE || firstPlaceNamed.get(id) == NONE
+                ? Optional.empty()
+                : Optional.of(place(firstPlaceNamed.get(id)));
+    }
+
+    @Override
+    public Optional<Province> province(String name) {
+        int id = lookup(name);
+        return id == NONE || firstProvinceNamed.get(id) == NONE
+                ? Optional.empty()
+                : Optional.of(province(firstProvinceNamed.get(id)));
+    }
+
+    @Override
+    public int size(){
+        return placeCount;
+    }
+}
@@ -5,6 +5,8 @@ import java.util.Optional;
 
 import wethinkcode.model.Place;
 import wethinkcode.model.Province;
+import wethinkcode.places.PlaceLocations;
+import wethinkcode.places.PlaceTypes;
 import wethinkcode.places.Places;
 import wethinkcode.model.Municipality;
 
@@ -16,11 +18,25 @@ public class PlacesDb implements Places
     final List<Province> provinces;
     final List<Municipality> municipalities;
     final List<Place> places;
+    final PlaceLocations locations;
+    final PlaceTypes types;
 
     public PlacesDb(List<Province> provinces, List<Municipality> municipalities, List<Place> places){
+        this(provinces, municipalities, places, PlaceLocations.unknown(places.size()), PlaceTypes.unknown(places.size()));
+    }
+
+    public PlacesDb(
+            List<Province> provinces,
+            List<Municipality> municipalities,
+            List<Place> places,
+            PlaceLocations locations,
+            PlaceTypes types
+    ){
         this.provinces = provinces;
         this.municipalities = municipalities;
         this.places = places;
+        this.locations = locations;
+        this.types = types;
     }
 
     @Override
@@ -28,6 +44,26 @@ public class PlacesDb implements Places
         return provinces;
     }
 
+    @Override
+    public List<Municipality> municipalities(){
+        return municipalities;
+    }
+
+    @Override
+    public List<Place> places(){
+        return places;
+    }
+
+    @Override
+    public PlaceLocations locations(){
+        return locations;
+    }
+
+    @Override
+    public PlaceTypes types(){
+        return types;
+    }
+
     @Override
     public List<Municipality> municipalitiesIn(String province) {
         return municipalities
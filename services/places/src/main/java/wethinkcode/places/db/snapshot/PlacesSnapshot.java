@@ -0,0 +1,228 @@
+package wethinkcode.places.db.snapshot;
+
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.CRC32C;
+
+import wethinkcode.model.Municipality;
+import wethinkcode.model.Place;
+import wethinkcode.model.Province;
+import wethinkcode.places.PlaceLocations;
+import wethinkcode.places.PlaceTypes;
+import wethinkcode.places.Places;
+import wethinkcode.places.PlacesStore;
+
+/**
+ * PlacesSnapshot : I save a parsed Places database to a binary file and load it back again,
+ * which is much quicker than parsing the CSV file it came from.
+ * <p>
+ * The file starts with a magic number, a format version and a checksum of the CSV file the
+ * database was parsed from. A snapshot is only loaded if all three match, so a changed CSV
+ * file or an older format simply causes a re-parse. After the header come all the distinct
+ * names as UTF-8, followed by the provinces, municipalities and places as indexes into those
+ * names, then the latitude and longitude of every place, and then the names of the feature
+ * types followed by one byte for the type of each place, see {@link PlaceTypes}. Loading
+ * memory-maps the file and reads it straight out of the page cache.
+ */
+public class PlacesSnapshot
+{
+    static final int MAGIC = 0x504C4353;
+    static final int VERSION = 3;
+
+    private PlacesSnapshot(){}
+
+    /**
+     * Calculates the checksum used to tell whether a snapshot was made from this source file.
+     * @param source the CSV file
+     * @return a CRC32C of every byte in the file
+     * @throws IOException if the file cannot be read
+     */
+    public static long checksum(File source) throws IOException {
+        CRC32C crc = new CRC32C();
+        try (FileChannel channel = FileChannel.open(source.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            for (long position = 0; position < size; ) {
+                long length = Math.min(size - position, Integer.MAX_VALUE);
+                crc.update(channel.map(FileChannel.MapMode.READ_ONLY, position, length));
+                position += length;
+            }
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Writes a snapshot of a database. The file is replaced in one step, so a reader never
+     * sees a half written snapshot.
+     * @param snapshot the file to write to
+     * @param sourceChecksum the checksum of the CSV file the database was parsed from
+     * @param places the database
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(File snapshot, long sourceChecksum, Places places) throws IOException {
+        Map<String, Integer> ids = new HashMap<>();
+        List<String> names = new ArrayList<>();
+
+        List<Province> provinces = places.provinces();
+        List<Municipality> municipalities = places.municipalities();
+        List<Place> placeList = places.places();
+
+        int[] provinceIds = new int[provinces.size()];
+        for (int i = 0; i < provinceIds.length; i++) {
+            provinceIds[i] = id(provinces.get(i).name(), ids, names);
+        }
+
+        int[] municipalityIds = new int[municipalities.size() * 2];
+        for (int i = 0; i < municipalities.size(); i++) {
+            municipalityIds[2 * i] = id(municipalities.get(i).name(), ids, names);
+            municipalityIds[2 * i + 1] = id(municipalities.get(i).province(), ids, names);
+        }
+
+        int[] placeIds = new int[placeList.size() * 2];
+        for (int i = 0; i < placeList.size(); i++) {
+            Place place = placeList.get(i);
+            placeIds[2 * i] = id(place.name(), ids, names);
+            placeIds[2 * i + 1] = id(place.municipality(), ids, names);
+        }
+
+        PlaceTypes types = places.types();
+        int[] typeIds = new int[types.names().size()];
+        for (int i = 0; i < typeIds.length; i++) {
+            typeIds[i] = id(types.names().get(i), ids, names);
+        }
+
+        File temporary = new File(snapshot.getAbsoluteFile().getParentFile(), snapshot.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(sourceChecksum);
+
+            out.writeInt(names.size());
+            for (String name : names) {
+                byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+
+            writeInts(out, provinceIds.length, provinceIds);
+            writeInts(out, municipalities.size(), municipalityIds);
+            writeInts(out, placeList.size(), placeIds);
+
+            PlaceLocations locations = places.locations();
+            for (int i = 0; i < locations.size(); i++) {
+                out.writeFloat(locations.latitude(i));
+                out.writeFloat(locations.longitude(i));
+            }
+
+            writeInts(out, typeIds.length, typeIds);
+            for (int i = 0; i < types.size(); i++) {
+                out.writeByte(types.code(i));
+            }
+        }
+
+        Files.move(
+                temporary.toPath(),
+                snapshot.toPath(),
+                StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE
+        );
+    }
+
+    /**
+     * Loads a snapshot, if there is a valid one for the given source.
+     * @param snapshot the file to read
+     * @param sourceChecksum the checksum of the CSV file the snapshot must have been made from
+     * @param store the kind of database to load the snapshot into
+     * @return the database, or empty if there is no usable snapshot
+     * @throws IOException if the file exists but cannot be read
+     */
+    public static Optional<Places> read(File snapshot, long sourceChecksum, PlacesStore store) throws IOException {
+        if (!snapshot.isFile()) {
+            return Optional.empty();
+        }
+
+        try (FileChannel channel = FileChannel.open(snapshot.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if (in.remaining() < 16
+                    || in.getInt() != MAGIC
+                    || in.getInt() != VERSION
+                    || in.getLong() != sourceChecksum) {
+                return Optional.empty();
+            }
+
+            String[] names = new String[in.getInt()];
+            for (int i = 0; i < names.length; i++) {
+                byte[] bytes = new byte[in.getInt()];
+                in.get(bytes);
+                names[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+
+            int provinceCount = in.getInt();
+            List<Province> provinces = new ArrayList<>(provinceCount);
+            for (int i = 0; i < provinceCount; i++) {
+                provinces.add(new Province(names[in.getInt()]));
+            }
+
+            int municipalityCount = in.getInt();
+            List<Municipality> municipalities = new ArrayList<>(municipalityCount);
+            for (int i = 0; i < municipalityCount; i++) {
+                municipalities.add(new Municipality(names[in.getInt()], names[in.getInt()]));
+            }
+
+            int placeCount = in.getInt();
+            List<Place> places = new ArrayList<>(placeCount);
+            for (int i = 0; i < placeCount; i++) {
+                places.add(new Place(names[in.getInt()], names[in.getInt()]));
+            }
+
+            float[] latitudes = new float[placeCount];
+            float[] longitudes = new float[placeCount];
+            for (int i = 0; i < placeCount; i++) {
+                latitudes[i] = in.getFloat();
+                longitudes[i] = in.getFloat();
+            }
+
+            List<String> typeNames = new ArrayList<>();
+            int typeCount = in.getInt();
+            for (int i = 0; i < typeCount; i++) {
+                typeNames.add(names[in.getInt()]);
+            }
+            byte[] types = new byte[placeCount];
+            in.get(types);
+
+            return Optional.of(store.create(
+                    provinces,
+                    municipalities,
+                    places,
+                    new PlaceLocations(latitudes, longitudes),
+                    new PlaceTypes(typeNames, types)
+            ));
+        } catch (BufferUnderflowException
+                 | IndexOutOfBoundsException
+                 | NegativeArraySizeException
+                 | IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+
+    private static int id(String name, Map<String, Integer> ids, List<String> names){
+        return ids.computeIfAbsent(name, n -> {
+            names.add(n);
+            return names.size() - 1;
+        });
+    }
+
+    private static void writeInts(DataOutputStream out, int count, int[] values) throws IOException {
+        out.writeInt(count);
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+}
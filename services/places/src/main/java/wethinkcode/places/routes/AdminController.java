@@ -0,0 +1,68 @@
+package wethinkcode.places.routes;
+
+import io.javalin.http.Context;
+import io.javalin.http.HttpStatus;
+
+import java.util.List;
+
+import wethinkcode.places.PlacesDataset;
+import wethinkcode.places.PlacesService;
+import wethinkcode.service.controllers.Controllers;
+import wethinkcode.service.controllers.Verb;
+
+@Controllers.Controller("admin")
+@SuppressWarnings("unused")
+public class AdminController {
+
+    /**
+     * Starts reloading the place data in the background, if the request carries the admin token.
+     * Requests carry on being served from the old data until the new data is ready.
+     */
+    @Controllers.Mapping(value = Verb.POST, path = "reload")
+    public static void reload(Context ctx, PlacesService instance){
+        if (!EditController.authorized(ctx, instance, "Reloading the places is turned off")) {
+            return;
+        }
+        instance.reloadInBackground();
+        ctx.json(status(instance));
+        ctx.status(HttpStatus.ACCEPTED);
+    }
+
+    /**
+     * Gets the version of the data being served, when and how quickly it was loaded,
+     * how much of it there is, and the edits that are not in the data files yet or could not be
+     * made again after the last reload
+     */
+    @Controllers.Mapping(value = Verb.GET, path = "reload")
+    public static void getReloadStatus(Context ctx, PlacesService instance){
+        ctx.json(status(instance));
+        ctx.status(HttpStatus.OK);
+    }
+
+    private static ReloadStatus status(PlacesService instance){
+        PlacesDataset dataset = instance.dataset();
+        return new ReloadStatus(
+                dataset.version(),
+                dataset.places().size(),
+                dataset.places().provinces().size(),
+                dataset.places().municipalities().size(),
+                dataset.loadTime().toMillis(),
+                dataset.loadedAt().toString(),
+                instance.isReloading(),
+                instance.editCount(),
+                instance.failedEdits()
+        );
+    }
+
+    record ReloadStatus(
+            long version,
+            int places,
+            int provinces,
+            int municipalities,
+            long loadMillis,
+            String loadedAt,
+            boolean reloading,
+            int edits,
+            List<String> failedEdits
+    ) {}
+}
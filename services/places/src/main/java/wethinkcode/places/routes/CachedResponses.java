@@ -0,0 +1,54 @@
+package wethinkcode.places.routes;
+
+import io.javalin.http.ContentType;
+import io.javalin.http.Context;
+import io.javalin.http.Header;
+import io.javalin.http.HttpStatus;
+
+import java.util.function.Supplier;
+
+import wethinkcode.places.PlacesDataset;
+import wethinkcode.places.cache.ResponseCache;
+
+/**
+ * CachedResponses : I send responses out of the dataset's {@link ResponseCache}, with an ETag,
+ * and answer with 304 Not Modified when the client already has the same body.
+ */
+final class CachedResponses {
+    private CachedResponses(){}
+
+    /**
+     * Sends the cached JSON for a key, rendering it first if this is the first time
+     * @param ctx the request
+     * @param dataset the data the response comes from
+     * @param key names the response, the same key must always give the same value
+     * @param value gives what to render on the first request
+     * @param status the status to send with the body
+     */
+    static void send(Context ctx, PlacesDataset dataset, String key, Supplier<Object> value, HttpStatus status){
+        ResponseCache.Entry entry = dataset.responses().get(key, value);
+        ctx.header(Header.ETAG, entry.etag());
+
+        if (matches(ctx.header(Header.IF_NONE_MATCH), entry.etag())) {
+            ctx.status(HttpStatus.NOT_MODIFIED);
+            return;
+        }
+
+        ctx.contentType(ContentType.APPLICATION_JSON);
+        ctx.result(entry.body());
+        ctx.status(status);
+    }
+
+    static boolean matches(String ifNoneMatch, String etag){
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String tag : ifNoneMatch.split(",")) {
+            String trimmed = tag.trim();
+            if (trimmed.equals("*") || trimmed.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,41 @@
+package wethinkcode.places.routes;
+
+import io.javalin.http.Context;
+import io.javalin.http.HttpStatus;
+
+import wethinkcode.places.PlacesService;
+import wethinkcode.places.changes.PlacesDelta;
+import wethinkcode.service.controllers.Controllers;
+import wethinkcode.service.controllers.Verb;
+
+/**
+ * Lets a client that keeps its own copy of the places catch up with the versions after its own.
+ */
+@Controllers.Controller("")
+@SuppressWarnings("unused")
+public class ChangesController {
+
+    /**
+     * Gets the provinces, municipalities and places added and removed since the version in the
+     * 'since' query parameter. When 'reset' is true in the response the changes are not known,
+     * and the client must fetch everything again.
+     */
+    @Controllers.Mapping(value = Verb.GET, path = "changes")
+    public static void getChanges(Context ctx, PlacesService instance){
+        long since;
+        try {
+            since = Long.parseLong(ctx.queryParam("since"));
+        } catch (NumberFormatException e) {
+            since = -1;
+        }
+        if (since < 0) {
+            ctx.status(HttpStatus.BAD_REQUEST);
+            ctx.json("Expected the version to get the changes since");
+            return;
+        }
+
+        PlacesDelta delta = instance.changesSince(since);
+        ctx.json(delta);
+        ctx.status(HttpStatus.OK);
+    }
+}
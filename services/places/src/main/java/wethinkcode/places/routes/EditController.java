@@ -0,0 +1,152 @@
+package wethinkcode.places.routes;
+
+import com.google.gson.JsonParseException;
+import io.javalin.http.Context;
+import io.javalin.http.Header;
+import io.javalin.http.HttpStatus;
+
+import java.util.NoSuchElementException;
+import java.util.function.Supplier;
+
+import wethinkcode.model.Municipality;
+import wethinkcode.model.Place;
+import wethinkcode.places.PlaceEdit;
+import wethinkcode.places.PlacesService;
+import wethinkcode.service.controllers.Controllers;
+import wethinkcode.service.controllers.Verb;
+
+/**
+ * Adds, changes and removes places and municipalities while the service runs. Every request must
+ * carry the admin token as <code>Authorization: Bearer &lt;token&gt;</code>, and each one that
+ * succeeds is served by the very next request.
+ */
+@Controllers.Controller("")
+@SuppressWarnings("unused")
+public class EditController {
+
+    /**
+     * Adds the place in the body, a JSON {"name": ..., "municipality": ...} object,
+     * to a municipality that already exists
+     */
+    @Controllers.Mapping(value = Verb.POST, path = "places")
+    public static void addPlace(Context ctx, PlacesService instance){
+        Place place = body(ctx, Place.class);
+        edit(ctx, instance, place, () -> PlaceEdit.addPlace(place), HttpStatus.CREATED);
+    }
+
+    /**
+     * Replaces a place with the place in the body, for renaming it or moving it to another municipality
+     */
+    @Controllers.Mapping(value = Verb.PUT, path = "place/{municipality}/{name}")
+    public static void updatePlace(Context ctx, PlacesService instance){
+        Place existing = new Place(ctx.pathParam("name"), ctx.pathParam("municipality"));
+        Place updated = body(ctx, Place.class);
+        edit(ctx, instance, updated, () -> PlaceEdit.updatePlace(existing, updated), HttpStatus.OK);
+    }
+
+    /**
+     * Removes a place
+     */
+    @Controllers.Mapping(value = Verb.DELETE, path = "place/{municipality}/{name}")
+    public static void removePlace(Context ctx, PlacesService instance){
+        Place place = new Place(ctx.pathParam("name"), ctx.pathParam("municipality"));
+        edit(ctx, instance, place, () -> PlaceEdit.removePlace(place), HttpStatus.NO_CONTENT);
+    }
+
+    /**
+     * Adds the municipality in the body, a JSON {"name": ..., "province": ...} object,
+     * to a province that already exists
+     */
+    @Controllers.Mapping(value = Verb.POST, path = "municipalities")
+    public static void addMunicipality(Context ctx, PlacesService instance){
+        Municipality municipality = body(ctx, Municipality.class);
+        edit(ctx, instance, municipality, () -> PlaceEdit.addMunicipality(municipality), HttpStatus.CREATED);
+    }
+
+    /**
+     * Replaces a municipality with the municipality in the body, for renaming it or moving it,
+     * with its places, to another province
+     */
+    @Controllers.Mapping(value = Verb.PUT, path = "municipality/{name}")
+    public static void updateMunicipality(Context ctx, PlacesService instance){
+        String name = ctx.pathParam("name");
+        Municipality updated = body(ctx, Municipality.class);
+        edit(ctx, instance, updated, () -> PlaceEdit.updateMunicipality(name, updated), HttpStatus.OK);
+    }
+
+    /**
+     * Removes a municipality that has no places left in it
+     */
+    @Controllers.Mapping(value = Verb.DELETE, path = "municipality/{name}")
+    public static void removeMunicipality(Context ctx, PlacesService instance){
+        String name = ctx.pathParam("name");
+        edit(ctx, instance, name, () -> PlaceEdit.removeMunicipality(name), HttpStatus.NO_CONTENT);
+    }
+
+    private static <T> T body(Context ctx, Class<T> type){
+        try {
+            return ctx.bodyAsClass(type);
+        } catch (JsonParseException e) {
+            return null;
+        }
+    }
+
+    private static void edit(
+            Context ctx,
+            PlacesService instance,
+            Object subject,
+            Supplier<PlaceEdit> edit,
+            HttpStatus success
+    ){
+        if (!authorized(ctx, instance, "Editing places is turned off")) {
+            return;
+        }
+        if (subject == null) {
+            ctx.status(HttpStatus.BAD_REQUEST);
+            ctx.json("Expected a JSON body");
+            return;
+        }
+
+        Object result;
+        try {
+            result = instance.edit(edit.get());
+        } catch (IllegalArgumentException e) {
+            ctx.status(HttpStatus.BAD_REQUEST);
+            ctx.json(e.getMessage());
+            return;
+        } catch (NoSuchElementException e) {
+            ctx.status(HttpStatus.NOT_FOUND);
+            ctx.json(e.getMessage());
+            return;
+        } catch (IllegalStateException e) {
+            ctx.status(HttpStatus.CONFLICT);
+            ctx.json(e.getMessage());
+            return;
+        }
+
+        if (success != HttpStatus.NO_CONTENT) {
+            ctx.json(result);
+        }
+        ctx.status(success);
+    }
+
+    /**
+     * Answers 403 if there is no admin token, or 401 if the request does not carry it
+     * @param turnedOff what to answer when there is no admin token
+     * @return true if the request carries the admin token
+     */
+    static boolean authorized(Context ctx, PlacesService instance, String turnedOff){
+        if (!instance.isEditable()) {
+            ctx.status(HttpStatus.FORBIDDEN);
+            ctx.json(turnedOff);
+            return false;
+        }
+        if (!instance.isAdmin(ctx.header(Header.AUTHORIZATION))) {
+            ctx.header(Header.WWW_AUTHENTICATE, "Bearer");
+            ctx.status(HttpStatus.UNAUTHORIZED);
+            ctx.json("Expected the admin token");
+            return false;
+        }
+        return true;
+    }
+}
@@ -7,6 +7,7 @@ import wethinkcode.model.Municipality;
 import java.util.List;
 import java.util.Optional;
 
+import wethinkcode.places.PlacesDataset;
 import wethinkcode.places.PlacesService;
 import wethinkcode.service.controllers.Controllers;
 import wethinkcode.service.controllers.Verb;
@@ -21,7 +22,7 @@ public class MunicipalityController{
     @Controllers.Mapping(value = Verb.GET, path = "municipality/{name}")
     public static void getMunicipality(Context ctx, PlacesService instance){
         String name = ctx.pathParam("name");
-        Optional<Municipality> municipality = instance.places.municipality(name);
+        Optional<Municipality> municipality = instance.dataset().places().municipality(name);
 
         if (municipality.isPresent()){
             ctx.json(municipality.get());
@@ -31,14 +32,17 @@ public class MunicipalityController{
         }
     }
 
+    /**
+     * Gets the municipalities in a province, from the response cache
+     */
     @Controllers.Mapping(value = Verb.GET, path = "municipalities/{province}")
     public static void getMunicipalitiesInProvince(Context ctx, PlacesService instance){
         String province = ctx.pathParam("province");
-        List<Municipality> municipalities = instance.places.municipalitiesIn(province);
+        PlacesDataset dataset = instance.dataset();
+        List<Municipality> municipalities = dataset.places().municipalitiesIn(province);
 
         if (municipalities.size()>0){
-            ctx.json(municipalities);
-            ctx.status(HttpStatus.OK);
+            CachedResponses.send(ctx, dataset, "municipalities/" + municipalities.get(0).province(), () -> municipalities, HttpStatus.OK);
         } else {
             ctx.status(HttpStatus.NOT_FOUND);
         }
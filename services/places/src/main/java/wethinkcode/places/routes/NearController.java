@@ -0,0 +1,95 @@
+package wethinkcode.places.routes;
+
+import io.javalin.http.Context;
+import io.javalin.http.HttpStatus;
+
+import java.util.List;
+
+import wethinkcode.places.PlacesService;
+import wethinkcode.places.search.NearbyPlace;
+import wethinkcode.service.controllers.Controllers;
+import wethinkcode.service.controllers.Verb;
+
+@Controllers.Controller("places")
+@SuppressWarnings("unused")
+public class NearController {
+    static final double MAX_RADIUS_KM = 1000;
+
+    /**
+     * Gets the 'k' places closest to the 'lat' and 'lon' query parameters, nearest first,
+     * each with its distance in km
+     */
+    @Controllers.Mapping(value = Verb.GET, path = "near")
+    public static void getNearestPlaces(Context ctx, PlacesService instance){
+        double latitude;
+        double longitude;
+        int k;
+        try {
+            latitude = latitude(ctx.queryParam("lat"));
+            longitude = longitude(ctx.queryParam("lon"));
+            k = SearchController.limit(ctx.queryParam("k"));
+        } catch (IllegalArgumentException | NullPointerException e) {
+            badLocation(ctx);
+            return;
+        }
+
+        List<NearbyPlace> places = instance.dataset().near().nearest(latitude, longitude, k);
+        ctx.json(places);
+        ctx.status(HttpStatus.OK);
+    }
+
+    /**
+     * Gets up to 'limit' of the places within 'km' of the 'lat' and 'lon' query parameters,
+     * nearest first, each with its distance in km
+     */
+    @Controllers.Mapping(value = Verb.GET, path = "within")
+    public static void getPlacesWithin(Context ctx, PlacesService instance){
+        double latitude;
+        double longitude;
+        double radius;
+        int limit;
+        try {
+            latitude = latitude(ctx.queryParam("lat"));
+            longitude = longitude(ctx.queryParam("lon"));
+            limit = SearchController.limit(ctx.queryParam("limit"));
+        } catch (IllegalArgumentException | NullPointerException e) {
+            badLocation(ctx);
+            return;
+        }
+        try {
+            radius = Double.parseDouble(ctx.queryParam("km"));
+        } catch (NumberFormatException | NullPointerException e) {
+            radius = Double.NaN;
+        }
+        if (!(radius > 0 && radius <= MAX_RADIUS_KM)) {
+            ctx.status(HttpStatus.BAD_REQUEST);
+            ctx.json("The radius must be more than 0 and at most " + MAX_RADIUS_KM + " km");
+            return;
+        }
+
+        List<NearbyPlace> places = instance.dataset().near().within(latitude, longitude, radius, limit);
+        ctx.json(places);
+        ctx.status(HttpStatus.OK);
+    }
+
+    private static double latitude(String latitude){
+        return inRange(Double.parseDouble(latitude), 90);
+    }
+
+    private static double longitude(String longitude){
+        return inRange(Double.parseDouble(longitude), 180);
+    }
+
+    private static double inRange(double degrees, double max){
+        if (!(degrees >= -max && degrees <= max)) {
+            throw new IllegalArgumentException("Out of range: " + degrees);
+        }
+        return degrees;
+    }
+
+    private static void badLocation(Context ctx){
+        ctx.status(HttpStatus.BAD_REQUEST);
+        ctx.json("Expected a location as 'lat' and 'lon' in degrees: "
+                + ctx.queryParam("lat") + ", " + ctx.queryParam("lon"));
+    }
+}
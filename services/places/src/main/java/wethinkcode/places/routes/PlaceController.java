@@ -1,20 +1,25 @@
 package wethinkcode.places.routes;
 
+import com.google.gson.JsonParseException;
 import io.javalin.http.Context;
 import io.javalin.http.HttpStatus;
 import wethinkcode.model.Place;
+import wethinkcode.model.Province;
 
 import java.util.List;
 import java.util.Optional;
 
 
+import wethinkcode.places.PlacesDataset;
 import wethinkcode.places.PlacesService;
+import wethinkcode.places.search.Membership;
 import wethinkcode.service.controllers.Controllers;
 import wethinkcode.service.controllers.Verb;
 
 @Controllers.Controller("")
 @SuppressWarnings("unused")
 public class PlaceController{
+    public static final int MAX_BATCH = 10_000;
 
     /**
      * Gets a place by name
@@ -22,7 +27,7 @@ public class PlaceController{
     @Controllers.Mapping(value = Verb.GET, path = "place/{name}")
     public static void getPlace(Context ctx, PlacesService instance){
         String name = ctx.pathParam("name");
-        Optional<Place> place = instance.places.place(name);
+        Optional<Place> place = instance.dataset().places().place(name);
 
         if (place.isPresent()){
             ctx.json(place.get());
@@ -32,27 +37,37 @@ public class PlaceController{
         }
     }
 
+    /**
+     * Gets the places in a province, a page at a time with 'offset' and 'limit',
+     * or all of them streamed
+     */
     @Controllers.Mapping(value = Verb.GET, path = "places/province/{province}")
     public static void getPlacesInProvince(Context ctx, PlacesService instance){
         String province = ctx.pathParam("province");
-        List<Place> placeList = instance.places.placesInProvince(province);
+        PlacesDataset dataset = instance.dataset();
+        List<Place> placeList = dataset.places().placesInProvince(province);
 
         if (placeList.size()>0){
-            ctx.json(placeList);
-            ctx.status(HttpStatus.FOUND);
+            String key = "places/province/" + dataset.places().province(province).map(Province::name).orElse(province);
+            PlacePages.send(ctx, dataset, key, placeList, HttpStatus.FOUND);
         } else {
             ctx.status(HttpStatus.NOT_FOUND);
         }
     }
 
+    /**
+     * Gets the places in a municipality, a page at a time with 'offset' and 'limit',
+     * or all of them streamed
+     */
     @Controllers.Mapping(value = Verb.GET, path = "places/municipality/{municipality}")
     public static void getPlacesInMunicipality(Context ctx, PlacesService instance){
         String municipality = ctx.pathParam("municipality");
-        List<Place> placesList = instance.places.placesInMunicipality(municipality);
+        PlacesDataset dataset = instance.dataset();
+        List<Place> placesList = dataset.places().placesInMunicipality(municipality);
 
         if (placesList.size()>0){
-            ctx.json(placesList);
-            ctx.status(HttpStatus.FOUND);
+            String key = "places/municipality/" + placesList.get(0).municipality();
+            PlacePages.send(ctx, dataset, key, placesList, HttpStatus.FOUND);
         } else {
             ctx.status(HttpStatus.NOT_FOUND);
         }
@@ -61,11 +76,8 @@ public class PlaceController{
     @Controllers.Mapping(value = Verb.GET, path = "exists/{province}/{place}")
     public static void placeExists(Context context, PlacesService instance) {
         String province = context.pathParam("province");
-        if (instance.places
-                .provinces()
-                .stream()
-                .noneMatch(p -> p.name().equals(province))
-        ) {
+        Membership membership = instance.dataset().membership();
+        if (!membership.hasProvince(province)) {
             context.status(HttpStatus.NOT_FOUND);
             context.json("Province does not exist: " + province);
             return;
@@ -73,18 +85,43 @@ public class PlaceController{
 
         String place = context.pathParam("place");
 
-        if (instance.places
-                .placesInProvince(province)
-                .stream()
-                .noneMatch(p -> p.name().equals(place))
-        ) {
+        if (!membership.contains(province, place)) {
             context.status(HttpStatus.NOT_FOUND);
             context.json("Place does not exist in province: " + province);
             return;
         }
 
         context.status(HttpStatus.FOUND);
+    }
 
+    /**
+     * Checks whether each of a list of places exists in its province, all in one request.
+     * The body is a JSON array of {"province": ..., "place": ...} objects, and the response
+     * is an array of booleans in the same order.
+     */
+    @Controllers.Mapping(value = Verb.POST, path = "exists")
+    public static void placesExist(Context context, PlacesService instance) {
+        PlaceQuery[] queries;
+        try {
+            queries = context.bodyAsClass(PlaceQuery[].class);
+        } catch (JsonParseException e) {
+            queries = null;
+        }
+        if (queries == null || queries.length > MAX_BATCH) {
+            context.status(HttpStatus.BAD_REQUEST);
+            context.json("Expected a list of at most " + MAX_BATCH + " provinces and places");
+            return;
+        }
 
+        Membership membership = instance.dataset().membership();
+        boolean[] exists = new boolean[queries.length];
+        for (int i = 0; i < queries.length; i++) {
+            exists[i] = queries[i] != null && membership.contains(queries[i].province(), queries[i].place());
+        }
+
+        context.json(exists);
+        context.status(HttpStatus.OK);
     }
+
+    record PlaceQuery(String province, String place) {}
 }
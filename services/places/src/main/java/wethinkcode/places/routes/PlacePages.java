@@ -0,0 +1,101 @@
+package wethinkcode.places.routes;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+import io.javalin.http.ContentType;
+import io.javalin.http.Context;
+import io.javalin.http.HttpStatus;
+import wethinkcode.model.Place;
+import wethinkcode.places.PlacesDataset;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * PlacePages : I send lists of places that may be very long, like all the places in a province.
+ * <p>
+ * With 'offset' and 'limit' query parameters I send just that page of the list, along with an
+ * X-Total-Count header and, if there is more, an X-Next-Offset header to ask for next.
+ * Without them the whole list is sent from the dataset's response cache, unless it is too long
+ * to be worth keeping in memory. Then I write it to the response one place at a time, instead
+ * of building it into one big string first, so a request never needs more than a small buffer.
+ */
+final class PlacePages {
+    static final int MAX_LIMIT = 1000;
+    static final int MAX_CACHED_PLACES = 20_000;
+    static final String TOTAL_COUNT = "X-Total-Count";
+    static final String NEXT_OFFSET = "X-Next-Offset";
+
+    private static final Gson GSON = new Gson();
+
+    private PlacePages(){}
+
+    /**
+     * Sends a page of the places, or all of them if no page was asked for
+     * @param ctx the request, with optional 'offset' and 'limit' query parameters
+     * @param dataset the data the places come from
+     * @param key names the whole list in the response cache
+     * @param places all the places
+     * @param status the status to send with them
+     */
+    static void send(Context ctx, PlacesDataset dataset, String key, List<Place> places, HttpStatus status){
+        String offsetParam = ctx.queryParam("offset");
+        String limitParam = ctx.queryParam("limit");
+
+        int offset;
+        int limit;
+        try {
+            offset = offsetParam == null ? 0 : Integer.parseInt(offsetParam);
+            limit = limitParam == null ? MAX_LIMIT : Integer.parseInt(limitParam);
+        } catch (NumberFormatException e) {
+            ctx.status(HttpStatus.BAD_REQUEST);
+            ctx.json("Bad offset or limit: " + offsetParam + ", " + limitParam);
+            return;
+        }
+        if (offset < 0 || limit < 1) {
+            ctx.status(HttpStatus.BAD_REQUEST);
+            ctx.json("Bad offset or limit: " + offsetParam + ", " + limitParam);
+            return;
+        }
+
+        ctx.header(TOTAL_COUNT, String.valueOf(places.size()));
+        if (offsetParam == null && limitParam == null) {
+            if (places.size() <= MAX_CACHED_PLACES) {
+                CachedResponses.send(ctx, dataset, key, () -> places, status);
+            } else {
+                stream(ctx, places, status);
+            }
+            return;
+        }
+
+        int from = Math.min(offset, places.size());
+        int to = Math.min(places.size(), from + Math.min(limit, MAX_LIMIT));
+        if (to < places.size()) {
+            ctx.header(NEXT_OFFSET, String.valueOf(to));
+        }
+        ctx.json(places.subList(from, to));
+        ctx.status(status);
+    }
+
+    private static void stream(Context ctx, List<Place> places, HttpStatus status){
+        ctx.status(status);
+        ctx.contentType(ContentType.APPLICATION_JSON);
+        try {
+            JsonWriter writer = new JsonWriter(new BufferedWriter(
+                    new OutputStreamWriter(ctx.outputStream(), StandardCharsets.UTF_8)
+            ));
+            writer.beginArray();
+            for (Place place : places) {
+                GSON.toJson(place, Place.class, writer);
+            }
+            writer.endArray();
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
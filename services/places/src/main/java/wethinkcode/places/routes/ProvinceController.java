@@ -2,11 +2,8 @@ package wethinkcode.places.routes;
 
 import io.javalin.http.Context;
 import io.javalin.http.HttpStatus;
-import wethinkcode.model.Province;
-
-import java.util.Collection;
-
 
+import wethinkcode.places.PlacesDataset;
 import wethinkcode.places.PlacesService;
 import wethinkcode.service.controllers.Controllers;
 import wethinkcode.service.controllers.Verb;
@@ -15,13 +12,11 @@ import wethinkcode.service.controllers.Verb;
 @SuppressWarnings("unused")
 public class ProvinceController {
     /**
-     * Gets a municipality by name
+     * Gets all the provinces, from the response cache
      */
     @Controllers.Mapping(Verb.GET)
     public static void getAllProvinces(Context ctx, PlacesService instance){
-        Collection<Province> provinces = instance.places.provinces();
-
-            ctx.json(provinces);
-            ctx.status(HttpStatus.OK);
+        PlacesDataset dataset = instance.dataset();
+        CachedResponses.send(ctx, dataset, "provinces", () -> dataset.places().provinces(), HttpStatus.OK);
     }
 }
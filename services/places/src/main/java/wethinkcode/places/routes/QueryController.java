@@ -0,0 +1,150 @@
+package wethinkcode.places.routes;
+
+import com.google.gson.stream.JsonWriter;
+import io.javalin.http.ContentType;
+import io.javalin.http.Context;
+import io.javalin.http.HttpStatus;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import wethinkcode.model.Municipality;
+import wethinkcode.model.Place;
+import wethinkcode.places.Places;
+import wethinkcode.places.PlacesDataset;
+import wethinkcode.places.PlacesService;
+import wethinkcode.places.search.PlaceQuery;
+import wethinkcode.service.controllers.Controllers;
+import wethinkcode.service.controllers.Verb;
+
+@Controllers.Controller("places")
+@SuppressWarnings("unused")
+public class QueryController {
+    static final List<String> FIELDS = List.of("name", "municipality", "province");
+
+    /**
+     * Gets the places matching all of the 'province', 'municipality', 'prefix' and 'type' query
+     * parameters that are given, a page at a time with 'offset' and 'limit'. 'type' is the
+     * feature type of the places, such as town or urban area, in any case, and places of a type
+     * come in name order, see {@link PlaceQuery}.
+     * <p>
+     * 'fields' lists which of name, municipality and province to send for each place, all of them
+     * if it is not given. With 'count=true' only {"count": ...} is sent.
+     */
+    @Controllers.Mapping(value = Verb.GET, path = "query")
+    public static void query(Context ctx, PlacesService instance){
+        List<String> fields;
+        int offset;
+        int limit;
+        try {
+            fields = fields(ctx.queryParam("fields"));
+            offset = offset(ctx.queryParam("offset"));
+            limit = limit(ctx.queryParam("limit"));
+        } catch (IllegalArgumentException e) {
+            ctx.status(HttpStatus.BAD_REQUEST);
+            ctx.json(e.getMessage());
+            return;
+        }
+
+        PlaceQuery query = new PlaceQuery(
+                ctx.queryParam("province"),
+                ctx.queryParam("municipality"),
+                ctx.queryParam("prefix"),
+                ctx.queryParam("type")
+        );
+        PlacesDataset dataset = instance.dataset();
+
+        if (Boolean.parseBoolean(ctx.queryParam("count"))) {
+            int count = query.count(dataset.places(), dataset.prefixes());
+            ctx.json(new Count(count));
+            ctx.status(HttpStatus.OK);
+            return;
+        }
+
+        offset = Math.min(offset, dataset.places().size());
+        List<Place> places = query.find(dataset.places(), dataset.prefixes(), offset, limit + 1);
+        if (places.size() > limit) {
+            places = places.subList(0, limit);
+            ctx.header(PlacePages.NEXT_OFFSET, String.valueOf(offset + limit));
+        }
+        send(ctx, dataset.places(), places, fields);
+    }
+
+    /**
+     * Writes only the fields asked for, one place at a time, without building the whole
+     * response first.
+     */
+    private static void send(Context ctx, Places database, List<Place> places, List<String> fields){
+        ctx.status(HttpStatus.OK);
+        ctx.contentType(ContentType.APPLICATION_JSON);
+        Map<String, String> provinces = new HashMap<>();
+        try {
+            JsonWriter writer = new JsonWriter(new BufferedWriter(
+                    new OutputStreamWriter(ctx.outputStream(), StandardCharsets.UTF_8)
+            ));
+            writer.beginArray();
+            for (Place place : places) {
+                writer.beginObject();
+                for (String field : fields) {
+                    writer.name(field);
+                    switch (field) {
+                        case "name" -> writer.value(place.name());
+                        case "municipality" -> writer.value(place.municipality());
+                        default -> writer.value(provinces.computeIfAbsent(place.municipality(), municipality ->
+                                database.municipality(municipality).map(Municipality::province).orElse(null)));
+                    }
+                }
+                writer.endObject();
+            }
+            writer.endArray();
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static List<String> fields(String fields){
+        if (fields == null || fields.isBlank()) {
+            return FIELDS;
+        }
+        List<String> wanted = new ArrayList<>();
+        for (String field : fields.split(",")) {
+            String name = field.trim();
+            if (!FIELDS.contains(name)) {
+                throw new IllegalArgumentException("Unknown field: " + name + ", expected some of " + FIELDS);
+            }
+            if (!wanted.contains(name)) {
+                wanted.add(name);
+            }
+        }
+        return wanted;
+    }
+
+    private static int offset(String offset){
+        try {
+            int value = offset == null ? 0 : Integer.parseInt(offset);
+            if (value >= 0) {
+                return value;
+            }
+        } catch (NumberFormatException ignored) {
+        }
+        throw new IllegalArgumentException("Bad offset: " + offset);
+    }
+
+    private static int limit(String limit){
+        try {
+            int value = limit == null ? PlacePages.MAX_LIMIT : Integer.parseInt(limit);
+            if (value >= 1) {
+                return Math.min(value, PlacePages.MAX_LIMIT);
+            }
+        } catch (NumberFormatException ignored) {
+        }
+        throw new IllegalArgumentException("Bad limit: " + limit);
+    }
+
+    record Count(int count) {}
+}
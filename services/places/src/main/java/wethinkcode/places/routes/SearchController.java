@@ -0,0 +1,75 @@
+package wethinkcode.places.routes;
+
+import io.javalin.http.Context;
+import io.javalin.http.HttpStatus;
+import wethinkcode.model.Place;
+
+import java.util.List;
+
+import wethinkcode.places.PlacesService;
+import wethinkcode.service.controllers.Controllers;
+import wethinkcode.service.controllers.Verb;
+
+@Controllers.Controller("places/search")
+@SuppressWarnings("unused")
+public class SearchController {
+    static final int DEFAULT_LIMIT = 10;
+    static final int MAX_LIMIT = 100;
+
+    /**
+     * Gets up to 'limit' places whose names start with the prefix, ignoring case,
+     * optionally only those in the 'province' query parameter
+     */
+    @Controllers.Mapping(value = Verb.GET, path = "prefix/{prefix}")
+    public static void searchByPrefix(Context ctx, PlacesService instance){
+        String prefix = ctx.pathParam("prefix");
+        String province = ctx.queryParam("province");
+
+        int limit;
+        try {
+            limit = limit(ctx.queryParam("limit"));
+        } catch (NumberFormatException e) {
+            ctx.status(HttpStatus.BAD_REQUEST);
+            ctx.json("Bad limit: " + ctx.queryParam("limit"));
+            return;
+        }
+
+        List<Place> places = instance.dataset().prefixes().search(prefix, province, limit);
+        ctx.json(places);
+        ctx.status(HttpStatus.OK);
+    }
+
+    /**
+     * Gets up to 'limit' places whose names are closest to the query, allowing for typos
+     * and ignoring accents and case
+     */
+    @Controllers.Mapping(value = Verb.GET, path = "fuzzy/{query}")
+    public static void searchFuzzy(Context ctx, PlacesService instance){
+        String query = ctx.pathParam("query");
+
+        int limit;
+        try {
+            limit = limit(ctx.queryParam("limit"));
+        } catch (NumberFormatException e) {
+            ctx.status(HttpStatus.BAD_REQUEST);
+            ctx.json("Bad limit: " + ctx.queryParam("limit"));
+            return;
+        }
+
+        List<Place> places = instance.dataset().fuzzy().search(query, limit);
+        ctx.json(places);
+        ctx.status(HttpStatus.OK);
+    }
+
+    /**
+     * Reads a limit query parameter, keeping it between 1 and MAX_LIMIT
+     * @param limit the query parameter, may be null
+     * @return the limit to use
+     */
+    public static int limit(String limit){
+        if (limit == null) {
+            return DEFAULT_LIMIT;
+        }
+        return Math.max(1, Math.min(MAX_LIMIT, Integer.parseInt(limit)));
+    }
+}
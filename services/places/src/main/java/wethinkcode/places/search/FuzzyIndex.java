@@ -0,0 +1,214 @@
+package wethinkcode.places.search;
+
+import java.util.*;
+
+import wethinkcode.model.Place;
+import wethinkcode.places.Places;
+
+/**
+ * FuzzyIndex : I find places whose names are spelled roughly like some text, for when people
+ * misspell a name or leave out its accents.
+ * <p>
+ * Every distinct name is {@link Names#fold folded} and cut into trigrams, overlapping three
+ * letter pieces, and I keep an inverted index from each trigram to the names containing it.
+ * A query only looks at names that share enough trigrams with it to possibly be within the
+ * allowed number of edits, and ranks those by their edit distance to the query.
+ * <p>
+ * The folded names are not kept. Each distinct name is known by the first place with it, and
+ * is folded again from that place when a query needs it, so the index is only primitive arrays:
+ * the sorted trigrams, and for each the names containing it, and for each name its places.
+ */
+public class FuzzyIndex implements FuzzySearch
+{
+    private static final char PAD = '\u0000';
+
+    private final List<Place> all;
+    private final int[] termRow;
+    private final long[] grams;
+    private final int[] gramOffsets;
+    private final int[] postings;
+    private final int[] rowOffsets;
+    private final int[] rows;
+
+    public FuzzyIndex(Places places){
+        all = places.places();
+
+        Map<String, Integer> termIds = new HashMap<>();
+        List<String> terms = new ArrayList<>();
+        int[] termOfRow = new int[all.size()];
+        for (int row = 0; row < termOfRow.length; row++) {
+            String term = Names.fold(all.get(row).name());
+            termOfRow[row] = termIds.computeIfAbsent(term, t -> {
+                terms.add(t);
+                return terms.size() - 1;
+            });
+        }
+
+        termRow = new int[terms.size()];
+        rowOffsets = new int[terms.size() + 1];
+        for (int row = termOfRow.length - 1; row >= 0; row--) {
+            termRow[termOfRow[row]] = row;
+            rowOffsets[termOfRow[row] + 1]++;
+        }
+        for (int t = 0; t < termRow.length; t++) {
+            rowOffsets[t + 1] += rowOffsets[t];
+        }
+        rows = new int[termOfRow.length];
+        int[] next = Arrays.copyOf(rowOffsets, termRow.length);
+        for (int row = 0; row < termOfRow.length; row++) {
+            rows[next[termOfRow[row]]++] = row;
+        }
+
+        Map<Long, List<Integer>> building = new HashMap<>();
+        for (int t = 0; t < termRow.length; t++) {
+            for (long trigram : trigrams(terms.get(t))) {
+                List<Integer> posting = building.computeIfAbsent(trigram, k -> new ArrayList<>());
+                if (posting.isEmpty() || posting.get(posting.size() - 1) != t) {
+                    posting.add(t);
+                }
+            }
+        }
+        grams = building.keySet().stream().mapToLong(Long::longValue).sorted().toArray();
+        gramOffsets = new int[grams.length + 1];
+        for (int g = 0; g < grams.length; g++) {
+            gramOffsets[g + 1] = gramOffsets[g] + building.get(grams[g]).size();
+        }
+        postings = new int[gramOffsets[grams.length]];
+        for (int g = 0; g < grams.length; g++) {
+            List<Integer> posting = building.get(grams[g]);
+            for (int i = 0; i < posting.size(); i++) {
+                postings[gramOffsets[g] + i] = posting.get(i);
+            }
+        }
+    }
+
+    @Override
+    public List<Place> search(String query, int limit){
+        String folded = Names.fold(query);
+        if (folded.isEmpty()) {
+            return List.of();
+        }
+
+        int maxEdits = maxEdits(folded);
+        long[] wanted = trigrams(folded);
+        int needed = Math.max(1, wanted.length - 3 * maxEdits);
+
+        int[] shared = new int[termRow.length];
+        List<Integer> candidates = new ArrayList<>();
+        for (long gram : wanted) {
+            int g = Arrays.binarySearch(grams, gram);
+            if (g < 0) continue;
+            for (int i = gramOffsets[g]; i < gramOffsets[g + 1]; i++) {
+                int term = postings[i];
+                if (++shared[term] == needed) {
+                    candidates.add(term);
+                }
+            }
+        }
+
+        List<Scored> scored = new ArrayList<>();
+        for (int term : candidates) {
+            String name = term(term);
+            int distance = distance(folded, name, maxEdits);
+            if (distance <= maxEdits) {
+                scored.add(new Scored(term, name, distance, shared[term]));
+            }
+        }
+        scored.sort(Comparator
+                .comparingInt(Scored::distance)
+                .thenComparingInt(s -> -s.shared())
+                .thenComparing(Scored::name));
+
+        List<Place> found = new ArrayList<>(Math.min(limit, 16));
+        for (Scored score : scored) {
+            for (int i = rowOffsets[score.term()]; i < rowOffsets[score.term() + 1] && found.size() < limit; i++) {
+                found.add(all.get(rows[i]));
+            }
+            if (found.size() >= limit) break;
+        }
+        return found;
+    }
+
+    /**
+     * Orders places the way I rank them, by how many edits their folded names are from the query
+     * and then by name, for merging what several indexes found. Names that share more trigrams
+     * with the query are not put first here, as they are by {@link #search}.
+     * @param query the name as the user typed it
+     * @return the order, closest first
+     */
+    public static Comparator<Place> closestTo(String query){
+        String folded = Names.fold(query);
+        int maxEdits = maxEdits(folded);
+        return Comparator.comparingInt((Place place) -> distance(folded, Names.fold(place.name()), maxEdits))
+                .thenComparing(place -> Names.fold(place.name()));
+    }
+
+    public int size(){
+        return termRow.length;
+    }
+
+    /**
+     * @return the folded name of a term, from the first place with it
+     */
+    private String term(int term){
+        return Names.fold(all.get(termRow[term]).name());
+    }
+
+    /**
+     * Longer names may be further off and still be what was meant.
+     */
+    static int maxEdits(String folded){
+        if (folded.length() <= 4) return 1;
+        if (folded.length() <= 8) return 2;
+        return 3;
+    }
+
+    /**
+     * Cuts a folded name into trigrams, padded so that the start and end of the name count
+     * @return each trigram packed into the low 48 bits of a long, in order
+     */
+    static long[] trigrams(String folded){
+        String padded = "" + PAD + PAD + folded + PAD;
+        long[] grams = new long[padded.length() - 2];
+        for (int i = 0; i < grams.length; i++) {
+            grams[i] = ((long) padded.charAt(i) << 32) | ((long) padded.charAt(i + 1) << 16) | padded.charAt(i + 2);
+        }
+        return grams;
+    }
+
+    /**
+     * The Levenshtein distance between two strings, giving up once it is certain to be more than max.
+     * @return the distance, or max + 1 if it is more than max
+     */
+    static int distance(String a, String b, int max){
+        if (Math.abs(a.length() - b.length()) > max) {
+            return max + 1;
+        }
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int best = current[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                best = Math.min(best, current[j]);
+            }
+            if (best > max) {
+                return max + 1;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return Math.min(previous[b.length()], max + 1);
+    }
+
+    /**
+     * A name close enough to the query, with what it is ranked by
+     */
+    private record Scored(int term, String name, int distance, int shared) {}
+}
@@ -0,0 +1,20 @@
+package wethinkcode.places.search;
+
+import java.util.List;
+
+import wethinkcode.model.Place;
+
+/**
+ * FuzzySearch : I find places whose names are spelled roughly like some text, for when people
+ * misspell a name or leave out its accents.
+ */
+public interface FuzzySearch
+{
+    /**
+     * Finds the places with names closest to the query, ignoring accents and case.
+     * @param query the name as the user typed it
+     * @param limit the most places to return
+     * @return up to limit places, closest first
+     */
+    List<Place> search(String query, int limit);
+}
@@ -0,0 +1,24 @@
+package wethinkcode.places.search;
+
+/**
+ * Membership : I answer whether a place with some name exists in a province, for checking
+ * addresses.
+ * <p>
+ * Provinces and places are matched {@link Names#fold folded}, so differently accented or cased
+ * spellings still match.
+ */
+public interface Membership
+{
+    /**
+     * @param province the name of a province
+     * @return true if there is a province with that name
+     */
+    boolean hasProvince(String province);
+
+    /**
+     * @param province the name of a province
+     * @param place the name of a place
+     * @return true if there is a place with that name in the province
+     */
+    boolean contains(String province, String place);
+}
@@ -0,0 +1,49 @@
+package wethinkcode.places.search;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Names : I fold names into a form that compares equal regardless of accents, case and spacing.
+ * <p>
+ * "Gqeberha", "  GQEBERHA " and "Gqébérha" all fold to "gqeberha".
+ */
+public final class Names
+{
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern SPACES = Pattern.compile("\\s+");
+
+    private Names(){}
+
+    /**
+     * Decomposes the name (NFKD), drops the accents, lower-cases it and collapses runs of
+     * whitespace into single spaces.
+     * @param name to fold
+     * @return the folded name
+     */
+    public static String fold(String name){
+        if (isPlainAscii(name)) {
+            return name.toLowerCase(Locale.ROOT);
+        }
+        String decomposed = Normalizer.normalize(name, Normalizer.Form.NFKD);
+        String plain = MARKS.matcher(decomposed).replaceAll("");
+        return SPACES.matcher(plain.toLowerCase(Locale.ROOT)).replaceAll(" ").trim();
+    }
+
+    /**
+     * Most names are already plain ASCII words separated by single spaces, and only need
+     * lower-casing.
+     */
+    private static boolean isPlainAscii(String name){
+        char previous = ' ';
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c >= 0x80 || (Character.isWhitespace(c) && (c != ' ' || previous == ' '))) {
+                return false;
+            }
+            previous = c;
+        }
+        return previous != ' ';
+    }
+}
@@ -0,0 +1,326 @@
+package wethinkcode.places.search;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import wethinkcode.model.Place;
+import wethinkcode.places.PlaceLocations;
+import wethinkcode.places.Places;
+
+/**
+ * NearIndex : I find the places closest to a location, for turning "where I am" into a place.
+ * <p>
+ * Every place with known coordinates is turned into a point on a unit sphere, and the points are
+ * kept in a k-d tree laid out in primitive arrays: each range of the arrays has its median point
+ * in the middle, with the nearer half of the range on either side of it, split along the axis
+ * the range is widest in. The straight line distance between points on the sphere orders them
+ * exactly as the distance along the surface does, so the tree can be searched with plain
+ * Euclidean geometry and still give the true nearest places. I never change after I am built.
+ */
+public class NearIndex implements NearSearch
+{
+    public static final double EARTH_RADIUS_KM = 6371.0088;
+
+    private final List<Place> all;
+    private final PlaceLocations locations;
+    private final int[] rows;
+    private final double[][] points;
+    private final byte[] axes;
+    private final Bounds bounds;
+
+    public NearIndex(Places places){
+        this.all = places.places();
+        this.locations = places.locations();
+
+        int known = 0;
+        for (int row = 0; row < locations.size(); row++) {
+            if (locations.isKnown(row)) known++;
+        }
+
+        rows = new int[known];
+        points = new double[3][known];
+        axes = new byte[known];
+        for (int row = 0, i = 0; row < locations.size(); row++) {
+            if (!locations.isKnown(row)) continue;
+            double[] point = point(locations.latitude(row), locations.longitude(row));
+            rows[i] = row;
+            for (int axis = 0; axis < 3; axis++) {
+                points[axis][i] = point[axis];
+            }
+            i++;
+        }
+        bounds = new Bounds(points, known);
+        build(0, known);
+    }
+
+    @Override
+    public List<NearbyPlace> nearest(double latitude, double longitude, int k){
+        if (k < 1 || rows.length == 0) {
+            return List.of();
+        }
+        Nearest nearest = new Nearest(point(latitude, longitude), k, Double.POSITIVE_INFINITY);
+        nearest.search(0, rows.length);
+        return found(nearest);
+    }
+
+    @Override
+    public List<NearbyPlace> within(double latitude, double longitude, double radiusKm, int limit){
+        if (limit < 1 || rows.length == 0) {
+            return List.of();
+        }
+        double angle = Math.min(Math.PI, radiusKm / EARTH_RADIUS_KM);
+        double chord = 2 * Math.sin(angle / 2);
+
+        Nearest nearest = new Nearest(point(latitude, longitude), limit, chord * chord);
+        nearest.search(0, rows.length);
+        return found(nearest);
+    }
+
+    public int size(){
+        return rows.length;
+    }
+
+    /**
+     * @return a box around my places, small enough to keep after I am dropped
+     */
+    public Bounds bounds(){
+        return bounds;
+    }
+
+    private List<NearbyPlace> found(Nearest nearest){
+        List<NearbyPlace> nearby = new ArrayList<>(nearest.size);
+        for (int i = 0; i < nearest.size; i++) {
+            int row = rows[nearest.found[i]];
+            Place place = all.get(row);
+            nearby.add(new NearbyPlace(
+                    place.name(),
+                    place.municipality(),
+                    locations.latitude(row),
+                    locations.longitude(row),
+                    kilometres(nearest.distances[i])
+            ));
+        }
+        nearby.sort(Comparator.comparingDouble(NearbyPlace::distance));
+        return nearby;
+    }
+
+    /**
+     * Arranges the range so that its middle point is the median along its widest axis
+     */
+    private void build(int from, int to){
+        if (to - from < 2) {
+            return;
+        }
+        int axis = widestAxis(from, to);
+        int middle = (from + to) >>> 1;
+        select(axis, from, to - 1, middle);
+        axes[middle] = (byte) axis;
+        build(from, middle);
+        build(middle + 1, to);
+    }
+
+    private int widestAxis(int from, int to){
+        int widest = 0;
+        double widestSpread = -1;
+        for (int axis = 0; axis < 3; axis++) {
+            double min = Double.MAX_VALUE;
+            double max = -Double.MAX_VALUE;
+            for (int i = from; i < to; i++) {
+                min = Math.min(min, points[axis][i]);
+                max = Math.max(max, points[axis][i]);
+            }
+            if (max - min > widestSpread) {
+                widest = axis;
+                widestSpread = max - min;
+            }
+        }
+        return widest;
+    }
+
+    /**
+     * Quickselect: moves the point that belongs at index n along the axis there, with smaller
+     * points before it and larger ones after it
+     */
+    private void select(int axis, int low, int high, int n){
+        double[] values = points[axis];
+        while (low < high) {
+            double pivot = values[(low + high) >>> 1];
+            int i = low;
+            int j = high;
+            while (i <= j) {
+                while (values[i] < pivot) i++;
+                while (values[j] > pivot) j--;
+                if (i <= j) {
+                    swap(i++, j--);
+                }
+            }
+            if (n <= j) {
+                high = j;
+            } else if (n >= i) {
+                low = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void swap(int a, int b){
+        int row = rows[a];
+        rows[a] = rows[b];
+        rows[b] = row;
+        for (double[] values : points) {
+            double value = values[a];
+            values[a] = values[b];
+            values[b] = value;
+        }
+    }
+
+    private double distanceSquared(double[] query, int i){
+        double dx = query[0] - points[0][i];
+        double dy = query[1] - points[1][i];
+        double dz = query[2] - points[2][i];
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    static double[] point(double latitude, double longitude){
+        double lat = Math.toRadians(latitude);
+        double lon = Math.toRadians(longitude);
+        return new double[]{
+                Math.cos(lat) * Math.cos(lon),
+                Math.cos(lat) * Math.sin(lon),
+                Math.sin(lat)
+        };
+    }
+
+    static double kilometres(double chordSquared){
+        return EARTH_RADIUS_KM * 2 * Math.asin(Math.min(1, Math.sqrt(chordSquared) / 2));
+    }
+
+    /**
+     * Bounds : I am a box around some places on the unit sphere, for ruling out all of them at
+     * once without looking at any.
+     */
+    public static final class Bounds
+    {
+        private final double[] min = new double[3];
+        private final double[] max = new double[3];
+        private final boolean empty;
+
+        private Bounds(double[][] points, int size){
+            empty = size == 0;
+            for (int axis = 0; axis < 3; axis++) {
+                min[axis] = Double.MAX_VALUE;
+                max[axis] = -Double.MAX_VALUE;
+                for (int i = 0; i < size; i++) {
+                    min[axis] = Math.min(min[axis], points[axis][i]);
+                    max[axis] = Math.max(max[axis], points[axis][i]);
+                }
+            }
+        }
+
+        /**
+         * @param latitude of a location, in degrees
+         * @param longitude of a location, in degrees
+         * @return at most the distance along the surface of the earth, in km, from the location
+         * to any of the places in me, or infinity if there are none
+         */
+        public double closestKm(double latitude, double longitude){
+            if (empty) {
+                return Double.POSITIVE_INFINITY;
+            }
+            double[] query = point(latitude, longitude);
+            double chordSquared = 0;
+            for (int axis = 0; axis < 3; axis++) {
+                double outside = Math.max(0, Math.max(min[axis] - query[axis], query[axis] - max[axis]));
+                chordSquared += outside * outside;
+            }
+            return kilometres(chordSquared);
+        }
+    }
+
+    /**
+     * The k nearest points seen so far that are no further than a squared chord of reach,
+     * in a max-heap on distance
+     */
+    private class Nearest
+    {
+        final double[] query;
+        final double reach;
+        final int[] found;
+        final double[] distances;
+        int size = 0;
+
+        Nearest(double[] query, int k, double reach){
+            this.query = query;
+            this.reach = reach;
+            this.found = new int[Math.min(k, rows.length)];
+            this.distances = new double[found.length];
+        }
+
+        void search(int from, int to){
+            if (from >= to) {
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            offer(middle, distanceSquared(query, middle));
+            if (to - from == 1) {
+                return;
+            }
+
+            int axis = axes[middle];
+            double difference = query[axis] - points[axis][middle];
+            boolean before = difference < 0;
+            search(before ? from : middle + 1, before ? middle : to);
+            if (difference * difference <= (size < found.length ? reach : distances[0])) {
+                search(before ? middle + 1 : from, before ? to : middle);
+            }
+        }
+
+        private void offer(int point, double distance){
+            if (distance > reach) {
+                return;
+            }
+            if (size < found.length) {
+                found[size] = point;
+                distances[size] = distance;
+                up(size++);
+            } else if (distance < distances[0]) {
+                found[0] = point;
+                distances[0] = distance;
+                down(0);
+            }
+        }
+
+        private void up(int i){
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (distances[parent] >= distances[i]) return;
+                exchange(i, parent);
+                i = parent;
+            }
+        }
+
+        private void down(int i){
+            while (true) {
+                int largest = i;
+                int left = 2 * i + 1;
+                int right = left + 1;
+                if (left < size && distances[left] > distances[largest]) largest = left;
+                if (right < size && distances[right] > distances[largest]) largest = right;
+                if (largest == i) return;
+                exchange(i, largest);
+                i = largest;
+            }
+        }
+
+        private void exchange(int a, int b){
+            int point = found[a];
+            found[a] = found[b];
+            found[b] = point;
+            double distance = distances[a];
+            distances[a] = distances[b];
+            distances[b] = distance;
+        }
+    }
+}
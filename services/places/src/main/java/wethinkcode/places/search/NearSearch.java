@@ -0,0 +1,28 @@
+package wethinkcode.places.search;
+
+import java.util.List;
+
+/**
+ * NearSearch : I find the places closest to a location, for turning "where I am" into a place.
+ */
+public interface NearSearch
+{
+    /**
+     * Finds the places closest to a location.
+     * @param latitude of the location, in degrees
+     * @param longitude of the location, in degrees
+     * @param k the number of places to find
+     * @return up to k places, nearest first
+     */
+    List<NearbyPlace> nearest(double latitude, double longitude, int k);
+
+    /**
+     * Finds the places within some distance of a location.
+     * @param latitude of the location, in degrees
+     * @param longitude of the location, in degrees
+     * @param radiusKm the greatest distance along the surface of the earth, in km
+     * @param limit the most places to return
+     * @return up to limit of the places in the radius, nearest first
+     */
+    List<NearbyPlace> within(double latitude, double longitude, double radiusKm, int limit);
+}
@@ -0,0 +1,18 @@
+package wethinkcode.places.search;
+
+/**
+ * NearbyPlace : I am a place found near some location, with how far away it is.
+ *
+ * @param name of the place
+ * @param municipality the place is in
+ * @param latitude of the place, in degrees
+ * @param longitude of the place, in degrees
+ * @param distance from the location to the place along the surface of the earth, in km
+ */
+public record NearbyPlace(
+        String name,
+        String municipality,
+        double latitude,
+        double longitude,
+        double distance
+) {}
@@ -0,0 +1,96 @@
+package wethinkcode.places.search;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import wethinkcode.model.Municipality;
+import wethinkcode.model.Place;
+import wethinkcode.model.Province;
+import wethinkcode.places.Places;
+
+/**
+ * PlaceMembership : I answer whether a place with some name exists in a province, in constant
+ * time, for checking many addresses at once.
+ * <p>
+ * Every province and place name pair is {@link Names#fold folded} and joined into one key, so
+ * differently accented or cased spellings still match. The keys are not kept: a {@link RowTable}
+ * finds the place a key belongs to by working out the keys of the places whose hash matches, so
+ * all I hold for each place is a few ints, and the names stay wherever the database keeps them.
+ * A Bloom filter of the keys sits in front of the table, so most names that do not exist are
+ * turned away before any place is looked at. I give the same answers as looking for the name
+ * among {@link Places#placesInProvince}, and I never change after I am built.
+ */
+public class PlaceMembership implements Membership
+{
+    private static final char SEPARATOR = '\u0000';
+    private static final double FALSE_POSITIVES = 0.01;
+    private static final int NO_PROVINCE = -1;
+
+    private final List<Place> all;
+    private final String[] foldedProvinces;
+    private final Map<String, Integer> provinceIds = new HashMap<>();
+    private final int[] provinceOfRow;
+    private final RowTable table;
+    private final BloomFilter<CharSequence> filter;
+
+    public PlaceMembership(Places places){
+        for (Province province : places.provinces()) {
+            provinceIds.putIfAbsent(Names.fold(province.name()), provinceIds.size());
+        }
+        all = places.places();
+        provinceOfRow = new int[all.size()];
+        for (int row = 0; row < provinceOfRow.length; row++) {
+            provinceOfRow[row] = places.municipality(all.get(row).municipality())
+                    .map(Municipality::province)
+                    .map(province -> provinceIds.computeIfAbsent(Names.fold(province), p -> provinceIds.size()))
+                    .orElse(NO_PROVINCE);
+        }
+        foldedProvinces = new String[provinceIds.size()];
+        provinceIds.forEach((province, id) -> foldedProvinces[id] = province);
+
+        table = new RowTable(provinceOfRow.length, this::keyOfRow);
+        filter = BloomFilter.create(
+                Funnels.stringFunnel(StandardCharsets.UTF_8),
+                Math.max(1, table.size()),
+                FALSE_POSITIVES
+        );
+        for (int row = 0; row < provinceOfRow.length; row++) {
+            if (provinceOfRow[row] != NO_PROVINCE) {
+                filter.put(keyOfRow(row));
+            }
+        }
+    }
+
+    @Override
+    public boolean hasProvince(String province){
+        return province != null && provinceIds.containsKey(Names.fold(province));
+    }
+
+    @Override
+    public boolean contains(String province, String place){
+        if (province == null || place == null) {
+            return false;
+        }
+        String key = key(Names.fold(province), Names.fold(place));
+        return filter.mightContain(key) && table.find(key) >= 0;
+    }
+
+    /**
+     * @return how many different places there are in each province, counting names the way I
+     * match them
+     */
+    public int size(){
+        return table.size();
+    }
+
+    private String keyOfRow(int row){
+        int province = provinceOfRow[row];
+        return province == NO_PROVINCE ? null : key(foldedProvinces[province], Names.fold(all.get(row).name()));
+    }
+
+    private static String key(String province, String place){
+        return province + SEPARATOR + place;
+    }
+}
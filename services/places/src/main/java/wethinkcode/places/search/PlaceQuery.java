@@ -0,0 +1,149 @@
+package wethinkcode.places.search;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Predicate;
+
+import wethinkcode.model.Municipality;
+import wethinkcode.model.Place;
+import wethinkcode.model.Province;
+import wethinkcode.places.Places;
+
+/**
+ * PlaceQuery : I am a search for places by any of their province, municipality, feature type and
+ * the start of their name, matched regardless of case.
+ * <p>
+ * I am answered from whichever index narrows the search the most, so the places that do not
+ * match are mostly never looked at. A municipality is small enough to filter one place at a
+ * time, otherwise a name prefix is a walk along the {@link PrefixIndex}, and a province alone is
+ * its list of places in the database. Counting places by prefix alone does not look at any places.
+ * <p>
+ * The type of a place is only known by its position in the database, so a search by type is
+ * always a walk along the {@link PrefixIndex}, which checks the type of each place it passes
+ * without creating it, and finds places in name order. Within a municipality the walk is
+ * limited to its province.
+ *
+ * @param province the province the places are in, or null for any
+ * @param municipality the municipality the places are in, or null for any
+ * @param prefix the start of their names, or null for any
+ * @param type the feature type of the places, such as "town", or null for any
+ */
+public record PlaceQuery(String province, String municipality, String prefix, String type) {
+
+    /**
+     * A search without a feature type
+     */
+    public PlaceQuery(String province, String municipality, String prefix){
+        this(province, municipality, prefix, null);
+    }
+
+    /**
+     * @param places the database
+     * @param prefixes the prefix index over the database
+     * @param offset how many matching places to skip
+     * @param limit the most places to return
+     * @return up to limit matching places
+     */
+    public List<Place> find(Places places, PrefixSearch prefixes, int offset, int limit){
+        Optional<Scope> scope = scope(places);
+        if (scope.isEmpty()) {
+            return List.of();
+        }
+
+        Scope in = scope.get();
+        if (type != null) {
+            return prefixes.search(prefixOrAny(), in.province(), type, in.filter(), offset, limit);
+        }
+        if (in.municipality() == null && prefix != null) {
+            return prefixes.search(prefix, in.province(), null, in.filter(), offset, limit);
+        }
+        List<Place> matching = candidates(places, in);
+        if (prefix != null) {
+            matching = matching.stream()
+                    .filter(place -> PrefixIndex.startsWith(place.name(), prefix))
+                    .toList();
+        }
+        int from = Math.min(offset, matching.size());
+        return matching.subList(from, Math.min(matching.size(), from + limit));
+    }
+
+    /**
+     * @param places the database
+     * @param prefixes the prefix index over the database
+     * @return how many places match
+     */
+    public int count(Places places, PrefixSearch prefixes){
+        Optional<Scope> scope = scope(places);
+        if (scope.isEmpty()) {
+            return 0;
+        }
+
+        Scope in = scope.get();
+        if (type != null && in.municipality() != null) {
+            return prefixes.search(prefixOrAny(), in.province(), type, in.filter(), 0, Integer.MAX_VALUE).size();
+        }
+        if (type != null || (in.municipality() == null && prefix != null)) {
+            return prefixes.count(prefixOrAny(), in.province(), type);
+        }
+        List<Place> matching = candidates(places, in);
+        if (prefix == null) {
+            return matching.size();
+        }
+        return (int) matching.stream()
+                .filter(place -> PrefixIndex.startsWith(place.name(), prefix))
+                .count();
+    }
+
+    private String prefixOrAny(){
+        return prefix == null ? "" : prefix;
+    }
+
+    private static List<Place> candidates(Places places, Scope in){
+        if (in.municipality() != null) {
+            return places.placesInMunicipality(in.municipality());
+        }
+        if (in.province() != null) {
+            return places.placesInProvince(in.province());
+        }
+        return places.places();
+    }
+
+    /**
+     * Finds the names the database uses for the province and municipality asked for, or nothing
+     * if no place can match.
+     */
+    private Optional<Scope> scope(Places places){
+        String provinceName = null;
+        if (province != null) {
+            Optional<Province> found = places.province(province);
+            if (found.isEmpty()) {
+                return Optional.empty();
+            }
+            provinceName = found.get().name();
+        }
+
+        String municipalityName = null;
+        if (municipality != null) {
+            Optional<Municipality> found = places.municipality(municipality);
+            if (found.isEmpty()) {
+                return Optional.empty();
+            }
+            if (provinceName != null && !found.get().province().equals(provinceName)) {
+                return Optional.empty();
+            }
+            provinceName = found.get().province();
+            municipalityName = found.get().name();
+        }
+        return Optional.of(new Scope(provinceName, municipalityName));
+    }
+
+    private record Scope(String province, String municipality) {
+
+        /**
+         * @return accepts only the places in the municipality, if there is one
+         */
+        Predicate<Place> filter(){
+            return municipality == null ? place -> true : place -> place.municipality().equals(municipality);
+        }
+    }
+}
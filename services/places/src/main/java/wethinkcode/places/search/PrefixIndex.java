@@ -0,0 +1,158 @@
+package wethinkcode.places.search;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+import wethinkcode.model.Municipality;
+import wethinkcode.model.Place;
+import wethinkcode.places.PlaceTypes;
+import wethinkcode.places.Places;
+
+/**
+ * PrefixIndex : I find the places whose names start with some text, for type-ahead.
+ * <p>
+ * I keep the position of each place in {@link Places#places()} in one array sorted by lower case
+ * name, next to the province each is in, and look the type of each place up in
+ * {@link Places#types()} by its position. The names themselves stay wherever the database keeps
+ * them, so I hold only ints for each place. A query is two binary searches, for the first name
+ * with the prefix and the first one past it, followed by a walk along the array between them, so
+ * it touches only the places that match and creates nothing but the result list. Provinces are
+ * matched {@link Names#fold folded}, so their case and accents do not matter. I never change
+ * after I am built.
+ */
+public class PrefixIndex implements PrefixSearch
+{
+    private static final int NO_PROVINCE = -1;
+    private static final int NO_SUCH_PROVINCE = -2;
+
+    private final List<Place> all;
+    private final int[] rows;
+    private final int[] provinceOfRow;
+    private final PlaceTypes types;
+    private final Map<String, Integer> provinceIds = new HashMap<>();
+
+    public PrefixIndex(Places places){
+        all = places.places();
+        types = places.types();
+        Integer[] order = new Integer[all.size()];
+        String[] names = new String[all.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+            names[i] = key(all.get(i).name());
+        }
+        Arrays.sort(order, Comparator.comparing((Integer i) -> names[i]));
+
+        rows = new int[order.length];
+        provinceOfRow = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            rows[i] = order[i];
+            provinceOfRow[i] = places.municipality(all.get(order[i]).municipality())
+                    .map(Municipality::province)
+                    .map(province -> provinceIds.computeIfAbsent(Names.fold(province), p -> provinceIds.size()))
+                    .orElse(NO_PROVINCE);
+        }
+    }
+
+    @Override
+    public List<Place> search(String prefix, String province, String type, Predicate<Place> filter, int offset, int limit){
+        int wantedProvince = provinceId(province);
+        byte wantedType = type == null ? PlaceTypes.UNKNOWN : types.code(type);
+        if (wantedProvince == NO_SUCH_PROVINCE || (type != null && wantedType == PlaceTypes.UNKNOWN)) {
+            return List.of();
+        }
+
+        String key = key(prefix);
+        int to = lowerBound(key + Character.MAX_VALUE);
+        List<Place> found = new ArrayList<>(Math.min(limit, 16));
+
+        int skipped = 0;
+        for (int i = lowerBound(key); i < to && found.size() < limit; i++) {
+            if (wantedProvince != NO_PROVINCE && provinceOfRow[i] != wantedProvince) {
+                continue;
+            }
+            if (type != null && types.code(rows[i]) != wantedType) {
+                continue;
+            }
+            Place place = all.get(rows[i]);
+            if (!filter.test(place)) {
+                continue;
+            }
+            if (skipped < offset) {
+                skipped++;
+            } else {
+                found.add(place);
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public int count(String prefix, String province, String type){
+        int wantedProvince = provinceId(province);
+        byte wantedType = type == null ? PlaceTypes.UNKNOWN : types.code(type);
+        if (wantedProvince == NO_SUCH_PROVINCE || (type != null && wantedType == PlaceTypes.UNKNOWN)) {
+            return 0;
+        }
+
+        String key = key(prefix);
+        int from = lowerBound(key);
+        int to = lowerBound(key + Character.MAX_VALUE);
+        if (wantedProvince == NO_PROVINCE && type == null) {
+            return to - from;
+        }
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            if ((wantedProvince == NO_PROVINCE || provinceOfRow[i] == wantedProvince)
+                    && (type == null || types.code(rows[i]) == wantedType)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @param name a place name
+     * @param prefix the start of a name
+     * @return true if the name starts with the prefix, matched the way I match it
+     */
+    public static boolean startsWith(String name, String prefix){
+        return key(name).startsWith(key(prefix));
+    }
+
+    /**
+     * @return the order I find places in, for merging what several indexes found
+     */
+    public static Comparator<Place> order(){
+        return Comparator.comparing(place -> key(place.name()));
+    }
+
+    public int size(){
+        return rows.length;
+    }
+
+    private int provinceId(String province){
+        if (province == null) {
+            return NO_PROVINCE;
+        }
+        Integer id = provinceIds.get(Names.fold(province));
+        return id == null ? NO_SUCH_PROVINCE : id;
+    }
+
+    private int lowerBound(String key){
+        int low = 0;
+        int high = rows.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (key(all.get(rows[middle]).name()).compareTo(key) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static String key(String name){
+        return name.toLowerCase(Locale.ROOT);
+    }
+}
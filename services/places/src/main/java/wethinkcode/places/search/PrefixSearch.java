@@ -0,0 +1,60 @@
+package wethinkcode.places.search;
+
+import java.util.List;
+import java.util.function.Predicate;
+
+import wethinkcode.model.Place;
+
+/**
+ * PrefixSearch : I find the places whose names start with some text, for type-ahead.
+ * <p>
+ * Names are matched ignoring case, and provinces are matched {@link Names#fold folded}, so their
+ * case and accents do not matter. Feature types, such as "town", are matched ignoring case, see
+ * {@link wethinkcode.places.PlaceTypes}. Places are found in the {@link PrefixIndex#order() order} of
+ * their names.
+ */
+public interface PrefixSearch
+{
+    /**
+     * Finds places whose names start with a prefix, ignoring case, in name order.
+     * @param prefix the start of the name
+     * @param province only places in this province, or null for any province
+     * @param limit the most places to return
+     * @return up to limit matching places
+     */
+    default List<Place> search(String prefix, String province, int limit){
+        return search(prefix, province, null, place -> true, 0, limit);
+    }
+
+    /**
+     * Finds places whose names start with a prefix, ignoring case, in name order, skipping
+     * those that are not of a type or do not pass a filter.
+     * @param prefix the start of the name
+     * @param province only places in this province, or null for any province
+     * @param type only places of this feature type, or null for any type
+     * @param filter only places it accepts
+     * @param offset how many matching places to skip
+     * @param limit the most places to return
+     * @return up to limit matching places
+     */
+    List<Place> search(String prefix, String province, String type, Predicate<Place> filter, int offset, int limit);
+
+    /**
+     * Counts the places whose names start with a prefix, ignoring case.
+     * @param prefix the start of the name
+     * @param province only places in this province, or null for any province
+     * @return how many places match
+     */
+    default int count(String prefix, String province){
+        return count(prefix, province, null);
+    }
+
+    /**
+     * Counts the places of a type whose names start with a prefix, ignoring case.
+     * @param prefix the start of the name
+     * @param province only places in this province, or null for any province
+     * @param type only places of this feature type, or null for any type
+     * @return how many places match
+     */
+    int count(String prefix, String province, String type);
+}
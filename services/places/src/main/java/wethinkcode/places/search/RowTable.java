@@ -0,0 +1,82 @@
+package wethinkcode.places.search;
+
+import java.util.Arrays;
+import java.util.function.IntFunction;
+
+/**
+ * RowTable : I find the first row with some key, without keeping the keys.
+ * <p>
+ * The key of a row is worked out from the row whenever it is needed, so that an index over
+ * places that live in a compact or off-heap store holds no String for any of them. I am an
+ * open-addressed hash table of two int arrays, the hash of each key next to the row it came
+ * from, and a lookup only works out the key of a row whose hash matches. I never change after
+ * I am built.
+ */
+public class RowTable
+{
+    private static final int EMPTY = -1;
+
+    private final IntFunction<String> keyOfRow;
+    private final int[] hashes;
+    private final int[] rows;
+    private final int mask;
+    private int size = 0;
+
+    /**
+     * @param rows how many rows there are, numbered from 0
+     * @param keyOfRow works out the key of a row, or null for a row that cannot be found
+     */
+    public RowTable(int rows, IntFunction<String> keyOfRow){
+        this.keyOfRow = keyOfRow;
+        int capacity = Integer.highestOneBit(Math.max(2, rows) * 2 - 1) << 1;
+        this.hashes = new int[capacity];
+        this.rows = new int[capacity];
+        this.mask = capacity - 1;
+        Arrays.fill(this.rows, EMPTY);
+
+        for (int row = 0; row < rows; row++) {
+            String key = keyOfRow.apply(row);
+            if (key == null) {
+                continue;
+            }
+            int hash = hash(key);
+            int slot = find(key, hash);
+            if (this.rows[slot] == EMPTY) {
+                this.hashes[slot] = hash;
+                this.rows[slot] = row;
+                size++;
+            }
+        }
+    }
+
+    /**
+     * @param key a key
+     * @return the first row with the key, or -1 if no row has it
+     */
+    public int find(String key){
+        return rows[find(key, hash(key))];
+    }
+
+    /**
+     * @return how many different keys there are
+     */
+    public int size(){
+        return size;
+    }
+
+    /**
+     * @return the slot the key is in, or the empty slot it would go in
+     */
+    private int find(String key, int hash){
+        int slot = hash & mask;
+        while (rows[slot] != EMPTY && (hashes[slot] != hash || !keyOfRow.apply(rows[slot]).equals(key))) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static int hash(String key){
+        int hash = key.hashCode() * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,92 @@
+package wethinkcode.places;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit-test suite for loading places from several, possibly compressed, CSV files.
+ */
+public class CsvSourcesTest
+{
+    @TempDir
+    Path directory;
+
+    private static final String[] LINES = PlacesTestData.CSV_DATA.split("\n");
+
+    private File write(String name, int from, int to, boolean compress) throws IOException {
+        File file = directory.resolve(name).toFile();
+        OutputStream out = new FileOutputStream(file);
+        if (compress) {
+            out = new GZIPOutputStream(out);
+        }
+        try (Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8)) {
+            writer.write(PlacesTestData.HEADER);
+            for (int i = from; i < to; i++) {
+                writer.write(LINES[i]);
+                writer.write('\n');
+            }
+        }
+        return file;
+    }
+
+    @Test
+    public void directoryHasEveryCsvPartInNameOrder() throws IOException {
+        File second = write("places-2.csv.gz", 6, LINES.length, true);
+        File first = write("places-1.csv", 0, 6, false);
+        write("notes.txt", 0, 1, false);
+
+        assertEquals(List.of(first, second), CsvSources.of(directory.toFile()).files());
+    }
+
+    @Test
+    public void globMatchesFileNames() throws IOException {
+        File first = write("places-1.csv.gz", 0, 6, true);
+        File second = write("places-2.csv.gz", 6, LINES.length, true);
+        write("places-1.csv", 0, 6, false);
+
+        CsvSources sources = CsvSources.of(directory.resolve("places-*.csv.gz").toFile());
+        assertEquals(List.of(first, second), sources.files());
+        assertTrue(sources.matches(Path.of("places-3.csv.gz")));
+        assertFalse(sources.matches(Path.of("places-3.csv")));
+    }
+
+    @Test
+    public void singleFileIsItsOwnSource() throws IOException {
+        File only = write("places.csv", 0, LINES.length, false);
+        write("other.csv", 0, 1, false);
+
+        assertEquals(List.of(only), CsvSources.of(only).files());
+    }
+
+    @Test
+    public void compressedPartsParseLikeOneFile() throws IOException {
+        Places whole = new PlacesCsvParser().parseCsvSource(write("whole.csv", 0, LINES.length, false));
+
+        List<File> parts = List.of(
+                write("part-1.csv.gz", 0, 3, true),
+                write("part-2.csv", 3, 7, false),
+                write("part-3.csv.gz", 7, LINES.length, true)
+        );
+        Places merged = new PlacesCsvParser().parseCsvSources(parts);
+
+        assertEquals(whole.provinces(), merged.provinces());
+        assertEquals(whole.municipalities(), merged.municipalities());
+        assertEquals(whole.places(), merged.places());
+        assertEquals(whole.locations().latitude(4), merged.locations().latitude(4));
+    }
+
+    @Test
+    public void missingPartFails() {
+        assertThrows(FileNotFoundException.class, () -> new PlacesCsvParser().parseCsvSources(List.of(
+                directory.resolve("missing.csv.gz").toFile()
+        )));
+    }
+}
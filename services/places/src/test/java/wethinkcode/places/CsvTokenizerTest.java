@@ -0,0 +1,53 @@
+package wethinkcode.places;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import org.junit.jupiter.api.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit-test suite for the character level CSV tokenizer.
+ */
+public class CsvTokenizerTest
+{
+    @Test
+    public void splitsPlainRecords() throws IOException {
+        CsvTokenizer tokenizer = new CsvTokenizer(new StringReader("a,b,c\nd,,f\n"));
+        assertEquals(List.of("a", "b", "c"), tokenizer.nextRecord());
+        assertEquals(List.of("d", "", "f"), tokenizer.nextRecord());
+        assertNull(tokenizer.nextRecord());
+    }
+
+    @Test
+    public void quotedFieldsKeepDelimitersAndEscapedQuotes() throws IOException {
+        CsvTokenizer tokenizer = new CsvTokenizer(new StringReader("\"Cape, Town\",\"say \"\"hi\"\"\",x"));
+        assertEquals(List.of("Cape, Town", "say \"hi\"", "x"), tokenizer.nextRecord());
+        assertNull(tokenizer.nextRecord());
+    }
+
+    @Test
+    public void quotedFieldsMayContainLineBreaks() throws IOException {
+        CsvTokenizer tokenizer = new CsvTokenizer(new StringReader("\"one\ntwo\",3\r\nfour,5\r\n"));
+        assertEquals(List.of("one\ntwo", "3"), tokenizer.nextRecord());
+        assertEquals(List.of("four", "5"), tokenizer.nextRecord());
+        assertNull(tokenizer.nextRecord());
+    }
+
+    @Test
+    public void onlyKeepsWantedColumns() throws IOException {
+        CsvTokenizer tokenizer = new CsvTokenizer(new StringReader("a,b,c,d\ne\n"));
+        String[] row = new String[2];
+        int[] slots = {-1, 1, -1, 0};
+
+        assertEquals(4, tokenizer.nextRecord(slots, row));
+        assertArrayEquals(new String[]{"d", "b"}, row);
+
+        assertEquals(1, tokenizer.nextRecord(slots, row));
+        assertArrayEquals(new String[]{"", ""}, row);
+
+        assertEquals(-1, tokenizer.nextRecord(slots, row));
+    }
+}
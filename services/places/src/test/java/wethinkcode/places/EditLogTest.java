@@ -0,0 +1,83 @@
+package wethinkcode.places;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import wethinkcode.model.Municipality;
+import wethinkcode.model.Place;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Edits must outlive a restart, be dropped once the data files have them, and be reported when
+ * they can no longer be made after a reload.
+ */
+public class EditLogTest
+{
+    @TempDir
+    Path directory;
+
+    @Test
+    public void editsAreReadBackFromTheirFile() throws IOException {
+        Path file = directory.resolve("edits.jsonl");
+        List<PlaceEdit> edits = List.of(
+                PlaceEdit.addMunicipality(new Municipality("Mogale City", "Gauteng")),
+                PlaceEdit.updatePlace(new Place("Sandton", "City of Johannesburg"), new Place("Sandton", "Mogale City")),
+                PlaceEdit.removeMunicipality("City of Johannesburg")
+        );
+        new EditLog(file).add(edits);
+
+        EditLog log = new EditLog(file);
+        assertEquals(edits, log.edits());
+        log.replace(edits.subList(1, 2));
+        assertEquals(edits.subList(1, 2), new EditLog(file).edits());
+    }
+
+    @Test
+    public void aFileThatIsNotEditsIsRefused() throws IOException {
+        Path file = directory.resolve("edits.jsonl");
+        Files.writeString(file, "not json\n");
+        assertThrows(IOException.class, () -> new EditLog(file));
+    }
+
+    @Test
+    public void editsTheDataHasAreDroppedAndOnesThatNoLongerFitAreReported() throws IOException {
+        Path csv = directory.resolve("places.csv");
+        writeCsv(csv, "Soweto,Town,1,-26,28,,,Gauteng,,,,,,,City of Johannesburg,,,,,\n"
+                + "Cape Town,Town,2,-34,18,,,Western Cape,,,,,,,City of Cape Town,,,,,\n");
+        PlacesService service = new PlacesService();
+        service.data = csv.toString();
+        service.edits = directory.resolve("edits.jsonl").toString();
+        service.createPlaces();
+
+        service.edit(PlaceEdit.addPlace(new Place("Sandton", "City of Johannesburg")));
+        service.edit(PlaceEdit.addPlace(new Place("Bellville", "City of Cape Town")));
+        service.edit(PlaceEdit.addPlace(new Place("Lenasia", "City of Johannesburg")));
+        assertEquals(3, service.editCount());
+
+        writeCsv(csv, "Soweto,Town,1,-26,28,,,Gauteng,,,,,,,City of Johannesburg,,,,,\n"
+                + "Sandton,Town,3,-26,28,,,Gauteng,,,,,,,City of Johannesburg,,,,,\n");
+        service.reload();
+
+        assertEquals(1, service.editCount());
+        assertEquals(1, service.failedEdits().size());
+        assertTrue(service.failedEdits().get(0).contains("Bellville"));
+        assertEquals(3, service.dataset().places().size());
+
+        PlacesService restarted = new PlacesService();
+        restarted.data = csv.toString();
+        restarted.edits = service.edits;
+        restarted.createPlaces();
+        assertEquals(1, restarted.editCount());
+        assertTrue(restarted.dataset().places().place("Lenasia").isPresent());
+    }
+
+    private static void writeCsv(Path csv, String rows) throws IOException {
+        Files.writeString(csv, PlacesTestData.HEADER + rows, StandardCharsets.UTF_8);
+    }
+}
@@ -23,6 +23,7 @@ import static org.junit.jupiter.api.Assertions.*;
 public class PlacesApiTest
 {
     public static final int TEST_PORT = 7377;
+    private static final String ADMIN_TOKEN = "test-admin-token";
     private static Service<PlacesService> SERVICE;
 
 
@@ -52,7 +53,7 @@ public class PlacesApiTest
         }
 
         SERVICE = new Service<>(new PlacesService())
-                .execute("-p="+TEST_PORT, "-c="+properties.getAbsolutePath());
+                .execute("-p="+TEST_PORT, "-c="+properties.getAbsolutePath(), "-at="+ADMIN_TOKEN);
 
 
     }
@@ -87,18 +88,173 @@ public class PlacesApiTest
 
     }
 
+    @Test
+    public void getTownsInAProvinceAPageAtATime(){
+        HttpResponse<JsonNode> response = Unirest.get( SERVICE.url() + "/places/province/Gauteng?offset=0&limit=1").asJson();
+        assertEquals(HttpStatus.FOUND, response.getStatus());
+        assertEquals(1, response.getBody().getArray().length());
+        assertEquals("1", response.getHeaders().getFirst("X-Total-Count"));
+        assertFalse(response.getHeaders().containsKey("X-Next-Offset"));
+
+        response = Unirest.get( SERVICE.url() + "/places/province/Gauteng?offset=1&limit=1").asJson();
+        assertEquals(0, response.getBody().getArray().length());
+
+        response = Unirest.get( SERVICE.url() + "/places/province/Gauteng?offset=-1").asJson();
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatus());
+    }
+
+    @Test
+    public void getTownsInAMunicipalityStreamed(){
+        HttpResponse<JsonNode> response = Unirest.get( SERVICE.url() + "/places/municipality/Ekurhuleni Metro").asJson();
+        assertEquals(HttpStatus.FOUND, response.getStatus());
+        JSONArray array = response.getBody().getArray();
+        assertEquals(1, array.length());
+        assertEquals("Brakpan", array.getJSONObject(0).get("name"));
+    }
+
+    @Test
+    public void namesMatchRegardlessOfCaseAndAccents(){
+        HttpResponse<JsonNode> response = Unirest.get( SERVICE.url() + "/places/province/kwazulu-natal").asJson();
+        assertEquals(HttpStatus.FOUND, response.getStatus());
+        assertEquals("Amatikulu", response.getBody().getArray().getJSONObject(0).get("name"));
+
+        response = Unirest.get( SERVICE.url() + "/exists/KWAZULU-NATAL/Ámatikulu").asJson();
+        assertEquals(HttpStatus.FOUND, response.getStatus());
+    }
+
     @Test
     public void getTownsInAProvince_noSuchProvinceInDb(){
         HttpResponse<JsonNode> response = Unirest.get( SERVICE.url() + "/place/Oregon" ).asJson();
         assertEquals(404, response.getStatus());
     }
 
+    @Test
+    public void unchangedResponsesAreNotSentAgain(){
+        HttpResponse<JsonNode> response = Unirest.get( SERVICE.url() + "/municipalities/Gauteng").asJson();
+        assertEquals(HttpStatus.OK, response.getStatus());
+        String etag = response.getHeaders().getFirst("ETag");
+        assertFalse(etag.isEmpty());
+
+        HttpResponse<String> notModified = Unirest.get( SERVICE.url() + "/municipalities/Gauteng")
+                .header("If-None-Match", etag)
+                .asString();
+        assertEquals(HttpStatus.NOT_MODIFIED, notModified.getStatus());
+
+        response = Unirest.get( SERVICE.url() + "/municipalities/Gauteng")
+                .header("If-None-Match", "\"something-else\"")
+                .asJson();
+        assertEquals(HttpStatus.OK, response.getStatus());
+        assertEquals(etag, response.getHeaders().getFirst("ETag"));
+    }
+
+    @Test
+    public void searchPlacesByPrefix(){
+        HttpResponse<JsonNode> response = Unirest.get( SERVICE.url() + "/places/search/prefix/b").asJson();
+        assertEquals(HttpStatus.OK, response.getStatus());
+        assertEquals(4, response.getBody().getArray().length());
+
+        response = Unirest.get( SERVICE.url() + "/places/search/prefix/br?province=Gauteng&limit=5").asJson();
+        JSONArray array = response.getBody().getArray();
+        assertEquals(1, array.length());
+        assertEquals("Ekurhuleni Metro", array.getJSONObject(0).get("municipality"));
+
+        response = Unirest.get( SERVICE.url() + "/places/search/prefix/br?limit=lots").asJson();
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatus());
+    }
+
+    @Test
+    public void searchPlacesFuzzy(){
+        HttpResponse<JsonNode> response = Unirest.get( SERVICE.url() + "/places/search/fuzzy/brakpn").asJson();
+        assertEquals(HttpStatus.OK, response.getStatus());
+        assertEquals(3, response.getBody().getArray().length());
+        assertEquals("Brakpan", response.getBody().getArray().getJSONObject(0).get("name"));
+    }
+
+    @Test
+    public void reloadSwapsInNewData() throws InterruptedException {
+        HttpResponse<JsonNode> response = Unirest.get( SERVICE.url() + "/admin/reload").asJson();
+        assertEquals(HttpStatus.OK, response.getStatus());
+        long version = response.getBody().getObject().getLong("version");
+        assertEquals(5, response.getBody().getObject().getInt("provinces"));
+
+        response = Unirest.post( SERVICE.url() + "/admin/reload").asJson();
+        assertEquals(HttpStatus.UNAUTHORIZED, response.getStatus());
+        assertEquals(version, SERVICE.instance.dataset().version());
+
+        response = Unirest.post( SERVICE.url() + "/admin/reload")
+                .header("Authorization", "Bearer " + ADMIN_TOKEN)
+                .asJson();
+        assertEquals(HttpStatus.ACCEPTED, response.getStatus());
+
+        for (int i = 0; i < 50 && SERVICE.instance.dataset().version() == version; i++) {
+            Thread.sleep(100);
+        }
+        response = Unirest.get( SERVICE.url() + "/admin/reload").asJson();
+        assertTrue(response.getBody().getObject().getLong("version") > version);
+        assertEquals(5, response.getBody().getObject().getInt("provinces"));
+
+        response = Unirest.get( SERVICE.url() + "/exists/KwaZulu-Natal/Amatikulu").asJson();
+        assertEquals(HttpStatus.FOUND, response.getStatus());
+    }
+
+    @Test
+    public void findPlacesNearALocation(){
+        HttpResponse<JsonNode> response = Unirest.get( SERVICE.url() + "/places/near?lat=-26.24&lon=28.36&k=2").asJson();
+        assertEquals(HttpStatus.OK, response.getStatus());
+        JSONArray array = response.getBody().getArray();
+        assertEquals(2, array.length());
+        assertEquals("Ekurhuleni Metro", array.getJSONObject(0).get("municipality"));
+        assertTrue(array.getJSONObject(0).getDouble("distance") < 2);
+
+        response = Unirest.get( SERVICE.url() + "/places/within?lat=-26.24&lon=28.36&km=50").asJson();
+        assertEquals(HttpStatus.OK, response.getStatus());
+        assertEquals(1, response.getBody().getArray().length());
+
+        response = Unirest.get( SERVICE.url() + "/places/near?lat=-126&lon=28.36").asJson();
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatus());
+        response = Unirest.get( SERVICE.url() + "/places/within?lat=-26.24&lon=28.36").asJson();
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatus());
+    }
+
     @Test
     public void placeExists(){
         HttpResponse<JsonNode> response = Unirest.get( SERVICE.url() + "/exists/KwaZulu-Natal/Amatikulu").asJson();
         assertEquals(HttpStatus.FOUND, response.getStatus());
     }
 
+    @Test
+    public void manyPlacesExistInOneRequest(){
+        HttpResponse<JsonNode> response = Unirest.post( SERVICE.url() + "/exists")
+                .body("""
+                        [
+                            {"province": "KwaZulu-Natal", "place": "Amatikulu"},
+                            {"province": "KwaZulu-Natal", "place": "MadeUp"},
+                            {"province": "Gauteng", "place": "Brakpan"},
+                            {"province": "MadeUp", "place": "Amatikulu"}
+                        ]
+                        """)
+                .asJson();
+        assertEquals(HttpStatus.OK, response.getStatus());
+        JSONArray array = response.getBody().getArray();
+        assertEquals(4, array.length());
+        assertTrue(array.getBoolean(0));
+        assertFalse(array.getBoolean(1));
+        assertTrue(array.getBoolean(2));
+        assertFalse(array.getBoolean(3));
+
+        response = Unirest.post( SERVICE.url() + "/exists").body("not json").asJson();
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatus());
+    }
+
+    @Test
+    public void anEmptyBodyIsABadRequest(){
+        assertEquals(HttpStatus.BAD_REQUEST, Unirest.post( SERVICE.url() + "/exists").asEmpty().getStatus());
+        assertEquals(HttpStatus.BAD_REQUEST, Unirest.post( SERVICE.url() + "/places")
+                .header("Authorization", "Bearer " + ADMIN_TOKEN)
+                .asEmpty()
+                .getStatus());
+    }
+
     @Test
     public void placeNotExists(){
         HttpResponse<JsonNode> response = Unirest.get( SERVICE.url() + "/exists/KwaZulu-Natal/MadeUp").asJson();
@@ -112,4 +268,126 @@ public class PlacesApiTest
         assertEquals(HttpStatus.NOT_FOUND, response.getStatus());
     }
 
+    @Test
+    public void editsNeedTheAdminToken(){
+        HttpResponse<JsonNode> response = Unirest.post( SERVICE.url() + "/municipalities")
+                .body("{\"name\": \"Nowhere\", \"province\": \"Gauteng\"}")
+                .asJson();
+        assertEquals(HttpStatus.UNAUTHORIZED, response.getStatus());
+
+        response = Unirest.delete( SERVICE.url() + "/place/Mier/Brakpan")
+                .header("Authorization", "Bearer wrong")
+                .asJson();
+        assertEquals(HttpStatus.UNAUTHORIZED, response.getStatus());
+        assertEquals(HttpStatus.FOUND, Unirest.get( SERVICE.url() + "/exists/Northern Cape/Brakpan").asEmpty().getStatus());
+    }
+
+    @Test
+    public void placesAndMunicipalitiesCanBeEdited(){
+        String admin = "Bearer " + ADMIN_TOKEN;
+
+        HttpResponse<JsonNode> response = Unirest.post( SERVICE.url() + "/municipalities")
+                .header("Authorization", admin)
+                .body("{\"name\": \"Mogale City\", \"province\": \"Gauteng\"}")
+                .asJson();
+        assertEquals(HttpStatus.CREATED, response.getStatus());
+
+        response = Unirest.post( SERVICE.url() + "/places")
+                .header("Authorization", admin)
+                .body("{\"name\": \"Krugersdorp\", \"municipality\": \"Mogale City\"}")
+                .asJson();
+        assertEquals(HttpStatus.CREATED, response.getStatus());
+        assertEquals(HttpStatus.FOUND, Unirest.get( SERVICE.url() + "/exists/Gauteng/Krugersdorp").asEmpty().getStatus());
+        assertEquals(HttpStatus.FOUND, Unirest.get( SERVICE.url() + "/place/Krugersdorp").asEmpty().getStatus());
+
+        response = Unirest.put( SERVICE.url() + "/place/Mogale City/Krugersdorp")
+                .header("Authorization", admin)
+                .body("{\"name\": \"Krugersdorp\", \"municipality\": \"Ekurhuleni Metro\"}")
+                .asJson();
+        assertEquals(HttpStatus.OK, response.getStatus());
+        assertEquals(2, Unirest.get( SERVICE.url() + "/places/municipality/Ekurhuleni Metro").asJson().getBody().getArray().length());
+
+        response = Unirest.delete( SERVICE.url() + "/municipality/Ekurhuleni Metro")
+                .header("Authorization", admin)
+                .asJson();
+        assertEquals(HttpStatus.CONFLICT, response.getStatus());
+
+        response = Unirest.post( SERVICE.url() + "/places")
+                .header("Authorization", admin)
+                .body("{\"name\": \"Atlantis\", \"municipality\": \"Nowhere\"}")
+                .asJson();
+        assertEquals(HttpStatus.NOT_FOUND, response.getStatus());
+
+        assertEquals(HttpStatus.NO_CONTENT, Unirest.delete( SERVICE.url() + "/place/Ekurhuleni Metro/Krugersdorp")
+                .header("Authorization", admin)
+                .asEmpty()
+                .getStatus());
+        assertEquals(HttpStatus.NO_CONTENT, Unirest.delete( SERVICE.url() + "/municipality/Mogale City")
+                .header("Authorization", admin)
+                .asEmpty()
+                .getStatus());
+        assertEquals(HttpStatus.NOT_FOUND, Unirest.get( SERVICE.url() + "/place/Krugersdorp").asEmpty().getStatus());
+    }
+
+    @Test
+    public void changesSinceAVersionCanBeFetched(){
+        String admin = "Bearer " + ADMIN_TOKEN;
+        long version = Unirest.get( SERVICE.url() + "/admin/reload").asJson().getBody().getObject().getLong("version");
+
+        HttpResponse<JsonNode> response = Unirest.post( SERVICE.url() + "/places")
+                .header("Authorization", admin)
+                .body("{\"name\": \"Tembisa\", \"municipality\": \"Ekurhuleni Metro\"}")
+                .asJson();
+        assertEquals(HttpStatus.CREATED, response.getStatus());
+
+        response = Unirest.get( SERVICE.url() + "/changes?since=" + version).asJson();
+        assertEquals(HttpStatus.OK, response.getStatus());
+        assertFalse(response.getBody().getObject().getBoolean("reset"));
+        assertTrue(response.getBody().getObject().getLong("version") > version);
+        assertTrue(response.getBody().getObject().getJSONArray("addedPlaces").toString().contains("Tembisa"));
+
+        response = Unirest.get( SERVICE.url() + "/changes?since=" + Long.MAX_VALUE).asJson();
+        assertTrue(response.getBody().getObject().getBoolean("reset"));
+        assertEquals(HttpStatus.BAD_REQUEST, Unirest.get( SERVICE.url() + "/changes?since=soon").asEmpty().getStatus());
+        assertEquals(HttpStatus.BAD_REQUEST, Unirest.get( SERVICE.url() + "/changes").asEmpty().getStatus());
+
+        assertEquals(HttpStatus.NO_CONTENT, Unirest.delete( SERVICE.url() + "/place/Ekurhuleni Metro/Tembisa")
+                .header("Authorization", admin)
+                .asEmpty()
+                .getStatus());
+    }
+
+    @Test
+    public void queryPlacesWithOnlyTheFieldsWanted(){
+        HttpResponse<JsonNode> response = Unirest.get( SERVICE.url() + "/places/query?prefix=bra&fields=name,province").asJson();
+        assertEquals(HttpStatus.OK, response.getStatus());
+        assertEquals(3, response.getBody().getArray().length());
+        assertEquals("Brakpan", response.getBody().getArray().getJSONObject(0).getString("name"));
+        assertEquals(2, response.getBody().getArray().getJSONObject(0).length());
+
+        response = Unirest.get( SERVICE.url() + "/places/query?province=Gauteng&prefix=b&count=true").asJson();
+        assertEquals(1, response.getBody().getObject().getInt("count"));
+
+        response = Unirest.get( SERVICE.url() + "/places/query?prefix=bra&limit=1").asJson();
+        assertEquals(1, response.getBody().getArray().length());
+        assertEquals("1", response.getHeaders().getFirst("X-Next-Offset"));
+
+        response = Unirest.get( SERVICE.url() + "/places/query?municipality=mier").asJson();
+        assertEquals(1, response.getBody().getArray().length());
+        assertEquals("Northern Cape", response.getBody().getArray().getJSONObject(0).getString("province"));
+
+        response = Unirest.get( SERVICE.url() + "/places/query?prefix=bra&type=Town").asJson();
+        assertEquals(1, response.getBody().getArray().length());
+        assertEquals("Free State", response.getBody().getArray().getJSONObject(0).getString("province"));
+        response = Unirest.get( SERVICE.url() + "/places/query?type=urban%20area&count=true").asJson();
+        assertEquals(3, response.getBody().getObject().getInt("count"));
+        response = Unirest.get( SERVICE.url() + "/places/query?type=mountain&count=true").asJson();
+        assertEquals(0, response.getBody().getObject().getInt("count"));
+
+        response = Unirest.get( SERVICE.url() + "/places/query?prefix=bra&offset=" + Integer.MAX_VALUE).asJson();
+        assertEquals(HttpStatus.OK, response.getStatus());
+        assertEquals(0, response.getBody().getArray().length());
+        assertFalse(response.getHeaders().containsKey("X-Next-Offset"));
+        assertEquals(HttpStatus.BAD_REQUEST, Unirest.get( SERVICE.url() + "/places/query?fields=population").asEmpty().getStatus());
+    }
 }
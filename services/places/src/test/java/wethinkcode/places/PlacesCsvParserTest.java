@@ -2,9 +2,11 @@ package wethinkcode.places;
 
 import java.io.*;
 import java.util.List;
+import java.util.Set;
 
 import org.junit.jupiter.api.*;
 import wethinkcode.model.Place;
+import wethinkcode.model.Province;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static wethinkcode.places.PlacesTestData.createReaderForTest;
@@ -77,6 +79,17 @@ public class PlacesCsvParserTest
 
     }
 
+    @Test
+    public void quotedFieldsAreUnwrapped(){
+        final String testLine = "\"Brakpan, North\",Town,92802,-27.95111111,26.53333333,30-05-1975,,Free State,68,,155,2,16,DC18,\"Matjhabeng\",,,FS184,,";
+        places = parser.parseDataLines(createReaderForTest(testLine));
+
+        assertEquals(
+                List.of(new Place("Brakpan, North","Matjhabeng")),
+                places.placesInProvince("Free State").stream().toList()
+        );
+    }
+
     @Test
     public void parseBulkTestData(){
         places = parser.parseDataLines( createReaderForTest(PlacesTestData.CSV_DATA) );
@@ -84,6 +97,48 @@ public class PlacesCsvParserTest
 
     }
 
+    @Test
+    public void parseIntoCompactStore(){
+        places = new PlacesCsvParser(PlacesStore.COMPACT).parseDataLines( createReaderForTest(PlacesTestData.CSV_DATA) );
+        assertEquals( 5, places.size() );
+        assertEquals(
+                List.of(new Place("Brakpan", "Mier")),
+                places.placesInProvince("Northern Cape")
+        );
+    }
+
+    @Test
+    public void onlyWantedProvincesAreKept(){
+        places = new PlacesCsvParser(PlacesStore.INDEXED, Set.of("Gauteng", "Free State"))
+                .parseDataLines( createReaderForTest(PlacesTestData.CSV_DATA) );
+        assertEquals( 2, places.size() );
+        assertEquals(
+                List.of(new Province("Gauteng"), new Province("Free State")),
+                places.provinces()
+        );
+        assertTrue( places.placesInProvince("Northern Cape").isEmpty() );
+    }
+
+    @Test
+    public void coordinatesAreKept(){
+        places = parser.parseDataLines( createReaderForTest(PlacesTestData.CSV_DATA) );
+        PlaceLocations locations = places.locations();
+        assertEquals( 5, locations.size() );
+        assertEquals( new Place("Amatikulu", "uMlalazi"), places.places().get(0) );
+        assertEquals( -29.04666667f, locations.latitude(0) );
+        assertEquals( 31.52805556f, locations.longitude(0) );
+    }
+
+    @Test
+    public void typesAreKept(){
+        places = parser.parseDataLines( createReaderForTest(PlacesTestData.CSV_DATA) );
+        PlaceTypes types = places.types();
+        assertEquals( 5, types.size() );
+        assertEquals( List.of("town", "urban area"), types.names().stream().sorted().toList() );
+        assertEquals( "town", types.type(0) );
+        assertEquals( PlaceTypes.UNKNOWN, types.code("mountain") );
+    }
+
     @Test
     public void parseTestDataFromFile() throws IOException {
         File file = new File("test.csv");
@@ -136,4 +191,27 @@ public class PlacesCsvParserTest
         fail("Wrong exception thrown");
     }
 
-}
\ No newline at end of file
+    @Test
+    public void parallelParseMatchesSequentialParse() throws IOException {
+        File file = File.createTempFile("parallel", ".csv");
+        file.deleteOnExit();
+        try (FileWriter fw = new FileWriter(file)) {
+            fw.write(PlacesTestData.HEADER);
+            fw.write("\"Quoted,\nTown\",Town,1,-29.0,31.5,31-05-1989,,KwaZulu-Natal,111,,237,4,16,DC28,uMlalazi,,,KZ284,,\n");
+            fw.write(PlacesTestData.CSV_DATA);
+            fw.write("\"Another\"\"\nTown\",Town,2,-29.0,31.5,31-05-1989,,Gauteng,111,,237,4,16,DC28,Ekurhuleni Metro,,,KZ284,,\n");
+        }
+
+        Places sequential = new PlacesCsvParser().parseCsvSource(file);
+        for (int chunks : List.of(1, 2, 7, 64)) {
+            Places parallel = new PlacesCsvParser().parseCsvSourceInParallel(file, chunks);
+            assertEquals(7, parallel.size());
+            assertEquals(sequential.provinces(), parallel.provinces());
+            for (String province : List.of("KwaZulu-Natal", "Gauteng", "Northern Cape")) {
+                assertEquals(sequential.placesInProvince(province), parallel.placesInProvince(province));
+                assertEquals(sequential.municipalitiesIn(province), parallel.municipalitiesIn(province));
+            }
+        }
+        assertTrue(sequential.place("Quoted,\nTown").isPresent());
+    }
+}
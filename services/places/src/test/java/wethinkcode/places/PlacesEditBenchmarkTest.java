@@ -0,0 +1,127 @@
+package wethinkcode.places;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import wethinkcode.model.Place;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Makes many edits at once while places are being read, and checks that every edit was made in
+ * fewer builds than there were edits, and that readers kept going during the edits and never saw
+ * a database and indexes that did not belong together. It reports how many edits were made a
+ * second, and the median and 99th percentile latency of the reads made meanwhile. It is tagged as
+ * a benchmark, and is left out of the default test run.
+ */
+@Tag( "benchmark" )
+public class PlacesEditBenchmarkTest
+{
+    private static final int PLACES = 20_000;
+    private static final int WRITERS = 8;
+    private static final int EDITS = 40;
+    private static final int READERS = 4;
+    private static final int SAMPLES = 1 << 16;
+    private static final long SLOWEST_P99_READ_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    @TempDir
+    Path directory;
+
+    private PlacesService service;
+
+    @BeforeEach
+    public void loadPlaces() throws IOException {
+        File csv = directory.resolve("places.csv").toFile();
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(csv), StandardCharsets.UTF_8)) {
+            writer.write(PlacesTestData.HEADER);
+            for (int i = 0; i < PLACES; i++) {
+                writer.write("Place " + i + ",Town," + i + ",-26,28,,,Province " + (i % 9)
+                        + ",,,,,,,Municipality " + (i % 200) + ",,,,,\n");
+            }
+        }
+        service = new PlacesService();
+        service.data = csv.getPath();
+        service.createPlaces();
+    }
+
+    @Test
+    public void editsAreBatchedAndReadsNeverWait(TestReporter reporter) throws Exception {
+        AtomicBoolean editing = new AtomicBoolean(true);
+        ExecutorService readers = Executors.newFixedThreadPool(READERS);
+        List<Future<long[]>> latencies = new ArrayList<>();
+        for (int r = 0; r < READERS; r++) {
+            latencies.add(readers.submit(() -> read(editing)));
+        }
+
+        long version = service.dataset().version();
+        ExecutorService writers = Executors.newFixedThreadPool(WRITERS);
+        List<Future<Object>> edits = new ArrayList<>();
+        long started = System.nanoTime();
+        for (int i = 0; i < EDITS; i++) {
+            Place place = new Place("New Place " + i, "Municipality " + (i % 200));
+            edits.add(writers.submit(() -> service.edit(PlaceEdit.addPlace(place))));
+        }
+        for (Future<Object> edit : edits) {
+            edit.get(1, TimeUnit.MINUTES);
+        }
+        long editNanos = System.nanoTime() - started;
+        writers.shutdown();
+        editing.set(false);
+
+        long[] all = new long[0];
+        for (Future<long[]> reader : latencies) {
+            long[] some = reader.get(1, TimeUnit.MINUTES);
+            all = concat(all, some);
+        }
+        readers.shutdown();
+        Arrays.sort(all);
+        reporter.publishEntry("edits per second", String.format("%.1f", EDITS * 1e9 / editNanos));
+        reporter.publishEntry("builds", String.valueOf(service.dataset().version() - version));
+        reporter.publishEntry("reads", String.valueOf(all.length));
+        reporter.publishEntry("p50 read micros", String.valueOf(percentile(all, 0.5) / 1000));
+        reporter.publishEntry("p99 read micros", String.valueOf(percentile(all, 0.99) / 1000));
+
+        assertEquals(PLACES + EDITS, service.dataset().places().size());
+        assertTrue(service.dataset().version() - version < EDITS, "the edits must be batched into fewer builds");
+        assertTrue(all.length > 0);
+        assertTrue(percentile(all, 0.99) < SLOWEST_P99_READ_NANOS, "reads must not wait for the edits");
+    }
+
+    /**
+     * Reads until the edits are done, keeping the latencies of the most recent reads
+     */
+    private long[] read(AtomicBoolean editing){
+        long[] latencies = new long[SAMPLES];
+        long count = 0;
+        while (editing.get() || count == 0) {
+            long started = System.nanoTime();
+            PlacesDataset dataset = service.dataset();
+            int places = dataset.places().size();
+            int indexed = dataset.prefixes().count("", null);
+            dataset.places().placesInMunicipality("Municipality 7");
+            long took = System.nanoTime() - started;
+
+            assertEquals(places, indexed, "the indexes must change with the places");
+            latencies[(int) (count++ % SAMPLES)] = took;
+        }
+        return Arrays.copyOf(latencies, (int) Math.min(count, SAMPLES));
+    }
+
+    private static long percentile(long[] sorted, double fraction){
+        return sorted[Math.min(sorted.length - 1, (int) (sorted.length * fraction))];
+    }
+
+    private static long[] concat(long[] a, long[] b){
+        long[] both = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, both, a.length, b.length);
+        return both;
+    }
+}
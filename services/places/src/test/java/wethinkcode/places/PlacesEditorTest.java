@@ -0,0 +1,100 @@
+package wethinkcode.places;
+
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+
+import org.junit.jupiter.api.*;
+import wethinkcode.model.Municipality;
+import wethinkcode.model.Place;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Edits must make a new database, checked, without changing the one they started from.
+ */
+public class PlacesEditorTest
+{
+    private static final Places ORIGINAL = new PlacesBuilder()
+            .add("Soweto", "City of Johannesburg", "Gauteng", -26.27f, 27.86f)
+            .add("Sandton", "City of Johannesburg", "Gauteng")
+            .add("Cape Town", "City of Cape Town", "Western Cape")
+            .build();
+
+    private final PlacesEditor editor = new PlacesEditor(ORIGINAL);
+
+    @Test
+    public void addedPlacesAreInTheNextDatabaseOnly() {
+        editor.addMunicipality(new Municipality("Mogale City", "Gauteng"));
+        editor.addPlace(new Place("Krugersdorp", "Mogale City"));
+        Places edited = editor.build(PlacesStore.INDEXED);
+
+        assertEquals(Optional.of(new Place("Krugersdorp", "Mogale City")), edited.place("Krugersdorp"));
+        assertEquals(3, edited.placesInProvince("Gauteng").size());
+        assertEquals(4, edited.size());
+        assertTrue(ORIGINAL.place("Krugersdorp").isEmpty());
+        assertFalse(edited.locations().isKnown(3));
+    }
+
+    @Test
+    public void changedPlacesKeepTheirCoordinates() {
+        editor.updatePlace(new Place("Soweto", "City of Johannesburg"), new Place("Soweto", "City of Cape Town"));
+        Places edited = editor.build(PlacesStore.COMPACT);
+
+        assertEquals(List.of(new Place("Cape Town", "City of Cape Town"), new Place("Soweto", "City of Cape Town")),
+                edited.placesInProvince("Western Cape").stream().sorted((a, b) -> a.name().compareTo(b.name())).toList());
+        int row = edited.places().indexOf(new Place("Soweto", "City of Cape Town"));
+        assertEquals(-26.27f, edited.locations().latitude(row));
+    }
+
+    @Test
+    public void placesKeepTheirTypes() {
+        PlacesEditor typed = new PlacesEditor(new PlacesBuilder()
+                .add("Soweto", "City of Johannesburg", "Gauteng", Float.NaN, Float.NaN, "Town")
+                .add("Sandton", "City of Johannesburg", "Gauteng", Float.NaN, Float.NaN, "Urban Area")
+                .build());
+        typed.removePlace(new Place("Soweto", "City of Johannesburg"));
+        typed.updatePlace(new Place("Sandton", "City of Johannesburg"), new Place("Sandown", "City of Johannesburg"));
+        typed.addPlace(new Place("Lenasia", "City of Johannesburg"));
+        Places edited = typed.build(PlacesStore.OFF_HEAP);
+
+        assertEquals("urban area", edited.types().type(0));
+        assertNull(edited.types().type(1));
+    }
+
+    @Test
+    public void municipalitiesMoveWithTheirPlaces() {
+        editor.updateMunicipality("City of Johannesburg", new Municipality("Joburg", "Western Cape"));
+        Places edited = editor.build(PlacesStore.INDEXED);
+
+        assertEquals(List.of(new Place("Soweto", "Joburg"), new Place("Sandton", "Joburg")), edited.placesInMunicipality("Joburg"));
+        assertEquals(3, edited.placesInProvince("Western Cape").size());
+        assertEquals(List.of(), edited.placesInProvince("Gauteng"));
+    }
+
+    @Test
+    public void removedPlacesAndMunicipalitiesAreGone() {
+        editor.removePlace(new Place("Cape Town", "City of Cape Town"));
+        editor.removeMunicipality("City of Cape Town");
+        Places edited = editor.build(PlacesStore.INDEXED);
+
+        assertTrue(edited.place("Cape Town").isEmpty());
+        assertTrue(edited.municipality("City of Cape Town").isEmpty());
+        assertEquals(2, edited.size());
+    }
+
+    @Test
+    public void editsThatDoNotFitAreRefused() {
+        assertThrows(NoSuchElementException.class, () -> editor.addPlace(new Place("Nowhere", "No Municipality")));
+        assertThrows(IllegalStateException.class, () -> editor.addPlace(new Place("Soweto", "City of Johannesburg")));
+        assertThrows(IllegalArgumentException.class, () -> editor.addPlace(new Place(" ", "City of Johannesburg")));
+        assertThrows(NoSuchElementException.class, () -> editor.removePlace(new Place("Soweto", "City of Cape Town")));
+        assertThrows(NoSuchElementException.class, () -> editor.addMunicipality(new Municipality("Somewhere", "Atlantis")));
+        assertThrows(IllegalStateException.class, () -> editor.addMunicipality(new Municipality("City of Cape Town", "Gauteng")));
+        assertThrows(IllegalStateException.class, () -> editor.removeMunicipality("City of Johannesburg"));
+        assertThrows(IllegalStateException.class,
+                () -> editor.updateMunicipality("City of Johannesburg", new Municipality("City of Cape Town", "Gauteng")));
+
+        assertEquals(ORIGINAL.places(), editor.build(PlacesStore.INDEXED).places());
+    }
+}
@@ -0,0 +1,46 @@
+package wethinkcode.places.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import wethinkcode.model.Province;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit-test suite for the pre-rendered response cache.
+ */
+public class ResponseCacheTest
+{
+    @Test
+    public void rendersOnlyOnce(){
+        ResponseCache cache = new ResponseCache();
+        AtomicInteger renders = new AtomicInteger();
+
+        ResponseCache.Entry first = cache.get("provinces", () -> {
+            renders.incrementAndGet();
+            return List.of(new Province("Gauteng"));
+        });
+        ResponseCache.Entry second = cache.get("provinces", () -> {
+            renders.incrementAndGet();
+            return List.of();
+        });
+
+        assertEquals(1, renders.get());
+        assertSame(first, second);
+        assertEquals("[{\"name\":\"Gauteng\"}]", new String(first.body(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void etagFollowsTheBody(){
+        ResponseCache.Entry gauteng = ResponseCache.render(List.of(new Province("Gauteng")));
+        ResponseCache.Entry again = ResponseCache.render(List.of(new Province("Gauteng")));
+        ResponseCache.Entry freeState = ResponseCache.render(List.of(new Province("Free State")));
+
+        assertEquals(gauteng.etag(), again.etag());
+        assertNotEquals(gauteng.etag(), freeState.etag());
+        assertTrue(gauteng.etag().startsWith("\"") && gauteng.etag().endsWith("\""));
+    }
+}
@@ -0,0 +1,110 @@
+package wethinkcode.places.changes;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import wethinkcode.model.Municipality;
+import wethinkcode.model.Place;
+import wethinkcode.places.*;
+import wethinkcode.places.db.lazy.LazyPlacesDb;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The changes since a version, applied to the data at that version, must give the latest data.
+ */
+public class ChangeLogTest
+{
+    private static final Places ORIGINAL = new PlacesBuilder()
+            .add("Soweto", "City of Johannesburg", "Gauteng")
+            .add("Sandton", "City of Johannesburg", "Gauteng")
+            .add("Cape Town", "City of Cape Town", "Western Cape")
+            .build();
+
+    private final ChangeLog log = new ChangeLog();
+    private PlacesDataset current;
+
+    @BeforeEach
+    public void start() {
+        current = PlacesDataset.of(1, ORIGINAL, Instant.now());
+        log.record(null, current);
+    }
+
+    private PlacesDelta edit(Consumer<PlacesEditor> edit) {
+        PlacesEditor editor = new PlacesEditor(current.places());
+        edit.accept(editor);
+        PlacesDataset next = PlacesDataset.of(current.version() + 1, editor.build(PlacesStore.INDEXED), Instant.now());
+        PlacesDelta delta = log.record(current, next);
+        current = next;
+        return delta;
+    }
+
+    @Test
+    public void eachVersionListsWhatWasAddedAndRemoved() {
+        PlacesDelta delta = edit(editor -> {
+            editor.addMunicipality(new Municipality("Mogale City", "Gauteng"));
+            editor.addPlace(new Place("Krugersdorp", "Mogale City"));
+            editor.removePlace(new Place("Sandton", "City of Johannesburg"));
+        });
+
+        assertEquals(1, delta.since());
+        assertEquals(2, delta.version());
+        assertFalse(delta.reset());
+        assertEquals(List.of(), delta.addedProvinces());
+        assertEquals(List.of(new Municipality("Mogale City", "Gauteng")), delta.addedMunicipalities());
+        assertEquals(List.of(new Place("Krugersdorp", "Mogale City")), delta.addedPlaces());
+        assertEquals(List.of(new Place("Sandton", "City of Johannesburg")), delta.removedPlaces());
+        assertEquals(delta, log.since(1));
+    }
+
+    @Test
+    public void changesSinceAnOlderVersionAddUpAndCancelOut() {
+        edit(editor -> editor.addPlace(new Place("Orlando", "City of Johannesburg")));
+        edit(editor -> editor.removePlace(new Place("Soweto", "City of Johannesburg")));
+        edit(editor -> editor.removePlace(new Place("Orlando", "City of Johannesburg")));
+
+        PlacesDelta delta = log.since(1);
+        assertEquals(4, delta.version());
+        assertEquals(List.of(), delta.addedPlaces());
+        assertEquals(List.of(new Place("Soweto", "City of Johannesburg")), delta.removedPlaces());
+
+        delta = log.since(2);
+        assertEquals(List.of(new Place("Soweto", "City of Johannesburg"), new Place("Orlando", "City of Johannesburg")),
+                delta.removedPlaces());
+        assertTrue(log.since(4).isEmpty());
+    }
+
+    @Test
+    public void unknownVersionsMustBeFetchedAgain() {
+        for (int i = 0; i <= ChangeLog.MAX_CHANGES; i++) {
+            String name = "Place " + i;
+            edit(editor -> editor.addPlace(new Place(name, "City of Cape Town")));
+        }
+
+        assertTrue(log.since(1).reset());
+        assertFalse(log.since(2).reset());
+        assertEquals(ChangeLog.MAX_CHANGES, log.since(2).addedPlaces().size());
+        assertTrue(log.since(current.version() + 1).reset());
+    }
+
+    @Test
+    public void lazyDataCannotBeCompared(@TempDir Path directory) throws IOException {
+        File csv = directory.resolve("places.csv").toFile();
+        Files.writeString(csv.toPath(), PlacesTestData.HEADER + PlacesTestData.CSV_DATA, StandardCharsets.UTF_8);
+        ProvinceSegments segments = new PlacesCsvParser().indexCsvSources(List.of(csv));
+        PlacesDataset lazy = PlacesDataset.lazy(2, new LazyPlacesDb(segments, Long.MAX_VALUE), Instant.now());
+        PlacesDelta delta = log.record(current, lazy);
+
+        assertTrue(delta.reset());
+        assertTrue(log.since(1).reset());
+        assertTrue(log.since(2).isEmpty());
+    }
+}
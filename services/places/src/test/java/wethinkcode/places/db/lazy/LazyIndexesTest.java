@@ -0,0 +1,111 @@
+package wethinkcode.places.db.lazy;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import wethinkcode.places.PlacesCsvParser;
+import wethinkcode.places.PlacesDataset;
+import wethinkcode.places.PlacesTestData;
+import wethinkcode.places.ProvinceSegments;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Searching a lazily parsed database one province at a time must answer like indexes over every
+ * place, while parsing only the provinces it needs.
+ */
+public class LazyIndexesTest
+{
+    @TempDir
+    Path directory;
+
+    private File csv;
+    private PlacesDataset eager;
+
+    @BeforeEach
+    public void writeData() throws IOException {
+        csv = directory.resolve("places.csv").toFile();
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(csv), StandardCharsets.UTF_8)) {
+            writer.write(PlacesTestData.HEADER);
+            writer.write(PlacesTestData.CSV_DATA);
+        }
+        eager = PlacesDataset.of(1, new PlacesCsvParser().parseCsvSource(csv), Instant.now());
+    }
+
+    private LazyPlacesDb lazy(long budget) throws IOException {
+        ProvinceSegments segments = new PlacesCsvParser().indexCsvSources(List.of(csv));
+        return new LazyPlacesDb(segments, budget);
+    }
+
+    @Test
+    public void answersMatchIndexesOverEveryPlace() throws IOException {
+        LazyIndexes indexes = new LazyIndexes(lazy(Long.MAX_VALUE));
+
+        assertEquals(eager.prefixes().search("b", null, 10), indexes.search("b", null, 10));
+        assertEquals(eager.prefixes().search("b", null, null, place -> true, 1, 2), indexes.search("b", null, null, place -> true, 1, 2));
+        assertEquals(
+                eager.prefixes().search("b", null, "URBAN AREA", place -> true, 0, 10),
+                indexes.search("b", null, "URBAN AREA", place -> true, 0, 10)
+        );
+        assertEquals(eager.prefixes().count("", null, "town"), indexes.count("", null, "town"));
+        assertEquals(eager.prefixes().search("bra", "gauteng", 10), indexes.search("bra", "gauteng", 10));
+        assertEquals(eager.prefixes().count("b", null), indexes.count("b", null));
+        assertEquals(eager.prefixes().count("b", "Free State"), indexes.count("b", "Free State"));
+        assertEquals(
+                new HashSet<>(eager.fuzzy().search("brakpn", 10)),
+                new HashSet<>(indexes.search("brakpn", 10))
+        );
+        assertEquals(eager.near().nearest(-26.2, 28.3, 3), indexes.nearest(-26.2, 28.3, 3));
+        assertEquals(eager.near().within(-27, 21, 500, 10), indexes.within(-27, 21, 500, 10));
+        assertTrue(indexes.contains("Northern Cape", "brakpan"));
+        assertFalse(indexes.contains("Western Cape", "Brakpan"));
+        assertTrue(indexes.hasProvince("kwazulu-natal"));
+    }
+
+    @Test
+    public void anExistsCheckOnlyParsesItsProvince() throws IOException {
+        LazyPlacesDb db = lazy(Long.MAX_VALUE);
+        LazyIndexes indexes = new LazyIndexes(db);
+
+        assertFalse(indexes.hasProvince("Limpopo"));
+        assertFalse(indexes.contains("Limpopo", "Brakpan"));
+        assertEquals(Set.of(), db.parsedProvinces());
+
+        assertTrue(indexes.contains("gauteng", "BRAKPAN"));
+        assertEquals(Set.of("Gauteng"), db.parsedProvinces());
+    }
+
+    @Test
+    public void indexesCountAgainstTheBudget() throws IOException {
+        LazyPlacesDb unlimited = lazy(Long.MAX_VALUE);
+        unlimited.placesInProvince("Gauteng");
+        long parsed = unlimited.residentBytes();
+        new LazyIndexes(unlimited).count("b", "Gauteng");
+        assertTrue(unlimited.residentBytes() > parsed);
+
+        LazyPlacesDb db = lazy(parsed);
+        LazyIndexes indexes = new LazyIndexes(db);
+        indexes.contains("Free State", "Brakpan");
+        indexes.count("b", "Gauteng");
+        assertEquals(Set.of("Gauteng"), db.parsedProvinces());
+    }
+
+    @Test
+    public void provincesTooFarAwayAreNotSearched() throws IOException {
+        LazyPlacesDb db = lazy(0);
+        LazyIndexes indexes = new LazyIndexes(db);
+        indexes.nearest(-26.2, 28.3, 1);
+
+        assertEquals(eager.near().nearest(-26.24, 28.37, 1), indexes.nearest(-26.24, 28.37, 1));
+        assertEquals(Set.of("Gauteng"), db.parsedProvinces());
+        assertEquals(List.of(), indexes.within(-34, 25, 10, 10));
+        assertEquals(Set.of("Gauteng"), db.parsedProvinces());
+    }
+}
@@ -0,0 +1,121 @@
+package wethinkcode.places.db.lazy;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import wethinkcode.model.Place;
+import wethinkcode.places.Places;
+import wethinkcode.places.PlacesCsvParser;
+import wethinkcode.places.PlacesTestData;
+import wethinkcode.places.ProvinceSegments;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * A lazily parsed database must answer like one parsed up front, while keeping to its budget.
+ */
+public class LazyPlacesDbTest
+{
+    @TempDir
+    Path directory;
+
+    private File csv;
+    private Places eager;
+
+    @BeforeEach
+    public void writeData() throws IOException {
+        csv = directory.resolve("places.csv").toFile();
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(csv), StandardCharsets.UTF_8)) {
+            writer.write(PlacesTestData.HEADER);
+            writer.write(PlacesTestData.CSV_DATA);
+        }
+        eager = new PlacesCsvParser().parseCsvSource(csv);
+    }
+
+    private LazyPlacesDb lazy(long budget) throws IOException {
+        ProvinceSegments segments = new PlacesCsvParser().indexCsvSources(List.of(csv));
+        return new LazyPlacesDb(segments, budget);
+    }
+
+    @Test
+    public void nothingIsParsedUntilAProvinceIsUsed() throws IOException {
+        LazyPlacesDb db = lazy(Long.MAX_VALUE);
+
+        assertEquals(eager.provinces(), db.provinces());
+        assertEquals(eager.municipalities(), db.municipalities());
+        assertEquals(eager.municipalitiesIn("Gauteng"), db.municipalitiesIn("Gauteng"));
+        assertEquals(eager.size(), db.size());
+        assertEquals(Set.of(), db.parsedProvinces());
+        assertEquals(0, db.residentBytes());
+
+        assertEquals(eager.placesInProvince("Gauteng"), db.placesInProvince("Gauteng"));
+        assertEquals(Set.of("Gauteng"), db.parsedProvinces());
+        assertEquals(Set.of("Gauteng"), db.deflatedProvinces());
+    }
+
+    @Test
+    public void answersMatchParsingUpFront() throws IOException {
+        LazyPlacesDb db = lazy(Long.MAX_VALUE);
+
+        for (String province : List.of("KwaZulu-Natal", "Western Cape", "Gauteng", "Northern Cape", "Free State", "Nowhere")) {
+            assertEquals(eager.placesInProvince(province), db.placesInProvince(province), province);
+        }
+        assertEquals(eager.placesInMunicipality("Mier"), db.placesInMunicipality("Mier"));
+        assertEquals(eager.place("Botrivier"), db.place("Botrivier"));
+        assertEquals(Optional.empty(), db.place("Sibabe"));
+        assertEquals(eager.places(), db.places());
+        assertEquals(eager.locations().latitude(0), db.locations().latitude(0));
+    }
+
+    @Test
+    public void leastRecentlyUsedProvincesAreDroppedOverBudget() throws IOException {
+        LazyPlacesDb db = lazy(0);
+
+        List<Place> gauteng = db.placesInProvince("Gauteng");
+        db.placesInProvince("Free State");
+        assertEquals(Set.of("Free State"), db.parsedProvinces());
+        assertEquals(Set.of("Free State"), db.deflatedProvinces());
+
+        assertEquals(gauteng, db.placesInProvince("Gauteng"));
+        assertEquals(Set.of("Gauteng"), db.parsedProvinces());
+    }
+
+    @Test
+    public void droppedProvincesStayDeflatedWhileThereIsRoom() throws IOException {
+        LazyPlacesDb unlimited = lazy(Long.MAX_VALUE);
+        unlimited.placesInProvince("Gauteng");
+        unlimited.placesInProvince("Free State");
+        long budget = unlimited.residentBytes() - 1;
+
+        LazyPlacesDb db = lazy(budget);
+        db.placesInProvince("Gauteng");
+        db.placesInProvince("Free State");
+
+        assertEquals(Set.of("Free State"), db.parsedProvinces());
+        assertEquals(Set.of("Gauteng", "Free State"), db.deflatedProvinces());
+        assertTrue(db.residentBytes() <= budget);
+        assertEquals(eager.placesInProvince("Gauteng"), db.placesInProvince("Gauteng"));
+    }
+
+    @Test
+    public void quotedFieldsAndWindowsLineBreaksKeepRowsApart() throws IOException {
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(csv), StandardCharsets.UTF_8)) {
+            writer.write(PlacesTestData.HEADER.replace("\n", "\r\n"));
+            writer.write("\"Sea Point, Cape Town\",Urban Area,1,,,,,Western Cape,,,,,,,\"City of\r\nCape Town\",,,,,\r\n");
+            writer.write("Soweto,Town,2,,,,,Gauteng,,,,,,,City of Johannesburg,,,,,\r\n");
+            writer.write("Khayelitsha,Town,3,,,,,Western Cape,,,,,,,\"City of\r\nCape Town\",,,,,");
+        }
+        eager = new PlacesCsvParser().parseCsvSource(csv);
+        LazyPlacesDb db = lazy(Long.MAX_VALUE);
+
+        assertEquals(2, eager.placesInProvince("Western Cape").size());
+        assertEquals(eager.placesInProvince("Western Cape"), db.placesInProvince("Western Cape"));
+        assertEquals(eager.placesInProvince("Gauteng"), db.placesInProvince("Gauteng"));
+    }
+}
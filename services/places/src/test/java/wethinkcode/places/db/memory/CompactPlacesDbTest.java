@@ -0,0 +1,36 @@
+package wethinkcode.places.db.memory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.*;
+import wethinkcode.model.Municipality;
+import wethinkcode.model.Place;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static wethinkcode.places.db.memory.PlacesDbTest.PROVINCES;
+
+/**
+ * The compact database must find every name however many there are, like the indexed one does.
+ * What every store answers alike is checked by {@link PlacesStoreContractTest}.
+ */
+public class CompactPlacesDbTest
+{
+    @Test
+    public void manyNamesAreAllFound(){
+        List<Municipality> municipalities = new ArrayList<>();
+        List<Place> places = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            municipalities.add(new Municipality("Municipality " + i, PROVINCES.get(i % PROVINCES.size()).name()));
+            places.add(new Place("Place " + i, "Municipality " + (i / 3)));
+        }
+        CompactPlacesDb many = new CompactPlacesDb(PROVINCES, municipalities, places);
+        IndexedPlacesDb indexed = new IndexedPlacesDb(PROVINCES, municipalities, places);
+
+        for (int i = 0; i < 2000; i++) {
+            assertEquals(indexed.place("Place " + i), many.place("Place " + i));
+            assertEquals(indexed.placesInMunicipality("Municipality " + i), many.placesInMunicipality("Municipality " + i));
+        }
+        assertTrue(many.place("Place 2000").isEmpty());
+    }
+}
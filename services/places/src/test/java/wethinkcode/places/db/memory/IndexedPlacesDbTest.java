@@ -0,0 +1,71 @@
+package wethinkcode.places.db.memory;
+
+import java.util.List;
+
+import org.junit.jupiter.api.*;
+import wethinkcode.model.Municipality;
+import wethinkcode.model.Place;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static wethinkcode.places.db.memory.PlacesDbTest.MUNICIPALITIES;
+import static wethinkcode.places.db.memory.PlacesDbTest.PROVINCES;
+
+/**
+ * The indexed database must answer exactly like the plain PlacesDb does.
+ */
+public class IndexedPlacesDbTest
+{
+    public static final List<Place> PLACES = List.of(
+            new Place("Sea Point", "Cape Municipality"),
+            new Place("Hex River", "Worcester"),
+            new Place("Walmer", "Gqeberha"),
+            new Place("Brakpan North", "Brakpan"),
+            new Place("Riversdale Central", "Riversdale")
+    );
+
+    private final IndexedPlacesDb db = new IndexedPlacesDb(PROVINCES, MUNICIPALITIES, PLACES);
+
+    @Test
+    public void testProvinces() {
+        assertEquals(3, db.provinces().size());
+        assertTrue(db.province("Gauteng").isPresent());
+        assertTrue(db.province("Mars").isEmpty());
+    }
+
+    @Test
+    public void testTownsInProvince(){
+        assertEquals(4 ,  db.municipalitiesIn( "Gauteng" ).size() );
+        assertEquals(2 ,  db.municipalitiesIn( "Eastern Cape" ).size() );
+        assertEquals(3 ,  db.municipalitiesIn( "Western Cape" ).size() );
+        assertEquals(0, db.municipalitiesIn( "Northern Cape" ).size() );
+    }
+
+    @Test
+    public void firstMunicipalityWithANameWins(){
+        assertEquals(
+                new Municipality("Riversdale", "Western Cape"),
+                db.municipality("Riversdale").orElseThrow()
+        );
+    }
+
+    @Test
+    public void placesInProvinceMatchesLinearDb(){
+        PlacesDb linear = new PlacesDb(PROVINCES, MUNICIPALITIES, PLACES);
+        for (String province : List.of("Gauteng", "Western Cape", "Eastern Cape", "Northern Cape")){
+            assertEquals(linear.placesInProvince(province), db.placesInProvince(province));
+        }
+    }
+
+    @Test
+    public void placesInMunicipality(){
+        assertEquals(List.of(new Place("Walmer", "Gqeberha")), db.placesInMunicipality("Gqeberha"));
+        assertEquals(0, db.placesInMunicipality("Nowhere").size());
+    }
+
+    @Test
+    public void placeByName(){
+        assertEquals(new Place("Hex River", "Worcester"), db.place("Hex River").orElseThrow());
+        assertTrue(db.place("Atlantis").isEmpty());
+        assertEquals(5, db.size());
+    }
+}
@@ -0,0 +1,58 @@
+package wethinkcode.places.db.memory;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.*;
+import wethinkcode.model.Municipality;
+import wethinkcode.model.Place;
+import wethinkcode.model.Province;
+import wethinkcode.places.Places;
+import wethinkcode.places.PlacesBuilder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Lookups must find names regardless of case, accents and spacing.
+ */
+public class NormalizedPlacesDbTest
+{
+    private static final Places EXACT = new PlacesBuilder()
+            .add("Gqeberha", "Nelson Mandela Bay", "Eastern Cape")
+            .add("Cape Town", "City of Cape Town", "Western Cape")
+            .add("Ga-Rankuwa", "City of Tshwane", "Gauteng")
+            .add("Soweto", "City of Johannesburg", "Gauteng")
+            .build();
+
+    private final NormalizedPlacesDb db = new NormalizedPlacesDb(EXACT);
+
+    @Test
+    public void exactNamesStillMatch() {
+        assertEquals(Optional.of(new Place("Cape Town", "City of Cape Town")), db.place("Cape Town"));
+        assertEquals(EXACT.placesInProvince("Gauteng"), db.placesInProvince("Gauteng"));
+        assertSame(EXACT, db.exact());
+    }
+
+    @Test
+    public void caseAccentsAndSpacingAreIgnored() {
+        assertEquals(Optional.of(new Place("Cape Town", "City of Cape Town")), db.place("cape town"));
+        assertEquals(Optional.of(new Place("Cape Town", "City of Cape Town")), db.place("  CAPE   Town "));
+        assertEquals(Optional.of(new Place("Gqeberha", "Nelson Mandela Bay")), db.place("Gqébérha"));
+        assertEquals(Optional.of(new Province("Eastern Cape")), db.province("eastern cape"));
+        assertEquals(Optional.of(new Municipality("City of Tshwane", "Gauteng")), db.municipality("city of tshwane"));
+
+        assertEquals(EXACT.placesInProvince("Gauteng"), db.placesInProvince("GAUTENG"));
+        assertEquals(EXACT.municipalitiesIn("Gauteng"), db.municipalitiesIn("gauteng"));
+        assertEquals(
+                List.of(new Place("Soweto", "City of Johannesburg")),
+                db.placesInMunicipality("City of  Johannesburg")
+        );
+    }
+
+    @Test
+    public void otherNamesStillMiss() {
+        assertTrue(db.place("Cape Twn").isEmpty());
+        assertTrue(db.province("Cape").isEmpty());
+        assertEquals(List.of(), db.placesInProvince("Nowhere"));
+    }
+}
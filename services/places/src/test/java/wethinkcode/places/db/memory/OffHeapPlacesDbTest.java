@@ -0,0 +1,31 @@
+package wethinkcode.places.db.memory;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.*;
+import wethinkcode.model.Municipality;
+import wethinkcode.model.Place;
+import wethinkcode.model.Province;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The off-heap database must compare names by their UTF-8 bytes. What every store answers
+ * alike is checked by {@link PlacesStoreContractTest}.
+ */
+public class OffHeapPlacesDbTest
+{
+    @Test
+    public void namesAreComparedAsUtf8(){
+        OffHeapPlacesDb accented = new OffHeapPlacesDb(
+                List.of(new Province("Gauteng")),
+                List.of(new Municipality("Tshwane", "Gauteng")),
+                List.of(new Place("Pretoria", "Tshwane"), new Place("Mamelodi Wes", "Tshwane"), new Place("Soshanguve Ë", "Tshwane"))
+        );
+        assertEquals(Optional.of(new Place("Soshanguve Ë", "Tshwane")), accented.place("Soshanguve Ë"));
+        assertTrue(accented.place("Soshanguve E").isEmpty());
+        assertTrue(accented.place("Mamelodi").isEmpty());
+        assertEquals(3, accented.placesInProvince("Gauteng").size());
+    }
+}
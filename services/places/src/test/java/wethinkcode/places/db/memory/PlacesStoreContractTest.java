@@ -0,0 +1,67 @@
+package wethinkcode.places.db.memory;
+
+import java.util.List;
+
+import org.junit.jupiter.api.*;
+import wethinkcode.model.Municipality;
+import wethinkcode.model.Place;
+import wethinkcode.model.Province;
+import wethinkcode.places.Places;
+import wethinkcode.places.PlacesStore;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static wethinkcode.places.db.memory.IndexedPlacesDbTest.PLACES;
+import static wethinkcode.places.db.memory.PlacesDbTest.MUNICIPALITIES;
+import static wethinkcode.places.db.memory.PlacesDbTest.PROVINCES;
+
+/**
+ * Every store must answer exactly like the indexed one does.
+ */
+public class PlacesStoreContractTest
+{
+    private final IndexedPlacesDb expected = new IndexedPlacesDb(PROVINCES, MUNICIPALITIES, PLACES);
+
+    private static final List<String> NAMES = List.of(
+            "Gauteng", "Western Cape", "Eastern Cape", "Northern Cape",
+            "Riversdale", "Gqeberha", "Brakpan", "Worcester", "Hex River", "Walmer", "Nowhere"
+    );
+
+    @Test
+    public void provinces() {
+        for (PlacesStore store : PlacesStore.values()) {
+            Places db = store.create(PROVINCES, MUNICIPALITIES, PLACES);
+            assertEquals(expected.provinces(), db.provinces(), store.name());
+            assertEquals(new Province("Gauteng"), db.province("Gauteng").orElseThrow(), store.name());
+            assertTrue(db.province("Riversdale").isEmpty(), store.name());
+        }
+    }
+
+    @Test
+    public void lookupsMatchIndexedDb(){
+        for (PlacesStore store : PlacesStore.values()) {
+            Places db = store.create(PROVINCES, MUNICIPALITIES, PLACES);
+            for (String name : NAMES) {
+                String message = store + " " + name;
+                assertEquals(expected.municipalitiesIn(name), db.municipalitiesIn(name), message);
+                assertEquals(expected.placesInProvince(name), db.placesInProvince(name), message);
+                assertEquals(expected.placesInMunicipality(name), db.placesInMunicipality(name), message);
+                assertEquals(expected.municipality(name), db.municipality(name), message);
+                assertEquals(expected.place(name), db.place(name), message);
+                assertEquals(expected.province(name), db.province(name), message);
+            }
+            assertEquals(expected.size(), db.size(), store.name());
+        }
+    }
+
+    @Test
+    public void listsCannotBeChanged(){
+        for (PlacesStore store : PlacesStore.values()) {
+            Places db = store.create(PROVINCES, MUNICIPALITIES, PLACES);
+            List<Municipality> inGauteng = db.municipalitiesIn("Gauteng");
+            assertEquals(new Municipality("Sandton-East", "Gauteng"), inGauteng.get(0), store.name());
+            assertThrows(IndexOutOfBoundsException.class, () -> inGauteng.get(4), store.name());
+            assertThrows(UnsupportedOperationException.class, () -> inGauteng.add(inGauteng.get(0)), store.name());
+            assertEquals(List.of(new Place("Walmer", "Gqeberha")), db.placesInProvince("Eastern Cape"), store.name());
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package wethinkcode.places.db.snapshot;
+
+import java.io.*;
+import java.util.Optional;
+
+import org.junit.jupiter.api.*;
+import wethinkcode.places.Places;
+import wethinkcode.places.PlacesCsvParser;
+import wethinkcode.places.PlacesStore;
+import wethinkcode.places.PlacesTestData;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit-test suite for saving and loading binary snapshots.
+ */
+public class PlacesSnapshotTest
+{
+    private File csv;
+    private File snapshot;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        csv = File.createTempFile("places", ".csv");
+        csv.deleteOnExit();
+        try (FileWriter fw = new FileWriter(csv)) {
+            fw.write(PlacesTestData.HEADER);
+            fw.write(PlacesTestData.CSV_DATA);
+        }
+        snapshot = File.createTempFile("places", ".snapshot");
+        snapshot.deleteOnExit();
+    }
+
+    @Test
+    public void snapshotRoundTrips() throws IOException {
+        Places parsed = new PlacesCsvParser().parseCsvSource(csv);
+        long checksum = PlacesSnapshot.checksum(csv);
+        PlacesSnapshot.write(snapshot, checksum, parsed);
+
+        for (PlacesStore store : PlacesStore.values()) {
+            Places loaded = PlacesSnapshot.read(snapshot, checksum, store).orElseThrow();
+            assertEquals(parsed.provinces(), loaded.provinces());
+            assertEquals(parsed.municipalities(), loaded.municipalities());
+            assertEquals(parsed.places(), loaded.places());
+            assertEquals(parsed.placesInProvince("Gauteng"), loaded.placesInProvince("Gauteng"));
+            for (int i = 0; i < parsed.locations().size(); i++) {
+                assertEquals(parsed.locations().latitude(i), loaded.locations().latitude(i));
+                assertEquals(parsed.locations().longitude(i), loaded.locations().longitude(i));
+                assertEquals(parsed.types().type(i), loaded.types().type(i));
+            }
+        }
+    }
+
+    @Test
+    public void changedSourceIsNotLoaded() throws IOException {
+        Places parsed = new PlacesCsvParser().parseCsvSource(csv);
+        PlacesSnapshot.write(snapshot, PlacesSnapshot.checksum(csv), parsed);
+
+        try (FileWriter fw = new FileWriter(csv, true)) {
+            fw.write("Sibabe,Town,70815,-27.35,30.44,01-06-1987,,KwaZulu-Natal,87,,228,4,16,DC25,Utrecht,,,KZ253,,\n");
+        }
+
+        Optional<Places> loaded = PlacesSnapshot.read(snapshot, PlacesSnapshot.checksum(csv), PlacesStore.INDEXED);
+        assertTrue(loaded.isEmpty());
+    }
+
+    @Test
+    public void missingOrBrokenSnapshotIsNotLoaded() throws IOException {
+        long checksum = PlacesSnapshot.checksum(csv);
+        assertTrue(PlacesSnapshot.read(new File("no-such.snapshot"), checksum, PlacesStore.INDEXED).isEmpty());
+
+        PlacesSnapshot.write(snapshot, checksum, new PlacesCsvParser().parseCsvSource(csv));
+        try (RandomAccessFile file = new RandomAccessFile(snapshot, "rw")) {
+            file.setLength(file.length() - 3);
+        }
+        assertTrue(PlacesSnapshot.read(snapshot, checksum, PlacesStore.INDEXED).isEmpty());
+    }
+}
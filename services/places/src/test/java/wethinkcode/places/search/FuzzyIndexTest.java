@@ -0,0 +1,67 @@
+package wethinkcode.places.search;
+
+import java.util.List;
+
+import org.junit.jupiter.api.*;
+import wethinkcode.model.Place;
+import wethinkcode.places.Places;
+import wethinkcode.places.PlacesBuilder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit-test suite for typo tolerant search over place names.
+ */
+public class FuzzyIndexTest
+{
+    private static final Places PLACES = new PlacesBuilder()
+            .add("Johannesburg", "City of Johannesburg", "Gauteng")
+            .add("Gqeberha", "Nelson Mandela Bay", "Eastern Cape")
+            .add("Stellenbosch", "Stellenbosch", "Western Cape")
+            .add("Paarl", "Drakenstein", "Western Cape")
+            .add("Parys", "Ngwathe", "Free State")
+            .add("Kuruman", "Ga-Segonyana", "Northern Cape")
+            .build();
+
+    private final FuzzyIndex index = new FuzzyIndex(PLACES);
+
+    @Test
+    public void exactNamesComeFirst() {
+        assertEquals(new Place("Paarl", "Drakenstein"), index.search("Paarl", 5).get(0));
+    }
+
+    @Test
+    public void toleratesTyposAccentsAndCase() {
+        assertEquals(List.of(new Place("Johannesburg", "City of Johannesburg")), index.search("johanesburg", 5));
+        assertEquals(List.of(new Place("Gqeberha", "Nelson Mandela Bay")), index.search("GQÉBERHA", 5));
+        assertEquals(List.of(new Place("Stellenbosch", "Stellenbosch")), index.search("Stelenbosh", 5));
+    }
+
+    @Test
+    public void ranksByEditDistance() {
+        assertEquals(
+                List.of(new Place("Parys", "Ngwathe"), new Place("Paarl", "Drakenstein")),
+                index.search("Paarys", 5)
+        );
+        assertEquals(1, index.search("Paarys", 1).size());
+    }
+
+    @Test
+    public void farOffNamesAreNotFound() {
+        assertEquals(List.of(), index.search("Durban", 5));
+        assertEquals(List.of(), index.search("  ", 5));
+    }
+
+    @Test
+    public void editDistance() {
+        assertEquals(0, FuzzyIndex.distance("paarl", "paarl", 2));
+        assertEquals(1, FuzzyIndex.distance("parl", "paarl", 2));
+        assertEquals(2, FuzzyIndex.distance("paarys", "paarl", 2));
+        assertEquals(3, FuzzyIndex.distance("kuruman", "paarl", 2));
+    }
+
+    @Test
+    public void folding() {
+        assertEquals("port elizabeth", Names.fold("  Port   Élizabeth "));
+    }
+}
@@ -0,0 +1,100 @@
+package wethinkcode.places.search;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.*;
+import wethinkcode.places.Places;
+import wethinkcode.places.PlacesBuilder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit-test suite for finding the places nearest a location.
+ */
+public class NearIndexTest
+{
+    private static Places randomPlaces(int count, long seed){
+        Random random = new Random(seed);
+        PlacesBuilder builder = new PlacesBuilder();
+        for (int i = 0; i < count; i++) {
+            float latitude = -35 + random.nextFloat() * 13;
+            float longitude = 16 + random.nextFloat() * 17;
+            builder.add("Place " + i, "Municipality " + (i % 50), "Province " + (i % 9), latitude, longitude);
+        }
+        builder.add("Nowhere", "Municipality 0", "Province 0");
+        return builder.build();
+    }
+
+    private static List<Double> bruteForce(Places places, double latitude, double longitude){
+        List<Double> distances = new ArrayList<>();
+        double[] query = NearIndex.point(latitude, longitude);
+        for (int row = 0; row < places.locations().size(); row++) {
+            if (!places.locations().isKnown(row)) continue;
+            double[] point = NearIndex.point(places.locations().latitude(row), places.locations().longitude(row));
+            double dx = query[0] - point[0];
+            double dy = query[1] - point[1];
+            double dz = query[2] - point[2];
+            distances.add(NearIndex.kilometres(dx * dx + dy * dy + dz * dz));
+        }
+        distances.sort(Comparator.naturalOrder());
+        return distances;
+    }
+
+    @Test
+    public void nearestMatchesBruteForce() {
+        Places places = randomPlaces(2000, 42);
+        NearIndex index = new NearIndex(places);
+        assertEquals(2000, index.size());
+
+        Random random = new Random(7);
+        for (int q = 0; q < 50; q++) {
+            double latitude = -35 + random.nextDouble() * 13;
+            double longitude = 16 + random.nextDouble() * 17;
+            List<Double> expected = bruteForce(places, latitude, longitude).subList(0, 10);
+
+            List<NearbyPlace> found = index.nearest(latitude, longitude, 10);
+            assertEquals(10, found.size());
+            for (int i = 0; i < 10; i++) {
+                assertEquals(expected.get(i), found.get(i).distance(), 1e-9);
+            }
+        }
+    }
+
+    @Test
+    public void withinMatchesBruteForce() {
+        Places places = randomPlaces(2000, 1);
+        NearIndex index = new NearIndex(places);
+
+        List<Double> expected = bruteForce(places, -29, 25).stream().filter(d -> d <= 100).toList();
+        List<NearbyPlace> found = index.within(-29, 25, 100, 10_000);
+        assertEquals(expected.size(), found.size());
+        for (int i = 0; i < found.size(); i++) {
+            assertEquals(expected.get(i), found.get(i).distance(), 1e-9);
+        }
+
+        List<NearbyPlace> nearest = index.within(-29, 25, 100, 3);
+        assertEquals(Math.min(3, expected.size()), nearest.size());
+        for (int i = 0; i < nearest.size(); i++) {
+            assertEquals(expected.get(i), nearest.get(i).distance(), 1e-9);
+        }
+    }
+
+    @Test
+    public void distancesAreAlongTheSurface() {
+        Places places = new PlacesBuilder()
+                .add("Johannesburg", "City of Johannesburg", "Gauteng", -26.2044f, 28.0456f)
+                .add("Cape Town", "City of Cape Town", "Western Cape", -33.9249f, 18.4241f)
+                .build();
+        NearIndex index = new NearIndex(places);
+
+        List<NearbyPlace> found = index.nearest(-26.2044, 28.0456, 5);
+        assertEquals(2, found.size());
+        assertEquals("Johannesburg", found.get(0).name());
+        assertEquals(0, found.get(0).distance(), 0.01);
+        assertEquals("Cape Town", found.get(1).name());
+        assertEquals(1265, found.get(1).distance(), 10);
+    }
+}
@@ -0,0 +1,46 @@
+package wethinkcode.places.search;
+
+import org.junit.jupiter.api.*;
+import wethinkcode.places.Places;
+import wethinkcode.places.PlacesBuilder;
+import wethinkcode.places.PlacesStore;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit-test suite for checking whether places exist in provinces.
+ */
+public class PlaceMembershipTest
+{
+    private static final PlacesBuilder BUILDER = new PlacesBuilder()
+            .add("Brakpan", "Ekurhuleni Metro", "Gauteng")
+            .add("Botrivier", "Theewaterskloof", "Western Cape")
+            .add("Brakpan", "Mier", "Northern Cape")
+            .add("Amatikulu", "uMlalazi", "KwaZulu-Natal");
+
+    @Test
+    public void agreesWithPlacesInProvince() {
+        for (PlacesStore store : PlacesStore.values()) {
+            Places places = BUILDER.build(store);
+            PlaceMembership membership = new PlaceMembership(places);
+
+            assertEquals(4, membership.size());
+            assertTrue(membership.contains("Gauteng", "Brakpan"));
+            assertTrue(membership.contains("Northern Cape", "Brakpan"));
+            assertTrue(membership.contains("KwaZulu-Natal", "Amatikulu"));
+
+            assertFalse(membership.contains("Western Cape", "Brakpan"));
+            assertTrue(membership.contains("gauteng", "BRAKPAN"));
+            assertFalse(membership.contains("Gauteng", "Nowhere"));
+            assertFalse(membership.contains(null, "Brakpan"));
+        }
+    }
+
+    @Test
+    public void knowsTheProvinces() {
+        PlaceMembership membership = new PlaceMembership(BUILDER.build());
+        assertTrue(membership.hasProvince("Western Cape"));
+        assertTrue(membership.hasProvince("western  cape"));
+        assertFalse(membership.hasProvince("Oregon"));
+    }
+}
@@ -0,0 +1,102 @@
+package wethinkcode.places.search;
+
+import java.util.List;
+
+import org.junit.jupiter.api.*;
+import wethinkcode.model.Place;
+import wethinkcode.places.Places;
+import wethinkcode.places.PlacesBuilder;
+import wethinkcode.places.db.memory.NormalizedPlacesDb;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Every combination of filters must find the same places, whichever index answers it.
+ */
+public class PlaceQueryTest
+{
+    private static final Places PLACES = new NormalizedPlacesDb(new PlacesBuilder()
+            .add("Brakpan", "Ekurhuleni Metro", "Gauteng")
+            .add("Benoni", "Ekurhuleni Metro", "Gauteng")
+            .add("Soweto", "City of Johannesburg", "Gauteng")
+            .add("Brakpan", "Mier", "Northern Cape")
+            .add("Botrivier", "Theewaterskloof", "Western Cape")
+            .build());
+
+    private final PrefixIndex prefixes = new PrefixIndex(PLACES);
+
+    private List<Place> find(String province, String municipality, String prefix) {
+        return new PlaceQuery(province, municipality, prefix).find(PLACES, prefixes, 0, 100);
+    }
+
+    private int count(String province, String municipality, String prefix) {
+        return new PlaceQuery(province, municipality, prefix).count(PLACES, prefixes);
+    }
+
+    @Test
+    public void filtersCombine() {
+        assertEquals(PLACES.places(), find(null, null, null));
+        assertEquals(3, find("gauteng", null, null).size());
+        assertEquals(List.of(new Place("Brakpan", "Ekurhuleni Metro"), new Place("Brakpan", "Mier")),
+                find(null, null, "bra"));
+        assertEquals(List.of(new Place("Brakpan", "Ekurhuleni Metro")), find("Gauteng", null, "b").subList(1, 2));
+        assertEquals(List.of(new Place("Benoni", "Ekurhuleni Metro")), find(null, "ekurhuleni metro", "BE"));
+        assertEquals(List.of(new Place("Brakpan", "Mier")), find("Northern Cape", "Mier", null));
+    }
+
+    @Test
+    public void nothingMatchesUnknownOrMismatchedNames() {
+        assertEquals(List.of(), find("Mars", null, null));
+        assertEquals(List.of(), find(null, "Nowhere", "b"));
+        assertEquals(List.of(), find("Western Cape", "Mier", null));
+        assertEquals(0, count("Western Cape", "Mier", null));
+    }
+
+    @Test
+    public void countsMatchWhatIsFound() {
+        String[][] queries = {
+                {null, null, null}, {"Gauteng", null, null}, {null, null, "b"}, {"Gauteng", null, "b"},
+                {null, "Ekurhuleni Metro", null}, {null, "Ekurhuleni Metro", "br"}, {null, null, "x"}
+        };
+        for (String[] query : queries) {
+            assertEquals(find(query[0], query[1], query[2]).size(), count(query[0], query[1], query[2]),
+                    String.join(",", String.valueOf(query[0]), String.valueOf(query[1]), String.valueOf(query[2])));
+        }
+    }
+
+    @Test
+    public void filtersByTypeInNameOrder() {
+        Places typed = new NormalizedPlacesDb(new PlacesBuilder()
+                .add("Soweto", "City of Johannesburg", "Gauteng", Float.NaN, Float.NaN, "Town")
+                .add("Brakpan", "Ekurhuleni Metro", "Gauteng", Float.NaN, Float.NaN, "Urban Area")
+                .add("Benoni", "Ekurhuleni Metro", "Gauteng", Float.NaN, Float.NaN, "Town")
+                .add("Brakpan", "Mier", "Northern Cape", Float.NaN, Float.NaN, "Town")
+                .add("Botrivier", "Theewaterskloof", "Western Cape")
+                .build());
+        PrefixIndex typedPrefixes = new PrefixIndex(typed);
+
+        assertEquals(
+                List.of(new Place("Benoni", "Ekurhuleni Metro"), new Place("Brakpan", "Mier"), new Place("Soweto", "City of Johannesburg")),
+                new PlaceQuery(null, null, null, "town").find(typed, typedPrefixes, 0, 100)
+        );
+        assertEquals(
+                List.of(new Place("Benoni", "Ekurhuleni Metro")),
+                new PlaceQuery("gauteng", "Ekurhuleni Metro", "b", "TOWN").find(typed, typedPrefixes, 0, 100)
+        );
+        assertEquals(1, new PlaceQuery(null, "Ekurhuleni Metro", null, "town").count(typed, typedPrefixes));
+        assertEquals(2, new PlaceQuery("Gauteng", null, null, "town").count(typed, typedPrefixes));
+        assertEquals(List.of(), new PlaceQuery(null, null, null, "mountain").find(typed, typedPrefixes, 0, 100));
+        assertEquals(0, new PlaceQuery(null, null, null, "mountain").count(typed, typedPrefixes));
+    }
+
+    @Test
+    public void pagesDoNotOverlap() {
+        PlaceQuery query = new PlaceQuery("Gauteng", null, "b");
+        assertEquals(List.of(new Place("Benoni", "Ekurhuleni Metro")), query.find(PLACES, prefixes, 0, 1));
+        assertEquals(List.of(new Place("Brakpan", "Ekurhuleni Metro")), query.find(PLACES, prefixes, 1, 1));
+        assertEquals(List.of(), query.find(PLACES, prefixes, 2, 1));
+
+        query = new PlaceQuery("Gauteng", null, null);
+        assertEquals(find("Gauteng", null, null).subList(1, 3), query.find(PLACES, prefixes, 1, 5));
+    }
+}
@@ -0,0 +1,87 @@
+package wethinkcode.places.search;
+
+import java.util.List;
+
+import org.junit.jupiter.api.*;
+import wethinkcode.model.Place;
+import wethinkcode.places.Places;
+import wethinkcode.places.PlacesBuilder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit-test suite for prefix search over place names.
+ */
+public class PrefixIndexTest
+{
+    private static final Places PLACES = new PlacesBuilder()
+            .add("Brakpan", "Ekurhuleni Metro", "Gauteng")
+            .add("Botrivier", "Theewaterskloof", "Western Cape")
+            .add("Brakpan", "Mier", "Northern Cape")
+            .add("brandfort", "Masilonyana", "Free State")
+            .add("Amatikulu", "uMlalazi", "KwaZulu-Natal")
+            .build();
+
+    private final PrefixIndex index = new PrefixIndex(PLACES);
+
+    @Test
+    public void findsNamesStartingWithPrefixIgnoringCase() {
+        assertEquals(
+                List.of(
+                        new Place("Brakpan", "Ekurhuleni Metro"),
+                        new Place("Brakpan", "Mier"),
+                        new Place("brandfort", "Masilonyana")
+                ),
+                index.search("BRA", null, 10)
+        );
+        assertEquals(List.of(new Place("Amatikulu", "uMlalazi")), index.search("a", null, 10));
+        assertEquals(List.of(), index.search("Z", null, 10));
+    }
+
+    @Test
+    public void limitsTheNumberOfResults() {
+        assertEquals(2, index.search("b", null, 2).size());
+        assertEquals(4, index.search("", null, 4).size());
+        assertEquals(5, index.size());
+    }
+
+    @Test
+    public void filtersByProvince() {
+        assertEquals(List.of(new Place("Brakpan", "Ekurhuleni Metro")), index.search("br", "Gauteng", 10));
+        assertEquals(List.of(), index.search("br", "Western Cape", 10));
+        assertEquals(List.of(), index.search("br", "Mars", 10));
+    }
+
+    @Test
+    public void filtersByProvinceRegardlessOfCase() {
+        assertEquals(List.of(new Place("Brakpan", "Ekurhuleni Metro")), index.search("br", "gauteng", 10));
+        assertEquals(1, index.count("br", "GAUTENG"));
+    }
+
+    @Test
+    public void filtersByTypeRegardlessOfCase() {
+        Places typed = new PlacesBuilder()
+                .add("Brakpan", "Ekurhuleni Metro", "Gauteng", Float.NaN, Float.NaN, "Urban Area")
+                .add("Brakpan", "Matjhabeng", "Free State", Float.NaN, Float.NaN, "Town")
+                .add("brandfort", "Masilonyana", "Free State")
+                .build();
+        PrefixIndex typedIndex = new PrefixIndex(typed);
+
+        assertEquals(
+                List.of(new Place("Brakpan", "Matjhabeng")),
+                typedIndex.search("bra", null, "TOWN", place -> true, 0, 10)
+        );
+        assertEquals(1, typedIndex.count("", "free state", "town"));
+        assertEquals(0, typedIndex.count("", "Gauteng", "town"));
+        assertEquals(List.of(), typedIndex.search("", null, "mountain", place -> true, 0, 10));
+    }
+
+    @Test
+    public void countsWithoutListing() {
+        assertEquals(3, index.count("bra", null));
+        assertEquals(1, index.count("BR", "Gauteng"));
+        assertEquals(5, index.count("", null));
+        assertEquals(0, index.count("br", "Mars"));
+        assertEquals(0, index.count("Z", null));
+    }
+}
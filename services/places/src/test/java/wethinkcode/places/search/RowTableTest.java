@@ -0,0 +1,44 @@
+package wethinkcode.places.search;
+
+import java.util.List;
+
+import org.junit.jupiter.api.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit-test suite for finding rows by a key worked out from them.
+ */
+public class RowTableTest
+{
+    @Test
+    public void theFirstRowWithAKeyIsFound() {
+        List<String> keys = List.of("brakpan", "botrivier", "brakpan", "amatikulu");
+        RowTable table = new RowTable(keys.size(), keys::get);
+
+        assertEquals(0, table.find("brakpan"));
+        assertEquals(1, table.find("botrivier"));
+        assertEquals(3, table.find("amatikulu"));
+        assertEquals(-1, table.find("nowhere"));
+        assertEquals(3, table.size());
+    }
+
+    @Test
+    public void rowsWithoutAKeyAreLeftOut() {
+        RowTable table = new RowTable(4, row -> row % 2 == 0 ? null : "row " + row);
+
+        assertEquals(1, table.find("row 1"));
+        assertEquals(-1, table.find("row 2"));
+        assertEquals(2, table.size());
+    }
+
+    @Test
+    public void manyKeysAreAllFound() {
+        RowTable table = new RowTable(5000, row -> "place " + row);
+
+        for (int row = 0; row < 5000; row++) {
+            assertEquals(row, table.find("place " + row));
+        }
+        assertEquals(-1, table.find("place 5000"));
+    }
+}
@@ -5,13 +5,41 @@ import io.javalin.json.JsonMapper;
 import kong.unirest.Unirest;
 import kong.unirest.json.JSONObject;
 import picocli.CommandLine;
+import wethinkcode.schedule.cache.ScheduleCache;
+import wethinkcode.schedule.engine.GroupMapping;
+import wethinkcode.schedule.engine.ScheduleEngine;
+import wethinkcode.schedule.engine.StageRotation;
 import wethinkcode.schedule.transfer.ScheduleDAO;
 import wethinkcode.service.Service;
 import wethinkcode.service.messages.Prefix;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static wethinkcode.service.messages.AlertService.publishWarning;
+
 /**
  * I provide a REST API providing the current loadshedding schedule for a
  * given town (in a specific province) at a given loadshedding stage.
+ * <p>
+ * Schedules are worked out by a {@link ScheduleEngine} from a {@link StageRotation}: a published
+ * table given in a file with <code>--rotation</code>, or else the standard rotation of 16 groups.
+ * The group of each place can be given in a file with <code>--groups</code>, and places that are
+ * not in it are hashed into a group. Stages the rotation has no table for have no schedule.
+ * <p>
+ * The responses are kept in a {@link ScheduleCache}, of up to <code>--cache-size</code> of them,
+ * until the stage or the day changes. <code>GET /cache</code> shows how often it is used.
+ * <p>
+ * Provinces, and with <code>--require-place</code> places, are checked against a local
+ * {@link wethinkcode.schedule.transfer.PlacesReplica copy} of the places service, kept up to date
+ * in the background every <code>--replica-ttl</code> seconds and whenever the places service
+ * announces a new version, so a request never waits on the places service once it is known.
+ * <p>
+ * <code>POST /schedules</code> works out the schedules of many places at once, see
+ * {@link wethinkcode.schedule.routes.BatchController}.
  */
 @Service.AsService
 public class ScheduleService{
@@ -27,21 +55,107 @@ public class ScheduleService{
     )
     String places;
 
+    @CommandLine.Option(
+            names = {"-gr", "--groups"},
+            description = {"A CSV file of province,place,group lines giving the load-shedding group of each place."}
+    )
+    String groups;
+
+    @CommandLine.Option(
+            names = {"-ro", "--rotation"},
+            description = {"A CSV file of stage,day,block,groups lines giving the groups each stage adds in each block of each day of the month."}
+    )
+    String rotation;
+
+    @CommandLine.Option(
+            names = {"-cs", "--cache-size"},
+            description = {"The most schedule responses to keep, so they are not worked out again until the stage changes."}
+    )
+    Integer cacheSize = 10_000;
+
+    @CommandLine.Option(
+            names = {"-rt", "--replica-ttl"},
+            description = {"The seconds the local copy of the places is used before it is refreshed in the background."}
+    )
+    Integer replicaTtl = 60;
+
+    @CommandLine.Option(
+            names = {"-rp", "--require-place"},
+            description = {"Only finds schedules for places the places service has, not any place in a province it has."},
+            type = Boolean.class
+    )
+    Boolean requirePlace = false;
+
     /**
      * Is updated by a listener
-     * Contains the current stage number
+     * Contains the current stage number, read by request threads
      */
-    int stage;
+    volatile int stage;
 
     /**
      * Handles the getting of schedules
      */
     public final ScheduleDAO scheduleDAO = new ScheduleDAO();
 
+    /**
+     * Keeps the responses already sent, until the stage or the day changes
+     */
+    public ScheduleCache scheduleCache;
+
+    private final JsonMapper jsonMapper = new JavalinJackson();
+
+    /**
+     * Works out the schedules of a batch in parallel
+     */
+    private static final int BATCH_WORKERS = Runtime.getRuntime().availableProcessors();
+    private final ExecutorService batchWorkers = Executors.newFixedThreadPool(
+            BATCH_WORKERS,
+            runnable -> {
+                Thread thread = new Thread(runnable, "ScheduleService batch worker");
+                thread.setDaemon(true);
+                return thread;
+            }
+    );
+
+    @Service.RunBefore
+    public void createCache(){
+        scheduleCache = new ScheduleCache(cacheSize);
+    }
+
     @Service.RunBefore
     public void setPlaceURL(){
         scheduleDAO.setPlacesURL((manager == null)? places :
         Unirest.get(manager + "/service/PlacesService").asObject(String.class).getBody());
+        scheduleDAO.setRequirePlace(requirePlace);
+        scheduleDAO.places().setTtl(Duration.ofSeconds(replicaTtl));
+        scheduleDAO.places().onChange(() -> {
+            if (scheduleCache != null) {
+                scheduleCache.newEpoch();
+            }
+        });
+        scheduleDAO.places().refreshInBackground();
+    }
+
+    /**
+     * Reads the rotation and which load-shedding group each place is in, if files of them were
+     * given. Places not in the groups file are hashed into a group.
+     */
+    @Service.RunBefore
+    public void loadGroups(){
+        if (groups == null && rotation == null) {
+            return;
+        }
+        try {
+            StageRotation stages = rotation == null
+                    ? StageRotation.standard()
+                    : StageRotation.read(StageRotation.STANDARD_GROUPS, Path.of(rotation));
+            GroupMapping mapping = groups == null
+                    ? GroupMapping.hashed(stages.groups())
+                    : GroupMapping.read(stages.groups(), Path.of(groups));
+            scheduleDAO.setEngine(new ScheduleEngine(stages, mapping));
+        } catch (IOException e) {
+            publishWarning(getClass().getSimpleName(), "Cannot read the rotation or groups: " + e.getMessage());
+        }
     }
 
     /**
@@ -49,12 +163,45 @@ public class ScheduleService{
      */
     @Service.CustomJSONMapper
     public JsonMapper createJsonMapper() {
-        return new JavalinJackson();
+        return jsonMapper;
+    }
+
+    /**
+     * @return the mapper responses are written with
+     */
+    public JsonMapper jsonMapper() {
+        return jsonMapper;
     }
 
     @Service.Listen(prefix = Prefix.TOPIC, destination = "stage")
     public void stageListener(String message){
         stage = new JSONObject(message).getInt("stage");
+        if (scheduleCache != null) {
+            scheduleCache.newEpoch();
+        }
+    }
+
+    /**
+     * Brings the copy of the places up to date when the places service has a new version
+     */
+    @Service.Listen(prefix = Prefix.TOPIC, destination = "places")
+    public void placesListener(String message){
+        scheduleDAO.places().refreshInBackground();
+    }
+
+    /**
+     * @return the threads that work out the schedules of a batch
+     */
+    public ExecutorService batchWorkers() {
+        return batchWorkers;
+    }
+
+    /**
+     * @return the most places of one batch given to the batch workers at a time, half of them
+     *         so that other batches are not kept waiting behind a large one
+     */
+    public int batchParallelism() {
+        return Math.max(1, BATCH_WORKERS / 2);
     }
 
     public int getStage() {
@@ -0,0 +1,106 @@
+package wethinkcode.schedule.batch;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import wethinkcode.schedule.cache.ScheduleCache;
+
+/**
+ * ScheduleBatch : I work out the schedules of many places at once, for clients that would
+ * otherwise ask for them one request at a time, like sending notices after the stage changes.
+ * <p>
+ * A place asked for more than once is only worked out once. The places are worked out in
+ * parallel, and each result is handed on as soon as it is ready, so the first results can be
+ * sent while the rest are still being worked out. A place whose schedule cannot be worked out
+ * gives a result with an error instead of stopping the others.
+ * <p>
+ * Only a few places of a batch wait for the executor at a time, another being handed to it as
+ * each one is done, so one large batch cannot fill the executor's queue ahead of other batches.
+ * If handing on a result fails, for instance because the client has gone, the places still
+ * waiting or being worked out are cancelled.
+ */
+public class ScheduleBatch
+{
+    public static final int MAX_PLACES = 10_000;
+
+    /**
+     * A place in a batch
+     * @param province the province the place is in
+     * @param place the name of the place
+     */
+    public record Key(String province, String place) {}
+
+    /**
+     * The schedule of a place in a batch
+     * @param key the place
+     * @param response the rendered schedule, or null if there was an error
+     * @param error why there is no schedule, or null
+     */
+    public record Result(Key key, ScheduleCache.Response response, String error) {}
+
+    private ScheduleBatch(){}
+
+    /**
+     * @param keys the places, possibly repeated
+     * @param schedule works out the schedule of one place
+     * @param executor runs the work
+     * @param parallelism the most places handed to the executor at a time
+     * @param results given each result as it is ready, on the calling thread
+     * @param waiting run on the calling thread each time no result is ready, before waiting for one
+     * @return how many different places there were
+     * @throws InterruptedException if interrupted while waiting for a result
+     */
+    public static int run(
+            Collection<Key> keys,
+            Function<Key, ScheduleCache.Response> schedule,
+            Executor executor,
+            int parallelism,
+            Consumer<Result> results,
+            Runnable waiting
+    ) throws InterruptedException {
+        Set<Key> distinct = new LinkedHashSet<>(keys);
+        Iterator<Key> next = distinct.iterator();
+        CompletionService<Result> completion = new ExecutorCompletionService<>(executor);
+        Set<Future<Result>> running = new HashSet<>();
+        try {
+            while (running.size() < Math.max(1, parallelism) && next.hasNext()) {
+                running.add(submit(completion, schedule, next.next()));
+            }
+            while (!running.isEmpty()) {
+                Future<Result> done = completion.poll();
+                if (done == null) {
+                    waiting.run();
+                    done = completion.take();
+                }
+                running.remove(done);
+                if (next.hasNext()) {
+                    running.add(submit(completion, schedule, next.next()));
+                }
+                try {
+                    results.accept(done.get());
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+        } finally {
+            running.forEach(future -> future.cancel(true));
+        }
+        return distinct.size();
+    }
+
+    private static Future<Result> submit(
+            CompletionService<Result> completion,
+            Function<Key, ScheduleCache.Response> schedule,
+            Key key
+    ){
+        return completion.submit(() -> {
+            try {
+                return new Result(key, schedule.apply(key), null);
+            } catch (RuntimeException e) {
+                return new Result(key, null, String.valueOf(e.getMessage()));
+            }
+        });
+    }
+}
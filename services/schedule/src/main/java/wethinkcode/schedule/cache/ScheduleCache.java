@@ -0,0 +1,119 @@
+package wethinkcode.schedule.cache;
+
+import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * ScheduleCache : I keep the JSON of schedule responses that have already been sent, so sending
+ * one again is a copy of some bytes instead of working it out and asking the places service.
+ * <p>
+ * A response only changes when the stage changes, or the day does, since a schedule starts
+ * today. Each response I keep remembers the epoch and the day it was made in, and is made again
+ * when it is asked for in a later one. The stage listener starts a new epoch with
+ * {@link #newEpoch()}, so nothing has to be thrown away when the stage changes, it just stops
+ * being used.
+ * <p>
+ * I hold at most a fixed number of responses. When I am full, responses from earlier epochs or
+ * days are dropped first, then any others until a tenth of the room is free, so that a full cache
+ * is not looked through on every miss.
+ */
+public class ScheduleCache
+{
+    /**
+     * A rendered response
+     * @param body the JSON as UTF-8
+     * @param found true if the place was found, false if the body is an empty schedule
+     */
+    public record Response(byte[] body, boolean found) {}
+
+    /**
+     * How well I am working
+     * @param hits requests answered from a response I kept
+     * @param misses requests that had a response made for them
+     * @param evictions responses dropped to make room
+     * @param size responses kept now
+     * @param epoch the current epoch
+     */
+    public record Metrics(long hits, long misses, long evictions, int size, long epoch) {}
+
+    private record Key(String province, String place, int stage) {}
+
+    private record Entry(Response response, long epoch, LocalDate day) {}
+
+    private final int capacity;
+    private final ConcurrentMap<Key, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong epoch = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * @param capacity the most responses to keep
+     */
+    public ScheduleCache(int capacity){
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The cache must hold at least one response");
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * Gets the response for a place at a stage, making it if there is none from this epoch and day.
+     * @param province the province in the request
+     * @param place the place in the request
+     * @param stage the stage the response is for
+     * @param response makes the response, only called on a miss
+     * @return the response
+     */
+    public Response get(String province, String place, int stage, Supplier<Response> response){
+        Key key = new Key(province, place, stage);
+        long current = epoch.get();
+        LocalDate today = LocalDate.now();
+
+        Entry entry = entries.get(key);
+        if (entry != null && entry.epoch() == current && entry.day().equals(today)) {
+            hits.incrementAndGet();
+            return entry.response();
+        }
+
+        misses.incrementAndGet();
+        Response made = response.get();
+        if (entry == null && entries.size() >= capacity) {
+            makeRoom(current, today);
+        }
+        entries.put(key, new Entry(made, current, today));
+        return made;
+    }
+
+    /**
+     * Stops every response kept so far from being used, when the stage changes.
+     */
+    public void newEpoch(){
+        epoch.incrementAndGet();
+    }
+
+    public Metrics metrics(){
+        return new Metrics(hits.get(), misses.get(), evictions.get(), entries.size(), epoch.get());
+    }
+
+    private void makeRoom(long current, LocalDate today){
+        for (Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator(); it.hasNext(); ) {
+            Entry entry = it.next().getValue();
+            if (entry.epoch() != current || !entry.day().equals(today)) {
+                it.remove();
+                evictions.incrementAndGet();
+            }
+        }
+        int target = capacity - Math.max(1, capacity / 10);
+        for (Iterator<Key> it = entries.keySet().iterator(); it.hasNext() && entries.size() > target; ) {
+            it.next();
+            it.remove();
+            evictions.incrementAndGet();
+        }
+    }
+}
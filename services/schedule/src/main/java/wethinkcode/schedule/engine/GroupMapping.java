@@ -0,0 +1,93 @@
+package wethinkcode.schedule.engine;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * GroupMapping : I know which load-shedding group each place is in.
+ * <p>
+ * Places listed in a mapping file are in the group given there. Every other place is given a
+ * group from a hash of its province and name, so it always gets the same one. Names are matched
+ * regardless of case. Groups are numbered from 0.
+ */
+public class GroupMapping
+{
+    private final int groups;
+    private final Map<String, Integer> known;
+
+    /**
+     * @param groups how many groups there are
+     * @param known the group of each place, keyed by {@link #key}
+     */
+    GroupMapping(int groups, Map<String, Integer> known){
+        this.groups = groups;
+        this.known = Map.copyOf(known);
+    }
+
+    /**
+     * @param groups how many groups there are
+     * @return a mapping that hashes every place into a group
+     */
+    public static GroupMapping hashed(int groups){
+        return new GroupMapping(groups, Map.of());
+    }
+
+    /**
+     * Reads a CSV file of <code>province,place,group</code> lines, with groups numbered from 1
+     * as they are published. Blank lines and lines starting with # are skipped.
+     * @param groups how many groups there are
+     * @param file the mapping file
+     * @return the mapping
+     * @throws IOException if the file cannot be read
+     */
+    public static GroupMapping read(int groups, Path file) throws IOException {
+        Map<String, Integer> known = new HashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            int number = 0;
+            while ((line = reader.readLine()) != null) {
+                number++;
+                if (line.isBlank() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split(",");
+                int group;
+                try {
+                    group = Integer.parseInt(fields[fields.length - 1].trim()) - 1;
+                } catch (NumberFormatException e) {
+                    group = -1;
+                }
+                if (fields.length != 3 || group < 0 || group >= groups) {
+                    throw new IOException(file + ":" + number + ": expected province,place,group from 1 to " + groups);
+                }
+                known.put(key(fields[0], fields[1]), group);
+            }
+        }
+        return new GroupMapping(groups, known);
+    }
+
+    /**
+     * @param province the province the place is in
+     * @param place the name of the place
+     * @return the group the place is in
+     */
+    public int group(String province, String place){
+        String key = key(province, place);
+        Integer group = known.get(key);
+        return group != null ? group : Math.floorMod(key.hashCode(), groups);
+    }
+
+    public int groups(){
+        return groups;
+    }
+
+    private static String key(String province, String place){
+        return province.trim().toLowerCase(Locale.ROOT) + "/" + place.trim().toLowerCase(Locale.ROOT);
+    }
+}
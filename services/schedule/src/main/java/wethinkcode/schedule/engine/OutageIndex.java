@@ -0,0 +1,148 @@
+package wethinkcode.schedule.engine;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * OutageIndex : I answer whether a group is being shed at some moment, and when it is next
+ * shed, without working out a whole schedule.
+ * <p>
+ * For every group and stage I keep the times it is shed over a few days as two sorted arrays of
+ * epoch seconds, the starts and the ends, with outages that run on past midnight joined into
+ * one. Either answer is then one binary search. An outage that runs on past my last day ends
+ * where I end. Days are those of South Africa, where there is no daylight saving. I never
+ * change after I am built.
+ */
+public class OutageIndex
+{
+    public static final ZoneId ZONE = ZoneId.of("Africa/Johannesburg");
+    public static final int DAYS = 8;
+
+    private static final long SLOT_SECONDS = 24 * 60 * 60 / ScheduleEngine.SLOTS_PER_DAY;
+
+    /**
+     * When a place is shed
+     * @param from when it starts
+     * @param to when it ends
+     */
+    public record Outage(Instant from, Instant to) {}
+
+    private final ScheduleEngine engine;
+    private final long from;
+    private final long to;
+    private final long[][] starts;
+    private final long[][] ends;
+
+    /**
+     * @param engine what each group is shed, on each day
+     * @param first the first day to cover
+     * @param days how many days to cover
+     */
+    public OutageIndex(ScheduleEngine engine, LocalDate first, int days){
+        this.engine = engine;
+        this.from = first.atStartOfDay(ZONE).toEpochSecond();
+        this.to = first.plusDays(days).atStartOfDay(ZONE).toEpochSecond();
+
+        int groups = engine.mapping().groups();
+        int stages = engine.stages() + 1;
+        starts = new long[groups * stages][];
+        ends = new long[groups * stages][];
+
+        long[] foundStarts = new long[days * ScheduleEngine.SLOTS_PER_DAY];
+        long[] foundEnds = new long[foundStarts.length];
+        for (int group = 0; group < groups; group++) {
+            for (int stage = 0; stage < stages; stage++) {
+                int count = 0;
+                for (int day = 0; day < days; day++) {
+                    LocalDate date = first.plusDays(day);
+                    long midnight = date.atStartOfDay(ZONE).toEpochSecond();
+                    long shed = engine.slots(group, stage, date);
+                    for (int slot = 0; slot < ScheduleEngine.SLOTS_PER_DAY; slot++) {
+                        if ((shed & (1L << slot)) == 0) {
+                            continue;
+                        }
+                        long start = midnight + slot * SLOT_SECONDS;
+                        if (count > 0 && foundEnds[count - 1] == start) {
+                            foundEnds[count - 1] = start + SLOT_SECONDS;
+                        } else {
+                            foundStarts[count] = start;
+                            foundEnds[count] = start + SLOT_SECONDS;
+                            count++;
+                        }
+                    }
+                }
+                starts[group * stages + stage] = Arrays.copyOf(foundStarts, count);
+                ends[group * stages + stage] = Arrays.copyOf(foundEnds, count);
+            }
+        }
+    }
+
+    /**
+     * @param group from 0
+     * @param stage from 0 to the highest stage of the engine's rotation
+     * @param time the moment
+     * @return the outage the group is in at that moment at that stage, if any
+     */
+    public Optional<Outage> at(int group, int stage, Instant time){
+        int index = index(group, stage);
+        long second = time.getEpochSecond();
+        int found = lastStartAtOrBefore(starts[index], second);
+        if (found >= 0 && second < ends[index][found]) {
+            return Optional.of(outage(index, found));
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * @param group from 0
+     * @param stage from 0 to the highest stage of the engine's rotation
+     * @param time the moment
+     * @return the first outage of the group at that stage that starts after that moment, if any
+     *         starts before I end
+     */
+    public Optional<Outage> next(int group, int stage, Instant time){
+        int index = index(group, stage);
+        int found = lastStartAtOrBefore(starts[index], time.getEpochSecond()) + 1;
+        if (found < starts[index].length) {
+            return Optional.of(outage(index, found));
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * @param time a moment
+     * @return true if I cover that moment
+     */
+    public boolean covers(Instant time){
+        return time.getEpochSecond() >= from && time.getEpochSecond() < to;
+    }
+
+    /**
+     * @return the schedules I was built from
+     */
+    public ScheduleEngine engine(){
+        return engine;
+    }
+
+    private int index(int group, int stage){
+        if (stage < 0 || stage > engine.stages()) {
+            throw new IllegalArgumentException("There is no stage " + stage + " in the rotation");
+        }
+        return group * (engine.stages() + 1) + stage;
+    }
+
+    private Outage outage(int index, int found){
+        return new Outage(Instant.ofEpochSecond(starts[index][found]), Instant.ofEpochSecond(ends[index][found]));
+    }
+
+    /**
+     * @return the position of the last start at or before the second, or -1 if there is none
+     */
+    private static int lastStartAtOrBefore(long[] starts, long second){
+        int found = Arrays.binarySearch(starts, second);
+        return found >= 0 ? found : -found - 2;
+    }
+}
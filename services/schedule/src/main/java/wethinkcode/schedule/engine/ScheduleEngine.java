@@ -0,0 +1,152 @@
+package wethinkcode.schedule.engine;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.*;
+
+import wethinkcode.model.Day;
+import wethinkcode.model.Schedule;
+import wethinkcode.model.Slot;
+
+/**
+ * ScheduleEngine : I work out when each place is load-shed, from the group it is in and a
+ * {@link StageRotation}.
+ * <p>
+ * Everything is worked out when I am built. For every group, stage and day of the cycle I keep
+ * the 48 half hours of the day as the low bits of one long, set where the group is shed, all in
+ * one flat array. Each distinct set of half hours also becomes one {@link Day}, shared by every
+ * group, stage and day that have it, since a Day is never changed. A schedule is then a lookup of
+ * the group and one array lookup per day. I never change after I am built.
+ */
+public class ScheduleEngine
+{
+    public static final int SLOTS_PER_DAY = 48;
+    public static final int DEFAULT_DAYS = 4;
+
+    private static final int SLOT_MINUTES = 24 * 60 / SLOTS_PER_DAY;
+
+    private final GroupMapping mapping;
+    private final int stages;
+    private final int days;
+    private final long[] slots;
+    private final Day[] schedules;
+
+    /**
+     * @param rotation which groups each stage sheds when
+     * @param mapping which group each place is in, with as many groups as the rotation
+     */
+    public ScheduleEngine(StageRotation rotation, GroupMapping mapping){
+        if (rotation.groups() != mapping.groups()) {
+            throw new IllegalArgumentException("The rotation has " + rotation.groups()
+                    + " groups but the mapping has " + mapping.groups());
+        }
+        this.mapping = mapping;
+        this.stages = rotation.stages();
+        this.days = rotation.days();
+
+        int stages = this.stages + 1;
+        int halfHoursPerBlock = SLOTS_PER_DAY / rotation.blocks();
+        slots = new long[rotation.groups() * stages * days];
+        schedules = new Day[slots.length];
+        Map<Long, Day> distinct = new HashMap<>();
+
+        for (int group = 0; group < rotation.groups(); group++) {
+            for (int day = 0; day < days; day++) {
+                long shed = 0;
+                for (int stage = 1; stage < stages; stage++) {
+                    for (int block = 0; block < rotation.blocks(); block++) {
+                        if ((rotation.added(stage, day, block) & (1 << group)) != 0) {
+                            shed |= ((1L << halfHoursPerBlock) - 1) << (block * halfHoursPerBlock);
+                        }
+                    }
+                    int index = index(group, stage, day);
+                    slots[index] = shed;
+                    schedules[index] = distinct.computeIfAbsent(shed, ScheduleEngine::day);
+                }
+                schedules[index(group, 0, day)] = distinct.computeIfAbsent(0L, ScheduleEngine::day);
+            }
+        }
+    }
+
+    /**
+     * @param province the province the place is in
+     * @param place the name of the place
+     * @param stage from 0 to {@link #stages}
+     * @param start the first day of the schedule
+     * @param count how many days the schedule covers
+     * @return when the place is shed on each day
+     */
+    public Schedule schedule(String province, String place, int stage, LocalDate start, int count){
+        int group = mapping.group(province, place);
+        int first = index(group, stage, 0);
+
+        List<Day> found = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            found.add(schedules[first + (start.plusDays(i).getDayOfMonth() - 1) % days]);
+        }
+        return new Schedule(found);
+    }
+
+    /**
+     * @param group from 0
+     * @param stage from 0 to {@link #stages}
+     * @param day of the cycle
+     * @return the half hours of the day that are shed, half hour n being bit n
+     */
+    public long slots(int group, int stage, int day){
+        return slots[index(group, stage, day)];
+    }
+
+    /**
+     * @param group from 0
+     * @param stage from 0 to {@link #stages}
+     * @param date a day
+     * @return the half hours of that day that are shed, half hour n being bit n
+     */
+    public long slots(int group, int stage, LocalDate date){
+        return slots(group, stage, date.getDayOfMonth() - 1);
+    }
+
+    public GroupMapping mapping(){
+        return mapping;
+    }
+
+    /**
+     * @return the highest stage of the rotation I was built from
+     */
+    public int stages(){
+        return stages;
+    }
+
+    private int index(int group, int stage, int day){
+        if (stage < 0 || stage > stages) {
+            throw new IllegalArgumentException("There is no stage " + stage + " in the rotation");
+        }
+        return (group * (stages + 1) + stage) * days + day % days;
+    }
+
+    /**
+     * Joins the half hours that follow one another into slots. A slot that lasts until the end
+     * of the day ends at midnight.
+     */
+    static Day day(long shed){
+        List<Slot> slots = new ArrayList<>();
+        int slot = 0;
+        while (slot < SLOTS_PER_DAY) {
+            if ((shed & (1L << slot)) == 0) {
+                slot++;
+                continue;
+            }
+            int from = slot;
+            while (slot < SLOTS_PER_DAY && (shed & (1L << slot)) != 0) {
+                slot++;
+            }
+            slots.add(new Slot(time(from), time(slot)));
+        }
+        return new Day(List.copyOf(slots));
+    }
+
+    private static LocalTime time(int slot){
+        return slot == SLOTS_PER_DAY ? LocalTime.MIDNIGHT : LocalTime.MIN.plusMinutes((long) slot * SLOT_MINUTES);
+    }
+}
@@ -0,0 +1,187 @@
+package wethinkcode.schedule.engine;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * StageRotation : I am the table of which load-shedding groups are shed when, at each stage.
+ * <p>
+ * The day is split into equal blocks, twelve blocks of two hours in the usual tables. For each
+ * stage, day of the cycle and block I hold a mask of the groups that stage adds, so the groups
+ * shed at stage N in a block are those of stages 1 to N together. The cycle follows the day of
+ * the month, so day 0 is the 1st. I only know the stages I was given a table for, which may be
+ * fewer than {@link #STAGES}. I never change after I am built.
+ */
+public class StageRotation
+{
+    /**
+     * The highest stage there can be
+     */
+    public static final int STAGES = 8;
+    public static final int STANDARD_GROUPS = 16;
+    public static final int STANDARD_DAYS = 31;
+    public static final int STANDARD_BLOCKS = 12;
+
+    /**
+     * How far along the groups each of stages 1 to 7 starts in the standard rotation, spread so
+     * that no two stages shed the same group in the same block
+     */
+    private static final int[] STANDARD_OFFSETS = {0, 8, 4, 12, 2, 10, 6};
+
+    private final int groups;
+    private final int[][][] added;
+
+    /**
+     * @param groups how many groups there are, at most 32
+     * @param added the mask of groups each stage adds, indexed by stage - 1, day of the cycle and
+     *              block of the day, for stages 1 to at most {@link #STAGES}. Every day must have
+     *              the same number of blocks, which must divide the 48 half hours of a day.
+     */
+    public StageRotation(int groups, int[][][] added){
+        if (groups < 1 || groups > Integer.SIZE) {
+            throw new IllegalArgumentException("There must be from 1 to 32 groups, not " + groups);
+        }
+        if (added.length == 0 || added.length > STAGES || added[0].length == 0) {
+            throw new IllegalArgumentException("Expected a table for each of 1 to " + STAGES + " stages");
+        }
+        int blocks = added[0][0].length;
+        if (blocks == 0 || ScheduleEngine.SLOTS_PER_DAY % blocks != 0) {
+            throw new IllegalArgumentException(blocks + " blocks do not divide a day into half hours");
+        }
+        for (int[][] stage : added) {
+            if (stage.length != added[0].length) {
+                throw new IllegalArgumentException("Every stage must cover the same days");
+            }
+            for (int[] day : stage) {
+                if (day.length != blocks) {
+                    throw new IllegalArgumentException("Every day must have " + blocks + " blocks");
+                }
+            }
+        }
+        this.groups = groups;
+        this.added = added;
+    }
+
+    /**
+     * The usual rotation of 16 groups over the days of the month in two hour blocks, used when no
+     * published table is given. At stages 1 to 7 each stage sheds one more group in every block,
+     * moving on by one group per block and by one per day, so that the times a place is shed
+     * change from day to day at every stage. There is no stage 8 in it.
+     * @return the rotation
+     */
+    public static StageRotation standard(){
+        int[][][] added = new int[STANDARD_OFFSETS.length][STANDARD_DAYS][STANDARD_BLOCKS];
+        for (int stage = 0; stage < added.length; stage++) {
+            for (int day = 0; day < STANDARD_DAYS; day++) {
+                for (int block = 0; block < STANDARD_BLOCKS; block++) {
+                    added[stage][day][block] = 1 << ((day + block + STANDARD_OFFSETS[stage]) % STANDARD_GROUPS);
+                }
+            }
+        }
+        return new StageRotation(STANDARD_GROUPS, added);
+    }
+
+    /**
+     * Reads a published rotation from a CSV file of <code>stage,day,block,groups</code> lines:
+     * the groups the stage adds in that block of that day of the month, separated by spaces.
+     * Stages, days, blocks and groups are numbered from 1 as they are published. The file covers
+     * as many stages, days and blocks as the highest of each it has, and a block with no line
+     * adds no groups. Blank lines and lines starting with # are skipped.
+     * @param groups how many groups there are
+     * @param file the rotation file
+     * @return the rotation
+     * @throws IOException if the file cannot be read or is not a rotation
+     */
+    public static StageRotation read(int groups, Path file) throws IOException {
+        int[][][] added = new int[STAGES][STANDARD_DAYS][ScheduleEngine.SLOTS_PER_DAY];
+        int stages = 0;
+        int days = 0;
+        int blocks = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            int number = 0;
+            while ((line = reader.readLine()) != null) {
+                number++;
+                if (line.isBlank() || line.startsWith("#")) {
+                    continue;
+                }
+                String where = file + ":" + number + ": ";
+                String[] fields = line.split(",", -1);
+                if (fields.length != 4) {
+                    throw new IOException(where + "expected stage,day,block,groups");
+                }
+                int stage = number(fields[0], STAGES, where + "stage");
+                int day = number(fields[1], STANDARD_DAYS, where + "day");
+                int block = number(fields[2], ScheduleEngine.SLOTS_PER_DAY, where + "block");
+                for (String group : fields[3].trim().split("\\s+")) {
+                    if (!group.isEmpty()) {
+                        added[stage - 1][day - 1][block - 1] |= 1 << (number(group, groups, where + "group") - 1);
+                    }
+                }
+                stages = Math.max(stages, stage);
+                days = Math.max(days, day);
+                blocks = Math.max(blocks, block);
+            }
+        }
+        if (stages == 0) {
+            throw new IOException(file + ": there are no stages in it");
+        }
+
+        int[][][] table = new int[stages][days][blocks];
+        for (int stage = 0; stage < stages; stage++) {
+            for (int day = 0; day < days; day++) {
+                System.arraycopy(added[stage][day], 0, table[stage][day], 0, blocks);
+            }
+        }
+        try {
+            return new StageRotation(groups, table);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(file + ": " + e.getMessage());
+        }
+    }
+
+    private static int number(String field, int most, String what) throws IOException {
+        int number;
+        try {
+            number = Integer.parseInt(field.trim());
+        } catch (NumberFormatException e) {
+            number = 0;
+        }
+        if (number < 1 || number > most) {
+            throw new IOException(what + " must be from 1 to " + most + ", not " + field.trim());
+        }
+        return number;
+    }
+
+    public int groups(){
+        return groups;
+    }
+
+    /**
+     * @return the highest stage I have a table for
+     */
+    public int stages(){
+        return added.length;
+    }
+
+    public int days(){
+        return added[0].length;
+    }
+
+    public int blocks(){
+        return added[0][0].length;
+    }
+
+    /**
+     * @param stage from 1 to {@link #stages}
+     * @param day of the cycle
+     * @param block of the day
+     * @return the mask of groups the stage adds to those of the stages below it
+     */
+    public int added(int stage, int day, int block){
+        return added[stage - 1][day][block];
+    }
+}
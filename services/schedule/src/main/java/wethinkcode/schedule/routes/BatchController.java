@@ -0,0 +1,108 @@
+package wethinkcode.schedule.routes;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonRawValue;
+import io.javalin.http.Context;
+import io.javalin.http.HttpStatus;
+import wethinkcode.schedule.ScheduleService;
+import wethinkcode.schedule.batch.ScheduleBatch;
+import wethinkcode.schedule.cache.ScheduleCache;
+import wethinkcode.service.controllers.Controllers;
+import wethinkcode.service.controllers.Verb;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+@Controllers.Controller("schedules")
+@SuppressWarnings("unused")
+public class BatchController{
+    static final String NDJSON = "application/x-ndjson";
+
+    /**
+     * Gets the schedules of many places in one request. The body is
+     * {"stage": ..., "places": [{"province": ..., "place": ...}, ...]}, where the stage is
+     * the current stage if it is left out.
+     * <p>
+     * The response has one line of JSON for each different place, sent as soon as it is worked
+     * out, so not in the order asked for:
+     * {"province": ..., "place": ..., "found": ..., "schedule": ...}, or with "error" instead of
+     * "found" and "schedule" if it could not be worked out.
+     */
+    @Controllers.Mapping(Verb.POST)
+    public static void getSchedules(Context context, ScheduleService instance) {
+        BatchRequest request;
+        try {
+            request = context.bodyAsClass(BatchRequest.class);
+        } catch (Exception e) {
+            request = null;
+        }
+        if (request == null || request.places() == null || request.places().size() > ScheduleBatch.MAX_PLACES
+                || request.places().stream().anyMatch(key -> key == null || key.province() == null || key.place() == null)) {
+            context.status(HttpStatus.BAD_REQUEST);
+            context.json("Expected a list of at most " + ScheduleBatch.MAX_PLACES + " provinces and places");
+            return;
+        }
+        int stage = request.stage() == null ? instance.getStage() : request.stage();
+        if (!instance.scheduleDAO.hasStage(stage)) {
+            context.status(HttpStatus.BAD_REQUEST);
+            context.json("There is no stage " + stage + " in the rotation");
+            return;
+        }
+
+        context.status(HttpStatus.OK);
+        context.contentType(NDJSON);
+        OutputStream out = context.outputStream();
+        try {
+            ScheduleBatch.run(
+                    request.places(),
+                    key -> instance.scheduleCache.get(key.province(), key.place(), stage,
+                            () -> ScheduleController.render(instance, key.province(), key.place(), stage)),
+                    instance.batchWorkers(),
+                    instance.batchParallelism(),
+                    result -> write(out, instance, result),
+                    () -> flush(out)
+            );
+            out.flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void write(OutputStream out, ScheduleService instance, ScheduleBatch.Result result) {
+        ScheduleBatch.Key key = result.key();
+        Line line = result.response() == null
+                ? new Line(key.province(), key.place(), null, null, result.error())
+                : new Line(key.province(), key.place(), result.response().found(),
+                        new String(result.response().body(), StandardCharsets.UTF_8), null);
+        try {
+            out.write(instance.jsonMapper().toJsonString(line, Line.class).getBytes(StandardCharsets.UTF_8));
+            out.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Sends the lines written so far, when the next result is not ready yet
+     */
+    private static void flush(OutputStream out) {
+        try {
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    record BatchRequest(Integer stage, List<ScheduleBatch.Key> places) {}
+
+    /**
+     * One line of the response, with the schedule already rendered
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    record Line(String province, String place, Boolean found, @JsonRawValue String schedule, String error) {}
+}
@@ -0,0 +1,21 @@
+package wethinkcode.schedule.routes;
+
+import io.javalin.http.Context;
+import io.javalin.http.HttpStatus;
+import wethinkcode.schedule.ScheduleService;
+import wethinkcode.service.controllers.Controllers;
+import wethinkcode.service.controllers.Verb;
+
+@Controllers.Controller("cache")
+@SuppressWarnings("unused")
+public class CacheController{
+    /**
+     * Gets how many schedules were sent from the cache and how many were worked out,
+     * how many were dropped to make room, how many are kept and the current epoch
+     */
+    @Controllers.Mapping(Verb.GET)
+    public static void getMetrics(Context context, ScheduleService instance) {
+        context.json(instance.scheduleCache.metrics());
+        context.status(HttpStatus.OK);
+    }
+}
@@ -0,0 +1,124 @@
+package wethinkcode.schedule.routes;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.javalin.http.Context;
+import io.javalin.http.HttpStatus;
+import wethinkcode.schedule.ScheduleService;
+import wethinkcode.schedule.engine.OutageIndex;
+import wethinkcode.schedule.transfer.PlacesReplica;
+import wethinkcode.schedule.transfer.ScheduleDAO;
+import wethinkcode.service.controllers.Controllers;
+import wethinkcode.service.controllers.Verb;
+
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.Optional;
+
+@Controllers.Controller("{province}/{place}")
+@SuppressWarnings("unused")
+public class OutageController{
+    /**
+     * Gets whether a place is being shed at the current stage, now or at the time in the "at"
+     * query parameter: {"shedding": true, "from": ..., "to": ...} with the outage it is in, or
+     * {"shedding": false}. Times are ISO-8601 with an offset, and "at" may also be in epoch seconds.
+     * Times more than {@link ScheduleDAO#FURTHEST} from now are refused.
+     */
+    @Controllers.Mapping(value = Verb.GET, path = "now")
+    public static void getNow(Context context, ScheduleService instance) {
+        Instant time = time(context, "at");
+        int stage = instance.getStage();
+        if (time == null || !found(context, instance, stage)) {
+            return;
+        }
+        Optional<OutageIndex.Outage> outage = instance.scheduleDAO.outageAt(
+                context.pathParam("province"), context.pathParam("place"), stage, time
+        );
+        context.json(outage.map(found -> Window.of(true, found)).orElse(new Window(false, null, null)));
+        context.status(HttpStatus.OK);
+    }
+
+    /**
+     * Gets the next time a place is shed at the current stage, starting after now or after the
+     * time in the "after" query parameter: {"from": ..., "to": ...}, or no content if it is not
+     * shed in the days ahead.
+     */
+    @Controllers.Mapping(value = Verb.GET, path = "next")
+    public static void getNext(Context context, ScheduleService instance) {
+        Instant time = time(context, "after");
+        int stage = instance.getStage();
+        if (time == null || !found(context, instance, stage)) {
+            return;
+        }
+        Optional<OutageIndex.Outage> outage = instance.scheduleDAO.nextOutage(
+                context.pathParam("province"), context.pathParam("place"), stage, time
+        );
+        if (outage.isEmpty()) {
+            context.status(HttpStatus.NO_CONTENT);
+            return;
+        }
+        context.json(Window.of(null, outage.get()));
+        context.status(HttpStatus.OK);
+    }
+
+    private static boolean found(Context context, ScheduleService instance, int stage) {
+        if (!instance.scheduleDAO.hasStage(stage)) {
+            context.status(HttpStatus.NOT_FOUND);
+            context.json("There is no stage " + stage + " in the rotation");
+            return false;
+        }
+        try {
+            if (instance.scheduleDAO.hasPlace(context.pathParam("province"), context.pathParam("place"))) {
+                return true;
+            }
+        } catch (PlacesReplica.Unavailable e) {
+            context.status(HttpStatus.SERVICE_UNAVAILABLE);
+            context.json(e.getMessage());
+            return false;
+        }
+        context.status(HttpStatus.NOT_FOUND);
+        context.json("There is no schedule for " + context.pathParam("place"));
+        return false;
+    }
+
+    /**
+     * @return the time in the query parameter, now if there is none, or null after answering
+     *         400 if it is not a time or too far from now
+     */
+    private static Instant time(Context context, String name) {
+        String value = context.queryParam(name);
+        if (value == null) {
+            return Instant.now();
+        }
+        Instant time;
+        try {
+            time = value.chars().allMatch(Character::isDigit)
+                    ? Instant.ofEpochSecond(Long.parseLong(value))
+                    : OffsetDateTime.parse(value).toInstant();
+        } catch (NumberFormatException | DateTimeException e) {
+            context.status(HttpStatus.BAD_REQUEST);
+            context.json("Expected " + name + " to be an ISO-8601 time with an offset, or epoch seconds");
+            return null;
+        }
+        if (!ScheduleDAO.inRange(time)) {
+            context.status(HttpStatus.BAD_REQUEST);
+            context.json("Expected " + name + " to be within " + ScheduleDAO.FURTHEST.toDays() + " days of now");
+            return null;
+        }
+        return time;
+    }
+
+    /**
+     * An outage in South African time
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    record Window(Boolean shedding, String from, String to) {
+        static Window of(Boolean shedding, OutageIndex.Outage outage) {
+            return new Window(
+                    shedding,
+                    outage.from().atZone(OutageIndex.ZONE).toOffsetDateTime().toString(),
+                    outage.to().atZone(OutageIndex.ZONE).toOffsetDateTime().toString()
+            );
+        }
+    }
+}
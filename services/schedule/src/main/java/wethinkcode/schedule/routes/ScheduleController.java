@@ -1,36 +1,58 @@
 package wethinkcode.schedule.routes;
 
+import io.javalin.http.ContentType;
 import io.javalin.http.Context;
 import io.javalin.http.HttpStatus;
 import wethinkcode.model.Schedule;
+import wethinkcode.schedule.cache.ScheduleCache;
+import wethinkcode.schedule.transfer.PlacesReplica;
 import wethinkcode.service.controllers.Controllers;
 import wethinkcode.service.controllers.Verb;
 import wethinkcode.schedule.ScheduleService;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Optional;
 
 @Controllers.Controller("{province}/{place}")
 @SuppressWarnings("unused")
 public class ScheduleController{
+    /**
+     * Gets the schedule of a place at the current stage, from the cache unless the stage or the
+     * day has changed since it was last asked for. Answers 503 while the places are not known,
+     * and 404 if the rotation has no table for the current stage.
+     */
     @Controllers.Mapping(Verb.GET)
     public static void getSchedule(Context context, ScheduleService instance) {
         String province = context.pathParam("province");
         String place = context.pathParam("place");
+        int stage = instance.getStage();
+        if (!instance.scheduleDAO.hasStage(stage)) {
+            context.status(HttpStatus.NOT_FOUND);
+            context.json("There is no stage " + stage + " in the rotation");
+            return;
+        }
 
-        Optional<Schedule> schedule;
-
-        schedule = instance.scheduleDAO.getSchedule(province, place, instance.getStage());
-
-
-        if (schedule.isPresent()){
-            context.json(schedule.get());
-            context.status(HttpStatus.OK);
+        ScheduleCache.Response response;
+        try {
+            response = instance.scheduleCache.get(
+                    province, place, stage, () -> render(instance, province, place, stage)
+            );
+        } catch (PlacesReplica.Unavailable e) {
+            context.status(HttpStatus.SERVICE_UNAVAILABLE);
+            context.json(e.getMessage());
             return;
         }
 
-        context.json(instance.scheduleDAO.emptySchedule());
-        context.status(HttpStatus.NOT_FOUND);
+        context.contentType(ContentType.APPLICATION_JSON);
+        context.result(response.body());
+        context.status(response.found() ? HttpStatus.OK : HttpStatus.NOT_FOUND);
+    }
 
+    static ScheduleCache.Response render(ScheduleService instance, String province, String place, int stage) {
+        Optional<Schedule> schedule = instance.scheduleDAO.getSchedule(province, place, stage);
+        Schedule body = schedule.orElseGet(instance.scheduleDAO::emptySchedule);
+        String json = instance.jsonMapper().toJsonString(body, Schedule.class);
+        return new ScheduleCache.Response(json.getBytes(StandardCharsets.UTF_8), schedule.isPresent());
     }
 
 }
@@ -0,0 +1,387 @@
+package wethinkcode.schedule.transfer;
+
+import kong.unirest.HttpResponse;
+import kong.unirest.JsonNode;
+import kong.unirest.Unirest;
+import kong.unirest.json.JSONArray;
+import kong.unirest.json.JSONObject;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import static wethinkcode.service.messages.AlertService.publishWarning;
+
+/**
+ * PlacesReplica : I keep a copy of the provinces, municipalities and place names of the places
+ * service, so that checking a place is a hash lookup instead of a request to it. If only provinces
+ * are checked, see {@link #setWithPlaces}, I copy only the provinces.
+ * <p>
+ * I fetch everything the first time I am used, and after that only the changes since the version
+ * I have, from <code>/changes</code>. My copy is never changed, a refresh swaps in a new one.
+ * I only use the endpoints that read places, so the URL may be that of one places service or of
+ * the manager fronting several shards.
+ * <ul>
+ * <li>Names I do not have are not found, without asking the places service, so unknown names
+ *     cost no more than known ones.
+ * <li>Once my copy is older than the time to live it is stale. It is still used, and the first
+ *     request to find it stale starts one refresh in the background, so no request waits on the
+ *     places service unless there is no copy at all.
+ * <li>A refresh can also be started when the places service announces a new version.
+ * <li>If a refresh fails the copy I have is kept, and no refresh is tried again for a while,
+ *     twice as long after each failure in a row up to {@link #MAX_BACKOFF}. Until I have a first
+ *     copy, requests fail fast with {@link Unavailable} while I wait to try again, rather than
+ *     each asking the places service for everything.
+ * </ul>
+ * Names are matched regardless of case.
+ */
+public class PlacesReplica
+{
+    static final int PAGE_SIZE = 1000;
+    static final int MAX_FETCH_ATTEMPTS = 3;
+    static final Duration FIRST_BACKOFF = Duration.ofSeconds(1);
+    static final Duration MAX_BACKOFF = Duration.ofMinutes(1);
+
+    private final Supplier<String> placesURL;
+    private volatile Duration ttl = Duration.ofSeconds(60);
+    private volatile Snapshot snapshot;
+    private volatile boolean withPlaces = true;
+    private volatile long retryAt = System.nanoTime();
+    private int failures = 0;
+    private final List<Runnable> listeners = new ArrayList<>();
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    private final Object refreshLock = new Object();
+    private final ExecutorService refresher = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "PlacesReplica refresher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * @param placesURL gives the URL of the places service, which may not be known yet
+     */
+    public PlacesReplica(Supplier<String> placesURL){
+        this.placesURL = placesURL;
+    }
+
+    /**
+     * @param ttl how long a copy is used before it is refreshed
+     */
+    public void setTtl(Duration ttl){
+        this.ttl = ttl;
+    }
+
+    /**
+     * @param withPlaces false to copy only the provinces, when {@link #hasPlace} is not used.
+     *                   Changing it drops the copy I have, so the next use fetches again.
+     */
+    public void setWithPlaces(boolean withPlaces){
+        synchronized (refreshLock) {
+            if (this.withPlaces != withPlaces) {
+                this.withPlaces = withPlaces;
+                snapshot = null;
+            }
+        }
+    }
+
+    /**
+     * @param listener run after each refresh that changed the copy
+     */
+    public synchronized void onChange(Runnable listener){
+        listeners.add(listener);
+    }
+
+    /**
+     * @param province the name of a province
+     * @return true if the places service has it
+     */
+    public boolean hasProvince(String province){
+        return current().provinces().contains(key(province));
+    }
+
+    /**
+     * @param province the name of a province
+     * @param place the name of a place
+     * @return true if the places service has the place in the province
+     * @throws IllegalStateException if I only copy provinces
+     */
+    public boolean hasPlace(String province, String place){
+        if (!withPlaces) {
+            throw new IllegalStateException("Only the provinces are copied");
+        }
+        Snapshot current = current();
+        Map<String, Integer> municipalities = current.municipalitiesOfPlace().get(key(place));
+        if (municipalities == null) {
+            return false;
+        }
+        String wanted = key(province);
+        for (String municipality : municipalities.keySet()) {
+            if (wanted.equals(current.provinceOfMunicipality().get(municipality))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the version of the places data I have, or -1 if I have none yet
+     */
+    public long version(){
+        Snapshot current = snapshot;
+        return current == null ? -1 : current.version();
+    }
+
+    /**
+     * Starts a refresh on the refresher thread, unless one is already waiting to run.
+     */
+    public void refreshInBackground(){
+        if (refreshing.compareAndSet(false, true)) {
+            refresher.execute(() -> {
+                refreshing.set(false);
+                refresh();
+            });
+        }
+    }
+
+    /**
+     * Brings my copy up to date with the places service, fetching only the changes if it can.
+     * Only one refresh runs at a time. A failure starts a wait before the next refresh that is
+     * not asked for directly.
+     */
+    public void refresh(){
+        synchronized (refreshLock) {
+            Snapshot previous = snapshot;
+            try {
+                snapshot = previous == null ? fetch() : update(previous);
+            } catch (RuntimeException e) {
+                failures++;
+                Duration backoff = FIRST_BACKOFF.multipliedBy(1L << Math.min(failures - 1, 16));
+                retryAt = System.nanoTime() + Math.min(backoff.toNanos(), MAX_BACKOFF.toNanos());
+                publishWarning(getClass().getSimpleName(), "Failed to refresh the places, " + failures
+                        + " times in a row: " + e.getMessage());
+                return;
+            }
+            failures = 0;
+            if (previous == null || previous.version() != snapshot.version()) {
+                changed();
+            }
+        }
+    }
+
+    /**
+     * @return true if the last refresh failed and it is too soon to try again
+     */
+    private boolean backingOff(){
+        return System.nanoTime() - retryAt < 0;
+    }
+
+    private synchronized void changed(){
+        listeners.forEach(Runnable::run);
+    }
+
+    private Snapshot current(){
+        Snapshot current = snapshot;
+        if (current == null) {
+            return first();
+        }
+        if (System.nanoTime() - current.fetchedAt() > ttl.toNanos() && !backingOff()) {
+            refreshInBackground();
+        }
+        return current;
+    }
+
+    /**
+     * Waits for the refresh that is fetching my first copy, or fetches it if none is and the last
+     * attempt was long enough ago. Requests waiting together all see the one attempt's result.
+     */
+    private Snapshot first(){
+        synchronized (refreshLock) {
+            if (snapshot == null && !backingOff()) {
+                refresh();
+            }
+            Snapshot current = snapshot;
+            if (current == null) {
+                throw new Unavailable();
+            }
+            return current;
+        }
+    }
+
+    /**
+     * Fetches all of the places, again if they change while being fetched
+     */
+    private Snapshot fetch(){
+        for (int attempt = 1; ; attempt++) {
+            long version = latestVersion();
+            Snapshot fetched = fetchAll(version);
+            if (latestVersion() == version || attempt == MAX_FETCH_ATTEMPTS) {
+                return fetched;
+            }
+        }
+    }
+
+    private Snapshot fetchAll(long version){
+        Set<String> provinces = new HashSet<>();
+        Map<String, String> provinceOfMunicipality = new HashMap<>();
+        Map<String, Map<String, Integer>> municipalitiesOfPlace = new HashMap<>();
+
+        JSONArray provinceList = get("/provinces").getArray();
+        for (int i = 0; i < provinceList.length(); i++) {
+            provinces.add(key(provinceList.getJSONObject(i).getString("name")));
+        }
+        if (!withPlaces) {
+            return new Snapshot(version, System.nanoTime(), provinces, provinceOfMunicipality, municipalitiesOfPlace);
+        }
+
+        for (int i = 0; i < provinceList.length(); i++) {
+            String province = provinceList.getJSONObject(i).getString("name");
+
+            HttpResponse<JsonNode> response = Unirest.get(placesURL.get() + "/municipalities/{province}")
+                    .routeParam("province", province)
+                    .asJson();
+            if (response.getStatus() == 200) {
+                JSONArray municipalities = response.getBody().getArray();
+                for (int j = 0; j < municipalities.length(); j++) {
+                    JSONObject municipality = municipalities.getJSONObject(j);
+                    provinceOfMunicipality.put(municipality.getString("name"), key(municipality.getString("province")));
+                }
+            }
+        }
+
+        String next = "0";
+        while (next != null && !next.isEmpty()) {
+            HttpResponse<JsonNode> response = Unirest.get(placesURL.get() + "/places/query")
+                    .queryString("fields", "name,municipality")
+                    .queryString("offset", next)
+                    .queryString("limit", PAGE_SIZE)
+                    .asJson();
+            requireOk(response, "/places/query");
+            JSONArray places = response.getBody().getArray();
+            for (int i = 0; i < places.length(); i++) {
+                JSONObject place = places.getJSONObject(i);
+                municipalitiesOfPlace.computeIfAbsent(key(place.getString("name")), name -> new HashMap<>())
+                        .merge(place.getString("municipality"), 1, Integer::sum);
+            }
+            next = response.getHeaders().getFirst("X-Next-Offset");
+        }
+        return new Snapshot(version, System.nanoTime(), provinces, provinceOfMunicipality, municipalitiesOfPlace);
+    }
+
+    /**
+     * Makes the changes since the version I have on a copy, or fetches everything again if the
+     * changes are not known
+     */
+    private Snapshot update(Snapshot previous){
+        JSONObject delta = get("/changes?since=" + previous.version()).getObject();
+        if (delta.getBoolean("reset")) {
+            return fetch();
+        }
+        long version = delta.getLong("version");
+        if (version == previous.version()) {
+            return previous.fetchedNow();
+        }
+
+        Set<String> provinces = new HashSet<>(previous.provinces());
+        Map<String, String> provinceOfMunicipality = new HashMap<>(previous.provinceOfMunicipality());
+        Map<String, Map<String, Integer>> municipalitiesOfPlace = new HashMap<>(previous.municipalitiesOfPlace());
+
+        forEach(delta, "removedProvinces", province -> provinces.remove(key(province.getString("name"))));
+        forEach(delta, "addedProvinces", province -> provinces.add(key(province.getString("name"))));
+        if (!withPlaces) {
+            return new Snapshot(version, System.nanoTime(), provinces, provinceOfMunicipality, municipalitiesOfPlace);
+        }
+        forEach(delta, "removedMunicipalities", municipality ->
+                provinceOfMunicipality.remove(municipality.getString("name")));
+        forEach(delta, "addedMunicipalities", municipality ->
+                provinceOfMunicipality.put(municipality.getString("name"), key(municipality.getString("province"))));
+        forEach(delta, "removedPlaces", place ->
+                count(municipalitiesOfPlace, place.getString("name"), place.getString("municipality"), -1));
+        forEach(delta, "addedPlaces", place ->
+                count(municipalitiesOfPlace, place.getString("name"), place.getString("municipality"), 1));
+
+        return new Snapshot(version, System.nanoTime(), provinces, provinceOfMunicipality, municipalitiesOfPlace);
+    }
+
+    /**
+     * Counts one more, or one fewer, of a place in a municipality, copying the counts for the name
+     * first so that the copy they came from is not changed
+     */
+    private static void count(Map<String, Map<String, Integer>> municipalitiesOfPlace, String place, String municipality, int change){
+        Map<String, Integer> counts = new HashMap<>(municipalitiesOfPlace.getOrDefault(key(place), Map.of()));
+        counts.merge(municipality, change, Integer::sum);
+        counts.values().removeIf(count -> count <= 0);
+        if (counts.isEmpty()) {
+            municipalitiesOfPlace.remove(key(place));
+        } else {
+            municipalitiesOfPlace.put(key(place), counts);
+        }
+    }
+
+    private static void forEach(JSONObject delta, String name, Consumer<JSONObject> action){
+        JSONArray array = delta.getJSONArray(name);
+        for (int i = 0; i < array.length(); i++) {
+            action.accept(array.getJSONObject(i));
+        }
+    }
+
+    private JsonNode get(String path){
+        HttpResponse<JsonNode> response = Unirest.get(placesURL.get() + path).asJson();
+        requireOk(response, path);
+        return response.getBody();
+    }
+
+    private static void requireOk(HttpResponse<?> response, String path){
+        if (response.getStatus() != 200) {
+            throw new IllegalStateException(path + " answered " + response.getStatus());
+        }
+    }
+
+    /**
+     * Asks for the changes since a version no one has, which are never known, so the answer is
+     * just the latest version. This needs only the read endpoints, so it also works through the
+     * manager when the places are sharded.
+     */
+    private long latestVersion(){
+        return get("/changes?since=" + Long.MAX_VALUE).getObject().getLong("version");
+    }
+
+    private static String key(String name){
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Thrown while I have no copy of the places yet, because the places service could not be
+     * reached and it is too soon to try it again
+     */
+    public static class Unavailable extends IllegalStateException
+    {
+        Unavailable(){
+            super("The places are not known yet");
+        }
+    }
+
+    /**
+     * One copy of the places
+     * @param version the version of the places data it was fetched from
+     * @param fetchedAt when it was fetched or last found up to date, in System.nanoTime()
+     * @param provinces the lower case names of the provinces
+     * @param provinceOfMunicipality the lower case province of each municipality
+     * @param municipalitiesOfPlace for the lower case name of each place, the municipalities
+     *                              it is in and how many times
+     */
+    private record Snapshot(
+            long version,
+            long fetchedAt,
+            Set<String> provinces,
+            Map<String, String> provinceOfMunicipality,
+            Map<String, Map<String, Integer>> municipalitiesOfPlace
+    ) {
+        Snapshot fetchedNow(){
+            return new Snapshot(version, System.nanoTime(), provinces, provinceOfMunicipality, municipalitiesOfPlace);
+        }
+    }
+}
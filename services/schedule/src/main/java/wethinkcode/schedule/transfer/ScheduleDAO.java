@@ -1,57 +1,159 @@
 package wethinkcode.schedule.transfer;
 
-import kong.unirest.*;
-import kong.unirest.json.JSONArray;
-import kong.unirest.json.JSONObject;
 import wethinkcode.model.*;
+import wethinkcode.schedule.engine.GroupMapping;
+import wethinkcode.schedule.engine.OutageIndex;
+import wethinkcode.schedule.engine.ScheduleEngine;
+import wethinkcode.schedule.engine.StageRotation;
 
-import java.time.LocalTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
 import java.util.*;
 
 public class ScheduleDAO {
-    private String placeURL;
+    /**
+     * How far past the time asked about the outage index must reach before it is used
+     */
+    private static final Duration LOOKAHEAD = Duration.ofDays(1);
+    /**
+     * How far before or after now a time asked about may be
+     */
+    public static final Duration FURTHEST = Duration.ofDays(366);
+    /**
+     * How many outage indexes for times away from now are kept, the least recently used going first
+     */
+    static final int KEPT_INDEXES = 8;
+
+    private volatile String placeURL;
+    private final PlacesReplica places = new PlacesReplica(() -> placeURL);
+    private volatile boolean requirePlace = false;
+    private volatile ScheduleEngine engine = new ScheduleEngine(
+            StageRotation.standard(),
+            GroupMapping.hashed(StageRotation.STANDARD_GROUPS)
+    );
+    private volatile OutageIndex outages;
+    private final Map<LocalDate, OutageIndex> otherOutages = new LinkedHashMap<>(KEPT_INDEXES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<LocalDate, OutageIndex> eldest) {
+            return size() > KEPT_INDEXES;
+        }
+    };
+
+    public ScheduleDAO(){
+        places.setWithPlaces(requirePlace);
+    }
 
     public void setPlacesURL(String placeURL){
         this.placeURL = placeURL;
     }
 
-    // There *must* be a better way than this...
-    // See Steps 4 and 5 (the optional ones!) in the course notes.
+    /**
+     * @param engine works out the schedules, from the rotation and which group each place is in
+     */
+    public void setEngine(ScheduleEngine engine){
+        this.engine = engine;
+    }
+
+    /**
+     * @return the copy of the places that schedule requests are checked against
+     */
+    public PlacesReplica places(){
+        return places;
+    }
+
+    /**
+     * @param stage a load-shedding stage
+     * @return true if the rotation schedules are worked out from has a table for it
+     */
+    public boolean hasStage(int stage){
+        return stage >= 0 && stage <= engine.stages();
+    }
+
+    /**
+     * @param requirePlace when true a schedule is only found for places the places service has,
+     *                     otherwise any place in a province it has
+     */
+    public void setRequirePlace(boolean requirePlace){
+        this.requirePlace = requirePlace;
+        places.setWithPlaces(requirePlace);
+    }
+
+    /**
+     * @param province the name of a province
+     * @param place the name of a place
+     * @return true if there is a schedule for the place
+     * @throws PlacesReplica.Unavailable if the places are not known yet
+     */
+    public boolean hasPlace(String province, String place) {
+        return places.hasProvince(province) && (!requirePlace || places.hasPlace(province, place));
+    }
+
     public Optional<Schedule> getSchedule(String province, String place, int stage) {
-        if (validateProvince(province)){
-            return Optional.of( mockSchedule() );
+        if (hasPlace(province, place)){
+            return Optional.of( engine.schedule(province, place, stage, LocalDate.now(), ScheduleEngine.DEFAULT_DAYS) );
         }
         return Optional.empty();
     }
 
-    private boolean validateProvince(String province) {
-        JSONObject toMatch = new JSONObject(new Province(province));
-        JSONArray provinces = Unirest
-                .get(placeURL + "/provinces")
-                .asJson()
-                .getBody()
-                .getArray();
+    /**
+     * Does not check that there is a schedule for the place, see {@link #hasPlace(String, String)}.
+     * @param time a time {@link #inRange in range}
+     * @return the outage the place is in at the time, if it is being shed then
+     */
+    public Optional<OutageIndex.Outage> outageAt(String province, String place, int stage, Instant time) {
+        OutageIndex index = outages(time);
+        return index.at(index.engine().mapping().group(province, place), stage, time);
+    }
 
-        return provinces.toList().contains(toMatch);
+    /**
+     * Does not check that there is a schedule for the place, see {@link #hasPlace(String, String)}.
+     * @param time a time {@link #inRange in range}
+     * @return the first outage of the place that starts after the time, if there is one in the
+     *         days the outage index covers
+     */
+    public Optional<OutageIndex.Outage> nextOutage(String province, String place, int stage, Instant time) {
+        OutageIndex index = outages(time);
+        return index.next(index.engine().mapping().group(province, place), stage, time);
     }
 
     /**
-     * Answer with a hard-coded/mock Schedule.
-     * @return A non-null, slightly plausible Schedule.
+     * @param time a time asked about
+     * @return true if it is no further than {@link #FURTHEST} from now
      */
-    public Schedule mockSchedule(){
-        final List<Slot> slots = List.of(
-                new Slot( LocalTime.of( 2, 0 ), LocalTime.of( 4, 0 )),
-                new Slot( LocalTime.of( 10, 0 ), LocalTime.of( 12, 0 )),
-                new Slot( LocalTime.of( 18, 0 ), LocalTime.of( 20, 0 ))
-        );
-        final List<Day> days = List.of(
-                new Day( slots ),
-                new Day( slots ),
-                new Day( slots ),
-                new Day( slots )
-        );
-        return new Schedule( days );
+    public static boolean inRange(Instant time) {
+        Instant now = Instant.now();
+        return !time.isBefore(now.minus(FURTHEST)) && !time.isAfter(now.plus(FURTHEST));
+    }
+
+    /**
+     * Gets an outage index that covers the time and a day after it, from the day before it. The
+     * one covering now is built again when the day moves on or the engine changes. Those for
+     * times away from now are kept by their first day, for the last few days asked about.
+     */
+    private OutageIndex outages(Instant time) {
+        if (!inRange(time)) {
+            throw new IllegalArgumentException("The time is more than " + FURTHEST.toDays() + " days from now: " + time);
+        }
+        ScheduleEngine current = engine;
+        OutageIndex index = outages;
+        if (index != null && index.engine() == current && index.covers(time) && index.covers(time.plus(LOOKAHEAD))) {
+            return index;
+        }
+        LocalDate first = LocalDate.ofInstant(time, OutageIndex.ZONE).minusDays(1);
+        synchronized (otherOutages) {
+            index = otherOutages.get(first);
+            if (index == null || index.engine() != current) {
+                index = new OutageIndex(current, first, OutageIndex.DAYS);
+            }
+            if (index.covers(Instant.now())) {
+                otherOutages.remove(first);
+                outages = index;
+            } else {
+                otherOutages.put(first, index);
+            }
+        }
+        return index;
     }
 
     /**
@@ -0,0 +1,84 @@
+package wethinkcode.schedule;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import kong.unirest.HttpResponse;
+import kong.unirest.HttpStatus;
+import kong.unirest.Unirest;
+import kong.unirest.json.JSONObject;
+import org.junit.jupiter.api.*;
+import wethinkcode.places.PlacesService;
+import wethinkcode.service.Service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * I am an API test of asking the ScheduleService for many schedules at once.
+ */
+public class ScheduleBatchApiTest
+{
+    private static final String CSV = """
+            Name,Feature_Description,pklid,Latitude,Longitude,Date,MapInfo,Province,fklFeatureSubTypeID,Previous_Name,fklMagisterialDistrictID,ProvinceID,fklLanguageID,fklDisteral,Local Municipality,Sound,District Municipality,fklLocalMunic,Comments,Meaning
+            Brakpan,Urban Area,92799,-26.23527778,28.37,31-05-1995,,Gauteng,114,,280,3,16,EKU,Ekurhuleni Metro,,,EKU,,
+            Botrivier,Urban Area,92997,-34.22583333,19.205,31-05-1979,,Western Cape,114,,15,9,16,DC3,Theewaterskloof,,,WC031,,
+            """;
+
+    private static Service<PlacesService> places;
+    private static Service<ScheduleService> schedule;
+
+    @BeforeAll
+    public static void startServices() throws IOException {
+        Path data = Files.createTempFile("batch", ".csv");
+        Files.writeString(data, CSV);
+        data.toFile().deleteOnExit();
+        places = new Service<>(new PlacesService()).execute("-p=7480", "-d=" + data);
+        schedule = new Service<>(new ScheduleService()).execute("-p=7481", "-pl=" + places.url());
+    }
+
+    @AfterAll
+    public static void stopServices() {
+        schedule.stop();
+        places.stop();
+    }
+
+    @Test
+    public void eachDifferentPlaceIsSentOnce() {
+        HttpResponse<String> response = Unirest.post(schedule.url() + "/schedules")
+                .body("{\"stage\": 4, \"places\": ["
+                        + "{\"province\": \"Gauteng\", \"place\": \"Brakpan\"},"
+                        + "{\"province\": \"Western Cape\", \"place\": \"Botrivier\"},"
+                        + "{\"province\": \"Gauteng\", \"place\": \"Brakpan\"},"
+                        + "{\"province\": \"Mars\", \"place\": \"Elonsburg\"}]}")
+                .asString();
+        assertEquals(HttpStatus.OK, response.getStatus());
+
+        String[] lines = response.getBody().split("\n");
+        assertEquals(3, lines.length);
+        Map<String, JSONObject> byPlace = new HashMap<>();
+        for (String line : lines) {
+            JSONObject result = new JSONObject(line);
+            byPlace.put(result.getString("place"), result);
+        }
+        assertTrue(byPlace.get("Brakpan").getBoolean("found"));
+        assertEquals(4, byPlace.get("Brakpan").getJSONObject("schedule").getJSONArray("days").length());
+        assertTrue(byPlace.get("Botrivier").getBoolean("found"));
+        assertFalse(byPlace.get("Elonsburg").getBoolean("found"));
+
+        JSONObject metrics = Unirest.get(schedule.url() + "/cache").asJson().getBody().getObject();
+        assertEquals(3, metrics.getInt("misses"));
+    }
+
+    @Test
+    public void badBatchesAreRefused() {
+        assertEquals(HttpStatus.BAD_REQUEST, Unirest.post(schedule.url() + "/schedules")
+                .body("not json").asEmpty().getStatus());
+        assertEquals(HttpStatus.BAD_REQUEST, Unirest.post(schedule.url() + "/schedules")
+                .body("{\"places\": [{\"province\": \"Gauteng\"}]}").asEmpty().getStatus());
+        assertEquals(HttpStatus.BAD_REQUEST, Unirest.post(schedule.url() + "/schedules")
+                .body("{\"stage\": 9, \"places\": []}").asEmpty().getStatus());
+    }
+}
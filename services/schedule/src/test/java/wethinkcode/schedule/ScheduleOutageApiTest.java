@@ -0,0 +1,88 @@
+package wethinkcode.schedule;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+
+import kong.unirest.HttpResponse;
+import kong.unirest.HttpStatus;
+import kong.unirest.JsonNode;
+import kong.unirest.Unirest;
+import kong.unirest.json.JSONObject;
+import org.junit.jupiter.api.*;
+import wethinkcode.places.PlacesService;
+import wethinkcode.service.Service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * I am an API test of asking the ScheduleService whether a place is shed now, and when next.
+ */
+public class ScheduleOutageApiTest
+{
+    private static final String CSV = """
+            Name,Feature_Description,pklid,Latitude,Longitude,Date,MapInfo,Province,fklFeatureSubTypeID,Previous_Name,fklMagisterialDistrictID,ProvinceID,fklLanguageID,fklDisteral,Local Municipality,Sound,District Municipality,fklLocalMunic,Comments,Meaning
+            Brakpan,Urban Area,92799,-26.23527778,28.37,31-05-1995,,Gauteng,114,,280,3,16,EKU,Ekurhuleni Metro,,,EKU,,
+            """;
+
+    private static Service<PlacesService> places;
+    private static Service<ScheduleService> schedule;
+
+    @BeforeAll
+    public static void startServices() throws IOException {
+        Path data = Files.createTempFile("outages", ".csv");
+        Files.writeString(data, CSV);
+        data.toFile().deleteOnExit();
+        places = new Service<>(new PlacesService()).execute("-p=7482", "-d=" + data);
+        schedule = new Service<>(new ScheduleService()).execute("-p=7483", "-pl=" + places.url());
+        schedule.instance.stage = 4;
+    }
+
+    @AfterAll
+    public static void stopServices() {
+        schedule.stop();
+        places.stop();
+    }
+
+    @Test
+    public void theNextOutageIsNotOnBeforeItStarts() {
+        HttpResponse<JsonNode> next = Unirest.get(schedule.url() + "/Gauteng/Brakpan/next").asJson();
+        assertEquals(HttpStatus.OK, next.getStatus());
+        JSONObject outage = next.getBody().getObject();
+        Instant from = OffsetDateTime.parse(outage.getString("from")).toInstant();
+        Instant to = OffsetDateTime.parse(outage.getString("to")).toInstant();
+        assertTrue(from.isBefore(to));
+
+        JSONObject before = Unirest.get(schedule.url() + "/Gauteng/Brakpan/now")
+                .queryString("at", from.minusSeconds(1).getEpochSecond())
+                .asJson().getBody().getObject();
+        assertFalse(before.getBoolean("shedding"));
+        JSONObject during = Unirest.get(schedule.url() + "/Gauteng/Brakpan/now")
+                .queryString("at", outage.getString("from"))
+                .asJson().getBody().getObject();
+        assertTrue(during.getBoolean("shedding"));
+        assertEquals(outage.getString("to"), during.getString("to"));
+    }
+
+    @Test
+    public void unknownPlacesAndBadTimesAreRefused() {
+        assertEquals(HttpStatus.NOT_FOUND, Unirest.get(schedule.url() + "/Mars/Elonsburg/now").asEmpty().getStatus());
+        assertEquals(HttpStatus.BAD_REQUEST, Unirest.get(schedule.url() + "/Gauteng/Brakpan/next")
+                .queryString("after", "tomorrow").asEmpty().getStatus());
+    }
+
+    @Test
+    public void timesFarFromNowAreRefused() {
+        assertEquals(HttpStatus.BAD_REQUEST, Unirest.get(schedule.url() + "/Gauteng/Brakpan/now")
+                .queryString("at", Instant.MAX.getEpochSecond()).asEmpty().getStatus());
+        assertEquals(HttpStatus.BAD_REQUEST, Unirest.get(schedule.url() + "/Gauteng/Brakpan/next")
+                .queryString("after", "+999999999-12-31T23:59:59Z").asEmpty().getStatus());
+        assertEquals(HttpStatus.BAD_REQUEST, Unirest.get(schedule.url() + "/Gauteng/Brakpan/now")
+                .queryString("at", 0).asEmpty().getStatus());
+        assertEquals(HttpStatus.OK, Unirest.get(schedule.url() + "/Gauteng/Brakpan/now")
+                .queryString("at", Instant.now().plus(Duration.ofDays(100)).getEpochSecond()).asEmpty().getStatus());
+    }
+}
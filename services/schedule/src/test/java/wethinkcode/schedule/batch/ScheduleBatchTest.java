@@ -0,0 +1,175 @@
+package wethinkcode.schedule.batch;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.*;
+import wethinkcode.schedule.cache.ScheduleCache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Every different place must be worked out once, and its result handed on as soon as it is ready.
+ */
+public class ScheduleBatchTest
+{
+    private static final ScheduleBatch.Key BRAKPAN = new ScheduleBatch.Key("Gauteng", "Brakpan");
+    private static final ScheduleBatch.Key SOWETO = new ScheduleBatch.Key("Gauteng", "Soweto");
+    private static final ScheduleBatch.Key MARS = new ScheduleBatch.Key("Mars", "Elonsburg");
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    @AfterEach
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    private static ScheduleCache.Response response(ScheduleBatch.Key key) {
+        return new ScheduleCache.Response(key.place().getBytes(StandardCharsets.UTF_8), true);
+    }
+
+    @Test
+    public void repeatedPlacesAreWorkedOutOnce() throws InterruptedException {
+        Map<ScheduleBatch.Key, AtomicInteger> calls = new ConcurrentHashMap<>();
+        List<ScheduleBatch.Result> results = new ArrayList<>();
+
+        int distinct = ScheduleBatch.run(
+                List.of(BRAKPAN, SOWETO, BRAKPAN, new ScheduleBatch.Key("Gauteng", "Brakpan")),
+                key -> {
+                    calls.computeIfAbsent(key, k -> new AtomicInteger()).incrementAndGet();
+                    return response(key);
+                },
+                executor,
+                4,
+                results::add,
+                () -> {}
+        );
+
+        assertEquals(2, distinct);
+        assertEquals(1, calls.get(BRAKPAN).get());
+        assertEquals(1, calls.get(SOWETO).get());
+        assertEquals(Set.of(BRAKPAN, SOWETO), new HashSet<>(results.stream().map(ScheduleBatch.Result::key).toList()));
+    }
+
+    @Test
+    public void errorsDoNotStopTheOthers() throws InterruptedException {
+        List<ScheduleBatch.Result> results = new ArrayList<>();
+        ScheduleBatch.run(
+                List.of(MARS, BRAKPAN),
+                key -> {
+                    if (key.equals(MARS)) {
+                        throw new IllegalStateException("The places are not known yet");
+                    }
+                    return response(key);
+                },
+                executor,
+                4,
+                results::add,
+                () -> {}
+        );
+
+        assertEquals(2, results.size());
+        for (ScheduleBatch.Result result : results) {
+            if (result.key().equals(MARS)) {
+                assertNull(result.response());
+                assertEquals("The places are not known yet", result.error());
+            } else {
+                assertNull(result.error());
+                assertArrayEquals("Brakpan".getBytes(StandardCharsets.UTF_8), result.response().body());
+            }
+        }
+    }
+
+    @Test
+    public void resultsArriveAsTheyAreReady() throws InterruptedException {
+        CountDownLatch firstSent = new CountDownLatch(1);
+        List<ScheduleBatch.Key> order = new ArrayList<>();
+
+        ScheduleBatch.run(
+                List.of(BRAKPAN, SOWETO),
+                key -> {
+                    if (key.equals(BRAKPAN)) {
+                        try {
+                            assertTrue(firstSent.await(5, TimeUnit.SECONDS));
+                        } catch (InterruptedException e) {
+                            throw new IllegalStateException(e);
+                        }
+                    }
+                    return response(key);
+                },
+                executor,
+                4,
+                result -> {
+                    order.add(result.key());
+                    firstSent.countDown();
+                },
+                () -> {}
+        );
+
+        assertEquals(List.of(SOWETO, BRAKPAN), order);
+    }
+
+    @Test
+    public void aBatchUsesOnlyItsShareOfTheExecutor() throws InterruptedException {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger most = new AtomicInteger();
+
+        int distinct = ScheduleBatch.run(
+                places(20),
+                key -> {
+                    most.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    sleep(5);
+                    running.decrementAndGet();
+                    return response(key);
+                },
+                executor,
+                2,
+                result -> {},
+                () -> {}
+        );
+
+        assertEquals(20, distinct);
+        assertTrue(most.get() <= 2);
+    }
+
+    @Test
+    public void theRestAreCancelledWhenAResultCannotBeHandedOn() {
+        AtomicInteger started = new AtomicInteger();
+
+        assertThrows(IllegalStateException.class, () -> ScheduleBatch.run(
+                places(100),
+                key -> {
+                    started.incrementAndGet();
+                    sleep(10);
+                    return response(key);
+                },
+                executor,
+                2,
+                result -> {
+                    throw new IllegalStateException("The client has gone");
+                },
+                () -> {}
+        ));
+
+        sleep(100);
+        assertTrue(started.get() <= 3);
+    }
+
+    private static List<ScheduleBatch.Key> places(int count) {
+        List<ScheduleBatch.Key> places = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            places.add(new ScheduleBatch.Key("Gauteng", "Place " + i));
+        }
+        return places;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package wethinkcode.schedule.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Responses must be made once per stage, and the cache must keep to its size.
+ */
+public class ScheduleCacheTest
+{
+    private final AtomicInteger made = new AtomicInteger();
+
+    private Supplier<ScheduleCache.Response> response(String body) {
+        return () -> {
+            made.incrementAndGet();
+            return new ScheduleCache.Response(body.getBytes(StandardCharsets.UTF_8), true);
+        };
+    }
+
+    @Test
+    public void responsesAreMadeOnceUntilANewEpoch() {
+        ScheduleCache cache = new ScheduleCache(10);
+
+        ScheduleCache.Response first = cache.get("Gauteng", "Brakpan", 2, response("a"));
+        assertSame(first, cache.get("Gauteng", "Brakpan", 2, response("b")));
+        assertEquals(1, made.get());
+
+        cache.get("Gauteng", "Brakpan", 3, response("c"));
+        assertEquals(2, made.get());
+
+        cache.newEpoch();
+        ScheduleCache.Response again = cache.get("Gauteng", "Brakpan", 2, response("d"));
+        assertEquals("d", new String(again.body(), StandardCharsets.UTF_8));
+        assertEquals(3, made.get());
+
+        ScheduleCache.Metrics metrics = cache.metrics();
+        assertEquals(1, metrics.hits());
+        assertEquals(3, metrics.misses());
+        assertEquals(2, metrics.size());
+        assertEquals(1, metrics.epoch());
+    }
+
+    @Test
+    public void responsesFromEarlierEpochsAreDroppedFirst() {
+        ScheduleCache cache = new ScheduleCache(3);
+        cache.get("Gauteng", "Brakpan", 2, response("a"));
+        cache.get("Gauteng", "Benoni", 2, response("b"));
+        cache.newEpoch();
+        cache.get("Gauteng", "Soweto", 3, response("c"));
+
+        cache.get("Gauteng", "Sandton", 3, response("d"));
+        assertEquals(2, cache.metrics().size());
+        assertEquals(2, cache.metrics().evictions());
+
+        cache.get("Gauteng", "Soweto", 3, response("e"));
+        cache.get("Gauteng", "Sandton", 3, response("f"));
+        assertEquals(2, cache.metrics().hits());
+    }
+
+    @Test
+    public void neverHoldsMoreThanItsCapacity() {
+        ScheduleCache cache = new ScheduleCache(50);
+        for (int i = 0; i < 1000; i++) {
+            cache.get("Western Cape", "Place " + i, 4, response(String.valueOf(i)));
+            assertTrue(cache.metrics().size() <= 50);
+        }
+        assertEquals(1000, cache.metrics().misses());
+        assertEquals(1000 - cache.metrics().size(), cache.metrics().evictions());
+    }
+}
@@ -0,0 +1,86 @@
+package wethinkcode.schedule.engine;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Optional;
+
+import org.junit.jupiter.api.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The outages in the index must agree with the half hours of the engine they came from.
+ */
+public class OutageIndexTest
+{
+    private static final ScheduleEngine ENGINE = new ScheduleEngine(
+            StageRotation.standard(), GroupMapping.hashed(StageRotation.STANDARD_GROUPS)
+    );
+    private static final LocalDate FIRST = LocalDate.of(2026, 10, 30);
+    private static final OutageIndex INDEX = new OutageIndex(ENGINE, FIRST, OutageIndex.DAYS);
+
+    @Test
+    public void sheddingAtEachHalfHourAgreesWithTheEngine() {
+        for (int group = 0; group < StageRotation.STANDARD_GROUPS; group++) {
+            for (int stage = 0; stage <= ENGINE.stages(); stage++) {
+                for (int day = 0; day < OutageIndex.DAYS; day++) {
+                    LocalDate date = FIRST.plusDays(day);
+                    long shed = ENGINE.slots(group, stage, date);
+                    for (int slot = 0; slot < ScheduleEngine.SLOTS_PER_DAY; slot++) {
+                        Instant time = halfHour(date, slot).plusSeconds(60);
+                        Optional<OutageIndex.Outage> outage = INDEX.at(group, stage, time);
+                        assertEquals((shed & (1L << slot)) != 0, outage.isPresent());
+                        outage.ifPresent(found -> {
+                            assertFalse(found.from().isAfter(time));
+                            assertTrue(found.to().isAfter(time));
+                        });
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void theNextOutageStartsAfterTheTimeWithNoneBetween() {
+        for (int group = 0; group < StageRotation.STANDARD_GROUPS; group++) {
+            Instant time = FIRST.atStartOfDay(OutageIndex.ZONE).toInstant().plus(Duration.ofHours(13));
+            OutageIndex.Outage next = INDEX.next(group, 4, time).orElseThrow();
+            assertTrue(next.from().isAfter(time));
+            assertTrue(INDEX.at(group, 4, next.from()).isPresent());
+            assertTrue(INDEX.at(group, 4, next.from().minusSeconds(1)).isEmpty());
+            assertTrue(INDEX.at(group, 4, next.to()).isEmpty());
+            for (Instant between = time.plusSeconds(1); between.isBefore(next.from()); between = between.plus(Duration.ofMinutes(30))) {
+                Optional<OutageIndex.Outage> during = INDEX.at(group, 4, between);
+                assertTrue(during.isEmpty() || !during.get().from().isAfter(time));
+            }
+        }
+    }
+
+    @Test
+    public void outagesRunOnPastMidnightAndTheEndOfTheMonth() {
+        StageRotation allDay = new StageRotation(StageRotation.STANDARD_GROUPS, new int[][][]{{{1}}});
+        OutageIndex index = new OutageIndex(
+                new ScheduleEngine(allDay, GroupMapping.hashed(StageRotation.STANDARD_GROUPS)), FIRST, OutageIndex.DAYS
+        );
+        Instant midnight = FIRST.plusDays(2).atStartOfDay(OutageIndex.ZONE).toInstant();
+        OutageIndex.Outage outage = index.at(0, 1, midnight).orElseThrow();
+        assertEquals(FIRST.atStartOfDay(OutageIndex.ZONE).toInstant(), outage.from());
+        assertEquals(FIRST.plusDays(OutageIndex.DAYS).atStartOfDay(OutageIndex.ZONE).toInstant(), outage.to());
+        assertTrue(index.next(0, 1, midnight).isEmpty());
+        assertTrue(index.next(0, 0, midnight).isEmpty());
+    }
+
+    @Test
+    public void theIndexCoversOnlyItsDays() {
+        Instant start = FIRST.atStartOfDay(OutageIndex.ZONE).toInstant();
+        assertTrue(INDEX.covers(start));
+        assertFalse(INDEX.covers(start.minusSeconds(1)));
+        assertFalse(INDEX.covers(FIRST.plusDays(OutageIndex.DAYS).atStartOfDay(OutageIndex.ZONE).toInstant()));
+        assertThrows(IllegalArgumentException.class, () -> INDEX.at(0, 8, start));
+    }
+
+    private static Instant halfHour(LocalDate date, int slot) {
+        return date.atStartOfDay(OutageIndex.ZONE).toInstant().plus(Duration.ofMinutes(30L * slot));
+    }
+}
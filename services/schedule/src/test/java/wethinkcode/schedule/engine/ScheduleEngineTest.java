@@ -0,0 +1,187 @@
+package wethinkcode.schedule.engine;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import wethinkcode.model.Day;
+import wethinkcode.model.Schedule;
+import wethinkcode.model.Slot;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The precomputed half hours must agree with the rotation they came from.
+ */
+public class ScheduleEngineTest
+{
+    private static final StageRotation ROTATION = StageRotation.standard();
+    private static final ScheduleEngine ENGINE = new ScheduleEngine(
+            ROTATION, GroupMapping.hashed(StageRotation.STANDARD_GROUPS)
+    );
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void eachStageShedsEveryGroupOfTheStagesBelowIt() {
+        for (int group = 0; group < ROTATION.groups(); group++) {
+            for (int day = 0; day < ROTATION.days(); day++) {
+                assertEquals(0, ENGINE.slots(group, 0, day));
+                for (int stage = 1; stage <= ROTATION.stages(); stage++) {
+                    long below = ENGINE.slots(group, stage - 1, day);
+                    long slots = ENGINE.slots(group, stage, day);
+                    assertEquals(below, slots & below);
+                    for (int block = 0; block < ROTATION.blocks(); block++) {
+                        boolean shed = (slots >>> (block * 4) & 0xF) == 0xF;
+                        boolean added = (ROTATION.added(stage, day, block) & (1 << group)) != 0;
+                        assertEquals(added || (below >>> (block * 4) & 0xF) == 0xF, shed);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void stagesWithoutATableHaveNoSchedule() {
+        assertEquals(7, ENGINE.stages());
+        assertThrows(IllegalArgumentException.class, () -> ENGINE.slots(0, 8, 0));
+    }
+
+    @Test
+    public void everyGroupIsShedAsOftenAtEachStage() {
+        for (int stage = 1; stage <= ROTATION.stages(); stage++) {
+            long first = 0;
+            for (int group = 0; group < ROTATION.groups(); group++) {
+                long halfHours = 0;
+                for (int day = 0; day < 16; day++) {
+                    halfHours += Long.bitCount(ENGINE.slots(group, stage, day));
+                }
+                if (group == 0) {
+                    first = halfHours;
+                }
+                assertEquals(first, halfHours, "stage " + stage + " group " + group);
+            }
+        }
+    }
+
+    @Test
+    public void theTimesShedMoveFromDayToDay() {
+        for (int group = 0; group < ROTATION.groups(); group++) {
+            for (int stage = 1; stage <= ROTATION.stages(); stage++) {
+                Set<Long> days = new HashSet<>();
+                for (int day = 0; day < ROTATION.days(); day++) {
+                    days.add(ENGINE.slots(group, stage, day));
+                }
+                assertTrue(days.size() > 1, "group " + group + " stage " + stage);
+            }
+        }
+    }
+
+    @Test
+    public void halfHoursThatFollowOneAnotherAreOneSlot() {
+        Day day = ScheduleEngine.day(0b1111L | 0b11L << 46);
+        assertEquals(2, day.numberOfSlots());
+        assertEquals(LocalTime.of(0, 0), day.getSlots().get(0).getStart());
+        assertEquals(LocalTime.of(2, 0), day.getSlots().get(0).getEnd());
+        assertEquals(LocalTime.of(23, 0), day.getSlots().get(1).getStart());
+        assertEquals(LocalTime.MIDNIGHT, day.getSlots().get(1).getEnd());
+        assertEquals(List.of(), ScheduleEngine.day(0).getSlots());
+    }
+
+    @Test
+    public void schedulesFollowTheDaysOfTheMonth() {
+        Schedule schedule = ENGINE.schedule("Gauteng", "Brakpan", 4, LocalDate.of(2022, 10, 30), 4);
+        int group = ENGINE.mapping().group("gauteng", "BRAKPAN");
+
+        assertEquals(4, schedule.numberOfDays());
+        int[] days = {29, 30, 0, 1};
+        for (int i = 0; i < days.length; i++) {
+            assertEquals(ENGINE.slots(group, 4, days[i]), slots(schedule.getDays().get(i)));
+        }
+        assertThrows(IllegalArgumentException.class, () -> ENGINE.schedule("Gauteng", "Brakpan", 9, LocalDate.now(), 4));
+    }
+
+    @Test
+    public void shortMonthsGoOnToTheFirstOfTheNext() {
+        int group = ENGINE.mapping().group("Gauteng", "Brakpan");
+        for (LocalDate start : List.of(LocalDate.of(2023, 4, 29), LocalDate.of(2023, 2, 27), LocalDate.of(2024, 2, 28))) {
+            Schedule schedule = ENGINE.schedule("Gauteng", "Brakpan", 4, start, 4);
+            for (int i = 0; i < 4; i++) {
+                LocalDate date = start.plusDays(i);
+                assertEquals(ENGINE.slots(group, 4, date), slots(schedule.getDays().get(i)), date.toString());
+            }
+        }
+        Schedule april = ENGINE.schedule("Gauteng", "Brakpan", 4, LocalDate.of(2023, 4, 29), 4);
+        assertEquals(ENGINE.slots(group, 4, 0), slots(april.getDays().get(2)));
+        assertEquals(ENGINE.slots(group, 4, 1), slots(april.getDays().get(3)));
+    }
+
+    @Test
+    public void placesCanBeGivenTheirGroups() throws IOException {
+        Path file = directory.resolve("groups.csv");
+        Files.writeString(file, "# province,place,group\nGauteng,Brakpan,3\n\nWestern Cape, Cape Town ,16\n");
+        GroupMapping mapping = GroupMapping.read(16, file);
+
+        assertEquals(2, mapping.group("GAUTENG", "brakpan"));
+        assertEquals(15, mapping.group("Western Cape", "Cape Town"));
+        assertEquals(GroupMapping.hashed(16).group("Gauteng", "Soweto"), mapping.group("Gauteng", "Soweto"));
+
+        Files.writeString(file, "Gauteng,Brakpan,17\n");
+        assertThrows(IOException.class, () -> GroupMapping.read(16, file));
+    }
+
+    @Test
+    public void aPublishedRotationCanBeRead() throws IOException {
+        Path file = directory.resolve("rotation.csv");
+        Files.writeString(file, """
+                # stage,day,block,groups
+                1,1,1,1
+                1,1,2,2
+                1,2,1,3
+                1,2,2,
+                2,1,1,5 9
+                """);
+        StageRotation rotation = StageRotation.read(16, file);
+
+        assertEquals(2, rotation.stages());
+        assertEquals(2, rotation.days());
+        assertEquals(2, rotation.blocks());
+        assertEquals(0b1, rotation.added(1, 0, 0));
+        assertEquals(0b100, rotation.added(1, 1, 0));
+        assertEquals(0, rotation.added(1, 1, 1));
+        assertEquals(1 << 4 | 1 << 8, rotation.added(2, 0, 0));
+        assertEquals(0, rotation.added(2, 1, 1));
+
+        ScheduleEngine engine = new ScheduleEngine(rotation, GroupMapping.hashed(16));
+        assertEquals((1L << 24) - 1, engine.slots(0, 1, 0));
+        assertEquals(2, engine.stages());
+
+        Files.writeString(file, "9,1,1,1\n");
+        assertThrows(IOException.class, () -> StageRotation.read(16, file));
+        Files.writeString(file, "1,1,1,17\n");
+        assertThrows(IOException.class, () -> StageRotation.read(16, file));
+        Files.writeString(file, "1,1,5,1\n");
+        assertThrows(IOException.class, () -> StageRotation.read(16, file));
+    }
+
+    /**
+     * The half hours a day of a schedule is shed, half hour n being bit n
+     */
+    private static long slots(Day day) {
+        long slots = 0;
+        for (Slot slot : day.getSlots()) {
+            int from = slot.getStart().toSecondOfDay() / 1800;
+            int to = slot.getEnd().equals(LocalTime.MIDNIGHT) ? 48 : slot.getEnd().toSecondOfDay() / 1800;
+            slots |= ((1L << (to - from)) - 1) << from;
+        }
+        return slots;
+    }
+}
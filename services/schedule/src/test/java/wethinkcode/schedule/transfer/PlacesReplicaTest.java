@@ -0,0 +1,134 @@
+package wethinkcode.schedule.transfer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import kong.unirest.HttpStatus;
+import kong.unirest.Unirest;
+import org.junit.jupiter.api.*;
+import wethinkcode.places.PlacesService;
+import wethinkcode.service.Service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The replica must answer like the places service, and follow its edits.
+ */
+public class PlacesReplicaTest
+{
+    private static final String ADMIN = "Bearer replica-test-token";
+    private static final String CSV = """
+            Name,Feature_Description,pklid,Latitude,Longitude,Date,MapInfo,Province,fklFeatureSubTypeID,Previous_Name,fklMagisterialDistrictID,ProvinceID,fklLanguageID,fklDisteral,Local Municipality,Sound,District Municipality,fklLocalMunic,Comments,Meaning
+            Amatikulu,Town,95757,-29.04666667,31.52805556,31-05-1989,,KwaZulu-Natal,111,,237,4,16,DC28,uMlalazi,,,KZ284,,
+            Brakpan,Urban Area,92799,-26.23527778,28.37,31-05-1995,,Gauteng,114,,280,3,16,EKU,Ekurhuleni Metro,,,EKU,,
+            Brakpan,Urban Area,92801,-27.00583333,20.57805556,01-06-1992,,Northern Cape,65,,136,6,16,DC8,Mier,,,NC081,,
+            Botrivier,Urban Area,92997,-34.22583333,19.205,31-05-1979,,Western Cape,114,,15,9,16,DC3,Theewaterskloof,,,WC031,,
+            """;
+
+    private static Service<PlacesService> places;
+    private final AtomicInteger changes = new AtomicInteger();
+    private PlacesReplica replica;
+
+    @BeforeAll
+    public static void startPlaces() throws IOException {
+        Path data = Files.createTempFile("replica", ".csv");
+        Files.writeString(data, CSV);
+        data.toFile().deleteOnExit();
+        places = new Service<>(new PlacesService())
+                .execute("-p=7479", "-d=" + data, "-at=" + ADMIN.substring("Bearer ".length()));
+    }
+
+    @AfterAll
+    public static void stopPlaces() {
+        places.stop();
+    }
+
+    @BeforeEach
+    public void createReplica() {
+        replica = new PlacesReplica(places::url);
+        replica.setTtl(Duration.ofHours(1));
+        replica.onChange(changes::incrementAndGet);
+    }
+
+    @Test
+    public void answersFromTheCopyRegardlessOfCase() {
+        assertTrue(replica.hasProvince("Gauteng"));
+        assertTrue(replica.hasProvince("GAUTENG"));
+        assertFalse(replica.hasProvince("Mars"));
+        assertTrue(replica.hasPlace("Gauteng", "brakpan"));
+        assertTrue(replica.hasPlace("Northern Cape", "Brakpan"));
+        assertFalse(replica.hasPlace("Western Cape", "Brakpan"));
+        assertFalse(replica.hasPlace("Mars", "Elonsburg"));
+        assertEquals(places.instance.dataset().version(), replica.version());
+        assertEquals(1, changes.get());
+    }
+
+    @Test
+    public void refreshingFetchesOnlyTheChanges() {
+        assertFalse(replica.hasPlace("Gauteng", "Tembisa"));
+        long version = replica.version();
+
+        assertEquals(HttpStatus.CREATED, Unirest.post(places.url() + "/places")
+                .header("Authorization", ADMIN)
+                .body("{\"name\": \"Tembisa\", \"municipality\": \"Ekurhuleni Metro\"}")
+                .asEmpty()
+                .getStatus());
+        assertFalse(replica.hasPlace("Gauteng", "Tembisa"));
+
+        replica.refresh();
+        assertTrue(replica.hasPlace("Gauteng", "Tembisa"));
+        assertTrue(replica.version() > version);
+        assertEquals(2, changes.get());
+
+        assertEquals(HttpStatus.NO_CONTENT, Unirest.delete(places.url() + "/place/Ekurhuleni Metro/Tembisa")
+                .header("Authorization", ADMIN)
+                .asEmpty()
+                .getStatus());
+        replica.refresh();
+        assertFalse(replica.hasPlace("Gauteng", "Tembisa"));
+        assertTrue(replica.hasPlace("Gauteng", "Brakpan"));
+
+        replica.refresh();
+        assertEquals(3, changes.get());
+    }
+
+    @Test
+    public void staleCopiesAreUsedWhileTheyAreRefreshed() throws InterruptedException {
+        replica.setTtl(Duration.ZERO);
+        assertTrue(replica.hasProvince("Western Cape"));
+        assertEquals(1, changes.get());
+
+        for (int i = 0; i < 100; i++) {
+            assertTrue(replica.hasPlace("Western Cape", "Botrivier"));
+        }
+        Thread.sleep(200);
+        assertEquals(1, changes.get());
+    }
+
+    @Test
+    public void onlyProvincesAreCopiedWhenPlacesAreNotChecked() {
+        replica.setWithPlaces(false);
+        assertTrue(replica.hasProvince("Gauteng"));
+        assertFalse(replica.hasProvince("Mars"));
+        assertThrows(IllegalStateException.class, () -> replica.hasPlace("Gauteng", "Brakpan"));
+    }
+
+    @Test
+    public void aFailedFirstFetchIsNotRepeatedByEveryRequest() {
+        AtomicInteger asked = new AtomicInteger();
+        PlacesReplica unreachable = new PlacesReplica(() -> {
+            asked.incrementAndGet();
+            return "http://localhost:1";
+        });
+
+        assertThrows(PlacesReplica.Unavailable.class, () -> unreachable.hasProvince("Gauteng"));
+        int first = asked.get();
+        for (int i = 0; i < 10; i++) {
+            assertThrows(PlacesReplica.Unavailable.class, () -> unreachable.hasProvince("Gauteng"));
+        }
+        assertEquals(first, asked.get());
+    }
+}